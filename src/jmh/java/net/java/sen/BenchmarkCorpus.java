@@ -0,0 +1,110 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The synthetic Japanese corpus used by the benchmarks. Three shapes of input
+ * are built from the bundled resources:
+ * <ul>
+ *   <li><code>query</code> - short search queries
+ *   <li><code>paragraph</code> - news length paragraphs of several sentences
+ *   <li><code>document</code> - one long document with no line breaks
+ * </ul>
+ */
+public class BenchmarkCorpus {
+
+    /** The dictionary directory the benchmarks load */
+    public static final String DICTIONARY_DIR = System.getProperty("sen.home");
+
+    /** The number of sentences in each paragraph */
+    private static final int PARAGRAPH_SENTENCES = 5;
+
+    /** The minimum length of the long document */
+    private static final int DOCUMENT_LENGTH = 20000;
+
+    /**
+     * Reads the lines of a resource
+     *
+     * @param name The resource name
+     * @return The non-empty lines
+     * @throws IOException
+     */
+    private static List<String> readLines(String name) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Not found resource[" + name + "]");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Returns the texts of the given shape
+     *
+     * @param shape <code>query</code>, <code>paragraph</code> or <code>document</code>
+     * @return The texts
+     * @throws IOException
+     */
+    public static String[] get(String shape) throws IOException {
+        switch (shape) {
+        case "query":
+            return readLines("queries.txt").toArray(new String[0]);
+        case "paragraph": {
+            List<String> sentences = readLines("sentences.txt");
+            List<String> paragraphs = new ArrayList<>();
+            for (int i = 0; i < sentences.size(); i += PARAGRAPH_SENTENCES) {
+                StringBuilder paragraph = new StringBuilder();
+                for (String sentence : sentences.subList(i, Math.min(i + PARAGRAPH_SENTENCES, sentences.size()))) {
+                    paragraph.append(sentence);
+                }
+                paragraphs.add(paragraph.toString());
+            }
+            return paragraphs.toArray(new String[0]);
+        }
+        case "document": {
+            List<String> sentences = readLines("sentences.txt");
+            StringBuilder document = new StringBuilder();
+            while (document.length() < DOCUMENT_LENGTH) {
+                for (String sentence : sentences) {
+                    document.append(sentence);
+                }
+            }
+            return new String[] {document.toString()};
+        }
+        default:
+            throw new IllegalArgumentException("Unknown corpus shape: " + shape);
+        }
+    }
+}
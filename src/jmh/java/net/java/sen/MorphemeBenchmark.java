@@ -0,0 +1,92 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Benchmarks the lazy loading of {@link Morpheme}s. Morphemes are loaded once
+ * and then cached, so each invocation analyses the corpus afresh;
+ * {@link #analyze(Blackhole)} measures the analysis alone, and the difference
+ * from {@link #loadMorphemes(Blackhole)} is the cost of loading
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MorphemeBenchmark {
+
+    @Param({"query", "paragraph"})
+    public String corpus;
+
+    private String[] texts;
+
+    private StringTagger stringTagger;
+
+    private final List<Token> tokens = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        texts = BenchmarkCorpus.get(corpus);
+        stringTagger = SenFactory.getStringTagger(BenchmarkCorpus.DICTIONARY_DIR, false);
+    }
+
+    @Benchmark
+    public void analyze(Blackhole blackhole) throws IOException {
+        for (String text : texts) {
+            for (Token token : stringTagger.analyze(text, tokens)) {
+                blackhole.consume(token.getMorpheme());
+            }
+        }
+    }
+
+    @Benchmark
+    public void loadMorphemes(Blackhole blackhole) throws IOException {
+        for (String text : texts) {
+            for (Token token : stringTagger.analyze(text, tokens)) {
+                Morpheme morpheme = token.getMorpheme();
+                blackhole.consume(morpheme.getPartOfSpeech());
+                blackhole.consume(morpheme.getBasicForm());
+                blackhole.consume(morpheme.getConjugationalType());
+                blackhole.consume(morpheme.getConjugationalForm());
+                blackhole.consume(morpheme.getReadings());
+                blackhole.consume(morpheme.getPronunciations());
+            }
+        }
+    }
+}
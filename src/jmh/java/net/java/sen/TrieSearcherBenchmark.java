@@ -0,0 +1,146 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.TrieMatches;
+import net.java.sen.trie.TrieSearcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks {@link TrieSearcher#commonPrefixSearch(IntBuffer, CharIterator, int[])}
+ * and its heap equivalent from every position of the corpus, against
+ * {@link TrieSearcher#commonPrefixSearchAll(int[], char[], int, int, TrieMatches)}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieSearcherBenchmark {
+
+    /**
+     * A resettable iterator over a range of a character array
+     */
+    private static final class ArrayCharIterator implements CharIterator {
+
+        private char[] characters;
+
+        private int position;
+
+        void reset(char[] characters, int position) {
+            this.characters = characters;
+            this.position = position;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < characters.length;
+        }
+
+        @Override
+        public char next() {
+            return characters[position++];
+        }
+    }
+
+    @Param({"query", "paragraph", "document"})
+    public String corpus;
+
+    private char[][] texts;
+
+    private IntBuffer trie;
+
+    private int[] heapTrie;
+
+    private final TrieMatches matches = new TrieMatches();
+
+    private final ArrayCharIterator iterator = new ArrayCharIterator();
+
+    private final int[] results = new int[256];
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] strings = BenchmarkCorpus.get(corpus);
+        texts = new char[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            texts[i] = strings[i].toCharArray();
+        }
+
+        try (RandomAccessFile trieFile = new RandomAccessFile(new File(BenchmarkCorpus.DICTIONARY_DIR, "trie.sen"), "r")) {
+            trie = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+        }
+        heapTrie = new int[trie.remaining()];
+        trie.duplicate().get(heapTrie);
+    }
+
+    @Benchmark
+    public int commonPrefixSearch() {
+        int count = 0;
+        for (char[] text : texts) {
+            for (int i = 0; i < text.length; i++) {
+                iterator.reset(text, i);
+                count += TrieSearcher.commonPrefixSearch(trie, iterator, results);
+            }
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int commonPrefixSearchHeap() {
+        int count = 0;
+        for (char[] text : texts) {
+            for (int i = 0; i < text.length; i++) {
+                iterator.reset(text, i);
+                count += TrieSearcher.commonPrefixSearch(heapTrie, iterator, results);
+            }
+        }
+
+        return count;
+    }
+
+    @Benchmark
+    public int commonPrefixSearchAll() {
+        int count = 0;
+        for (char[] text : texts) {
+            TrieSearcher.commonPrefixSearchAll(heapTrie, text, 0, text.length, matches);
+            count += matches.size();
+        }
+
+        return count;
+    }
+}
@@ -20,20 +20,32 @@
 
 package net.java.sen;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import net.java.sen.dictionary.ConnectionCosts;
 import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.MorphemeTable;
 import net.java.sen.dictionary.Tokenizer;
+import net.java.sen.dictionary.UnknownWordModel;
 import net.java.sen.dictionary.Viterbi;
 import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+import net.java.sen.trie.DoubleArrayLexiconIndex;
+import net.java.sen.trie.FSTLexiconIndex;
+import net.java.sen.trie.LexiconIndex;
 import net.java.sen.util.IOUtils;
 
 
@@ -49,24 +61,40 @@ public class SenFactory {
 
     private static final Map<String, SenFactory> map = new ConcurrentHashMap<>();
     private static final String EMPTY_DICTIONARYDIR_KEY = "NO_DICTIONARY_INSTANCE";
+    private static final Map<List<Object>, StringTaggerPool> pools = new ConcurrentHashMap<>();
 
     public static final String unknownPOS = "未知語";
 
     private final String[] posIndex, conjTypeIndex, conjFormIndex;
-    private final ByteBuffer costs, pos, tokens, trie;
+    private final ByteBuffer pos, tokens;
+    private final ConnectionCosts costs;
+    private final UnknownWordModel unknownWordModel;
+    private final Dictionary dictionary;
 
     /**
      * Get the singleton factory instance
      *
      * @param dictionaryDir a directory of dictionaries
      */
-    public synchronized static SenFactory getInstance(String dictionaryDir) {
+    public static SenFactory getInstance(String dictionaryDir) {
+        return getInstance(dictionaryDir, SenOptions.DEFAULT);
+    }
 
-        String key = (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir;
+    /**
+     * Get the singleton factory instance for a directory and its dictionary
+     * loading options. The dictionary is loaded once for each distinct
+     * combination of the two
+     *
+     * @param dictionaryDir a directory of dictionaries
+     * @param options the dictionary loading options (see {@link SenOptions})
+     */
+    public synchronized static SenFactory getInstance(String dictionaryDir, SenOptions options) {
+
+        String key = getKey(dictionaryDir, options);
         SenFactory instance = map.get(key);
         if (instance == null) {
             try {
-                instance = new SenFactory(dictionaryDir);
+                instance = new SenFactory(dictionaryDir, options);
                 map.put(key, instance);
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
@@ -76,17 +104,53 @@ public class SenFactory {
         return instance;
     }
 
-    private SenFactory(String dictionaryDir) throws IOException {
+    /**
+     * Builds the key of the factory instance for a directory. Only the
+     * dictionary loading options are part of it, as the analysis options
+     * apply to each object constructed rather than to the dictionary
+     *
+     * @param dictionaryDir a directory of dictionaries
+     * @param options the options
+     * @return The key
+     */
+    private static String getKey(String dictionaryDir, SenOptions options) {
+        String key = (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir;
+        return key + "#" + options.isMapFiles() + "#" + options.getConnectionCostStorage() + "#" + options.isHeapTrie()
+                + "#" + options.getLexiconIndexType();
+    }
+
+    private SenFactory(String dictionaryDir, SenOptions options) throws IOException {
         InputStream in = null;
         DataInputStream din = null;
+        boolean mapFiles = options.isMapFiles();
+        ConnectionCosts.Storage connectionCostStorage = options.getConnectionCostStorage();
+        LexiconIndex.Type lexiconIndexType = options.getLexiconIndexType();
+        boolean mapCosts = mapFiles || connectionCostStorage == ConnectionCosts.Storage.MAPPED;
+        ByteBuffer trie = null;
+        IntBuffer tokenIndex = null;
+        int version = 1;
         // read main data files
         try {
             in = getInputStream("header.sen", dictionaryDir);
             din = new DataInputStream(in);
-            costs = loadBuffer("connectionCost.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-            pos = loadBuffer("partOfSpeech.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-            tokens = loadBuffer("token.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-            trie = loadBuffer("trie.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
+            int connectionCostSize = din.readInt();
+            if (connectionCostSize == Dictionary.HEADER_VERSION_MARKER) {
+                version = din.readInt();
+                if (version > Dictionary.FORMAT_VERSION) {
+                    throw new RuntimeException("Unsupported dictionary format version " + version + ". dictionaryDir=[" + dictionaryDir + "]");
+                }
+                connectionCostSize = din.readInt();
+            }
+            costs = ConnectionCosts.create(openBuffer("connectionCost.sen", connectionCostSize, dictionaryDir, mapCosts), connectionCostStorage);
+            pos = openBuffer("partOfSpeech.sen", din.readInt(), dictionaryDir, mapFiles);
+            tokens = openBuffer("token.sen", din.readInt(), dictionaryDir, mapFiles);
+            int trieSize = din.readInt();
+            if (lexiconIndexType == LexiconIndex.Type.DOUBLE_ARRAY) {
+                trie = openBuffer("trie.sen", trieSize, dictionaryDir, mapFiles);
+            }
+            if (version >= 2) {
+                tokenIndex = openBuffer("tokenIndex.sen", din.readInt(), dictionaryDir, mapFiles).asIntBuffer();
+            }
         } finally {
             IOUtils.closeWhileHandlingException(din, in);
         }
@@ -96,23 +160,118 @@ public class SenFactory {
         try {
             in = getInputStream("posIndex.sen", dictionaryDir);
             din = new DataInputStream(in);
-            posIndex = new String[din.readChar()];
+            posIndex = new String[readCount(din, version)];
             for (int i = 0; i < posIndex.length; i++) {
                 posIndex[i] = din.readUTF();
             }
 
-            conjTypeIndex = new String[din.readChar()];
+            conjTypeIndex = new String[readCount(din, version)];
             for (int i = 0; i < conjTypeIndex.length; i++) {
                 conjTypeIndex[i] = din.readUTF();
             }
 
-            conjFormIndex = new String[din.readChar()];
+            conjFormIndex = new String[readCount(din, version)];
             for (int i = 0; i < conjFormIndex.length; i++) {
                 conjFormIndex[i] = din.readUTF();
             }
         } finally {
             IOUtils.closeWhileHandlingException(din, in);
         }
+
+        // read the optional unknown word model
+        unknownWordModel = loadUnknownWordModel("unknown.sen", dictionaryDir);
+
+        // read the index of surface forms
+        LexiconIndex lexiconIndex;
+        if (lexiconIndexType == LexiconIndex.Type.FST) {
+            try {
+                in = new BufferedInputStream(getInputStream("fst.sen", dictionaryDir));
+                lexiconIndex = FSTLexiconIndex.read(in);
+            } finally {
+                IOUtils.closeWhileHandlingException(in);
+            }
+        } else if (options.isHeapTrie()) {
+            IntBuffer trieBuffer = trie.asIntBuffer();
+            int[] trieData = new int[trieBuffer.remaining()];
+            trieBuffer.get(trieData);
+            lexiconIndex = new DoubleArrayLexiconIndex(trieData);
+        } else {
+            lexiconIndex = new DoubleArrayLexiconIndex(trie.asIntBuffer());
+        }
+
+        // the dictionary only reads its buffers at absolute indices, so one is shared by every tokenizer
+        dictionary = new Dictionary(costs, pos, tokens, lexiconIndex, tokenIndex, posIndex, conjTypeIndex, conjFormIndex);
+    }
+
+    /**
+     * Reads the number of entries of a table in the part-of-speech index file
+     *
+     * @param in      The stream to read from
+     * @param version The dictionary format version
+     * @return The number of entries
+     * @throws IOException
+     */
+    private static int readCount(DataInputStream in, int version) throws IOException {
+        return (version >= 2) ? in.readInt() : in.readChar();
+    }
+
+    /**
+     * Returns the shared table of decoded part-of-speech data for the given
+     * configuration, creating it and installing it on the shared Dictionary
+     * on the first call. Only the settings of the first call take effect
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param maxBytes the memory cap, in estimated bytes of decoded data
+     * @param preload if true, decode the part-of-speech file up to the memory
+     *                cap now rather than as entries are requested
+     * @return The table
+     * @see MorphemeTable
+     */
+    public synchronized static MorphemeTable getMorphemeTable(String dictionaryDir, long maxBytes, boolean preload) {
+        Dictionary dictionary = getDictionary(dictionaryDir);
+        MorphemeTable table = dictionary.getMorphemeTable();
+        if (table == null) {
+            table = new MorphemeTable(dictionary, maxBytes);
+            if (preload) {
+                table.preload();
+            }
+            dictionary.setMorphemeTable(table);
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the Dictionary for the given configuration. A single Dictionary
+     * is shared by all the objects constructed by the factory, and may be used
+     * from multiple threads
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @return The Dictionary
+     */
+    public static Dictionary getDictionary(String dictionaryDir) {
+        return getDictionary(dictionaryDir, SenOptions.DEFAULT);
+    }
+
+    /**
+     * Returns the Dictionary for the given configuration, loaded with the
+     * given options
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param options the dictionary loading options
+     * @return The Dictionary
+     * @see #getDictionary(String)
+     */
+    public static Dictionary getDictionary(String dictionaryDir, SenOptions options) {
+        return getInstance(dictionaryDir, options).dictionary;
+    }
+
+    /**
+     * @param dictionaryDir
+     * @return true if the dictionary is loaded from the classpath
+     */
+    private static boolean isResource(String dictionaryDir) {
+        return dictionaryDir == null || dictionaryDir.trim().length() == 0;
     }
 
     /**
@@ -123,7 +282,7 @@ public class SenFactory {
      */
     private static InputStream getInputStream(String name, String dictionaryDir) throws IOException {
         InputStream in = null;
-        if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+        if (isResource(dictionaryDir)) {
             in = SenFactory.class.getResourceAsStream(name);
         } else {
             in = Files.newInputStream(new File(dictionaryDir, name).toPath());
@@ -142,7 +301,8 @@ public class SenFactory {
      * @param dictionaryDir
      * @return
      * @throws IOException
-     */    private static ByteBuffer loadBuffer(String resource, int size, String dictionaryDir) throws IOException {
+     */
+    private static ByteBuffer loadBuffer(String resource, int size, String dictionaryDir) throws IOException {
         InputStream in = null;
         try {
             in = getInputStream(resource, dictionaryDir);
@@ -166,26 +326,98 @@ public class SenFactory {
         }
     }
 
+    /**
+     * Load the unknown word model, if the dictionary has one
+     *
+     * @param resource
+     * @param dictionaryDir
+     * @return the model, or null to use the tokenizer's default
+     * @throws IOException
+     */
+    private static UnknownWordModel loadUnknownWordModel(String resource, String dictionaryDir) throws IOException {
+        InputStream in;
+        if (isResource(dictionaryDir)) {
+            in = SenFactory.class.getResourceAsStream(resource);
+        } else {
+            File file = new File(dictionaryDir, resource);
+            in = file.exists() ? Files.newInputStream(file.toPath()) : null;
+        }
+        if (in == null) {
+            return null;
+        }
+
+        try (DataInputStream din = new DataInputStream(new BufferedInputStream(in))) {
+            return UnknownWordModel.read(din);
+        }
+    }
+
+    /**
+     * Open specified dictionary data as a read-only ByteBuffer, mapping the
+     * file if requested and possible, or loading it otherwise
+     *
+     * @param resource
+     * @param size
+     * @param dictionaryDir
+     * @param map
+     * @return
+     * @throws IOException
+     */
+    private static ByteBuffer openBuffer(String resource, int size, String dictionaryDir, boolean map) throws IOException {
+        if (map && !isResource(dictionaryDir)) {
+            return mapBuffer(resource, size, dictionaryDir).asReadOnlyBuffer();
+        } else {
+            return loadBuffer(resource, size, dictionaryDir).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Map specified dictionary file read-only into a ByteBuffer
+     *
+     * @param resource
+     * @param size
+     * @param dictionaryDir a filesystem directory of dictionaries
+     * @return
+     * @throws IOException
+     */
+    private static ByteBuffer mapBuffer(String resource, int size, String dictionaryDir) throws IOException {
+        try (FileChannel channel = FileChannel.open(new File(dictionaryDir, resource).toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
     /**
      * Builds a Tokenizer for the given dictionary configuration
      *
      * @param dictionaryDir The dictionary configuration filename
-     * @param tokenizeUnknownKatakana
+     * @param options The dictionary loading options and unknown katakana setting
      * @return The constructed Tokenizer
      */
-    private static Tokenizer getTokenizer(String dictionaryDir, boolean tokenizeUnknownKatakana) {
-        SenFactory localInstance = SenFactory.getInstance(dictionaryDir);
+    private static Tokenizer getTokenizer(String dictionaryDir, SenOptions options) {
+        return getTokenizer(dictionaryDir, options, SenFactory.getInstance(dictionaryDir, options).unknownWordModel);
+    }
 
+    /**
+     * Builds a Tokenizer for the given dictionary configuration
+     *
+     * @param dictionaryDir The dictionary configuration filename
+     * @param options The dictionary loading options and unknown katakana setting
+     * @param unknownWordModel The unknown word model, or null for the default
+     * @return The constructed Tokenizer
+     */
+    private static Tokenizer getTokenizer(String dictionaryDir, SenOptions options, UnknownWordModel unknownWordModel) {
         return new JapaneseTokenizer(
-                new Dictionary(localInstance.costs.asShortBuffer(),
-                        localInstance.pos.duplicate(),
-                        localInstance.tokens.duplicate(),
-                        localInstance.trie.asIntBuffer(),
-                        localInstance.posIndex,
-                        localInstance.conjTypeIndex,
-                        localInstance.conjFormIndex),
+                getDictionary(dictionaryDir, options),
                 unknownPOS,
-                tokenizeUnknownKatakana);
+                options.isTokenizeUnknownKatakana(),
+                unknownWordModel);
+    }
+
+    /**
+     * @param tokenizeUnknownKatakana
+     * @return The default options, with the given unknown katakana setting
+     */
+    private static SenOptions getOptions(boolean tokenizeUnknownKatakana) {
+        return SenOptions.builder().tokenizeUnknownKatakana(tokenizeUnknownKatakana).build();
     }
 
     /**
@@ -196,8 +428,33 @@ public class SenFactory {
      * @return A Viterbi
      */
     static Viterbi getViterbi(String dictionaryDir, boolean tokenizeUnknownKatakana) {
+        return getViterbi(dictionaryDir, getOptions(tokenizeUnknownKatakana));
+    }
+
+    /**
+     * Creates a Viterbi from the given configuration
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param options the dictionary loading and analysis options
+     * @return A Viterbi
+     */
+    static Viterbi getViterbi(String dictionaryDir, SenOptions options) {
+        // for test only
+        return new Viterbi(getTokenizer(dictionaryDir, options), options.isCompactLattice(), options.getBeam(),
+                options.getBudget());
+    }
+
+    /**
+     * Creates a Viterbi from the given configuration
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param tokenizeUnknownKatakana
+     * @param unknownWordModel the unknown word model, in place of the dictionary's
+     * @return A Viterbi
+     */
+    static Viterbi getViterbi(String dictionaryDir, boolean tokenizeUnknownKatakana, UnknownWordModel unknownWordModel) {
         // for test only
-        return new Viterbi(getTokenizer(dictionaryDir, tokenizeUnknownKatakana));
+        return new Viterbi(getTokenizer(dictionaryDir, getOptions(tokenizeUnknownKatakana), unknownWordModel));
     }
 
     /**
@@ -207,7 +464,52 @@ public class SenFactory {
      * @return A StringTagger
      */
     public static StringTagger getStringTagger(String dictionaryDir, boolean tokenizeUnknownKatakana) {
-        return new StringTagger(getTokenizer(dictionaryDir, tokenizeUnknownKatakana));
+        return new StringTagger(getTokenizer(dictionaryDir, getOptions(tokenizeUnknownKatakana)));
+    }
+
+    /**
+     * Creates a StringTagger from the given configuration
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param options the dictionary loading and analysis options (see
+     *                {@link SenOptions}). Its {@link SenOptions#getBeam() Beam} and
+     *                {@link SenOptions#getBudget() Budget} are shared by
+     *                every StringTagger created with it
+     * @return A StringTagger
+     */
+    public static StringTagger getStringTagger(String dictionaryDir, SenOptions options) {
+        return new StringTagger(getTokenizer(dictionaryDir, options), options);
+    }
+
+    /**
+     * Gets the shared pool of StringTaggers for the given configuration,
+     * creating it if necessary
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param tokenizeUnknownKatakana
+     * @param maxSize the maximum number of StringTaggers in the pool. Only takes
+     *                effect when the pool is first created
+     * @return A StringTaggerPool
+     */
+    public static StringTaggerPool getStringTaggerPool(String dictionaryDir, boolean tokenizeUnknownKatakana, int maxSize) {
+        return getStringTaggerPool(dictionaryDir, getOptions(tokenizeUnknownKatakana), maxSize);
+    }
+
+    /**
+     * Gets the shared pool of StringTaggers for the given configuration,
+     * creating it if necessary. One pool is shared by all callers giving
+     * equal options
+     *
+     * @param dictionaryDir a directory of dictionary
+     * @param options the options to create the StringTaggers with
+     * @param maxSize the maximum number of StringTaggers in the pool. Only takes
+     *                effect when the pool is first created
+     * @return A StringTaggerPool
+     * @see #getStringTagger(String, SenOptions)
+     */
+    public static StringTaggerPool getStringTaggerPool(String dictionaryDir, SenOptions options, int maxSize) {
+        String key = (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir;
+        return pools.computeIfAbsent(Arrays.asList(key, options), k -> new StringTaggerPool(dictionaryDir, options, maxSize));
     }
 
     /**
@@ -218,6 +520,6 @@ public class SenFactory {
      */
     static ReadingProcessor getReadingProcessor(String dictionaryDir, boolean tokenizeUnknownKatakana) {
         //for test only
-        return new ReadingProcessor(getTokenizer(dictionaryDir, tokenizeUnknownKatakana));
+        return new ReadingProcessor(getTokenizer(dictionaryDir, getOptions(tokenizeUnknownKatakana)));
     }
 }
@@ -0,0 +1,399 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.util.Objects;
+
+import net.java.sen.dictionary.Beam;
+import net.java.sen.dictionary.Budget;
+import net.java.sen.dictionary.ConnectionCosts;
+import net.java.sen.trie.LexiconIndex;
+
+
+/**
+ * The settings used to load a dictionary and to analyse text with it. Options
+ * are created with a {@link Builder}, starting from the defaults:
+ *
+ * <pre>
+ * SenOptions options = SenOptions.builder()
+ *         .tokenizeUnknownKatakana(true)
+ *         .beam(new Beam(8, 0, 0))
+ *         .build();
+ * StringTagger tagger = SenFactory.getStringTagger(dictionaryDir, options);
+ * </pre>
+ *
+ * <p>The settings fall into three groups:
+ * <ul>
+ *   <li>dictionary loading: {@link #isMapFiles()},
+ *       {@link #getConnectionCostStorage()}, {@link #isHeapTrie()} and
+ *       {@link #getLexiconIndexType()}
+ *   <li>analysis: {@link #isTokenizeUnknownKatakana()},
+ *       {@link #isCompactLattice()}, {@link #getBeam()} and
+ *       {@link #getBudget()}
+ *   <li>reading long text from a stream: {@link #getMaxBufferSize()} and
+ *       {@link #isIncremental()}
+ * </ul>
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are immutable and thread
+ * safe. The {@link Beam} and {@link Budget} they hold are shared by every
+ * tagger created with them.
+ */
+public final class SenOptions {
+
+    /** The default options */
+    public static final SenOptions DEFAULT = builder().build();
+
+    /** Whether the dictionary files are memory mapped */
+    private final boolean mapFiles;
+
+    /** How the connection cost matrix is held */
+    private final ConnectionCosts.Storage connectionCostStorage;
+
+    /** Whether the Trie data is copied into a heap array */
+    private final boolean heapTrie;
+
+    /** The index of surface forms to search */
+    private final LexiconIndex.Type lexiconIndexType;
+
+    /** Whether unknown katakana is segmented */
+    private final boolean tokenizeUnknownKatakana;
+
+    /** Whether the lattice is held in reusable primitive arrays */
+    private final boolean compactLattice;
+
+    /** The beam search settings, or <code>null</code> */
+    private final Beam beam;
+
+    /** The limits on the work done, or <code>null</code> */
+    private final Budget budget;
+
+    /** The number of chars a sentence buffer may grow to, or 0 */
+    private final int maxBufferSize;
+
+    /** Whether long lines are analysed incrementally */
+    private final boolean incremental;
+
+    /**
+     * @param builder The builder to copy the settings of
+     */
+    private SenOptions(Builder builder) {
+        this.mapFiles = builder.mapFiles;
+        this.connectionCostStorage = builder.connectionCostStorage;
+        this.heapTrie = builder.heapTrie;
+        this.lexiconIndexType = builder.lexiconIndexType;
+        this.tokenizeUnknownKatakana = builder.tokenizeUnknownKatakana;
+        this.compactLattice = builder.compactLattice;
+        this.beam = builder.beam;
+        this.budget = builder.budget;
+        this.maxBufferSize = builder.maxBufferSize;
+        this.incremental = builder.incremental;
+    }
+
+    /**
+     * @return A Builder holding the default options
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A Builder holding these options, to derive new options from
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return <code>true</code> if the dictionary files are memory mapped
+     *         read-only rather than copied into direct buffers
+     */
+    public boolean isMapFiles() {
+        return mapFiles;
+    }
+
+    /**
+     * @return How the connection cost matrix is held
+     */
+    public ConnectionCosts.Storage getConnectionCostStorage() {
+        return connectionCostStorage;
+    }
+
+    /**
+     * @return <code>true</code> if the Trie data is copied into a heap
+     *         <code>int[]</code>
+     */
+    public boolean isHeapTrie() {
+        return heapTrie;
+    }
+
+    /**
+     * @return The index of surface forms to search
+     */
+    public LexiconIndex.Type getLexiconIndexType() {
+        return lexiconIndexType;
+    }
+
+    /**
+     * @return <code>true</code> if unknown katakana is segmented
+     */
+    public boolean isTokenizeUnknownKatakana() {
+        return tokenizeUnknownKatakana;
+    }
+
+    /**
+     * @return <code>true</code> if the lattice is held in reusable primitive
+     *         arrays
+     */
+    public boolean isCompactLattice() {
+        return compactLattice;
+    }
+
+    /**
+     * @return The beam search settings, or <code>null</code> to search
+     *         exhaustively
+     */
+    public Beam getBeam() {
+        return beam;
+    }
+
+    /**
+     * @return The limits on the work done, or <code>null</code> for none
+     */
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The number of chars a sentence buffer may grow to, or 0 for a
+     *         fixed buffer
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * @return <code>true</code> if lines too long for the sentence buffer are
+     *         analysed incrementally
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Options are equal if all their settings are. The {@link Beam} and
+     * {@link Budget} are compared by identity, as they hold shared counters
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SenOptions)) {
+            return false;
+        }
+        SenOptions other = (SenOptions) obj;
+        return (mapFiles == other.mapFiles) && (connectionCostStorage == other.connectionCostStorage) && (heapTrie == other.heapTrie)
+                && (lexiconIndexType == other.lexiconIndexType) && (tokenizeUnknownKatakana == other.tokenizeUnknownKatakana)
+                && (compactLattice == other.compactLattice) && (beam == other.beam) && (budget == other.budget)
+                && (maxBufferSize == other.maxBufferSize) && (incremental == other.incremental);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mapFiles, connectionCostStorage, heapTrie, lexiconIndexType, tokenizeUnknownKatakana, compactLattice,
+                System.identityHashCode(beam), System.identityHashCode(budget), maxBufferSize, incremental);
+    }
+
+    @Override
+    public String toString() {
+        return "SenOptions[mapFiles=" + mapFiles + ", connectionCostStorage=" + connectionCostStorage + ", heapTrie=" + heapTrie
+                + ", lexiconIndexType=" + lexiconIndexType + ", tokenizeUnknownKatakana=" + tokenizeUnknownKatakana
+                + ", compactLattice=" + compactLattice + ", beam=" + beam + ", budget=" + budget
+                + ", maxBufferSize=" + maxBufferSize + ", incremental=" + incremental + "]";
+    }
+
+    /**
+     * Builds {@link SenOptions}. Every setting starts at its default
+     *
+     * <p><b>Thread Safety</b>: This class is not thread safe.
+     */
+    public static final class Builder {
+
+        private boolean mapFiles = false;
+        private ConnectionCosts.Storage connectionCostStorage = ConnectionCosts.Storage.HEAP;
+        private boolean heapTrie = false;
+        private LexiconIndex.Type lexiconIndexType = LexiconIndex.Type.DOUBLE_ARRAY;
+        private boolean tokenizeUnknownKatakana = false;
+        private boolean compactLattice = false;
+        private Beam beam = null;
+        private Budget budget = null;
+        private int maxBufferSize = 0;
+        private boolean incremental = false;
+
+        private Builder() {
+        }
+
+        /**
+         * @param options The options to copy the settings of
+         */
+        private Builder(SenOptions options) {
+            this.mapFiles = options.mapFiles;
+            this.connectionCostStorage = options.connectionCostStorage;
+            this.heapTrie = options.heapTrie;
+            this.lexiconIndexType = options.lexiconIndexType;
+            this.tokenizeUnknownKatakana = options.tokenizeUnknownKatakana;
+            this.compactLattice = options.compactLattice;
+            this.beam = options.beam;
+            this.budget = options.budget;
+            this.maxBufferSize = options.maxBufferSize;
+            this.incremental = options.incremental;
+        }
+
+        /**
+         * @param mapFiles If <code>true</code>, memory map the dictionary
+         *                 files read-only rather than copying them into direct
+         *                 buffers, so that the page cache is shared by every
+         *                 JVM using the same dictionary. Dictionaries loaded
+         *                 from the classpath are always copied. Default
+         *                 <code>false</code>
+         * @return This Builder
+         */
+        public Builder mapFiles(boolean mapFiles) {
+            this.mapFiles = mapFiles;
+            return this;
+        }
+
+        /**
+         * @param connectionCostStorage How to hold the connection cost
+         *                              matrix. {@link ConnectionCosts.Storage#MAPPED}
+         *                              falls back to {@link ConnectionCosts.Storage#BUFFER}
+         *                              for dictionaries loaded from the
+         *                              classpath. Default {@link ConnectionCosts.Storage#HEAP}
+         * @return This Builder
+         */
+        public Builder connectionCostStorage(ConnectionCosts.Storage connectionCostStorage) {
+            if (connectionCostStorage == null) {
+                throw new IllegalArgumentException("connectionCostStorage must not be null");
+            }
+            this.connectionCostStorage = connectionCostStorage;
+            return this;
+        }
+
+        /**
+         * @param heapTrie If <code>true</code>, copy the Trie data into a heap
+         *                 <code>int[]</code> so that searches read it without
+         *                 buffer accesses. Default <code>false</code>
+         * @return This Builder
+         */
+        public Builder heapTrie(boolean heapTrie) {
+            this.heapTrie = heapTrie;
+            return this;
+        }
+
+        /**
+         * @param lexiconIndexType The index of surface forms to search.
+         *                         {@link LexiconIndex.Type#FST} requires a
+         *                         dictionary compiled with its FST (fst.sen).
+         *                         Default {@link LexiconIndex.Type#DOUBLE_ARRAY}
+         * @return This Builder
+         */
+        public Builder lexiconIndexType(LexiconIndex.Type lexiconIndexType) {
+            if (lexiconIndexType == null) {
+                throw new IllegalArgumentException("lexiconIndexType must not be null");
+            }
+            this.lexiconIndexType = lexiconIndexType;
+            return this;
+        }
+
+        /**
+         * @param tokenizeUnknownKatakana If <code>true</code>, segment unknown
+         *                                katakana rather than treating a run of
+         *                                it as one word. Default <code>false</code>
+         * @return This Builder
+         */
+        public Builder tokenizeUnknownKatakana(boolean tokenizeUnknownKatakana) {
+            this.tokenizeUnknownKatakana = tokenizeUnknownKatakana;
+            return this;
+        }
+
+        /**
+         * @param compactLattice If <code>true</code>, analyse using a reusable
+         *                       primitive lattice rather than a lattice of
+         *                       Node objects. Default <code>false</code>
+         * @return This Builder
+         */
+        public Builder compactLattice(boolean compactLattice) {
+            this.compactLattice = compactLattice;
+            return this;
+        }
+
+        /**
+         * @param beam The beam search settings, which may be shared by many
+         *             taggers, or <code>null</code> to search exhaustively.
+         *             Default <code>null</code>
+         * @return This Builder
+         */
+        public Builder beam(Beam beam) {
+            this.beam = beam;
+            return this;
+        }
+
+        /**
+         * @param budget The limits on the work done, which may be shared by
+         *               many taggers, or <code>null</code> for none. Default
+         *               <code>null</code>
+         * @return This Builder
+         */
+        public Builder budget(Budget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param maxBufferSize The number of chars a sentence buffer may grow
+         *                      to when a line is too long to be broken safely,
+         *                      or 0 for a fixed buffer. Default 0
+         * @return This Builder
+         */
+        public Builder maxBufferSize(int maxBufferSize) {
+            if (maxBufferSize < 0) {
+                throw new IllegalArgumentException("maxBufferSize must not be negative: " + maxBufferSize);
+            }
+            this.maxBufferSize = maxBufferSize;
+            return this;
+        }
+
+        /**
+         * @param incremental If <code>true</code>, analyse lines too long for
+         *                    the sentence buffer incrementally rather than
+         *                    breaking or truncating them. Default
+         *                    <code>false</code>
+         * @return This Builder
+         */
+        public Builder incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * @return The options
+         */
+        public SenOptions build() {
+            return new SenOptions(this);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.java.sen.dictionary.Beam;
+import net.java.sen.dictionary.Budget;
 import net.java.sen.dictionary.Sentence;
 import net.java.sen.dictionary.Token;
 import net.java.sen.dictionary.Tokenizer;
@@ -132,7 +134,24 @@ public class StringTagger {
      * @throws IOException
      */
     public List<Token> analyze(char[] surface, List<Token> reuse) throws IOException {
-        Sentence sentence = new Sentence(surface);
+        return analyze(surface, 0, surface.length, reuse);
+    }
+
+    /**
+     * Decompose a window of a buffer into its most likely constituent
+     * morphemes. The buffer is not copied; the returned {@link Token}s refer to
+     * it for their surfaces until {@link Token#getSurface()} is called, so it
+     * must not be modified while they are in use
+     *
+     * @param buffer The buffer holding the characters to analyse
+     * @param offset The index of the first character to analyse
+     * @param length The number of characters to analyse
+     * @param reuse  The list to return the morphemes in
+     * @return An array of {@link Token}s representing the most likely morphemes
+     * @throws IOException
+     */
+    public List<Token> analyze(char[] buffer, int offset, int length, List<Token> reuse) throws IOException {
+        Sentence sentence = new Sentence(buffer, offset, length);
         filterPreProcess(sentence);
 
         List<Token> tokens = viterbi.getBestTokens(sentence, reuse);
@@ -142,6 +161,75 @@ public class StringTagger {
         return tokens;
     }
 
+    /**
+     * Decompose a window of a buffer holding part of a sentence too long to
+     * analyse at once. Only the morphemes that are settled, whatever text
+     * follows, are returned; the remaining characters must be given again at
+     * the start of the next part. Attached {@link StreamFilter}s are applied
+     * to each part separately
+     *
+     * @param buffer   The buffer holding the characters to analyse
+     * @param offset   The index of the first character to analyse
+     * @param length   The number of characters to analyse
+     * @param complete If <code>true</code>, the sentence ends with the given
+     *                 characters
+     * @param reuse    The list to return the morphemes in
+     * @return The settled morphemes, which cover {@link #getSettledLength()}
+     * characters
+     * @throws IOException
+     * @see Viterbi#getSettledTokens(Sentence, boolean, List)
+     */
+    public List<Token> analyzePart(char[] buffer, int offset, int length, boolean complete, List<Token> reuse) throws IOException {
+        Sentence sentence = new Sentence(buffer, offset, length);
+        filterPreProcess(sentence);
+
+        List<Token> tokens = viterbi.getSettledTokens(sentence, complete, reuse);
+
+        tokens = filterPostProcess(tokens);
+
+        return tokens;
+    }
+
+    /**
+     * Returns the number of characters settled by the last call to
+     * {@link #analyzePart(char[], int, int, boolean, List)}
+     *
+     * @return The number of characters
+     */
+    public int getSettledLength() {
+        return viterbi.getSettledLength();
+    }
+
+    /**
+     * Starts a new document, from which the time limit of the
+     * {@link Budget}, if any, is measured
+     *
+     * @see Viterbi#startDocument()
+     */
+    public void startDocument() {
+        viterbi.startDocument();
+    }
+
+    /**
+     * Starts a new document, or continues one whose analysis is shared with
+     * other StringTaggers, measuring the time limit of the {@link Budget}, if
+     * any, from the given time
+     *
+     * @param startTime The time the document was started, as given by
+     *                  {@link System#nanoTime()}
+     * @see Viterbi#startDocument(long)
+     */
+    public void startDocument(long startTime) {
+        viterbi.startDocument(startTime);
+    }
+
+    /**
+     * Discards the settled part of a sentence being analysed in parts
+     */
+    public void reset() {
+        viterbi.reset();
+    }
+
     /**
      * @deprecated use {@link #analyze(char[], List)} instead.
      */
@@ -154,6 +242,16 @@ public class StringTagger {
      * @param tokenizer The Tokenizer to use for analysis
      */
     public StringTagger(Tokenizer tokenizer) {
-        this.viterbi = new Viterbi(tokenizer);
+        this(tokenizer, SenOptions.DEFAULT);
+    }
+
+    /**
+     * @param tokenizer The Tokenizer to use for analysis
+     * @param options   The analysis options. The lattice, {@link Beam} and
+     *                  {@link Budget} settings are used
+     * @see Viterbi#Viterbi(Tokenizer, boolean, Beam, Budget)
+     */
+    public StringTagger(Tokenizer tokenizer, SenOptions options) {
+        this.viterbi = new Viterbi(tokenizer, options.isCompactLattice(), options.getBeam(), options.getBudget());
     }
 }
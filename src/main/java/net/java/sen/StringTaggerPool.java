@@ -0,0 +1,213 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded pool of {@link StringTagger}s sharing one dictionary configuration.
+ * A {@link StringTagger} is borrowed for the duration of an analysis and then
+ * returned, so that a large number of threads can share a small number of
+ * taggers and their scratch state. Taggers are created lazily, up to the
+ * pool's maximum size; once that many are borrowed, further borrowers wait.
+ *
+ * <p>Instances are obtained from
+ * {@link SenFactory#getStringTaggerPool(String, SenOptions, int)}.
+ *
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. A borrowed {@link StringTagger} must only be used by the borrowing
+ * thread until it is returned.
+ */
+public class StringTaggerPool {
+
+    /** The dictionary directory the taggers are created from */
+    private final String dictionaryDir;
+
+    /** The options the taggers are created with */
+    private final SenOptions options;
+
+    /** The maximum number of taggers */
+    private final int maxSize;
+
+    /** Taggers that have been returned and are available for reuse */
+    private final ConcurrentLinkedQueue<StringTagger> idle = new ConcurrentLinkedQueue<>();
+
+    /** Taggers that are currently borrowed */
+    private final Set<StringTagger> borrowed = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /** One permit for each tagger that may currently be borrowed */
+    private final Semaphore permits;
+
+    /** The number of taggers created */
+    private final AtomicLong creations = new AtomicLong();
+
+    /** The number of successful borrows */
+    private final AtomicLong borrows = new AtomicLong();
+
+    /** The number of borrows that had to wait for a tagger to be returned */
+    private final AtomicLong waits = new AtomicLong();
+
+    /**
+     * Takes a tagger from the idle queue, or creates one. The caller must hold
+     * a permit, which is released again if a tagger cannot be created
+     *
+     * @return The tagger
+     */
+    private StringTagger take() {
+        StringTagger stringTagger = idle.poll();
+        if (stringTagger == null) {
+            try {
+                stringTagger = SenFactory.getStringTagger(dictionaryDir, options);
+            } catch (RuntimeException | Error e) {
+                permits.release();
+                throw e;
+            }
+            creations.incrementAndGet();
+        }
+        borrowed.add(stringTagger);
+        borrows.incrementAndGet();
+
+        return stringTagger;
+    }
+
+    /**
+     * Borrows a tagger, waiting if the maximum number are already borrowed
+     *
+     * @return The tagger. It must be passed to {@link #release(StringTagger)}
+     *         when finished with
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public StringTagger borrow() throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            waits.incrementAndGet();
+            permits.acquire();
+        }
+
+        return take();
+    }
+
+    /**
+     * Borrows a tagger, waiting up to the given time if the maximum number are
+     * already borrowed
+     *
+     * @param timeout The maximum time to wait
+     * @param unit    The unit of <code>timeout</code>
+     * @return The tagger, or <code>null</code> if none was returned in time. It
+     *         must be passed to {@link #release(StringTagger)} when finished
+     *         with
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public StringTagger borrow(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            waits.incrementAndGet();
+            if (!permits.tryAcquire(timeout, unit)) {
+                return null;
+            }
+        }
+
+        return take();
+    }
+
+    /**
+     * Returns a borrowed tagger to the pool. Any {@link net.java.sen.filter.StreamFilter}s
+     * added by the borrower are removed, and any sentence the borrower left
+     * partly analysed is discarded
+     *
+     * @param stringTagger The tagger, as returned by {@link #borrow()}
+     * @throws IllegalArgumentException if the tagger was not borrowed from
+     *         this pool, or has already been returned
+     */
+    public void release(StringTagger stringTagger) {
+        if (!borrowed.remove(stringTagger)) {
+            throw new IllegalArgumentException("StringTagger is not borrowed from this pool");
+        }
+        stringTagger.removeFilters();
+        stringTagger.reset();
+        idle.offer(stringTagger);
+        permits.release();
+    }
+
+    /**
+     * @return The maximum number of taggers in the pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of taggers currently borrowed
+     */
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * @return The number of taggers currently available for reuse
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return The total number of taggers created by the pool
+     */
+    public long getCreations() {
+        return creations.get();
+    }
+
+    /**
+     * @return The total number of successful borrows
+     */
+    public long getBorrows() {
+        return borrows.get();
+    }
+
+    /**
+     * @return The total number of borrows that had to wait for a tagger
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StringTaggerPool[maxSize=" + maxSize + ", active=" + getActive() + ", idle=" + getIdle()
+                + ", creations=" + getCreations() + ", borrows=" + getBorrows() + ", waits=" + getWaits() + "]";
+    }
+
+    /**
+     * @param dictionaryDir The dictionary directory to create taggers from
+     * @param options       The options to create taggers with
+     * @param maxSize       The maximum number of taggers
+     */
+    StringTaggerPool(String dictionaryDir, SenOptions options, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, but was " + maxSize);
+        }
+        this.dictionaryDir = dictionaryDir;
+        this.options = options;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+}
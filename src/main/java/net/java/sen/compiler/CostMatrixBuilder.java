@@ -29,6 +29,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.java.sen.util.CSVParser;
 import net.java.sen.util.IOUtils;
@@ -41,6 +42,10 @@ import net.java.sen.util.IOUtils;
  * TODO The workings of this class are relatively simple but somewhat magical.
  * It could use some explanation from someone who understands what exactly it's
  * doing.
+ *
+ * <p><b>Thread Safety</b>: Once {@link #build()} has been called,
+ * {@link #getDicId(String)} and {@link #getRuleIdList(String)} may be called
+ * from multiple threads
  */
 class CostMatrixBuilder {
 
@@ -64,7 +69,12 @@ class CostMatrixBuilder {
      * // dic2IdHash('word type')= id for word type
      * TODO This is magic. How does this work?
      */
-    private Map<String, Integer> dicIndex = new HashMap<>();
+    private Map<String, Integer> dicIndex = new ConcurrentHashMap<>();
+
+    /**
+     * The ID calculated for each rule passed to {@link #getDicId(String)}
+     */
+    private Map<String, Integer> dicIdCache = new ConcurrentHashMap<>();
 
 
     /**
@@ -204,6 +214,23 @@ class CostMatrixBuilder {
      * @return TODO how is this ID defined?
      */
     public int getDicId(String rule) throws IOException {
+        Integer id = dicIdCache.get(rule);
+        if (id == null) {
+            id = getDicIdNoMemo(rule);
+            dicIdCache.put(rule, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Calculates the ID returned by {@link #getDicId(String)}. The ID depends
+     * only on the rule, so it is safe to calculate it more than once
+     *
+     * @param rule The rule
+     * @return The ID
+     */
+    private int getDicIdNoMemo(String rule) throws IOException {
         CSVParser parser = null;
 
         try {
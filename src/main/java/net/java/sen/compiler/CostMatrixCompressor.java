@@ -0,0 +1,327 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen.compiler;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.sen.dictionary.ConnectionCosts;
+
+
+/**
+ * Compresses a connection cost matrix into the compressed form read by
+ * {@link ConnectionCosts}
+ * <p>
+ * Along each extent of the matrix, context attributes whose costs are
+ * identical are merged into a class. The rows of the resulting class matrix
+ * that are identical, such as rows consisting only of the default cost, are
+ * stored once. Optionally, the costs are quantized to 8 bit codes into a table
+ * of up to 256 costs; this is exact if the matrix holds no more than 256
+ * distinct costs.
+ */
+public class CostMatrixCompressor {
+
+    /** The number of codes available to a quantized matrix */
+    private static final int QUANTIZED_LEVELS = 256;
+
+    /** The matrix, with the left context attribute as its innermost extent */
+    private final short[] matrix;
+
+    /** The sizes of the three extents of the matrix */
+    private final int[] sizes;
+
+    /** The class of each context attribute, for each extent */
+    private final short[][] classes = new short[3][];
+
+    /** The representative context attribute of each class, for each extent */
+    private final int[][] representatives = new int[3][];
+
+    /** The row for each pair of right context classes */
+    private final int[] rowIds;
+
+    /** The distinct rows of the class matrix */
+    private final List<short[]> rows = new ArrayList<>();
+
+    /**
+     * A row of costs as a hash key
+     */
+    private static class Row {
+        /** The costs */
+        final short[] costs;
+
+        /** The hash code of the costs */
+        final int hashCode;
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Row) && Arrays.equals(costs, ((Row) other).costs);
+        }
+
+        Row(short[] costs) {
+            this.costs = costs;
+            this.hashCode = Arrays.hashCode(costs);
+        }
+    }
+
+    /**
+     * Returns an element of the slice of the matrix at a given context
+     * attribute of one extent
+     *
+     * @param extent The extent (0, 1 or 2)
+     * @param id     The context attribute
+     * @param k      The index of the element within the slice
+     * @return The cost
+     */
+    private short sliceElement(int extent, int id, int k) {
+        switch (extent) {
+        case 0:
+            return matrix[id * sizes[1] * sizes[2] + k];
+        case 1:
+            return matrix[((k / sizes[2]) * sizes[1] + id) * sizes[2] + (k % sizes[2])];
+        default:
+            return matrix[k * sizes[2] + id];
+        }
+    }
+
+    /**
+     * Merges the context attributes of one extent whose slices of the matrix
+     * are identical into classes
+     *
+     * @param extent The extent (0, 1 or 2)
+     */
+    private void mergeClasses(int extent) {
+        int count = sizes[extent];
+        int sliceSize = matrix.length / Math.max(1, count);
+
+        long[] hashes = new long[count];
+        for (int id = 0; id < count; id++) {
+            long hash = 0;
+            for (int k = 0; k < sliceSize; k++) {
+                hash = hash * 31 + sliceElement(extent, id, k);
+            }
+            hashes[id] = hash;
+        }
+
+        short[] classOf = new short[count];
+        List<Integer> classRepresentatives = new ArrayList<>();
+        Map<Long, List<Integer>> candidates = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            List<Integer> sameHash = candidates.computeIfAbsent(hashes[id], h -> new ArrayList<>());
+            int found = -1;
+            for (int candidate : sameHash) {
+                boolean equal = true;
+                for (int k = 0; k < sliceSize && equal; k++) {
+                    equal = sliceElement(extent, id, k) == sliceElement(extent, candidate, k);
+                }
+                if (equal) {
+                    found = classOf[candidate];
+                    break;
+                }
+            }
+
+            if (found < 0) {
+                found = classRepresentatives.size();
+                classRepresentatives.add(id);
+                sameHash.add(id);
+            }
+            classOf[id] = (short) found;
+        }
+
+        classes[extent] = classOf;
+        representatives[extent] = classRepresentatives.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the number of classes of context attributes for each extent
+     *
+     * @return The number of classes for each extent
+     */
+    public int[] getClassCounts() {
+        return new int[] { representatives[0].length, representatives[1].length, representatives[2].length };
+    }
+
+    /**
+     * Returns the number of distinct rows of the class matrix
+     *
+     * @return The number of distinct rows
+     */
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Builds the table of costs for a quantized matrix. If there are too many
+     * distinct costs to each have a code, the table holds costs at evenly
+     * spaced quantiles of all the stored costs
+     *
+     * @return The sorted table of costs
+     */
+    private short[] quantizationTable() {
+        int rowLength = representatives[2].length;
+        short[] all = new short[rows.size() * rowLength];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, all, i * rowLength, rowLength);
+        }
+        Arrays.sort(all);
+
+        short[] distinct = new short[all.length];
+        int distinctCount = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                distinct[distinctCount++] = all[i];
+            }
+        }
+        if (distinctCount <= QUANTIZED_LEVELS) {
+            return Arrays.copyOf(distinct, distinctCount);
+        }
+
+        short[] table = new short[QUANTIZED_LEVELS];
+        int tableSize = 0;
+        for (int i = 0; i < QUANTIZED_LEVELS; i++) {
+            short cost = all[(int) ((long) i * (all.length - 1) / (QUANTIZED_LEVELS - 1))];
+            if (tableSize == 0 || table[tableSize - 1] != cost) {
+                table[tableSize++] = cost;
+            }
+        }
+
+        return Arrays.copyOf(table, tableSize);
+    }
+
+    /**
+     * Returns the code of the table entry nearest to a cost
+     *
+     * @param table The sorted table of costs
+     * @param cost  The cost
+     * @return The code
+     */
+    private static int quantize(short[] table, short cost) {
+        int index = Arrays.binarySearch(table, cost);
+        if (index >= 0) {
+            return index;
+        }
+
+        int above = -index - 1;
+        if (above == 0) {
+            return 0;
+        } else if (above == table.length) {
+            return table.length - 1;
+        }
+
+        return (cost - table[above - 1] <= table[above] - cost) ? above - 1 : above;
+    }
+
+    /**
+     * Writes the compressed matrix
+     *
+     * @param out      The output to write to
+     * @param quantize If <code>true</code>, store the costs as 8 bit codes into
+     *                 a table of costs
+     * @throws IOException
+     */
+    public void write(DataOutput out, boolean quantize) throws IOException {
+        out.writeShort(ConnectionCosts.COMPRESSED_MARKER);
+        out.writeShort(ConnectionCosts.COMPRESSED_VERSION);
+        out.writeShort(quantize ? ConnectionCosts.FLAG_QUANTIZED : 0);
+
+        for (int size : sizes) {
+            out.writeShort(size);
+        }
+        for (int[] classRepresentatives : representatives) {
+            out.writeShort(classRepresentatives.length);
+        }
+        for (short[] classOf : classes) {
+            for (short c : classOf) {
+                out.writeShort(c);
+            }
+        }
+        for (int rowId : rowIds) {
+            out.writeInt(rowId);
+        }
+
+        if (quantize) {
+            short[] table = quantizationTable();
+            out.writeShort(table.length);
+            for (short cost : table) {
+                out.writeShort(cost);
+            }
+            out.writeInt(rows.size() * representatives[2].length);
+            for (short[] row : rows) {
+                for (short cost : row) {
+                    out.writeByte(quantize(table, cost));
+                }
+            }
+        } else {
+            out.writeInt(rows.size() * representatives[2].length);
+            for (short[] row : rows) {
+                for (short cost : row) {
+                    out.writeShort(cost);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param matrix The connection cost matrix, with the left context
+     *               attribute as its innermost extent
+     * @param size1  Size of the first extent of the matrix
+     * @param size2  Size of the second extent of the matrix
+     * @param size3  Size of the third extent of the matrix
+     */
+    public CostMatrixCompressor(short[] matrix, int size1, int size2, int size3) {
+        this.matrix = matrix;
+        this.sizes = new int[] { size1, size2, size3 };
+
+        for (int extent = 0; extent < 3; extent++) {
+            mergeClasses(extent);
+        }
+
+        int[] rcAttr2s = representatives[0];
+        int[] rcAttr1s = representatives[1];
+        int[] lcAttrs = representatives[2];
+
+        Map<Row, Integer> rowIndex = new HashMap<>();
+        rowIds = new int[rcAttr2s.length * rcAttr1s.length];
+        for (int i = 0; i < rcAttr2s.length; i++) {
+            for (int j = 0; j < rcAttr1s.length; j++) {
+                int offset = size3 * (size2 * rcAttr2s[i] + rcAttr1s[j]);
+                short[] costs = new short[lcAttrs.length];
+                for (int k = 0; k < lcAttrs.length; k++) {
+                    costs[k] = matrix[offset + lcAttrs[k]];
+                }
+
+                Integer rowId = rowIndex.get(new Row(costs));
+                if (rowId == null) {
+                    rowId = rows.size();
+                    rows.add(costs);
+                    rowIndex.put(new Row(costs), rowId);
+                }
+                rowIds[i * rcAttr1s.length + j] = rowId;
+            }
+        }
+    }
+}
@@ -22,23 +22,35 @@
 package net.java.sen.compiler;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
-import java.nio.ShortBuffer;
-import java.nio.channels.FileChannel;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.Dictionary;
 import net.java.sen.dictionary.DictionaryUtil;
+import net.java.sen.dictionary.UnknownWordModel;
+import net.java.sen.trie.FSTBuilder;
 import net.java.sen.trie.TrieBuilder;
 import net.java.sen.util.CSVData;
 import net.java.sen.util.CSVParser;
@@ -85,11 +97,31 @@ public class DictionaryBuilder {
      */
     private static final String TRIE_DATA_FILENAME = "trie.sen";
 
+    /**
+     * Compiled FST data filename
+     */
+    private static final String FST_DATA_FILENAME = "fst.sen";
+
+    /**
+     * Compiled token index data filename
+     */
+    private static final String TOKEN_INDEX_DATA_FILENAME = "tokenIndex.sen";
+
     /**
      * Compiled header data filename
      */
     private static final String HEADER_DATA_FILENAME = "header.sen";
 
+    /**
+     * Input filename for the optional character definition data
+     */
+    private static final String CHARACTER_DEFINITION_FILENAME = "char.def";
+
+    /**
+     * Compiled unknown word model filename
+     */
+    private static final String UNKNOWN_WORD_DATA_FILENAME = "unknown.sen";
+
     /**
      * Default connection cost
      */
@@ -120,6 +152,11 @@ public class DictionaryBuilder {
      */
     private static final String UNKNOWN_PART_OF_SPEECH = "名詞,サ変接続,*,*,*,*,*";
 
+    /**
+     * Number of dictionary CSV lines parsed by one task
+     */
+    private static final int PARSE_BATCH_SIZE = 4096;
+
     /**
      * Precursor data for the Trie file
      */
@@ -127,13 +164,82 @@ public class DictionaryBuilder {
         /** Trie keys */
         public String[] keys;
 
-        /** Trie values */
+        /** Trie values, the ordinal of each key */
         public int[] values;
 
+        /**
+         * The index of the first token of each key, followed by the end of the
+         * last key's tokens
+         */
+        public int[] starts;
+
         /** The actual number of entries in the keys/values arrays */
         public int size;
     }
 
+    /**
+     * A dictionary CSV line, parsed ready to be written
+     */
+    private static class ParsedEntry {
+        /** The surface form */
+        public String surface;
+
+        /** The token, lacking only its part-of-speech index */
+        public CToken ctoken;
+
+        /** The part-of-speech */
+        public String partOfSpeech;
+
+        /** The conjugational type */
+        public String conjugationalType;
+
+        /** The conjugational form */
+        public String conjugationalForm;
+
+        /** The basic form */
+        public String basicForm;
+
+        /** The readings */
+        public List<String> readings;
+
+        /** The pronunciations, one per reading */
+        public List<String> pronunciations;
+    }
+
+    /**
+     * A list of unique strings, each identified by the index at which it was
+     * first added
+     */
+    private static class StringIndex {
+        /** The strings in the order they were added */
+        public final List<String> values = new ArrayList<>();
+
+        /** The index of each string */
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        /**
+         * Returns the index of a string, adding it if it is not yet present
+         *
+         * @param value The string
+         * @return The index of the string
+         */
+        public int intern(String value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                values.add(value);
+                indices.put(value, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * The stream to report the progress of the build to, or <code>null</code>
+     */
+    private final PrintStream log;
+
     /**
      * Increases the size of an array of <code>short</code>s
      *
@@ -184,24 +290,234 @@ public class DictionaryBuilder {
         return splitFieldList;
     }
 
+    /**
+     * Parses a line of the dictionary CSV data
+     *
+     * @param line              The line to parse
+     * @param matrixBuilders    The three <code>CostMatrixBuilder</code>s
+     * @param partOfSpeechStart The starting index of the part-of-speech data within a CSV line
+     * @param partOfSpeechSize  The number of part-of-speech values within a CSV line
+     * @return The parsed entry
+     * @throws IOException
+     */
+    private ParsedEntry parseEntry(String line, CostMatrixBuilder[] matrixBuilders,
+                                   int partOfSpeechStart, int partOfSpeechSize) throws IOException {
+        String[] csvValues = CSVParser.split(line);
+
+        if (csvValues.length < (partOfSpeechSize + partOfSpeechStart)) {
+            throw new RuntimeException("format error:" + line);
+        }
+
+        CSVData key_b = new CSVData();
+        for (int i = partOfSpeechStart; i < (partOfSpeechStart + partOfSpeechSize); i++) {
+            key_b.append(csvValues[i]);
+        }
+        String key = key_b.toString();
+
+        ParsedEntry entry = new ParsedEntry();
+        entry.surface = csvValues[0];
+
+        CToken ctoken = new CToken();
+        ctoken.rcAttr2 = (short) matrixBuilders[0].getDicId(key);
+        ctoken.rcAttr1 = (short) matrixBuilders[1].getDicId(key);
+        ctoken.lcAttr = (short) matrixBuilders[2].getDicId(key);
+        ctoken.length = (short) csvValues[0].length();
+        ctoken.cost = (short) Integer.parseInt(csvValues[1]);
+        entry.ctoken = ctoken;
+
+        StringBuilder partOfSpeechBuilder = new StringBuilder();
+        for (int i = partOfSpeechStart; i < (partOfSpeechStart + 4); i++) {
+            if (!csvValues[i].equals("*")) {
+                partOfSpeechBuilder.append(csvValues[i]);
+                partOfSpeechBuilder.append("-");
+            }
+        }
+        entry.partOfSpeech = partOfSpeechBuilder.substring(0,
+                partOfSpeechBuilder.length() - 1);
+        entry.conjugationalType = csvValues[partOfSpeechStart + 4];
+        entry.conjugationalForm = csvValues[partOfSpeechStart + 5];
+        entry.basicForm = csvValues[partOfSpeechStart + 6];
+        entry.readings = splitCompoundField(csvValues[partOfSpeechStart + 7]);
+        entry.pronunciations = splitCompoundField(csvValues[partOfSpeechStart + 8]);
+
+        return entry;
+    }
+
+    /**
+     * Parses a batch of lines of the dictionary CSV data
+     *
+     * @param lines             The lines to parse
+     * @param matrixBuilders    The three <code>CostMatrixBuilder</code>s
+     * @param partOfSpeechStart The starting index of the part-of-speech data within a CSV line
+     * @param partOfSpeechSize  The number of part-of-speech values within a CSV line
+     * @return The parsed entries, in the order of the lines
+     * @throws IOException
+     */
+    private ParsedEntry[] parseEntries(List<String> lines, CostMatrixBuilder[] matrixBuilders,
+                                       int partOfSpeechStart, int partOfSpeechSize) throws IOException {
+        ParsedEntry[] entries = new ParsedEntry[lines.size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = parseEntry(lines.get(i), matrixBuilders, partOfSpeechStart, partOfSpeechSize);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads the next batch of lines of CSV data. Reading stops at the end of
+     * the input or at the first empty line, as it does for {@link CSVParser}
+     *
+     * @param reader The reader to read from
+     * @return The lines read. Fewer than {@link #PARSE_BATCH_SIZE} lines are
+     *         returned only at the end of the input
+     * @throws IOException
+     */
+    private static List<String> readBatch(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>(PARSE_BATCH_SIZE);
+
+        String line;
+        while ((lines.size() < PARSE_BATCH_SIZE) && ((line = reader.readLine()) != null) && (line.length() > 0)) {
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    /**
+     * Waits for the result of a parse task
+     *
+     * @param future The task
+     * @return The result
+     * @throws IOException
+     */
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Writes the part-of-speech data of an entry
+     *
+     * @param outputStream  The part-of-speech data file
+     * @param entry         The entry
+     * @param posIndex      The part-of-speech index
+     * @param conjTypeIndex The conjugational type index
+     * @param conjFormIndex The conjugational form index
+     * @throws IOException
+     */
+    private static void writePartOfSpeech(DataOutputStream outputStream, ParsedEntry entry,
+                                          StringIndex posIndex, StringIndex conjTypeIndex, StringIndex conjFormIndex)
+            throws IOException {
+        DictionaryUtil.writeVInt(outputStream, posIndex.intern(entry.partOfSpeech));
+        DictionaryUtil.writeVInt(outputStream, conjTypeIndex.intern(entry.conjugationalType));
+        DictionaryUtil.writeVInt(outputStream, conjFormIndex.intern(entry.conjugationalForm));
+
+        if (entry.basicForm.equals(entry.surface)) {
+            DictionaryUtil.writeVInt(outputStream, 0);
+        } else {
+            DictionaryUtil.writeVInt(outputStream, entry.basicForm.length());
+            outputStream.writeChars(entry.basicForm);
+        }
+
+        List<String> readings = entry.readings;
+        List<String> pronunciations = entry.pronunciations;
+
+        int encoding = 0; // by default we write a single-byte katakana
+        // encoding
+
+        // but if we find any non-katakana in the readings or pronunciation,
+        // we
+        // use utf-16
+        for (String reading : readings) {
+            for (int i = 0; i < reading.length(); i++) {
+                char ch = reading.charAt(i);
+                if (ch < 0x30A0 || ch > 0x30FF) {
+                    encoding = 1;
+                    break;
+                }
+            }
+        }
+
+        for (String pronunciation : pronunciations) {
+            for (int i = 0; i < pronunciation.length(); i++) {
+                char ch = pronunciation.charAt(i);
+                if (ch < 0x30A0 || ch > 0x30FF) {
+                    encoding = 1;
+                    break;
+                }
+            }
+        }
+
+        DictionaryUtil.writeVInt(outputStream, readings.size() << 1
+                | encoding);
+
+        for (int i = 0; i < readings.size(); i++) {
+            String reading = readings.get(i);
+            String pronunciation = pronunciations.get(i);
+            if (pronunciation.equals(reading)) {
+                // if the pronunciation is the same as the associated reading,
+                // we
+                // write a 0 for the length
+                DictionaryUtil.writeVInt(outputStream,
+                        reading.length() << 1 | 0);
+                if (encoding == 0) {
+                    DictionaryUtil.writeKatakana(outputStream, reading);
+                } else {
+                    outputStream.writeChars(reading);
+                }
+            } else {
+                DictionaryUtil.writeVInt(outputStream,
+                        reading.length() << 1 | 1);
+                if (encoding == 0) {
+                    DictionaryUtil.writeKatakana(outputStream, reading);
+                } else {
+                    outputStream.writeChars(reading);
+                }
+                DictionaryUtil.writeVInt(outputStream, pronunciation.length());
+                if (encoding == 0) {
+                    DictionaryUtil.writeKatakana(outputStream, pronunciation);
+                } else {
+                    outputStream.writeChars(pronunciation);
+                }
+            }
+        }
+    }
+
     /**
      * Creates the part-of-speech data file
+     * <p>
+     * The dictionary CSV files are read in batches of lines which are parsed
+     * in parallel. The parsed entries are then written in their original
+     * order, so the output does not depend on the number of threads
      *
-     * @param dictionaryCSVFilenames   The filenames of the dictionary CSV data file and any additional
-     *                                 dictionaries
-     * @param partOfSpeechDataFilename The filename for the part-of-speech data file
-     * @param partOfSpeechDataFilename The filename for the part-of-speech index file
-     * @param matrixBuilders           The three <code>CostMatrixBuilder</code>s
-     * @param partOfSpeechStart        The starting index of the part-of-speech data within a CSV line
-     * @param partOfSpeechSize         The number of part-of-speech values within a CSV line
-     * @param charset                  The charset of the CSV data
-     * @param bosPartOfSpeech          The beginning-of-string part-of-speech code
-     * @param eosPartOfSpeech          The end-of-string part-of-speech code
-     * @param unknownPartOfSpeech      The beginning-of-string part-of-speech code
-     * @param dictionaryList           Populated by this method with the String/CToken tuples that will
-     *                                 be used to create the Token file
-     * @param standardCTokens          Populated by this method with the three standard CTokens ("bos",
-     *                                 "eos" and "unknown")
+     * @param dictionaryCSVFilenames    The filenames of the dictionary CSV data file and any additional
+     *                                  dictionaries
+     * @param partOfSpeechDataFilename  The filename for the part-of-speech data file
+     * @param partOfSpeechIndexFilename The filename for the part-of-speech index file
+     * @param matrixBuilders            The three <code>CostMatrixBuilder</code>s
+     * @param partOfSpeechStart         The starting index of the part-of-speech data within a CSV line
+     * @param partOfSpeechSize          The number of part-of-speech values within a CSV line
+     * @param charset                   The charset of the CSV data
+     * @param bosPartOfSpeech           The beginning-of-string part-of-speech code
+     * @param eosPartOfSpeech           The end-of-string part-of-speech code
+     * @param unknownPartOfSpeech       The beginning-of-string part-of-speech code
+     * @param dictionaryList            Populated by this method with the String/CToken tuples that will
+     *                                  be used to create the Token file
+     * @param standardCTokens           Populated by this method with the three standard CTokens ("bos",
+     *                                  "eos" and "unknown")
+     * @param threads                   The number of threads to parse with
      * @throws IOException
      */
     private void createPartOfSpeechDataFile(List<String> dictionaryCSVFilenames,
@@ -209,175 +525,50 @@ public class DictionaryBuilder {
                                             CostMatrixBuilder[] matrixBuilders, int partOfSpeechStart,
                                             int partOfSpeechSize, String charset, String bosPartOfSpeech,
                                             String eosPartOfSpeech, String unknownPartOfSpeech,
-                                            VirtualTupleList dictionaryList, CToken[] standardCTokens)
+                                            VirtualTupleList dictionaryList, CToken[] standardCTokens,
+                                            int threads)
             throws IOException {
 
-        CSVData key_b = new CSVData();
-        CSVData pos_b = new CSVData();
-
         FileOutputStream fileOutputStream = null;
         BufferedOutputStream bufferedOutputStream = null;
         DataOutputStream outputStream = null;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
 
         try {
             fileOutputStream = new FileOutputStream(partOfSpeechDataFilename);
             bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
             outputStream = new DataOutputStream(bufferedOutputStream);
 
-            List<String> posIndex = new ArrayList<>();
-            List<String> conjTypeIndex = new ArrayList<>();
-            List<String> conjFormIndex = new ArrayList<>();
+            StringIndex posIndex = new StringIndex();
+            StringIndex conjTypeIndex = new StringIndex();
+            StringIndex conjFormIndex = new StringIndex();
 
             for (String dictionaryCSVFilename : dictionaryCSVFilenames) {
 
-                FileInputStream fileInputStream = null;
-                CSVParser parser = null;
-                try {
-                    fileInputStream = new FileInputStream(dictionaryCSVFilename);
-                    parser = new CSVParser(fileInputStream, charset);
-
-                    String[] csvValues;
-                    while ((csvValues = parser.nextTokens()) != null) {
-
-                        if (csvValues.length < (partOfSpeechSize + partOfSpeechStart)) {
-                            throw new RuntimeException("format error:" + parser.currentLine());
-                        }
-
-                        key_b.clear();
-                        pos_b.clear();
-                        for (int i = partOfSpeechStart; i < (partOfSpeechStart + partOfSpeechSize); i++) {
-                            key_b.append(csvValues[i]);
-                            pos_b.append(csvValues[i]);
-                        }
-
-                        for (int i = partOfSpeechStart + partOfSpeechSize; i < csvValues.length; i++) {
-                            pos_b.append(csvValues[i]);
-                        }
-
-                        CToken ctoken = new CToken();
-
-                        ctoken.rcAttr2 = (short) matrixBuilders[0].getDicId(key_b
-                                .toString());
-                        ctoken.rcAttr1 = (short) matrixBuilders[1].getDicId(key_b
-                                .toString());
-                        ctoken.lcAttr = (short) matrixBuilders[2]
-                                .getDicId(key_b.toString());
-                        ctoken.partOfSpeechIndex = outputStream.size();
-                        ctoken.length = (short) csvValues[0].length();
-                        ctoken.cost = (short) Integer.parseInt(csvValues[1]);
-
-                        dictionaryList.add(csvValues[0], ctoken);
-
-                        // Write to part of speech data file
-
-                        StringBuilder partOfSpeechBuilder = new StringBuilder();
-                        for (int i = partOfSpeechStart; i < (partOfSpeechStart + 4); i++) {
-                            if (!csvValues[i].equals("*")) {
-                                partOfSpeechBuilder.append(csvValues[i]);
-                                partOfSpeechBuilder.append("-");
-                            }
-                        }
-                        String partOfSpeech = partOfSpeechBuilder.substring(0,
-                                partOfSpeechBuilder.length() - 1);
-                        String conjugationalType = csvValues[partOfSpeechStart + 4];
-                        String conjugationalForm = csvValues[partOfSpeechStart + 5];
-                        String basicForm = csvValues[partOfSpeechStart + 6];
-                        List<String> readings = splitCompoundField(csvValues[partOfSpeechStart + 7]);
-                        List<String> pronunciations = splitCompoundField(csvValues[partOfSpeechStart + 8]);
-
-                        int index = posIndex.indexOf(partOfSpeech);
-                        if (index < 0) {
-                            index = posIndex.size();
-                            posIndex.add(partOfSpeech);
-                        }
-
-                        DictionaryUtil.writeVInt(outputStream, index);
-
-                        index = conjTypeIndex.indexOf(conjugationalType);
-                        if (index < 0) {
-                            index = conjTypeIndex.size();
-                            conjTypeIndex.add(conjugationalType);
-                        }
-
-                        DictionaryUtil.writeVInt(outputStream, index);
-
-                        index = conjFormIndex.indexOf(conjugationalForm);
-                        if (index < 0) {
-                            index = conjFormIndex.size();
-                            conjFormIndex.add(conjugationalForm);
-                        }
-
-                        DictionaryUtil.writeVInt(outputStream, index);
-
-                        if (basicForm.equals(csvValues[0])) {
-                            DictionaryUtil.writeVInt(outputStream, 0);
-                        } else {
-                            DictionaryUtil.writeVInt(outputStream, basicForm.length());
-                            outputStream.writeChars(basicForm);
-                        }
-
-                        int encoding = 0; // by default we write a single-byte katakana
-                        // encoding
-
-                        // but if we find any non-katakana in the readings or pronunciation,
-                        // we
-                        // use utf-16
-                        for (String reading : readings) {
-                            for (int i = 0; i < reading.length(); i++) {
-                                char ch = reading.charAt(i);
-                                if (ch < 0x30A0 || ch > 0x30FF) {
-                                    encoding = 1;
-                                    break;
-                                }
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dictionaryCSVFilename), charset))) {
+                    // Keep a bounded number of batches in flight, consuming
+                    // them in the order they were read
+                    Deque<Future<ParsedEntry[]>> pending = new ArrayDeque<>();
+                    boolean eof = false;
+                    while (!eof || !pending.isEmpty()) {
+                        while (!eof && (pending.size() < threads * 2)) {
+                            List<String> lines = readBatch(reader);
+                            eof = lines.size() < PARSE_BATCH_SIZE;
+                            if (!lines.isEmpty()) {
+                                pending.add(executor.submit(() -> parseEntries(lines, matrixBuilders, partOfSpeechStart, partOfSpeechSize)));
                             }
                         }
 
-                        for (String pronunciation : pronunciations) {
-                            for (int i = 0; i < pronunciation.length(); i++) {
-                                char ch = pronunciation.charAt(i);
-                                if (ch < 0x30A0 || ch > 0x30FF) {
-                                    encoding = 1;
-                                    break;
-                                }
-                            }
-                        }
+                        if (!pending.isEmpty()) {
+                            for (ParsedEntry entry : getResult(pending.removeFirst())) {
+                                entry.ctoken.partOfSpeechIndex = outputStream.size();
+                                dictionaryList.add(entry.surface, entry.ctoken);
 
-                        DictionaryUtil.writeVInt(outputStream, readings.size() << 1
-                                | encoding);
-
-                        for (int i = 0; i < readings.size(); i++) {
-                            String reading = readings.get(i);
-                            String pronunciation = pronunciations.get(i);
-                            if (pronunciation.equals(reading)) {
-                                // if the pronunciation is the same as the associated reading,
-                                // we
-                                // write a 0 for the length
-                                DictionaryUtil.writeVInt(outputStream,
-                                        reading.length() << 1 | 0);
-                                if (encoding == 0) {
-                                    DictionaryUtil.writeKatakana(outputStream, reading);
-                                } else {
-                                    outputStream.writeChars(reading);
-                                }
-                            } else {
-                                DictionaryUtil.writeVInt(outputStream,
-                                        reading.length() << 1 | 1);
-                                if (encoding == 0) {
-                                    DictionaryUtil.writeKatakana(outputStream, reading);
-                                } else {
-                                    outputStream.writeChars(reading);
-                                }
-                                DictionaryUtil.writeVInt(outputStream, pronunciation.length());
-                                if (encoding == 0) {
-                                    DictionaryUtil.writeKatakana(outputStream, pronunciation);
-                                } else {
-                                    outputStream.writeChars(pronunciation);
-                                }
+                                // Write to part of speech data file
+                                writePartOfSpeech(outputStream, entry, posIndex, conjTypeIndex, conjFormIndex);
                             }
                         }
                     }
-                } finally {
-                    IOUtils.closeWhileHandlingException(parser, fileInputStream);
                 }
             }
 
@@ -388,23 +579,21 @@ public class DictionaryBuilder {
             try {
                 fos = new FileOutputStream(partOfSpeechIndexFilename);
                 index = new DataOutputStream(fos);
-                index.writeChar(posIndex.size());
-                for (String pos : posIndex) {
+                index.writeInt(posIndex.values.size());
+                for (String pos : posIndex.values) {
                     index.writeUTF(pos);
                 }
 
-                index.writeChar(conjTypeIndex.size());
-                for (String conjType : conjTypeIndex) {
+                index.writeInt(conjTypeIndex.values.size());
+                for (String conjType : conjTypeIndex.values) {
                     index.writeUTF(conjType);
                 }
 
-                index.writeChar(conjFormIndex.size());
-                for (String conjForm : conjFormIndex) {
+                index.writeInt(conjFormIndex.values.size());
+                for (String conjForm : conjFormIndex.values) {
                     index.writeUTF(conjForm);
                 }
 
-                dictionaryList.sort();
-
                 CToken bosCToken = new CToken();
                 bosCToken.rcAttr2 = (short) matrixBuilders[0].getDicId(bosPartOfSpeech);
                 bosCToken.rcAttr1 = (short) matrixBuilders[1].getDicId(bosPartOfSpeech);
@@ -430,6 +619,7 @@ public class DictionaryBuilder {
                 IOUtils.closeWhileHandlingException(index, fos);
             }
         } finally {
+            executor.shutdownNow();
             IOUtils.closeWhileHandlingException(outputStream, bufferedOutputStream,
                     fileOutputStream);
         }
@@ -442,12 +632,14 @@ public class DictionaryBuilder {
      * @param connectionCostDataFilename The filename for the connection cost matrix
      * @param defaultCost                The default connection cost
      * @param charset                    The charset of the connection CSV data
+     * @param quantize                   If <code>true</code>, quantize the costs to 8 bit codes
      * @return An array of three <code>CostMatrixBuilder</code>s
      * @throws IOException
      */
     private CostMatrixBuilder[] createConnectionCostFile(
             String connectionCSVFilename, String connectionCostDataFilename,
-            short defaultCost, String charset) throws IOException {
+            short defaultCost, String charset, boolean quantize) throws IOException {
+        long start = System.nanoTime();
         CostMatrixBuilder[] matrixBuilders = new CostMatrixBuilder[3];
 
         matrixBuilders[0] = new CostMatrixBuilder();
@@ -464,8 +656,6 @@ public class DictionaryBuilder {
         // Read connection cost CSV data
         FileInputStream fis = null;
         CSVParser parser = null;
-        FileChannel indexChannel = null;
-        RandomAccessFile file = null;
 
         try {
             fis = new FileInputStream(connectionCSVFilename);
@@ -508,24 +698,9 @@ public class DictionaryBuilder {
             int size3 = matrixBuilders[2].size();
             int ruleSize = rule1.size();
 
-            // Write connection cost data
-            int matrixSizeBytes = (size1 * size2 * size3 * 2);
-            int headerSizeBytes = (3 * 2);
-
-            file = new RandomAccessFile(connectionCostDataFilename, "rw");
-            file.setLength(0);
-            file.writeShort(size1);
-            file.writeShort(size2);
-            file.writeShort(size3);
-            file.setLength(headerSizeBytes + matrixSizeBytes);
-            indexChannel = file.getChannel();
-            MappedByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_WRITE,
-                    headerSizeBytes, matrixSizeBytes);
-            ShortBuffer shortBuffer = buffer.asShortBuffer();
-
-            for (int i = 0; i < (size1 * size2 * size3); i++) {
-                shortBuffer.put(i, defaultCost);
-            }
+            // Build connection cost data
+            short[] matrix = new short[size1 * size2 * size3];
+            Arrays.fill(matrix, defaultCost);
 
             for (int i = 0; i < ruleSize; i++) {
                 Vector<Integer> r1 = matrixBuilders[0].getRuleIdList(rule1.get(i));
@@ -536,17 +711,25 @@ public class DictionaryBuilder {
                     for (int ii2 : r2) {
                         for (int ii3 : r3) {
                             int position = size3 * (size2 * ii1 + ii2) + ii3;
-                            shortBuffer.put(position, scores[i]);
+                            matrix[position] = scores[i];
                         }
                     }
                 }
             }
 
-            buffer.force();
+            // Write compressed connection cost data
+            CostMatrixCompressor compressor = new CostMatrixCompressor(matrix, size1, size2, size3);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(connectionCostDataFilename)))) {
+                compressor.write(out, quantize);
+            }
+
+            int[] classCounts = compressor.getClassCounts();
+            reportPhase(String.format("connection costs (%dx%dx%d, %dx%dx%d classes, %d rows%s)", size1, size2, size3,
+                    classCounts[0], classCounts[1], classCounts[2], compressor.getRowCount(), quantize ? ", quantized" : ""), start);
 
             return matrixBuilders;
         } finally {
-            IOUtils.closeWhileHandlingException(parser, fis, indexChannel, file);
+            IOUtils.closeWhileHandlingException(parser, fis);
         }
     }
 
@@ -567,9 +750,9 @@ public class DictionaryBuilder {
 
         trieData.values = new int[tupleList.size()];
         trieData.keys = new String[tupleList.size()];
+        trieData.starts = new int[tupleList.size() + 1];
         trieData.size = 0;
         int spos = 0;
-        int bsize = 0;
         String prev = "";
 
         FileOutputStream fos = null;
@@ -592,12 +775,10 @@ public class DictionaryBuilder {
                 String k = tuple.key;
                 if (!prev.equals(k) && i != 0) {
                     trieData.keys[trieData.size] = tupleList.get(spos).key;
-                    trieData.values[trieData.size] = bsize + (spos << 8);
+                    trieData.values[trieData.size] = trieData.size;
+                    trieData.starts[trieData.size] = spos;
                     trieData.size++;
-                    bsize = 1;
                     spos = i;
-                } else {
-                    bsize++;
                 }
                 prev = tuple.key;
                 CToken.write(out, tuple.value);
@@ -605,8 +786,10 @@ public class DictionaryBuilder {
             out.flush();
 
             trieData.keys[trieData.size] = tupleList.get(spos).key;
-            trieData.values[trieData.size] = bsize + (spos << 8);
+            trieData.values[trieData.size] = trieData.size;
+            trieData.starts[trieData.size] = spos;
             trieData.size++;
+            trieData.starts[trieData.size] = trieData.keys.length;
 
             return trieData;
         } finally {
@@ -615,18 +798,50 @@ public class DictionaryBuilder {
 
     }
 
+    /**
+     * Create the token index file
+     *
+     * @param tokenIndexDataFilename The filename for the token index file
+     * @param trieData               The Trie precursor data
+     * @throws IOException
+     */
+    private void createTokenIndexFile(String tokenIndexDataFilename, TrieData trieData)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tokenIndexDataFilename)))) {
+            for (int i = 0; i <= trieData.size; i++) {
+                out.writeInt(trieData.starts[i]);
+            }
+        }
+    }
+
     /**
      * Create Trie file
      *
      * @param trieDataFilename The filename for the Trie file
      * @param trieData         The Trie precursor data
+     * @return The TrieBuilder used, holding the statistics of the Trie
      * @throws IOException
      */
-    private void createTrieFile(String trieDataFilename, TrieData trieData)
+    private TrieBuilder createTrieFile(String trieDataFilename, TrieData trieData)
             throws IOException {
         TrieBuilder builder = new TrieBuilder(trieData.keys, trieData.values,
                 trieData.size);
         builder.build(trieDataFilename);
+        return builder;
+    }
+
+    /**
+     * Create FST file
+     *
+     * @param fstDataFilename The filename for the FST file
+     * @param trieData        The Trie precursor data
+     * @throws IOException
+     */
+    private void createFSTFile(String fstDataFilename, TrieData trieData)
+            throws IOException {
+        FSTBuilder builder = new FSTBuilder(trieData.keys, trieData.values,
+                trieData.size);
+        builder.build(fstDataFilename);
     }
 
     /**
@@ -639,15 +854,43 @@ public class DictionaryBuilder {
         try {
             fos = new FileOutputStream(headerFilename);
             os = new DataOutputStream(fos);
+            os.writeInt(Dictionary.HEADER_VERSION_MARKER);
+            os.writeInt(Dictionary.FORMAT_VERSION);
             os.writeInt((int) new File(CONNECTION_COST_DATA_FILENAME).length());
             os.writeInt((int) new File(PART_OF_SPEECH_DATA_FILENAME).length());
             os.writeInt((int) new File(TOKEN_DATA_FILENAME).length());
             os.writeInt((int) new File(TRIE_DATA_FILENAME).length());
+            os.writeInt((int) new File(TOKEN_INDEX_DATA_FILENAME).length());
         } finally {
             IOUtils.closeWhileHandlingException(os, fos);
         }
     }
 
+    /**
+     * Creates the unknown word model file from the character definition file,
+     * if there is one
+     *
+     * @param characterDefinitionFilename The filename of the character definition file
+     * @param unknownWordDataFilename     The filename for the unknown word model file
+     * @param charset                     The charset of the character definition file
+     * @throws IOException
+     */
+    private void createUnknownWordFile(String characterDefinitionFilename, String unknownWordDataFilename, String charset)
+            throws IOException {
+        if (!new File(characterDefinitionFilename).exists()) {
+            return;
+        }
+
+        UnknownWordModel model;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(characterDefinitionFilename), charset))) {
+            model = UnknownWordModelBuilder.parse(reader);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(unknownWordDataFilename)))) {
+            model.write(out);
+        }
+    }
+
     /**
      * Compiles CSV source data into the data files used for analysis
      *
@@ -656,6 +899,74 @@ public class DictionaryBuilder {
      */
     public DictionaryBuilder(String[] customDictionaryCSVFilenames)
             throws IOException {
+        this(customDictionaryCSVFilenames, false);
+    }
+
+    /**
+     * Reports the completion of a phase of the build
+     *
+     * @param phase      A description of the phase
+     * @param startNanos The value of {@link System#nanoTime()} when the phase started
+     */
+    private void reportPhase(String phase, long startNanos) {
+        if (log != null) {
+            log.println(phase + ": " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+        }
+    }
+
+    /**
+     * Compiles CSV source data into the data files used for analysis
+     *
+     * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+     * @param buildFST                     If <code>true</code>, also build the FST index of
+     *                                     surface forms (fst.sen) alongside the Trie
+     * @throws IOException
+     */
+    public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean buildFST)
+            throws IOException {
+        this(customDictionaryCSVFilenames, buildFST, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Compiles CSV source data into the data files used for analysis
+     *
+     * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+     * @param buildFST                     If <code>true</code>, also build the FST index of
+     *                                     surface forms (fst.sen) alongside the Trie
+     * @param threads                      The number of threads to parse the dictionary CSV
+     *                                     data with
+     * @param log                          The stream to report the time taken by each phase
+     *                                     to, or <code>null</code>
+     * @throws IOException
+     */
+    public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean buildFST, int threads, PrintStream log)
+            throws IOException {
+        this(customDictionaryCSVFilenames, buildFST, threads, log, false);
+    }
+
+    /**
+     * Compiles CSV source data into the data files used for analysis
+     *
+     * @param customDictionaryCSVFilenames The filenames of custom dictionaries, or <code>null</code>
+     * @param buildFST                     If <code>true</code>, also build the FST index of
+     *                                     surface forms (fst.sen) alongside the Trie
+     * @param threads                      The number of threads to parse the dictionary CSV
+     *                                     data with
+     * @param log                          The stream to report the time taken by each phase
+     *                                     to, or <code>null</code>
+     * @param quantizeCosts                If <code>true</code>, quantize the connection costs
+     *                                     to 8 bit codes. This is lossy if there are more than
+     *                                     256 distinct costs
+     * @throws IOException
+     */
+    public DictionaryBuilder(String[] customDictionaryCSVFilenames, boolean buildFST, int threads, PrintStream log,
+                             boolean quantizeCosts)
+            throws IOException {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.log = log;
 
         List<String> dictionaryCSVFilenames = new ArrayList<>();
         dictionaryCSVFilenames.add(DICTIONARY_CSV_FILENAME);
@@ -666,7 +977,7 @@ public class DictionaryBuilder {
         // Create connection cost file (matrix.sen)
         CostMatrixBuilder[] matrixBuilders = createConnectionCostFile(
                 CONNECTION_CSV_FILENAME, CONNECTION_COST_DATA_FILENAME,
-                DEFAULT_CONNECTION_COST, charset);
+                DEFAULT_CONNECTION_COST, charset, quantizeCosts);
 
         // Create part-of-speech data file (posInfo.sen)
         VirtualTupleList dictionaryList = null;
@@ -675,19 +986,43 @@ public class DictionaryBuilder {
             dictionaryList = new VirtualTupleList();
             CToken[] standardCTokens = new CToken[3];
 
+            long start = System.nanoTime();
             createPartOfSpeechDataFile(dictionaryCSVFilenames,
                     PART_OF_SPEECH_DATA_FILENAME, PART_OF_SPEECH_INDEX_FILENAME,
                     matrixBuilders, PART_OF_SPEECH_START, PART_OF_SPEECH_SIZE, charset,
                     BOS_PART_OF_SPEECH, EOS_PART_OF_SPEECH, UNKNOWN_PART_OF_SPEECH,
-                    dictionaryList, standardCTokens);
+                    dictionaryList, standardCTokens, threads);
+            reportPhase("part-of-speech data (" + dictionaryList.size() + " entries, " + threads + " threads)", start);
+
+            start = System.nanoTime();
+            dictionaryList.sort();
+            reportPhase("sort", start);
 
             // Create Token file (token.sen)
+            start = System.nanoTime();
             TrieData trieData = createTokenFile(TOKEN_DATA_FILENAME, standardCTokens,
                     dictionaryList);
 
+            // Create token index file (tokenIndex.sen)
+            createTokenIndexFile(TOKEN_INDEX_DATA_FILENAME, trieData);
+            reportPhase("tokens (" + trieData.size + " keys)", start);
+
             // Create Trie file (da.sen)
-            createTrieFile(TRIE_DATA_FILENAME, trieData);
+            start = System.nanoTime();
+            TrieBuilder trieBuilder = createTrieFile(TRIE_DATA_FILENAME, trieData);
             createHeaderFile(HEADER_DATA_FILENAME);
+            reportPhase(String.format("trie (%d slots, %.1f%% full)", trieBuilder.getSlotCount(),
+                    trieBuilder.getFillRatio() * 100), start);
+
+            // Create FST file (fst.sen)
+            if (buildFST) {
+                start = System.nanoTime();
+                createFSTFile(FST_DATA_FILENAME, trieData);
+                reportPhase("fst", start);
+            }
+
+            // Create unknown word model file (unknown.sen)
+            createUnknownWordFile(CHARACTER_DEFINITION_FILENAME, UNKNOWN_WORD_DATA_FILENAME, charset);
         } finally {
             IOUtils.closeWhileHandlingException(dictionaryList);
         }
@@ -0,0 +1,149 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.compiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.java.sen.dictionary.UnknownWordModel;
+
+
+/**
+ * Builds an {@link UnknownWordModel} from a character definition file in the
+ * style of MeCab's char.def. Text following <code>#</code> is a comment.
+ * Category definitions have the form:
+ * <pre>
+ * NAME INVOKE GROUP LENGTH [COST]
+ * </pre>
+ * where INVOKE and GROUP are <code>0</code> or <code>1</code>, LENGTH is
+ * <code>0</code> to {@value #MAX_LENGTH}, and COST defaults to
+ * {@link UnknownWordModel#DEFAULT_COST}. Character mappings have
+ * the form:
+ * <pre>
+ * 0xXXXX[..0xYYYY] NAME [NAME ...]
+ * </pre>
+ * Only the first category of a mapping is used. Characters that are not mapped
+ * belong to the category <code>DEFAULT</code>, which must be defined.
+ */
+class UnknownWordModelBuilder {
+
+    /** The category of characters that are not mapped */
+    private static final String DEFAULT_CATEGORY = "DEFAULT";
+
+    /** The largest number of fixed length words synthesized for a category */
+    static final int MAX_LENGTH = 255;
+
+    /**
+     * Parses a character definition file
+     *
+     * @param reader The reader to read the definition from
+     * @return The model
+     * @throws IOException if the definition cannot be read or is invalid
+     */
+    static UnknownWordModel parse(BufferedReader reader) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<int[]> behaviours = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        List<String> rangeNames = new ArrayList<>();
+
+        String line;
+        for (int lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                continue;
+            }
+
+            try {
+                if (fields[0].startsWith("0x")) {
+                    String[] bounds = fields[0].split("\\.\\.");
+                    int low = Integer.decode(bounds[0]);
+                    int high = (bounds.length > 1) ? Integer.decode(bounds[1]) : low;
+                    if (fields.length < 2 || low > high || high > 0xFFFF) {
+                        throw new IOException("Invalid character mapping at line " + lineNumber + ": " + line);
+                    }
+                    ranges.add(new int[] {low, high});
+                    rangeNames.add(fields[1]);
+                } else {
+                    if (fields.length < 4 || fields.length > 5) {
+                        throw new IOException("Invalid category definition at line " + lineNumber + ": " + line);
+                    }
+                    if (names.contains(fields[0])) {
+                        throw new IOException("Duplicate category " + fields[0] + " at line " + lineNumber);
+                    }
+                    int length = Integer.parseInt(fields[3]);
+                    if (length < 0 || length > MAX_LENGTH) {
+                        throw new IOException("Length out of range at line " + lineNumber + ": " + line);
+                    }
+                    int cost = (fields.length == 5) ? Integer.parseInt(fields[4]) : UnknownWordModel.DEFAULT_COST;
+                    if (cost < Short.MIN_VALUE || cost > Short.MAX_VALUE) {
+                        throw new IOException("Cost out of range at line " + lineNumber + ": " + line);
+                    }
+                    names.add(fields[0]);
+                    behaviours.add(new int[] {
+                            Integer.parseInt(fields[1]),
+                            Integer.parseInt(fields[2]),
+                            length,
+                            cost
+                    });
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number at line " + lineNumber + ": " + line, e);
+            }
+        }
+
+        int defaultCategory = names.indexOf(DEFAULT_CATEGORY);
+        if (defaultCategory == -1) {
+            throw new IOException("No " + DEFAULT_CATEGORY + " category defined");
+        }
+        if (names.size() > UnknownWordModel.MAX_CATEGORIES) {
+            throw new IOException("More than " + UnknownWordModel.MAX_CATEGORIES + " categories defined");
+        }
+
+        int size = names.size();
+        boolean[] invoke = new boolean[size];
+        boolean[] group = new boolean[size];
+        int[] length = new int[size];
+        short[] cost = new short[size];
+        for (int i = 0; i < size; i++) {
+            int[] behaviour = behaviours.get(i);
+            invoke[i] = behaviour[0] != 0;
+            group[i] = behaviour[1] != 0;
+            length[i] = behaviour[2];
+            cost[i] = (short) behaviour[3];
+        }
+
+        byte[] categories = new byte[0x10000];
+        Arrays.fill(categories, (byte) defaultCategory);
+        for (int i = 0; i < ranges.size(); i++) {
+            int category = names.indexOf(rangeNames.get(i));
+            if (category == -1) {
+                throw new IOException("Undefined category " + rangeNames.get(i));
+            }
+            int[] range = ranges.get(i);
+            Arrays.fill(categories, range[0], range[1] + 1, (byte) category);
+        }
+
+        return new UnknownWordModel(names.toArray(new String[0]), invoke, group, length, cost, categories);
+    }
+}
@@ -19,19 +19,24 @@
 
 package net.java.sen.compiler;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import net.java.sen.dictionary.CToken;
 import net.java.sen.util.IOUtils;
@@ -41,8 +46,12 @@ import net.java.sen.util.IOUtils;
  * A file-mapped list of {@link StringCTokenTuple <code>StringCTokenTuple</code>}s.
  * Slightly slower than a simple in-memory sort, but capable of storing and
  * sorting very long lists without using large quantities of heap memory.<br>
- * The index of entry positions in the list's file is stored in memory, leading
- * to a usage of one Integer's worth of memory for each entry.
+ * The position of each entry in the list's file is stored in memory along
+ * with the first characters of its String, leading to a usage of one
+ * <code>int</code> and one <code>long</code> for each entry. Entries are
+ * compared directly within the file, so sorting decodes no Strings.<br>
+ * If the list's file is larger than the memory budget, it is sorted in runs
+ * that fit the budget, which are then merged.
  *
  * <p> Usage:
  * <p>  - Call {@link #add} one or more times
@@ -52,6 +61,36 @@ import net.java.sen.util.IOUtils;
  */
 public class VirtualTupleList implements Closeable {
 
+    /**
+     * The default memory budget, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * The size in bytes of a stored CToken
+     */
+    private static final int CTOKEN_SIZE = (int) CToken.SIZE;
+
+    /**
+     * The number of characters of each String held in {@link #prefixes}
+     */
+    private static final int PREFIX_CHARS = 4;
+
+    /**
+     * The largest range of entries sorted by insertion
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * The maximum number of bytes of the list's file sorted at once
+     */
+    private final long memoryBudget;
+
+    /**
+     * The temporary file used to store entries in the list
+     */
+    private File tempFile;
+
     /**
      * A RandomAccessFile used to create the memory mapped buffer during sorting
      */
@@ -73,24 +112,119 @@ public class VirtualTupleList implements Closeable {
     private DataOutputStream outputStream;
 
     /**
-     * An index of entry positions within the temporary file
+     * The positions of the entries within the temporary file, in sorted order
+     * once the list has been sorted
+     */
+    private int[] positions = new int[1024];
+
+    /**
+     * The first {@link #PREFIX_CHARS} characters of each entry's String,
+     * packed 16 bits per character so that an unsigned comparison of two
+     * prefixes orders them as their Strings. Discarded once the list has been
+     * sorted
+     */
+    private long[] prefixes = new long[1024];
+
+    /**
+     * The number of entries in the list
+     */
+    private int size = 0;
+
+    /**
+     * A sorted run of entries being merged by an external sort
      */
-    private List<Integer> indices = new ArrayList<>();
+    private static class Run implements Closeable, Comparable<Run> {
+
+        /** The run's input */
+        private final DataInputStream input;
+
+        /** The index of the run, used to keep the merge stable */
+        final int index;
+
+        /** The bytes of the current entry */
+        byte[] entry;
+
+        /** The String of the current entry */
+        String key;
+
+        /**
+         * Advances to the next entry of the run
+         *
+         * @return <code>true</code> if there was another entry
+         * @throws IOException
+         */
+        boolean next() throws IOException {
+            byte[] header = new byte[CTOKEN_SIZE + 2];
+            try {
+                input.readFully(header);
+            } catch (EOFException e) {
+                entry = null;
+                key = null;
+                return false;
+            }
+
+            int numChars = ByteBuffer.wrap(header).getShort(CTOKEN_SIZE);
+            entry = Arrays.copyOf(header, entrySize(numChars));
+            input.readFully(entry, header.length, 2 * numChars);
+
+            char[] stringChars = new char[numChars];
+            ByteBuffer.wrap(entry, header.length, 2 * numChars).asCharBuffer().get(stringChars);
+            key = new String(stringChars);
+
+            return true;
+        }
+
+        /**
+         * Compares the current entries of two runs
+         *
+         * @param other The other run
+         * @return A negative, zero or positive number as this run's entry is
+         *         ordered before, with or after the other's
+         */
+        public int compareTo(Run other) {
+            int result = key.compareTo(other.key);
+            return (result != 0) ? result : Integer.compare(index, other.index);
+        }
+
+        public void close() throws IOException {
+            input.close();
+        }
+
+        /**
+         * @param runFile The file containing the run
+         * @param index   The index of the run
+         * @throws IOException
+         */
+        Run(File runFile, int index) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+            this.index = index;
+        }
+    }
 
     /**
-     * A Comparator for indices within the list
+     * Returns the size in bytes of an entry in the list's file
+     *
+     * @param numChars The length of the entry's String
+     * @return The size of the entry
      */
-    private final Comparator<Integer> comparator = new VirtualListComparator();
+    private static int entrySize(int numChars) {
+        return CTOKEN_SIZE + 2 + 2 * numChars;
+    }
 
     /**
-     * A Comparator class for indices within the list
+     * Packs the first {@link #PREFIX_CHARS} characters of a String into a
+     * <code>long</code>
+     *
+     * @param string The String
+     * @return The packed prefix
      */
-    private class VirtualListComparator implements Comparator<Integer> {
-        public int compare(Integer o1, Integer o2) {
-            String first = getString(o1);
-            String second = getString(o2);
-            return first.compareTo(second);
+    private static long prefix(String string) {
+        long prefix = 0;
+        for (int i = 0; i < PREFIX_CHARS; i++) {
+            prefix = (prefix << 16) | ((i < string.length()) ? string.charAt(i) : 0);
         }
+
+        return prefix;
     }
 
     /**
@@ -109,7 +243,13 @@ public class VirtualTupleList implements Closeable {
         outputStream.writeShort(string.length());
         outputStream.writeChars(string);
 
-        indices.add(position);
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size + (size >> 1));
+            prefixes = Arrays.copyOf(prefixes, positions.length);
+        }
+        positions[size] = position;
+        prefixes[size] = prefix(string);
+        size++;
     }
 
     /**
@@ -120,7 +260,7 @@ public class VirtualTupleList implements Closeable {
      * @return The list entry
      */
     public StringCTokenTuple get(int index) {
-        int position = indices.get(index);
+        int position = positions[index];
 
         mappedBuffer.position(position);
         CToken ctoken = new CToken();
@@ -136,21 +276,196 @@ public class VirtualTupleList implements Closeable {
     }
 
     /**
-     * Retrieves only the String portion of a list entry. Used in sorting
-     * (where the CToken is not relevant)
+     * Compares the Strings of two entries. Entries with equal Strings are
+     * ordered as they were added
      *
-     * @param position The file position of the list entry
-     * @return The entry's String component
+     * @param buffer A buffer containing both entries
+     * @param base   The position within the list's file of the start of the
+     *               buffer
+     * @param a      The index of the first entry
+     * @param b      The index of the second entry
+     * @return A negative, zero or positive number as the first entry is
+     *         ordered before, with or after the second
      */
-    private String getString(int position) {
-        mappedBuffer.position((int) (position + CToken.SIZE));
-        short numChars = mappedBuffer.getShort();
-        char[] stringChars = new char[numChars];
-        for (int i = 0; i < numChars; i++) {
-            stringChars[i] = mappedBuffer.getChar();
+    private int compare(ByteBuffer buffer, long base, int a, int b) {
+        if (prefixes[a] != prefixes[b]) {
+            return Long.compareUnsigned(prefixes[a], prefixes[b]);
+        }
+
+        int positionA = (int) (positions[a] - base) + CTOKEN_SIZE;
+        int positionB = (int) (positions[b] - base) + CTOKEN_SIZE;
+        int lengthA = buffer.getShort(positionA);
+        int lengthB = buffer.getShort(positionB);
+        for (int i = PREFIX_CHARS, n = Math.min(lengthA, lengthB); i < n; i++) {
+            char charA = buffer.getChar(positionA + 2 + 2 * i);
+            char charB = buffer.getChar(positionB + 2 + 2 * i);
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+
+        if (lengthA != lengthB) {
+            return lengthA - lengthB;
+        }
+
+        return Integer.compare(a, b);
+    }
+
+    /**
+     * Sorts a range of entry indices by merge sort
+     *
+     * @param buffer  A buffer containing the entries
+     * @param base    The position within the list's file of the start of the
+     *                buffer
+     * @param indices The entry indices to sort
+     * @param scratch Working space the size of <code>indices</code>
+     * @param from    The start of the range
+     * @param to      The end of the range (exclusive)
+     */
+    private void sort(ByteBuffer buffer, long base, int[] indices, int[] scratch, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int index = indices[i];
+                int j = i;
+                while ((j > from) && (compare(buffer, base, indices[j - 1], index) > 0)) {
+                    indices[j] = indices[j - 1];
+                    j--;
+                }
+                indices[j] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(buffer, base, indices, scratch, from, middle);
+        sort(buffer, base, indices, scratch, middle, to);
+        if (compare(buffer, base, indices[middle - 1], indices[middle]) <= 0) {
+            return;
         }
 
-        return new String(stringChars);
+        System.arraycopy(indices, from, scratch, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if ((j >= to) || ((i < middle) && (compare(buffer, base, scratch[i], scratch[j]) <= 0))) {
+                indices[k] = scratch[i++];
+            } else {
+                indices[k] = scratch[j++];
+            }
+        }
+    }
+
+    /**
+     * Returns the indices of a range of entries in sorted order
+     *
+     * @param buffer A buffer containing the entries
+     * @param base   The position within the list's file of the start of the
+     *               buffer
+     * @param from   The index of the first entry
+     * @param to     The index after the last entry
+     * @return The sorted indices
+     */
+    private int[] sortedIndices(ByteBuffer buffer, long base, int from, int to) {
+        int[] indices = new int[to - from];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = from + i;
+        }
+        sort(buffer, base, indices, new int[indices.length], 0, indices.length);
+
+        return indices;
+    }
+
+    /**
+     * Sorts the list's file in runs of at most {@link #memoryBudget} bytes,
+     * then merges the runs into a new file
+     *
+     * @param length The length of the list's file
+     * @throws IOException
+     */
+    private void externalSort(long length) throws IOException {
+        List<File> runFiles = new ArrayList<>();
+
+        try {
+            FileChannel channel = file.getChannel();
+            int from = 0;
+            while (from < size) {
+                long base = positions[from];
+                int to = from + 1;
+                while ((to < size) && (((to + 1 < size) ? positions[to + 1] : length) - base <= memoryBudget)) {
+                    to++;
+                }
+                long end = (to < size) ? positions[to] : length;
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, end - base);
+                File runFile = File.createTempFile("_run", null);
+                runFile.deleteOnExit();
+                runFiles.add(runFile);
+                try (DataOutputStream run = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)))) {
+                    byte[] entry = new byte[0];
+                    for (int index : sortedIndices(buffer, base, from, to)) {
+                        int position = (int) (positions[index] - base);
+                        int entrySize = entrySize(buffer.getShort(position + CTOKEN_SIZE));
+                        if (entry.length < entrySize) {
+                            entry = new byte[entrySize];
+                        }
+                        buffer.position(position);
+                        buffer.get(entry, 0, entrySize);
+                        run.write(entry, 0, entrySize);
+                    }
+                }
+
+                from = to;
+            }
+
+            merge(runFiles);
+        } finally {
+            for (File runFile : runFiles) {
+                runFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges sorted runs into a new file which replaces the list's file
+     *
+     * @param runFiles The files containing the runs, in the order their
+     *                 entries were added
+     * @throws IOException
+     */
+    private void merge(List<File> runFiles) throws IOException {
+        File mergedFile = File.createTempFile("_tok", null);
+        mergedFile.deleteOnExit();
+
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, runFiles.size()));
+        List<Run> runs = new ArrayList<>();
+        try (DataOutputStream merged = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mergedFile)))) {
+            for (int i = 0; i < runFiles.size(); i++) {
+                Run run = new Run(runFiles.get(i), i);
+                runs.add(run);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+
+            int count = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                positions[count++] = merged.size();
+                merged.write(run.entry);
+                if (run.next()) {
+                    queue.add(run);
+                }
+            }
+        } finally {
+            for (Run run : runs) {
+                IOUtils.closeWhileHandlingException(run);
+            }
+        }
+
+        close();
+        tempFile.delete();
+        tempFile = mergedFile;
+        file = new RandomAccessFile(mergedFile, "r");
     }
 
     /**
@@ -160,8 +475,22 @@ public class VirtualTupleList implements Closeable {
      */
     public void sort() throws IOException {
         outputStream.flush();
-        mappedBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
-        indices.sort(comparator);
+        long length = file.length();
+
+        if (length > memoryBudget) {
+            externalSort(length);
+            mappedBuffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } else {
+            mappedBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            int[] sorted = new int[size];
+            int[] indices = sortedIndices(mappedBuffer, 0, 0, size);
+            for (int i = 0; i < size; i++) {
+                sorted[i] = positions[indices[i]];
+            }
+            positions = sorted;
+        }
+
+        prefixes = null;
     }
 
     /**
@@ -170,14 +499,24 @@ public class VirtualTupleList implements Closeable {
      * @return The number of entries in the list
      */
     public int size() {
-        return indices.size();
+        return size;
     }
 
     /**
      * @throws IOException
      */
     public VirtualTupleList() throws IOException {
-        File tempFile;
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget The maximum number of bytes of entries to sort at
+     *                     once. Larger lists are sorted in runs that are then
+     *                     merged
+     * @throws IOException
+     */
+    public VirtualTupleList(long memoryBudget) throws IOException {
+        this.memoryBudget = memoryBudget;
 
         tempFile = File.createTempFile("_tok", null);
         tempFile.deleteOnExit();
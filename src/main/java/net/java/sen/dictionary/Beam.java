@@ -0,0 +1,191 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The settings of a beam search for {@link Viterbi}, and counters of its
+ * effect. Before the Nodes ending at a position are joined to the Nodes that
+ * follow them, only the cheapest of them are kept: at most
+ * {@link #getWidth()} of them, and only those whose path cost is within
+ * {@link #getThreshold()} of the cheapest. This bounds the work done at each
+ * position, at the risk of discarding the start of the best path.
+ * <p>
+ * To measure that risk, every {@link #getCheckInterval()}th sentence that
+ * is pruned is sampled: it is also analysed exactly, and counted if the
+ * results differ. Results are compared by the position, length and cost of
+ * each Token. Only the sampled sentences are compared, so the sentences
+ * changed by pruning are counted as a fraction of
+ * {@link #getSampledSentences()}, not of {@link #getPrunedSentences()}.
+ * A sentence analysed in parts is counted once, when its last part is
+ * analysed, but is never sampled, as its settled parts are not kept.
+ * <p>
+ * One Beam may be shared by any number of Viterbi instances, whose counts
+ * are then combined.
+ *
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe.
+ */
+public final class Beam {
+
+    /** The maximum number of Nodes kept at each position, or 0 for no limit */
+    private final int width;
+
+    /**
+     * The maximum amount by which the cost of a Node kept may exceed the
+     * cheapest at its position, or 0 for no limit
+     */
+    private final int threshold;
+
+    /** The interval between pruned sentences checked, or 0 for none */
+    private final int checkInterval;
+
+    /** The number of sentences analysed */
+    private final AtomicLong sentences = new AtomicLong();
+
+    /** The number of sentences in which Nodes were pruned */
+    private final AtomicLong prunedSentences = new AtomicLong();
+
+    /** The number of pruned sentences sampled, and also analysed exactly */
+    private final AtomicLong sampledSentences = new AtomicLong();
+
+    /** The number of sampled sentences whose results were changed by pruning */
+    private final AtomicLong changedSamples = new AtomicLong();
+
+    /**
+     * Counts an analysed sentence
+     *
+     * @param pruned <code>true</code> if Nodes were pruned from the sentence
+     * @return <code>true</code> if the sentence should be checked against an
+     * exact analysis
+     */
+    boolean count(boolean pruned) {
+        sentences.incrementAndGet();
+        if (!pruned) {
+            return false;
+        }
+
+        long count = prunedSentences.incrementAndGet();
+        if ((checkInterval == 0) || (count % checkInterval != 0)) {
+            return false;
+        }
+        sampledSentences.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Counts a sentence analysed in parts, which cannot be checked against an
+     * exact analysis
+     *
+     * @param pruned <code>true</code> if Nodes were pruned from any part of
+     *               the sentence
+     */
+    void countUnchecked(boolean pruned) {
+        sentences.incrementAndGet();
+        if (pruned) {
+            prunedSentences.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a sampled sentence whose results were changed by pruning
+     */
+    void countChangedSample() {
+        changedSamples.incrementAndGet();
+    }
+
+    /**
+     * @return The maximum number of Nodes kept at each position, or 0 for no
+     * limit
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The maximum amount by which the path cost of a Node kept may
+     * exceed the cheapest at its position, or 0 for no limit
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return The interval between pruned sentences that are checked against
+     * an exact analysis, or 0 if none are
+     */
+    public int getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * @return The number of sentences analysed
+     */
+    public long getSentences() {
+        return sentences.get();
+    }
+
+    /**
+     * @return The number of sentences in which Nodes were pruned
+     */
+    public long getPrunedSentences() {
+        return prunedSentences.get();
+    }
+
+    /**
+     * @return The number of pruned sentences that were sampled, and checked
+     * against an exact analysis
+     */
+    public long getSampledSentences() {
+        return sampledSentences.get();
+    }
+
+    /**
+     * Returns the number of sampled sentences whose results were changed by
+     * pruning. Pruned sentences that were not sampled are not checked, so
+     * this is a count out of {@link #getSampledSentences()}, which estimates
+     * the fraction of all pruned sentences that are changed
+     *
+     * @return The number of changed sentences among those sampled
+     */
+    public long getChangedSamples() {
+        return changedSamples.get();
+    }
+
+    /**
+     * @param width         The maximum number of Nodes kept at each position,
+     *                      or 0 for no limit
+     * @param threshold     The maximum amount by which the path cost of a
+     *                      Node kept may exceed the cheapest at its position,
+     *                      or 0 for no limit
+     * @param checkInterval The interval between pruned sentences that are
+     *                      checked against an exact analysis, or 0 for none
+     */
+    public Beam(int width, int threshold, int checkInterval) {
+        if ((width < 0) || (threshold < 0) || (checkInterval < 0)) {
+            throw new IllegalArgumentException("Beam settings must not be negative: " + width + ", " + threshold + ", " + checkInterval);
+        }
+        if ((width == 0) && (threshold == 0)) {
+            throw new IllegalArgumentException("Beam needs a width or a threshold");
+        }
+        this.width = width;
+        this.threshold = threshold;
+        this.checkInterval = checkInterval;
+    }
+}
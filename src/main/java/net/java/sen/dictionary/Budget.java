@@ -0,0 +1,129 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * The limits on the work {@link Viterbi} may do, and counters of how often
+ * they are exceeded. A sentence whose lattice grows beyond
+ * {@link #getMaxNodes()} Nodes, and every sentence analysed once a document
+ * has taken more than {@link #getMaxMillis()} milliseconds, is instead
+ * segmented cheaply into runs of the same character class (see
+ * {@link Tokenizer#getFallbackNode(SentenceIterator, char[])}). The Tokens
+ * found this way are marked with {@link Token#isFallback()}.
+ * <p>
+ * One Budget may be shared by any number of Viterbi instances, whose counts
+ * are then combined.
+ *
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe.
+ */
+public final class Budget {
+
+    /** The maximum number of Nodes in the lattice of a sentence, or 0 for no limit */
+    private final int maxNodes;
+
+    /** The maximum time taken to analyse a document, or 0 for no limit */
+    private final long maxMillis;
+
+    /** The number of sentences whose lattice exceeded the maximum size */
+    private final AtomicLong nodeOverruns = new AtomicLong();
+
+    /** The number of documents that exceeded the maximum time */
+    private final AtomicLong timeOverruns = new AtomicLong();
+
+    /** The number of sentences segmented by character class */
+    private final AtomicLong fallbackSentences = new AtomicLong();
+
+    /**
+     * Counts a sentence whose lattice exceeded the maximum size
+     */
+    void countNodeOverrun() {
+        nodeOverruns.incrementAndGet();
+    }
+
+    /**
+     * Counts a document that exceeded the maximum time
+     */
+    void countTimeOverrun() {
+        timeOverruns.incrementAndGet();
+    }
+
+    /**
+     * Counts a sentence segmented by character class
+     */
+    void countFallback() {
+        fallbackSentences.incrementAndGet();
+    }
+
+    /**
+     * @return The maximum number of Nodes in the lattice of a sentence, or 0
+     * for no limit
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * @return The maximum time taken to analyse a document in milliseconds,
+     * or 0 for no limit
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @return The number of sentences whose lattice exceeded the maximum size
+     */
+    public long getNodeOverruns() {
+        return nodeOverruns.get();
+    }
+
+    /**
+     * @return The number of documents that exceeded the maximum time
+     */
+    public long getTimeOverruns() {
+        return timeOverruns.get();
+    }
+
+    /**
+     * @return The number of sentences segmented by character class, for
+     * either reason
+     */
+    public long getFallbackSentences() {
+        return fallbackSentences.get();
+    }
+
+    /**
+     * @param maxNodes  The maximum number of Nodes in the lattice of a
+     *                  sentence, or 0 for no limit
+     * @param maxMillis The maximum time taken to analyse a document in
+     *                  milliseconds, or 0 for no limit
+     */
+    public Budget(int maxNodes, long maxMillis) {
+        if ((maxNodes < 0) || (maxMillis < 0)) {
+            throw new IllegalArgumentException("Budget limits must not be negative: " + maxNodes + ", " + maxMillis);
+        }
+        if ((maxNodes == 0) && (maxMillis == 0)) {
+            throw new IllegalArgumentException("Budget needs a node or time limit");
+        }
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+    }
+}
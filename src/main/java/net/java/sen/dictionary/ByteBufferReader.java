@@ -0,0 +1,108 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen.dictionary;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Decodes the formats written by {@link DictionaryUtil} from a ByteBuffer
+ * using absolute reads only. The reader keeps its own position, so any number
+ * of readers may decode from the same buffer concurrently without altering
+ * it
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe;
+ * each thread should use its own
+ */
+final class ByteBufferReader {
+
+    /** The buffer to read from */
+    private final ByteBuffer buffer;
+
+    /** The index of the next byte to read */
+    private int position;
+
+    /**
+     * @return The index of the next byte to read
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Reads an int stored in variable-length format
+     *
+     * @return The int
+     * @see DictionaryUtil#readVInt(ByteBuffer)
+     */
+    int readVInt() {
+        byte b = buffer.get(position++);
+        int i = b & 0x7F;
+        if ((b & 0x80) == 0) return i;
+        b = buffer.get(position++);
+        i |= (b & 0x7F) << 7;
+        if ((b & 0x80) == 0) return i;
+        b = buffer.get(position++);
+        i |= (b & 0x7F) << 14;
+        if ((b & 0x80) == 0) return i;
+        b = buffer.get(position++);
+        i |= (b & 0x7F) << 21;
+        if ((b & 0x80) == 0) return i;
+        b = buffer.get(position++);
+        assert (b & 0x80) == 0;
+        return i | ((b & 0x7F) << 28);
+    }
+
+    /**
+     * Reads a string stored as chars
+     *
+     * @param s   The array to read into
+     * @param off The index to read into
+     * @param len The index to stop reading at
+     * @see DictionaryUtil#readString(ByteBuffer, char[], int, int)
+     */
+    void readString(char[] s, int off, int len) {
+        while (off < len) {
+            s[off++] = buffer.getChar(position);
+            position += 2;
+        }
+    }
+
+    /**
+     * Reads a string stored as katakana offsets
+     *
+     * @param s   The array to read into
+     * @param off The index to read into
+     * @param len The index to stop reading at
+     * @see DictionaryUtil#readKatakana(ByteBuffer, char[], int, int)
+     */
+    void readKatakana(char[] s, int off, int len) {
+        while (off < len) {
+            s[off++] = (char) (0x30A0 + (buffer.get(position++) & 0xff));
+        }
+    }
+
+    /**
+     * @param buffer   The buffer to read from
+     * @param position The index of the first byte to read
+     */
+    ByteBufferReader(ByteBuffer buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+}
@@ -67,12 +67,24 @@ final public class CToken implements Cloneable {
      * @return The CToken
      */
     public void read(ByteBuffer buffer) {
-        rcAttr2 = buffer.getShort();
-        rcAttr1 = buffer.getShort();
-        lcAttr = buffer.getShort();
-        length = buffer.getShort();
-        cost = buffer.getShort();
-        partOfSpeechIndex = buffer.getInt();
+        read(buffer, buffer.position());
+        buffer.position(buffer.position() + (int) SIZE);
+    }
+
+    /**
+     * Read a CToken from a ByteBuffer at an absolute index, without altering
+     * the buffer's position
+     *
+     * @param buffer The ByteBuffer to read from
+     * @param index  The index of the first byte of the CToken
+     */
+    public void read(ByteBuffer buffer, int index) {
+        rcAttr2 = buffer.getShort(index);
+        rcAttr1 = buffer.getShort(index + 2);
+        lcAttr = buffer.getShort(index + 4);
+        length = buffer.getShort(index + 6);
+        cost = buffer.getShort(index + 8);
+        partOfSpeechIndex = buffer.getInt(index + 10);
         terminator = false;
     }
 
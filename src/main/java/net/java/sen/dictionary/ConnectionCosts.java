@@ -0,0 +1,422 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+
+/**
+ * The connection cost matrix of a compiled dictionary (connectionCost.sen).
+ * <p>
+ * The matrix is stored with the left context attribute as its innermost
+ * extent, so all the costs for a given (rcAttr2, rcAttr1) pair form one
+ * contiguous row. Callers resolve a row once per left node with
+ * {@link #row(int, int)}, then read the cost for each right node with
+ * {@link #get(int, int)}.
+ * <p>
+ * A matrix file may instead be compressed, which is marked by a first value
+ * of {@link #COMPRESSED_MARKER}. Context attributes whose costs are identical
+ * are merged into classes, identical rows of the class matrix are stored once,
+ * and the costs may be quantized to 8 bit codes into a table of costs. The
+ * class tables of a compressed matrix are decoded to the heap, and its rows
+ * are held in the storage requested, like an uncompressed matrix.
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are immutable, and may be
+ * shared between threads and {@link Dictionary}s.
+ */
+public abstract class ConnectionCosts {
+
+    /**
+     * The available storage backends
+     */
+    public enum Storage {
+        /** A copy of the matrix in a heap <code>short[]</code> */
+        HEAP,
+        /** A view onto the buffer the matrix file was loaded into */
+        BUFFER,
+        /** A read-only memory mapped view of the matrix file */
+        MAPPED
+    }
+
+    /**
+     * The first value of a compressed matrix file, in place of the size of the
+     * first extent
+     */
+    public static final short COMPRESSED_MARKER = -1;
+
+    /**
+     * The version of the compressed matrix format
+     */
+    public static final short COMPRESSED_VERSION = 1;
+
+    /**
+     * The flag marking a compressed matrix as quantized
+     */
+    public static final short FLAG_QUANTIZED = 1;
+
+    /** Size of the first extent of the connection cost matrix */
+    protected final int size1;
+
+    /** Size of the second extent of the connection cost matrix */
+    protected final int size2;
+
+    /** Size of the third extent of the connection cost matrix */
+    protected final int size3;
+
+    /** How the matrix is held */
+    private final Storage storage;
+
+    /**
+     * Returns the offset of the row of costs for the given pair of right
+     * context attributes
+     *
+     * @param rcAttr2 The second order right context attribute of the first node
+     * @param rcAttr1 The right context attribute of the second node
+     * @return The row offset
+     */
+    public int row(int rcAttr2, int rcAttr1) {
+        return size3 * (size2 * rcAttr2 + rcAttr1);
+    }
+
+    /**
+     * Retrieves a cost from a row
+     *
+     * @param row    The row offset, from {@link #row(int, int)}
+     * @param lcAttr The left context attribute of the third node
+     * @return The connection cost
+     */
+    public abstract int get(int row, int lcAttr);
+
+    /**
+     * Retrieves the cost between three sets of context attributes
+     *
+     * @param rcAttr2 The second order right context attribute of the first node
+     * @param rcAttr1 The right context attribute of the second node
+     * @param lcAttr  The left context attribute of the third node
+     * @return The connection cost
+     */
+    public final int get(int rcAttr2, int rcAttr1, int lcAttr) {
+        return get(row(rcAttr2, rcAttr1), lcAttr);
+    }
+
+    /**
+     * @return How the matrix is held
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Reads the matrix header from the given buffer, leaving it positioned at
+     * the start of the matrix data
+     *
+     * @param buffer  The buffer of the connection cost file
+     * @param storage How the matrix is held
+     */
+    private ConnectionCosts(ShortBuffer buffer, Storage storage) {
+        this(buffer.get(), buffer.get(), buffer.get(), storage);
+
+        int expectedSize = 3 + (size1 * size2 * size3);
+        if (expectedSize != buffer.limit()) {
+            throw new RuntimeException("Expected connection cost file to be " + (2 * expectedSize) + " bytes, but was " + (2 * buffer.limit()));
+        }
+    }
+
+    /**
+     * @param size1 Size of the first extent of the connection cost matrix
+     * @param size2 Size of the second extent of the connection cost matrix
+     * @param size3 Size of the third extent of the connection cost matrix
+     * @param storage How the matrix is held
+     */
+    private ConnectionCosts(int size1, int size2, int size3, Storage storage) {
+        this.size1 = size1;
+        this.size2 = size2;
+        this.size3 = size3;
+        this.storage = storage;
+    }
+
+    /**
+     * A matrix copied into a heap array
+     */
+    private static final class HeapConnectionCosts extends ConnectionCosts {
+
+        /** The matrix data */
+        private final short[] costs;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return costs[row + lcAttr];
+        }
+
+        HeapConnectionCosts(ShortBuffer buffer) {
+            super(buffer, Storage.HEAP);
+            costs = new short[buffer.remaining()];
+            buffer.get(costs);
+        }
+    }
+
+    /**
+     * A matrix read in place from a buffer
+     */
+    private static final class BufferConnectionCosts extends ConnectionCosts {
+
+        /** The matrix data */
+        private final ShortBuffer costs;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return costs.get(row + lcAttr);
+        }
+
+        BufferConnectionCosts(ShortBuffer buffer, Storage storage) {
+            super(buffer, storage);
+            costs = buffer.slice();
+        }
+    }
+
+    /**
+     * A compressed matrix, addressed through classes of context attributes
+     */
+    private static abstract class CompressedConnectionCosts extends ConnectionCosts {
+
+        /** The class of each second order right context attribute */
+        private final short[] rcAttr2Classes;
+
+        /** The class of each right context attribute */
+        private final short[] rcAttr1Classes;
+
+        /** The class of each left context attribute */
+        protected final short[] lcAttrClasses;
+
+        /** The number of right context attribute classes */
+        private final int rcAttr1ClassCount;
+
+        /** The offset of the row for each pair of right context classes */
+        private final int[] rowOffsets;
+
+        @Override
+        public int row(int rcAttr2, int rcAttr1) {
+            return rowOffsets[rcAttr2Classes[rcAttr2] * rcAttr1ClassCount + rcAttr1Classes[rcAttr1]];
+        }
+
+        /**
+         * Reads the classes and row table of a compressed matrix, leaving the
+         * buffer positioned at the start of the rows
+         *
+         * @param buffer  The buffer of the connection cost file, positioned
+         *                after the flags
+         * @param storage How the rows are held
+         */
+        CompressedConnectionCosts(ByteBuffer buffer, Storage storage) {
+            super(buffer.getShort(), buffer.getShort(), buffer.getShort(), storage);
+
+            int rcAttr2ClassCount = buffer.getShort();
+            rcAttr1ClassCount = buffer.getShort();
+            int lcAttrClassCount = buffer.getShort();
+
+            rcAttr2Classes = new short[size1];
+            buffer.asShortBuffer().get(rcAttr2Classes);
+            buffer.position(buffer.position() + 2 * size1);
+            rcAttr1Classes = new short[size2];
+            buffer.asShortBuffer().get(rcAttr1Classes);
+            buffer.position(buffer.position() + 2 * size2);
+            lcAttrClasses = new short[size3];
+            buffer.asShortBuffer().get(lcAttrClasses);
+            buffer.position(buffer.position() + 2 * size3);
+
+            rowOffsets = new int[rcAttr2ClassCount * rcAttr1ClassCount];
+            buffer.asIntBuffer().get(rowOffsets);
+            buffer.position(buffer.position() + 4 * rowOffsets.length);
+            for (int i = 0; i < rowOffsets.length; i++) {
+                rowOffsets[i] *= lcAttrClassCount;
+            }
+        }
+    }
+
+    /**
+     * A compressed matrix of 16 bit costs, with its rows copied into a heap
+     * array
+     */
+    private static final class ClassConnectionCosts extends CompressedConnectionCosts {
+
+        /** The distinct rows of the class matrix */
+        private final short[] costs;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return costs[row + lcAttrClasses[lcAttr]];
+        }
+
+        ClassConnectionCosts(ByteBuffer buffer) {
+            super(buffer, Storage.HEAP);
+            costs = new short[buffer.getInt()];
+            buffer.asShortBuffer().get(costs);
+            buffer.position(buffer.position() + 2 * costs.length);
+        }
+    }
+
+    /**
+     * A compressed matrix of 16 bit costs, with its rows read in place from a
+     * buffer
+     */
+    private static final class BufferClassConnectionCosts extends CompressedConnectionCosts {
+
+        /** The distinct rows of the class matrix */
+        private final ShortBuffer costs;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return costs.get(row + lcAttrClasses[lcAttr]);
+        }
+
+        BufferClassConnectionCosts(ByteBuffer buffer, Storage storage) {
+            super(buffer, storage);
+            int length = buffer.getInt();
+            ShortBuffer rows = buffer.asShortBuffer();
+            rows.limit(length);
+            costs = rows.slice();
+            buffer.position(buffer.position() + 2 * length);
+        }
+    }
+
+    /**
+     * Reads the table of costs of a quantized matrix
+     *
+     * @param buffer The buffer of the connection cost file, positioned at the
+     *               table. The buffer's position is advanced past it
+     * @return The cost of each code
+     */
+    private static short[] readTable(ByteBuffer buffer) {
+        short[] table = new short[buffer.getShort()];
+        buffer.asShortBuffer().get(table);
+        buffer.position(buffer.position() + 2 * table.length);
+
+        return table;
+    }
+
+    /**
+     * A compressed matrix of 8 bit codes into a table of costs, with its rows
+     * copied into a heap array
+     */
+    private static final class QuantizedConnectionCosts extends CompressedConnectionCosts {
+
+        /** The cost of each code */
+        private final short[] table;
+
+        /** The distinct rows of the class matrix, as codes */
+        private final byte[] codes;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return table[codes[row + lcAttrClasses[lcAttr]] & 0xff];
+        }
+
+        QuantizedConnectionCosts(ByteBuffer buffer) {
+            super(buffer, Storage.HEAP);
+            table = readTable(buffer);
+            codes = new byte[buffer.getInt()];
+            buffer.get(codes);
+        }
+    }
+
+    /**
+     * A compressed matrix of 8 bit codes into a table of costs, with its rows
+     * read in place from a buffer
+     */
+    private static final class BufferQuantizedConnectionCosts extends CompressedConnectionCosts {
+
+        /** The cost of each code */
+        private final short[] table;
+
+        /** The distinct rows of the class matrix, as codes */
+        private final ByteBuffer codes;
+
+        @Override
+        public int get(int row, int lcAttr) {
+            return table[codes.get(row + lcAttrClasses[lcAttr]) & 0xff];
+        }
+
+        BufferQuantizedConnectionCosts(ByteBuffer buffer, Storage storage) {
+            super(buffer, storage);
+            table = readTable(buffer);
+            int length = buffer.getInt();
+            ByteBuffer rows = buffer.slice();
+            rows.limit(length);
+            codes = rows.slice();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    /**
+     * Creates a matrix from the contents of a connection cost file, which may
+     * be compressed
+     *
+     * @param buffer  The contents of the connection cost file. The buffer's
+     *                position is advanced, but its contents are not altered
+     * @param storage {@link Storage#HEAP} to copy the matrix, or the rows of
+     *                a compressed matrix, to the heap; otherwise they are read
+     *                in place from the buffer
+     * @return The matrix
+     */
+    public static ConnectionCosts create(ByteBuffer buffer, Storage storage) {
+        if (buffer.getShort(buffer.position()) != COMPRESSED_MARKER) {
+            ShortBuffer shortBuffer = buffer.asShortBuffer();
+            ConnectionCosts costs = create(shortBuffer, storage);
+            buffer.position(buffer.position() + 2 * shortBuffer.position());
+            return costs;
+        }
+
+        buffer.getShort();
+        short version = buffer.getShort();
+        if (version != COMPRESSED_VERSION) {
+            throw new RuntimeException("Unsupported compressed connection cost version " + version);
+        }
+        short flags = buffer.getShort();
+
+        ConnectionCosts costs;
+        boolean heap = (storage == Storage.HEAP);
+        if ((flags & FLAG_QUANTIZED) != 0) {
+            costs = heap ? new QuantizedConnectionCosts(buffer) : new BufferQuantizedConnectionCosts(buffer, storage);
+        } else {
+            costs = heap ? new ClassConnectionCosts(buffer) : new BufferClassConnectionCosts(buffer, storage);
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new RuntimeException("Expected end of compressed connection cost file, but " + buffer.remaining() + " bytes remain");
+        }
+
+        return costs;
+    }
+
+    /**
+     * Creates a matrix from the contents of a connection cost file
+     *
+     * @param buffer  The contents of the connection cost file. The buffer's
+     *                position is advanced, but its contents are not altered
+     * @param storage {@link Storage#HEAP} to copy the matrix to the heap;
+     *                otherwise the matrix is read in place from the buffer
+     * @return The matrix
+     */
+    public static ConnectionCosts create(ShortBuffer buffer, Storage storage) {
+        if (storage == Storage.HEAP) {
+            return new HeapConnectionCosts(buffer);
+        } else {
+            return new BufferConnectionCosts(buffer, storage);
+        }
+    }
+}
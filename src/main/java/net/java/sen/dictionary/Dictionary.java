@@ -27,11 +27,25 @@ import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 
 import net.java.sen.trie.CharIterator;
-import net.java.sen.trie.TrieSearcher;
+import net.java.sen.trie.DoubleArrayLexiconIndex;
+import net.java.sen.trie.LexiconIndex;
+import net.java.sen.trie.TrieMatches;
 
 
 /**
  * The <code>Dictionary</code> class wraps access to a compiled Sen dictionary
+ * <p>
+ * In a version 1 dictionary, the value of each key of the lexicon index packs
+ * the position of its first token in the token file with its number of
+ * tokens, limiting a key to 255 tokens and the token file to 2<sup>23</sup>
+ * tokens. In a version 2 dictionary the value is the ordinal of the key, and
+ * the position of the first token of each key is held in the token index
+ * file (tokenIndex.sen)
+ *
+ * <p><b>Thread Safety</b>: The dictionary files are only read at absolute
+ * indices, so a single Dictionary may be shared between threads, provided that
+ * each uses its own search buffers with
+ * {@link #commonPrefixSearch(CharIterator, SearchResults)}
  */
 public class Dictionary {
 
@@ -41,20 +55,19 @@ public class Dictionary {
     /** Mapped buffer of the part-of-speech information file (partOfSpeech.sen) */
     private final ByteBuffer partOfSpeechInfoBuffer;
 
-    /** Mapped buffer of the Trie data (trie.sen) */
-    private final IntBuffer trieBuffer;
-
-    /** Mapped buffer of the connection cost matrix file (connectionCost.sen) */
-    private final ShortBuffer connectionCostBuffer;
-
-    /** Size of the first extent of the connection cost matrix */
-    private final int connectionSize1;
+    /** The index of surface forms (trie.sen or fst.sen) */
+    private final LexiconIndex lexiconIndex;
 
-    /** Size of the second extent of the connection cost matrix */
-    private final int connectionSize2;
+    /**
+     * The index of the first token of each key, counted from the first token
+     * after the beginning-of-string, end-of-string and unknown-morpheme
+     * tokens, followed by the end of the last key's tokens (tokenIndex.sen),
+     * or <code>null</code> for a version 1 dictionary
+     */
+    private final IntBuffer tokenIndex;
 
-    /** Size of the third extent of the connection cost matrix */
-    private final int connectionSize3;
+    /** The connection cost matrix (connectionCost.sen) */
+    private final ConnectionCosts connectionCosts;
 
     /** A CToken representing a beginning-of-string */
     private final CToken bosToken;
@@ -66,16 +79,26 @@ public class Dictionary {
     private final CToken unknownToken;
 
     /**
-     * A buffer used to store result indices from a Trie search. Reused on
-     * every call to the {@link #commonPrefixSearch(CharIterator)} method
+     * The size of the buffers created by {@link #createTrieSearchResults()}
+     * and {@link #createSearchResults()}
      */
-    private final int[] trieSearchResults = new int[256];
+    private static final int SEARCH_RESULTS_SIZE = 256;
 
     /**
-     * A buffer used to store {@link CToken}s resulting from a search. Reused
-     * on every call to the {@link #commonPrefixSearch(CharIterator)} method
+     * The first value of a versioned header file (header.sen). The header of a
+     * version 1 dictionary starts with the size of the connection cost file
+     * instead, which is never negative
      */
-    private final CToken[] results = new CToken[256];
+    public static final int HEADER_VERSION_MARKER = -1;
+
+    /** The current dictionary format version */
+    public static final int FORMAT_VERSION = 2;
+
+    /** The table of decoded part-of-speech data, if any */
+    private volatile MorphemeTable morphemeTable;
+
+    /** The length of the longest morpheme, or -1 if not yet found */
+    private volatile int maxTokenLength = -1;
 
     final String[] posIndex;
     final String[] conjTypeIndex;
@@ -120,6 +143,60 @@ public class Dictionary {
         return partOfSpeechInfoBuffer;
     }
 
+    /**
+     * Returns the table of decoded part-of-speech data used by
+     * {@link Morpheme}s read from this Dictionary
+     *
+     * @return The table, or <code>null</code> if each {@link Morpheme} decodes
+     * its own data
+     */
+    public MorphemeTable getMorphemeTable() {
+        return morphemeTable;
+    }
+
+    /**
+     * Sets the table of decoded part-of-speech data used by {@link Morpheme}s
+     * read from this Dictionary
+     *
+     * @param morphemeTable The table, or <code>null</code> to have each
+     *                      {@link Morpheme} decode its own data
+     */
+    public void setMorphemeTable(MorphemeTable morphemeTable) {
+        this.morphemeTable = morphemeTable;
+    }
+
+    /**
+     * Returns the number of distinct parts-of-speech in the part-of-speech
+     * index. Part-of-speech ids range from 0 to one less than this
+     *
+     * @return The number of parts-of-speech
+     */
+    public int getPartOfSpeechCount() {
+        return posIndex.length;
+    }
+
+    /**
+     * Returns the part-of-speech with the given id
+     *
+     * @param partOfSpeechId The part-of-speech id
+     * @return The Chasen-format part-of-speech
+     * @see Morpheme#getPartOfSpeechId()
+     */
+    public String getPartOfSpeech(int partOfSpeechId) {
+        return posIndex[partOfSpeechId];
+    }
+
+    /**
+     * Reads the part-of-speech id of the part-of-speech data at the given
+     * index, without decoding the rest of the data
+     *
+     * @param partOfSpeechIndex The index into the part-of-speech file
+     * @return The part-of-speech id
+     */
+    int getPartOfSpeechId(int partOfSpeechIndex) {
+        return new ByteBufferReader(partOfSpeechInfoBuffer, partOfSpeechIndex).readVInt();
+    }
+
     /**
      * Retrieves the cost between three Nodes from the connection cost matrix
      *
@@ -129,8 +206,29 @@ public class Dictionary {
      * @return The connection cost
      */
     public int getCost(Node lNode2, Node lNode, Node rNode) {
-        int position = connectionSize3 * (connectionSize2 * lNode2.rcAttr2 + lNode.rcAttr1) + rNode.lcAttr;
-        return connectionCostBuffer.get(position) + rNode.dictionaryCost;
+        return getConnectionCost(lNode2.rcAttr2, lNode.rcAttr1, rNode.lcAttr) + rNode.dictionaryCost;
+    }
+
+    /**
+     * Retrieves the cost between three sets of context attributes from the
+     * connection cost matrix
+     *
+     * @param rcAttr2 The second order right context attribute of the first node
+     * @param rcAttr1 The right context attribute of the second node
+     * @param lcAttr  The left context attribute of the third node
+     * @return The connection cost, excluding the third node's dictionary cost
+     */
+    public int getConnectionCost(int rcAttr2, int rcAttr1, int lcAttr) {
+        return connectionCosts.get(rcAttr2, rcAttr1, lcAttr);
+    }
+
+    /**
+     * Returns the connection cost matrix
+     *
+     * @return The connection cost matrix
+     */
+    public ConnectionCosts getConnectionCosts() {
+        return connectionCosts;
     }
 
     /**
@@ -139,27 +237,192 @@ public class Dictionary {
      * matching morpheme
      *
      * @param iterator The iterator to search from
-     * @return The possible morphemes found
+     * @return The possible morphemes found, in a new array. The entry after
+     * the last one found is marked as a terminator
+     * @deprecated new buffers are allocated on every call. Use
+     * {@link #commonPrefixSearch(CharIterator, SearchResults)} instead
      */
+    @Deprecated
     public CToken[] commonPrefixSearch(CharIterator iterator) {
-        int size = 0;
+        SearchResults results = new SearchResults();
+        commonPrefixSearch(iterator, results);
+
+        return results.getTokens();
+    }
 
-        int n = TrieSearcher.commonPrefixSearch(trieBuffer, iterator, trieSearchResults);
+    /**
+     * Searches for possible morphemes starting at the current position of a
+     * CharIterator, into buffers owned by the caller. The iterator is advanced
+     * by the length of the longest matching morpheme
+     *
+     * @param iterator The iterator to search from
+     * @param results  A buffer for the possible morphemes found, which grows
+     *                 to hold as many as are found
+     * @return The number of possible morphemes found
+     */
+    public int commonPrefixSearch(CharIterator iterator, SearchResults results) {
+        // Each key found has a different length, no longer than the longest morpheme
+        int[] values = results.getValues(getMaxTokenLength() + 1);
+        int n = lexiconIndex.commonPrefixSearch(iterator, values);
 
+        results.reset();
         for (int i = 0; i < n; i++) {
-            int k = trieSearchResults[i] & 0xff;
-            int p = trieSearchResults[i] >> 8;
+            int value = values[i];
+            for (int j = 0, k = getTokenCount(value); j < k; j++) {
+                readToken(value, j, results.add());
+            }
+        }
+        results.finish();
+
+        return results.size();
+    }
+
+    /**
+     * Searches for possible morphemes starting at the current position of a
+     * CharIterator, into fixed size buffers owned by the caller. The iterator
+     * is advanced by the length of the longest matching morpheme
+     *
+     * @param iterator          The iterator to search from
+     * @param trieSearchResults A buffer for the result indices of the Trie
+     *                          search, from {@link #createTrieSearchResults()}
+     * @param results           A buffer for the possible morphemes found, from
+     *                          {@link #createSearchResults()}. The entry after
+     *                          the last one found is marked as a terminator
+     * @return The number of possible morphemes found
+     * @throws IllegalArgumentException if more morphemes are found than the
+     *         buffer can hold, which a version 2 dictionary permits
+     * @deprecated the buffers cannot grow. Use
+     * {@link #commonPrefixSearch(CharIterator, SearchResults)} instead
+     */
+    @Deprecated
+    public int commonPrefixSearch(CharIterator iterator, int[] trieSearchResults, CToken[] results) {
+        int size = 0;
 
-            tokenBuffer.position((int) ((p + 3) * CToken.SIZE));
+        int n = lexiconIndex.commonPrefixSearch(iterator, trieSearchResults);
 
-            for (int j = 0; j < k; j++) {
-                results[size++].read(tokenBuffer);
+        for (int i = 0; i < n; i++) {
+            int value = trieSearchResults[i];
+            int count = getTokenCount(value);
+            if (size + count >= results.length) {
+                throw new IllegalArgumentException("Too many morphemes for a buffer of " + results.length + "; use a SearchResults");
+            }
+            for (int j = 0; j < count; j++) {
+                readToken(value, j, results[size++]);
             }
         }
 
         // Null terminate
         results[size].terminator = true;
 
+        return size;
+    }
+
+    /**
+     * Searches for the Trie keys starting at every position of a window of
+     * characters. The morphemes for the keys found from a position are then
+     * read with {@link #getTokenCount(int)} and
+     * {@link #readToken(int, int, CToken)}
+     *
+     * @param buffer  The buffer holding the window
+     * @param offset  The offset of the window within the buffer
+     * @param length  The length of the window
+     * @param matches A buffer for the keys found
+     */
+    public void commonPrefixSearchAll(char[] buffer, int offset, int length, TrieMatches matches) {
+        lexiconIndex.commonPrefixSearchAll(buffer, offset, length, matches);
+    }
+
+    /**
+     * Returns the number of morphemes for the value of a key of the lexicon
+     * index
+     *
+     * @param value The value of the key
+     * @return The number of morphemes
+     */
+    public int getTokenCount(int value) {
+        if (tokenIndex == null) {
+            return value & 0xff;
+        }
+
+        return tokenIndex.get(value + 1) - tokenIndex.get(value);
+    }
+
+    /**
+     * Reads one of the morphemes for the value of a key of the lexicon index
+     *
+     * @param value The value of the key
+     * @param index The index of the morpheme, from 0 to one less than
+     *              {@link #getTokenCount(int)}
+     * @param token The CToken to read into
+     */
+    public void readToken(int value, int index, CToken token) {
+        int p = (tokenIndex == null) ? (value >> 8) : tokenIndex.get(value);
+
+        token.read(tokenBuffer, (int) ((p + 3 + index) * CToken.SIZE));
+    }
+
+    /**
+     * Returns the length of the longest morpheme in the Dictionary, which is
+     * also the furthest a search of the lexicon index reads from its starting
+     * position. The token data is scanned on the first call
+     *
+     * @return The length of the longest morpheme
+     */
+    public int getMaxTokenLength() {
+        int maxTokenLength = this.maxTokenLength;
+        if (maxTokenLength == -1) {
+            maxTokenLength = 0;
+            for (int i = 0; i + CToken.SIZE <= tokenBuffer.limit(); i += CToken.SIZE) {
+                maxTokenLength = Math.max(maxTokenLength, tokenBuffer.getShort(i + 6));
+            }
+            this.maxTokenLength = maxTokenLength;
+        }
+
+        return maxTokenLength;
+    }
+
+    /**
+     * Reports whether the Trie data is held in a heap <code>int[]</code>
+     *
+     * @return <code>true</code> if the Trie data is held on the heap
+     */
+    public boolean isHeapTrie() {
+        return (lexiconIndex instanceof DoubleArrayLexiconIndex) && ((DoubleArrayLexiconIndex) lexiconIndex).isHeap();
+    }
+
+    /**
+     * Returns the index of surface forms
+     *
+     * @return The index
+     */
+    public LexiconIndex getLexiconIndex() {
+        return lexiconIndex;
+    }
+
+    /**
+     * Creates a buffer for the result indices of a Trie search
+     *
+     * @return The buffer
+     * @deprecated use a {@link SearchResults} instead
+     */
+    @Deprecated
+    public static int[] createTrieSearchResults() {
+        return new int[SEARCH_RESULTS_SIZE];
+    }
+
+    /**
+     * Creates a buffer for the {@link CToken}s resulting from a search
+     *
+     * @return The buffer
+     * @deprecated use a {@link SearchResults} instead
+     */
+    @Deprecated
+    public static CToken[] createSearchResults() {
+        CToken[] results = new CToken[SEARCH_RESULTS_SIZE];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new CToken();
+        }
+
         return results;
     }
 
@@ -168,19 +431,49 @@ public class Dictionary {
      */
     public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, IntBuffer trieBuffer, String[] posIndex,
                       String[] conjTypeIndex, String[] conjFormIndex) {
-        // Map connection cost file
-        ShortBuffer buffer = connectionCostBuffer;
+        this(ConnectionCosts.create(connectionCostBuffer, ConnectionCosts.Storage.BUFFER), partOfSpeechInfoBuffer, tokenBuffer, trieBuffer,
+                posIndex, conjTypeIndex, conjFormIndex);
+    }
 
-        connectionSize1 = buffer.get();
-        connectionSize2 = buffer.get();
-        connectionSize3 = buffer.get();
+    /**
+     * @param connectionCosts The connection cost matrix, which may be shared
+     *                        with other Dictionaries
+     */
+    public Dictionary(ConnectionCosts connectionCosts, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, IntBuffer trieBuffer, String[] posIndex,
+                      String[] conjTypeIndex, String[] conjFormIndex) {
+        this(connectionCosts, partOfSpeechInfoBuffer, tokenBuffer, new DoubleArrayLexiconIndex(trieBuffer), posIndex, conjTypeIndex, conjFormIndex);
+    }
 
-        int expectedSize = 3 + (connectionSize1 * connectionSize2 * connectionSize3);
-        if (expectedSize != buffer.limit()) {
-            throw new RuntimeException("Expected connection cost file to be " + (2 * expectedSize) + " bytes, but was " + (2 * buffer.limit()));
-        }
+    /**
+     * @param connectionCosts The connection cost matrix, which may be shared
+     *                        with other Dictionaries
+     * @param trieData        The Trie data, copied to the heap
+     */
+    public Dictionary(ConnectionCosts connectionCosts, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, int[] trieData, String[] posIndex,
+                      String[] conjTypeIndex, String[] conjFormIndex) {
+        this(connectionCosts, partOfSpeechInfoBuffer, tokenBuffer, new DoubleArrayLexiconIndex(trieData), posIndex, conjTypeIndex, conjFormIndex);
+    }
+
+    /**
+     * @param connectionCosts The connection cost matrix, which may be shared
+     *                        with other Dictionaries
+     * @param lexiconIndex    The index of surface forms
+     */
+    public Dictionary(ConnectionCosts connectionCosts, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, LexiconIndex lexiconIndex,
+                      String[] posIndex, String[] conjTypeIndex, String[] conjFormIndex) {
+        this(connectionCosts, partOfSpeechInfoBuffer, tokenBuffer, lexiconIndex, null, posIndex, conjTypeIndex, conjFormIndex);
+    }
 
-        this.connectionCostBuffer = buffer.slice();
+    /**
+     * @param connectionCosts The connection cost matrix, which may be shared
+     *                        with other Dictionaries
+     * @param lexiconIndex    The index of surface forms
+     * @param tokenIndex      The token index of a version 2 dictionary, or
+     *                        <code>null</code> for a version 1 dictionary
+     */
+    public Dictionary(ConnectionCosts connectionCosts, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, LexiconIndex lexiconIndex,
+                      IntBuffer tokenIndex, String[] posIndex, String[] conjTypeIndex, String[] conjFormIndex) {
+        this.connectionCosts = connectionCosts;
 
         // Map position information file.
         this.partOfSpeechInfoBuffer = partOfSpeechInfoBuffer;
@@ -188,22 +481,19 @@ public class Dictionary {
         // Map token file
         this.tokenBuffer = tokenBuffer;
         this.bosToken = new CToken();
-        this.bosToken.read(this.tokenBuffer);
+        this.bosToken.read(this.tokenBuffer, 0);
         this.eosToken = new CToken();
-        this.eosToken.read(this.tokenBuffer);
+        this.eosToken.read(this.tokenBuffer, (int) CToken.SIZE);
         this.unknownToken = new CToken();
-        this.unknownToken.read(this.tokenBuffer);
+        this.unknownToken.read(this.tokenBuffer, (int) (2 * CToken.SIZE));
 
-        // Map double array trie dictionary
-        this.trieBuffer = trieBuffer;
+        // Map the index of surface forms
+        this.lexiconIndex = lexiconIndex;
+        this.tokenIndex = tokenIndex;
 
         // indexes (unique POS values, etc)
         this.posIndex = posIndex;
         this.conjTypeIndex = conjTypeIndex;
         this.conjFormIndex = conjFormIndex;
-
-        for (int i = 0; i < results.length; i++) {
-            results[i] = new CToken();
-        }
     }
 }
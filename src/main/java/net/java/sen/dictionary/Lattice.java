@@ -0,0 +1,242 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.Arrays;
+
+
+/**
+ * A {@link Viterbi} cost lattice stored in parallel primitive arrays. Each
+ * entry corresponds to one {@link Node} of the object based lattice; entries
+ * are referred to by their index, and links between entries are stored as
+ * indices (<code>-1</code> for none).
+ * <p>
+ * The arrays are owned by a single {@link Viterbi} and reused from one
+ * sentence to the next, growing as required, so that analysing a sentence
+ * allocates no per-candidate objects. {@link Token}s and {@link Morpheme}s are
+ * only created for the entries on the best path.
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
+ * should not be accessed simultaneously by multiple threads.
+ */
+public final class Lattice {
+
+    /** The initial capacity of the entry arrays */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** The number of entries currently in the lattice */
+    int size;
+
+    /** Used in Viterbi path cost calculation */
+    short[] rcAttr2 = new short[INITIAL_CAPACITY];
+
+    /** Used in Viterbi path cost calculation */
+    short[] rcAttr1 = new short[INITIAL_CAPACITY];
+
+    /** Used in Viterbi path cost calculation */
+    short[] lcAttr = new short[INITIAL_CAPACITY];
+
+    /** The dictionary cost of each entry */
+    short[] dictionaryCost = new short[INITIAL_CAPACITY];
+
+    /** The index of the first character of each entry within the surface */
+    int[] start = new int[INITIAL_CAPACITY];
+
+    /** The number of characters each entry covers */
+    int[] length = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of characters between the end of the previous entry and the
+     * end of each entry, including any ignored characters
+     */
+    int[] span = new int[INITIAL_CAPACITY];
+
+    /** The cost of the best path through each entry */
+    int[] cost = new int[INITIAL_CAPACITY];
+
+    /** The previous entry on the best path through each entry */
+    int[] prev = new int[INITIAL_CAPACITY];
+
+    /** The next entry ending at the same position */
+    int[] lnext = new int[INITIAL_CAPACITY];
+
+    /** The index of each entry's data within the part-of-speech file */
+    int[] partOfSpeechIndex = new int[INITIAL_CAPACITY];
+
+    /**
+     * Literal {@link Morpheme}s for entries that do not link to the
+     * part-of-speech file (unknown and synthesized entries); <code>null</code>
+     * for dictionary entries
+     */
+    Morpheme[] morphemes = new Morpheme[INITIAL_CAPACITY];
+
+    /** The head of the list of entries ending at each position */
+    int[] endList = new int[INITIAL_CAPACITY];
+
+    /**
+     * Clears the lattice ready for a sentence of the given length
+     *
+     * @param length The length of the sentence
+     */
+    void reset(int length) {
+        if (endList.length < length + 1) {
+            endList = new int[Math.max(length + 1, endList.length * 2)];
+        }
+        Arrays.fill(endList, 0, length + 1, -1);
+        Arrays.fill(morphemes, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Increases the capacity of the entry arrays
+     */
+    private void grow() {
+        int capacity = start.length * 2;
+        rcAttr2 = Arrays.copyOf(rcAttr2, capacity);
+        rcAttr1 = Arrays.copyOf(rcAttr1, capacity);
+        lcAttr = Arrays.copyOf(lcAttr, capacity);
+        dictionaryCost = Arrays.copyOf(dictionaryCost, capacity);
+        start = Arrays.copyOf(start, capacity);
+        length = Arrays.copyOf(length, capacity);
+        span = Arrays.copyOf(span, capacity);
+        cost = Arrays.copyOf(cost, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        lnext = Arrays.copyOf(lnext, capacity);
+        partOfSpeechIndex = Arrays.copyOf(partOfSpeechIndex, capacity);
+        morphemes = Arrays.copyOf(morphemes, capacity);
+    }
+
+    /**
+     * Adds an entry built from a node's attributes
+     *
+     * @param rcAttr2        Used in Viterbi path cost calculation
+     * @param rcAttr1        Used in Viterbi path cost calculation
+     * @param lcAttr         Used in Viterbi path cost calculation
+     * @param dictionaryCost The dictionary cost
+     * @param start          The index of the first character of the entry
+     * @param length         The number of characters the entry covers
+     * @param span           The span of the entry
+     * @return The index of the new entry
+     */
+    private int add(short rcAttr2, short rcAttr1, short lcAttr, short dictionaryCost, int start, int length, int span) {
+        if (size == this.start.length) {
+            grow();
+        }
+
+        int index = size++;
+        this.rcAttr2[index] = rcAttr2;
+        this.rcAttr1[index] = rcAttr1;
+        this.lcAttr[index] = lcAttr;
+        this.dictionaryCost[index] = dictionaryCost;
+        this.start[index] = start;
+        this.length[index] = length;
+        this.span[index] = span;
+        this.cost[index] = 0;
+        this.prev[index] = -1;
+        this.lnext[index] = -1;
+        this.partOfSpeechIndex[index] = -1;
+        this.morphemes[index] = null;
+
+        return index;
+    }
+
+    /**
+     * Adds an entry for a dictionary {@link CToken}
+     *
+     * @param ctoken The CToken found in the dictionary
+     * @param start  The index of the first character of the entry
+     * @param span   The span of the entry
+     * @return The index of the new entry
+     */
+    public int add(CToken ctoken, int start, int span) {
+        int index = add(ctoken.rcAttr2, ctoken.rcAttr1, ctoken.lcAttr, ctoken.cost, start, ctoken.length, span);
+        partOfSpeechIndex[index] = ctoken.partOfSpeechIndex;
+
+        return index;
+    }
+
+    /**
+     * Adds an entry that carries a literal {@link Morpheme}
+     *
+     * @param ctoken   The CToken supplying the entry's cost attributes
+     * @param start    The index of the first character of the entry
+     * @param length   The number of characters the entry covers
+     * @param span     The span of the entry
+     * @param morpheme The entry's morpheme
+     * @return The index of the new entry
+     */
+    public int add(CToken ctoken, int start, int length, int span, Morpheme morpheme) {
+        int index = add(ctoken.rcAttr2, ctoken.rcAttr1, ctoken.lcAttr, ctoken.cost, start, length, span);
+        morphemes[index] = morpheme;
+
+        return index;
+    }
+
+    /**
+     * Adds an entry copied from a {@link Node}
+     *
+     * @param node The node to copy
+     * @return The index of the new entry
+     */
+    public int add(Node node) {
+        int index = add(node.rcAttr2, node.rcAttr1, node.lcAttr, node.dictionaryCost, node.start, node.length, node.span);
+        partOfSpeechIndex[index] = node.partOfSpeechIndex;
+        morphemes[index] = node.morpheme;
+
+        return index;
+    }
+
+    /**
+     * Moves an entry to a lower index, overwriting the entry already there
+     *
+     * @param from The index of the entry to move
+     * @param to   The index to move it to
+     */
+    void move(int from, int to) {
+        rcAttr2[to] = rcAttr2[from];
+        rcAttr1[to] = rcAttr1[from];
+        lcAttr[to] = lcAttr[from];
+        dictionaryCost[to] = dictionaryCost[from];
+        start[to] = start[from];
+        length[to] = length[from];
+        span[to] = span[from];
+        cost[to] = cost[from];
+        prev[to] = prev[from];
+        lnext[to] = lnext[from];
+        partOfSpeechIndex[to] = partOfSpeechIndex[from];
+        morphemes[to] = morphemes[from];
+    }
+
+    /**
+     * Discards all entries from the given index onwards
+     *
+     * @param size The new number of entries
+     */
+    void truncate(int size) {
+        Arrays.fill(morphemes, size, this.size, null);
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of entries in the lattice
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+}
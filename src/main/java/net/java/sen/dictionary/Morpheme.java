@@ -20,7 +20,6 @@
 
 package net.java.sen.dictionary;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,11 +35,10 @@ import java.util.List;
  * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
  * should not be accessed simultaneously by multiple threads.
  *
- * <p><b>CAUTION</b>: {@link Morpheme}s are implemented as lazy proxies onto a
- * {@link Dictionary}, and care should be taken not to access the same
- * {@link Dictionary} from multiple threads. Once any member of a
- * {@link Morpheme} has been read, its link to the {@link Dictionary} is broken
- * and this restriction is relaxed
+ * <p>{@link Morpheme}s are implemented as lazy proxies onto a
+ * {@link Dictionary}. The {@link Dictionary} itself may be shared between
+ * threads; once any member of a {@link Morpheme} has been read, its link to
+ * the {@link Dictionary} is broken
  */
 public class Morpheme {
 
@@ -55,6 +53,16 @@ public class Morpheme {
      */
     private int partOfSpeechIndex;
 
+    /**
+     * The id of the part-of-speech within the {@link Dictionary}'s
+     * part-of-speech index; -1 if there is none, or {@link #UNRESOLVED} if it
+     * has not been read yet
+     */
+    private int partOfSpeechId;
+
+    /** Marks a part-of-speech id that has not been read yet */
+    private static final int UNRESOLVED = -2;
+
     /**
      * Indicates if the part-of-speech data has been loaded
      */
@@ -109,58 +117,72 @@ public class Morpheme {
             return; // we already loaded what we need
         }
 
-        ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer();
-        buffer.position(partOfSpeechIndex);
+        MorphemeTable table = dictionary.getMorphemeTable();
+        if (table != null) {
+            MorphemeTable.Entry entry = table.get(partOfSpeechIndex);
+            partOfSpeechId = entry.partOfSpeechId;
+            partOfSpeech = entry.partOfSpeech;
+            conjugationalType = entry.conjugationalType;
+            conjugationalForm = entry.conjugationalForm;
+            basicForm = entry.basicForm;
+            readings = entry.readings;
+            pronunciations = entry.pronunciations;
+            loaded = LoadState.FULL;
+            return;
+        }
+
+        ByteBufferReader reader = new ByteBufferReader(dictionary.getPartOfSpeechInfoBuffer(), partOfSpeechIndex);
         char[] temp = new char[512];
         int length;
 
         if (loaded == LoadState.NONE) {
-            partOfSpeech = dictionary.posIndex[DictionaryUtil.readVInt(buffer)];
-            conjugationalType = dictionary.conjTypeIndex[DictionaryUtil.readVInt(buffer)];
-            conjugationalForm = dictionary.conjFormIndex[DictionaryUtil.readVInt(buffer)];
+            partOfSpeechId = reader.readVInt();
+            partOfSpeech = dictionary.posIndex[partOfSpeechId];
+            conjugationalType = dictionary.conjTypeIndex[reader.readVInt()];
+            conjugationalForm = dictionary.conjFormIndex[reader.readVInt()];
 
-            length = DictionaryUtil.readVInt(buffer);
+            length = reader.readVInt();
             if (length == 0) {
                 basicForm = "*"; // basic form is the same as surface form
             } else {
-                DictionaryUtil.readString(buffer, temp, 0, length);
+                reader.readString(temp, 0, length);
                 basicForm = new String(temp, 0, length);
             }
         } else {
             // we've already loaded the basic data, but not the full, just skip over bytes
-            DictionaryUtil.readVInt(buffer); // POS
-            DictionaryUtil.readVInt(buffer); // conjType
-            DictionaryUtil.readVInt(buffer); // conjForm
-            length = DictionaryUtil.readVInt(buffer); // length
+            reader.readVInt(); // POS
+            reader.readVInt(); // conjType
+            reader.readVInt(); // conjForm
+            length = reader.readVInt(); // length
             if (length != 0)
-                DictionaryUtil.readString(buffer, temp, 0, length); // basicForm
+                reader.readString(temp, 0, length); // basicForm
         }
 
         loaded = LoadState.BASIC;
 
         if (requested == LoadState.FULL) {
-            int readingData = DictionaryUtil.readVInt(buffer);
+            int readingData = reader.readVInt();
             int numReadings = readingData >>> 1;
 
             readings = new ArrayList<>(numReadings);
             pronunciations = new ArrayList<>(numReadings);
 
             for (int i = 0; i < numReadings; i++) {
-                length = DictionaryUtil.readVInt(buffer);
+                length = reader.readVInt();
                 int readingLength = length >>> 1;
                 if ((readingData & 1) == 0) {
-                    DictionaryUtil.readKatakana(buffer, temp, 0, readingLength);
+                    reader.readKatakana(temp, 0, readingLength);
                 } else {
-                    DictionaryUtil.readString(buffer, temp, 0, readingLength);
+                    reader.readString(temp, 0, readingLength);
                 }
                 String reading = new String(temp, 0, readingLength);
                 readings.add(reading);
                 if ((length & 1) != 0) {
-                    int pronunciationLength = DictionaryUtil.readVInt(buffer);
+                    int pronunciationLength = reader.readVInt();
                     if ((readingData & 1) == 0) {
-                        DictionaryUtil.readKatakana(buffer, temp, 0, pronunciationLength);
+                        reader.readKatakana(temp, 0, pronunciationLength);
                     } else {
-                        DictionaryUtil.readString(buffer, temp, 0, pronunciationLength);
+                        reader.readString(temp, 0, pronunciationLength);
                     }
                     pronunciations.add(new String(temp, 0, pronunciationLength));
                 } else {
@@ -231,6 +253,34 @@ public class Morpheme {
         return partOfSpeech;
     }
 
+    /**
+     * Gets the id of the part-of-speech within the part-of-speech index of
+     * the {@link Dictionary} this Morpheme was read from. Unlike
+     * {@link #getPartOfSpeech()}, this does not decode the rest of the
+     * part-of-speech data
+     *
+     * @return The part-of-speech id, or -1 if the Morpheme was not read from a
+     * {@link Dictionary}
+     * @see Dictionary#getPartOfSpeech(int)
+     */
+    public int getPartOfSpeechId() {
+        if (partOfSpeechId == UNRESOLVED) {
+            partOfSpeechId = dictionary.getPartOfSpeechId(partOfSpeechIndex);
+        }
+
+        return partOfSpeechId;
+    }
+
+    /**
+     * Gets the {@link Dictionary} this Morpheme was read from
+     *
+     * @return The Dictionary, or <code>null</code> if the Morpheme does not
+     * link to any Dictionary
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
     /**
      * Gets the additional information string
      *
@@ -317,6 +367,7 @@ public class Morpheme {
     public Morpheme(Dictionary dictionary, int partOfSpeechIndex) {
         this.dictionary = dictionary;
         this.partOfSpeechIndex = partOfSpeechIndex;
+        this.partOfSpeechId = UNRESOLVED;
         this.loaded = LoadState.NONE;
     }
 
@@ -340,6 +391,7 @@ public class Morpheme {
         this.pronunciations = new ArrayList<>(Arrays.asList(pronunciations));
         this.partOfSpeech = partOfSpeech;
         this.additionalInformation = additionalInformation;
+        this.partOfSpeechId = -1;
         this.loaded = LoadState.FULL;
     }
 
@@ -350,6 +402,7 @@ public class Morpheme {
     public Morpheme() {
         this.readings = Collections.emptyList();
         this.pronunciations = Collections.emptyList();
+        this.partOfSpeechId = -1;
         this.loaded = LoadState.FULL;
     }
 }
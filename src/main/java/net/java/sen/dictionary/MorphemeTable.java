@@ -0,0 +1,286 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen.dictionary;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A table of decoded part-of-speech data, keyed by the index of the data in
+ * the part-of-speech file (partOfSpeech.sen). When a table is installed on a
+ * {@link Dictionary}, {@link Morpheme}s read from the Dictionary share the
+ * table's decoded Strings and Lists rather than decoding their own.
+ * <p>
+ * The table is populated lazily as entries are requested, or eagerly with
+ * {@link #preload()}. Once the estimated size of its entries reaches the
+ * memory cap, further entries are decoded on every request without being
+ * stored.
+ *
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. Entries are immutable, so the Lists returned by a table-backed
+ * {@link Morpheme} cannot be modified
+ */
+public final class MorphemeTable {
+
+    /**
+     * The decoded part-of-speech data of one morpheme
+     */
+    static final class Entry {
+
+        /** The id of the part-of-speech within the part-of-speech index */
+        final int partOfSpeechId;
+
+        /** The Chasen-format part-of-speech */
+        final String partOfSpeech;
+
+        /** The conjugational type */
+        final String conjugationalType;
+
+        /** The conjugational form */
+        final String conjugationalForm;
+
+        /** The unconjugated form */
+        final String basicForm;
+
+        /** The readings */
+        final List<String> readings;
+
+        /** The pronunciations */
+        final List<String> pronunciations;
+
+        /** The estimated size of the entry in bytes */
+        final int size;
+
+        Entry(int partOfSpeechId, String partOfSpeech, String conjugationalType, String conjugationalForm, String basicForm,
+              List<String> readings, List<String> pronunciations, int size) {
+            this.partOfSpeechId = partOfSpeechId;
+            this.partOfSpeech = partOfSpeech;
+            this.conjugationalType = conjugationalType;
+            this.conjugationalForm = conjugationalForm;
+            this.basicForm = basicForm;
+            this.readings = readings;
+            this.pronunciations = pronunciations;
+            this.size = size;
+        }
+    }
+
+    /** The estimated size in bytes of an entry and its key, excluding strings */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    /** The estimated size in bytes of a String, excluding its characters */
+    private static final int STRING_OVERHEAD = 40;
+
+    /** The Dictionary whose data is decoded */
+    private final Dictionary dictionary;
+
+    /** The memory cap in bytes */
+    private final long maxBytes;
+
+    /** The decoded entries */
+    private final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /** The estimated size of the stored entries in bytes */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /** The number of requests answered from the table */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of requests that had to be decoded */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Decodes the part-of-speech data at the given position of a reader
+     *
+     * @param reader The reader, positioned at the start of the data
+     * @param temp   A scratch array
+     * @return The decoded entry
+     */
+    private Entry decode(ByteBufferReader reader, char[] temp) {
+        int partOfSpeechId = reader.readVInt();
+        String partOfSpeech = dictionary.posIndex[partOfSpeechId];
+        String conjugationalType = dictionary.conjTypeIndex[reader.readVInt()];
+        String conjugationalForm = dictionary.conjFormIndex[reader.readVInt()];
+        int size = ENTRY_OVERHEAD;
+
+        String basicForm;
+        int length = reader.readVInt();
+        if (length == 0) {
+            basicForm = "*"; // basic form is the same as surface form
+        } else {
+            reader.readString(temp, 0, length);
+            basicForm = new String(temp, 0, length);
+            size += STRING_OVERHEAD + 2 * length;
+        }
+
+        int readingData = reader.readVInt();
+        int numReadings = readingData >>> 1;
+
+        List<String> readings = new ArrayList<>(numReadings);
+        List<String> pronunciations = new ArrayList<>(numReadings);
+
+        for (int i = 0; i < numReadings; i++) {
+            length = reader.readVInt();
+            int readingLength = length >>> 1;
+            if ((readingData & 1) == 0) {
+                reader.readKatakana(temp, 0, readingLength);
+            } else {
+                reader.readString(temp, 0, readingLength);
+            }
+            String reading = new String(temp, 0, readingLength);
+            readings.add(reading);
+            size += STRING_OVERHEAD + 2 * readingLength;
+            if ((length & 1) != 0) {
+                int pronunciationLength = reader.readVInt();
+                if ((readingData & 1) == 0) {
+                    reader.readKatakana(temp, 0, pronunciationLength);
+                } else {
+                    reader.readString(temp, 0, pronunciationLength);
+                }
+                pronunciations.add(new String(temp, 0, pronunciationLength));
+                size += STRING_OVERHEAD + 2 * pronunciationLength;
+            } else {
+                pronunciations.add(reading);
+            }
+        }
+
+        return new Entry(partOfSpeechId, partOfSpeech, conjugationalType, conjugationalForm, basicForm,
+                Collections.unmodifiableList(readings), Collections.unmodifiableList(pronunciations), size);
+    }
+
+    /**
+     * Stores an entry if it fits within the memory cap
+     *
+     * @param partOfSpeechIndex The index of the entry
+     * @param entry             The entry
+     * @return The stored entry, which may have been stored by another thread,
+     * or <code>null</code> if the entry does not fit
+     */
+    private Entry store(int partOfSpeechIndex, Entry entry) {
+        if (bytes.addAndGet(entry.size) > maxBytes) {
+            bytes.addAndGet(-entry.size);
+            return null;
+        }
+
+        Entry existing = entries.putIfAbsent(partOfSpeechIndex, entry);
+        if (existing != null) {
+            bytes.addAndGet(-entry.size);
+            return existing;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets the decoded part-of-speech data at the given index
+     *
+     * @param partOfSpeechIndex The index into the part-of-speech file
+     * @return The decoded entry
+     */
+    Entry get(int partOfSpeechIndex) {
+        Entry entry = entries.get(partOfSpeechIndex);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        misses.incrementAndGet();
+        entry = decode(new ByteBufferReader(dictionary.getPartOfSpeechInfoBuffer(), partOfSpeechIndex), new char[512]);
+        Entry stored = store(partOfSpeechIndex, entry);
+
+        return (stored != null) ? stored : entry;
+    }
+
+    /**
+     * Decodes and stores every entry of the part-of-speech file, in file
+     * order, until the file is exhausted or the memory cap is reached
+     *
+     * @return The number of entries stored
+     */
+    public int preload() {
+        ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer();
+        ByteBufferReader reader = new ByteBufferReader(buffer, 0);
+        char[] temp = new char[512];
+        int count = 0;
+
+        while (reader.position() < buffer.limit()) {
+            int partOfSpeechIndex = reader.position();
+            if (store(partOfSpeechIndex, decode(reader, temp)) == null) {
+                break; // over the memory cap
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The memory cap in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The estimated size of the stored entries in bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return The number of stored entries
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of requests answered from the table
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of requests that had to be decoded
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Creates an empty table. The table takes effect once installed with
+     * {@link Dictionary#setMorphemeTable(MorphemeTable)}
+     *
+     * @param dictionary The Dictionary whose data is decoded
+     * @param maxBytes   The memory cap, in estimated bytes of decoded data
+     */
+    public MorphemeTable(Dictionary dictionary, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+        }
+        this.dictionary = dictionary;
+        this.maxBytes = maxBytes;
+    }
+}
@@ -64,10 +64,19 @@ final public class Node implements Cloneable {
     public Node rnext;
 
     /**
-     * The <code>Morpheme</code> that is contained within this <code>Node</code>
+     * The <code>Morpheme</code> that is contained within this <code>Node</code>,
+     * or <code>null</code> if it has not yet been created from
+     * {@link #partOfSpeechIndex}
      */
     public Morpheme morpheme;
 
+    /**
+     * The index of the morpheme's data within the part-of-speech file, for a
+     * dictionary <code>Node</code> whose <code>Morpheme</code> is only created
+     * if it is used; -1 otherwise
+     */
+    public int partOfSpeechIndex = -1;
+
     /**
      * The index of the first character of this <code>Node</code> within the
      * surface
@@ -0,0 +1,163 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * A set of Chasen-format part-of-speech tags, such as a list of stop tags. A
+ * tag matches a part-of-speech that is equal to it and, if subtypes are
+ * matched, every part-of-speech below it in the hierarchy ("名詞" matches
+ * "名詞-一般" and "名詞-固有名詞-人名").
+ * <p>
+ * Membership of a part-of-speech id is tested against a {@link BitSet} over
+ * the ids of a {@link Dictionary}, which is compiled the first time the
+ * Dictionary is seen.
+ *
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe
+ */
+public final class PartOfSpeechSet {
+
+    /**
+     * The part-of-speech ids of a {@link Dictionary} that belong to the set
+     */
+    private static final class Compiled {
+
+        /** The Dictionary the ids are drawn from */
+        final Dictionary dictionary;
+
+        /** The ids that belong to the set */
+        final BitSet ids;
+
+        Compiled(Dictionary dictionary, BitSet ids) {
+            this.dictionary = dictionary;
+            this.ids = ids;
+        }
+    }
+
+    /** The tags */
+    private final Set<String> tags;
+
+    /** If <code>true</code>, a tag also matches its subtypes */
+    private final boolean matchSubtypes;
+
+    /** The ids of the most recently used Dictionary */
+    private volatile Compiled compiled;
+
+    /**
+     * Tests whether a part-of-speech is in the set
+     *
+     * @param partOfSpeech The Chasen-format part-of-speech
+     * @return <code>true</code> if the part-of-speech is in the set
+     */
+    public boolean contains(String partOfSpeech) {
+        if (tags.contains(partOfSpeech)) {
+            return true;
+        }
+
+        if (matchSubtypes) {
+            for (int i = partOfSpeech.indexOf('-'); i >= 0; i = partOfSpeech.indexOf('-', i + 1)) {
+                if (tags.contains(partOfSpeech.substring(0, i))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Tests whether a part-of-speech id is in the set
+     *
+     * @param dictionary     The Dictionary the id is drawn from
+     * @param partOfSpeechId The part-of-speech id
+     * @return <code>true</code> if the part-of-speech is in the set
+     * @see Morpheme#getPartOfSpeechId()
+     */
+    public boolean contains(Dictionary dictionary, int partOfSpeechId) {
+        Compiled compiled = this.compiled;
+        if ((compiled == null) || (compiled.dictionary != dictionary)) {
+            compiled = compile(dictionary);
+            this.compiled = compiled;
+        }
+
+        return compiled.ids.get(partOfSpeechId);
+    }
+
+    /**
+     * Tests whether the part-of-speech of a {@link Morpheme} is in the set,
+     * by id if the Morpheme was read from a {@link Dictionary}
+     *
+     * @param morpheme The Morpheme
+     * @return <code>true</code> if the part-of-speech is in the set
+     */
+    public boolean contains(Morpheme morpheme) {
+        int partOfSpeechId = morpheme.getPartOfSpeechId();
+        if (partOfSpeechId >= 0) {
+            return contains(morpheme.getDictionary(), partOfSpeechId);
+        }
+
+        String partOfSpeech = morpheme.getPartOfSpeech();
+        return (partOfSpeech != null) && contains(partOfSpeech);
+    }
+
+    /**
+     * Compiles the set over the part-of-speech ids of a {@link Dictionary}
+     *
+     * @param dictionary The Dictionary
+     * @return The compiled ids
+     */
+    private Compiled compile(Dictionary dictionary) {
+        int count = dictionary.getPartOfSpeechCount();
+        BitSet ids = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            if (contains(dictionary.getPartOfSpeech(i))) {
+                ids.set(i);
+            }
+        }
+
+        return new Compiled(dictionary, ids);
+    }
+
+    /**
+     * @param tags          The Chasen-format part-of-speech tags
+     * @param matchSubtypes If <code>true</code>, a tag also matches every
+     *                      part-of-speech below it in the hierarchy
+     */
+    public PartOfSpeechSet(Collection<String> tags, boolean matchSubtypes) {
+        this.tags = new HashSet<>(tags);
+        this.matchSubtypes = matchSubtypes;
+    }
+
+    /**
+     * Creates a set, compiling it for a {@link Dictionary} immediately
+     *
+     * @param tags          The Chasen-format part-of-speech tags
+     * @param matchSubtypes If <code>true</code>, a tag also matches every
+     *                      part-of-speech below it in the hierarchy
+     * @param dictionary    The Dictionary to compile the set for
+     */
+    public PartOfSpeechSet(Collection<String> tags, boolean matchSubtypes, Dictionary dictionary) {
+        this(tags, matchSubtypes);
+        this.compiled = compile(dictionary);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.Arrays;
+
+
+/**
+ * A reusable buffer for the results of a search of a {@link Dictionary},
+ * filled by {@link Dictionary#commonPrefixSearch(net.java.sen.trie.CharIterator, SearchResults)}.
+ * The buffers grow as needed, so a key may have any number of morphemes
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe
+ * and should not be accessed simultaneously by multiple threads
+ */
+public final class SearchResults {
+
+    /** The values of the keys found by the Trie search */
+    private int[] values = new int[0];
+
+    /** The morphemes found. The entry after the last is marked as a terminator */
+    private CToken[] tokens = new CToken[0];
+
+    /** The number of morphemes found */
+    private int size;
+
+    /**
+     * Returns a buffer for the values of the keys found by a Trie search
+     *
+     * @param capacity The maximum number of keys that can be found
+     * @return The buffer
+     */
+    int[] getValues(int capacity) {
+        if (values.length < capacity) {
+            values = new int[capacity];
+        }
+
+        return values;
+    }
+
+    /**
+     * Clears the buffer before a search
+     */
+    void reset() {
+        size = 0;
+    }
+
+    /**
+     * Adds a morpheme, to be read into by the caller
+     *
+     * @return The CToken to read the morpheme into
+     */
+    CToken add() {
+        ensureCapacity(size + 2);
+        return tokens[size++];
+    }
+
+    /**
+     * Marks the entry after the last morpheme found as a terminator
+     */
+    void finish() {
+        ensureCapacity(size + 1);
+        tokens[size].terminator = true;
+    }
+
+    /**
+     * Ensures that the morpheme buffer has at least the given number of entries
+     *
+     * @param capacity The number of entries
+     */
+    private void ensureCapacity(int capacity) {
+        if (tokens.length < capacity) {
+            int length = tokens.length;
+            tokens = Arrays.copyOf(tokens, Math.max(capacity, Math.max(16, length * 2)));
+            for (int i = length; i < tokens.length; i++) {
+                tokens[i] = new CToken();
+            }
+        }
+    }
+
+    /**
+     * @return The number of morphemes found
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a morpheme found
+     *
+     * @param index The index of the morpheme, from 0 to one less than
+     *              {@link #size()}
+     * @return The morpheme
+     */
+    public CToken get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+
+        return tokens[index];
+    }
+
+    /**
+     * Returns the buffer of morphemes found. It is replaced when it grows, and
+     * the entry after the last morpheme is marked as a terminator
+     *
+     * @return The buffer
+     */
+    CToken[] getTokens() {
+        return tokens;
+    }
+}
@@ -19,6 +19,7 @@
 
 package net.java.sen.dictionary;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.NoSuchElementException;
 
@@ -31,13 +32,19 @@ import java.util.NoSuchElementException;
  */
 public class Sentence {
 
-    /** The sentence's characters */
+    /** The buffer containing the sentence's characters */
     private char[] characters;
 
+    /** The index of the sentence's first character within the buffer */
+    private int offset;
+
+    /** The number of characters in the sentence */
+    private int length;
+
     /**
-     * An BitSet of the same length as the <code>characters</code> array.
+     * An BitSet of the same length as the sentence.
      * characters at indices that are <code>true</code> are both ignored
-     * and treated as breaking points
+     * and treated as breaking points. <code>null</code> until a span is set
      */
     private BitSet breakingIgnoreSet;
 
@@ -46,52 +53,188 @@ public class Sentence {
      * spans from intersecting the indicated region, allowing the Viterbi
      * algorithm to ensure that a morpheme with the chosen length and reading
      * is picked in preference to any other possible sequence of morphemes
-     * for the same characters
+     * for the same characters. <code>null</code> until a constraint is set
      */
     private Reading[] constraints;
 
+    /**
+     * The index of each position among the origins visited by a
+     * {@link #iterator()}, or -1 if it is not an origin. Computed only when
+     * there are ignore spans or constraints, or an index is asked for, and
+     * discarded when the ignore spans or constraints change
+     */
+    private int[] originIndices;
 
     /**
-     * A SentenceIterator that obeys the defined breaking ignore spans,
-     * reading constraints, and skips space characters
+     * The position of each origin, by index
      */
-    private class ConstrainedIterator implements SentenceIterator {
+    private int[] originPositions;
+
+    /**
+     * The number of characters skipped before each origin, by index
+     */
+    private int[] originSkips;
+
+    /**
+     * The iteration limit of each origin, by position
+     */
+    private int[] originLimits;
+
+    /**
+     * The number of origins
+     */
+    private int originCount;
+
+    /**
+     * The number of positions from the start of the sentence that are all
+     * origins, or -1 until the origins are counted
+     */
+    private int leadingOriginCount = -1;
+
+    /**
+     * The position of the last origin, or -1 if there is none
+     */
+    private int lastOrigin;
+
+
+    /**
+     * A SentenceIterator for a sentence without breaking ignore spans or
+     * reading constraints, which skips space characters by scanning the
+     * buffer directly
+     */
+    private class SpaceSkippingIterator implements SentenceIterator {
 
         /**
-         * The index of the next character to return, if valid; -1 otherwise
+         * The current character cursor origin
          */
-        private int nextIndex = -1;
+        private int origin = -1;
 
         /**
-         * Validity of the next character index. Stored when <code>hasNext()</code>
-         * called to avoid recalculating during <code>next()</code>
-         * <code>Boolean.TRUE</code> when next index is valid
-         * <code>Boolean.FALSE</code> when next index is invalid
-         * <code>null</code> when next index validity has not been calculated
+         * The number of characters skipped before the current origin
          */
-        private Boolean nextIndexValid = null;
+        private int skipped = -1;
 
         /**
-         * The number of characters skipped between the current and next origins
+         * The index of the next character to return
          */
-        private int nextSkipped = -1;
+        private int nextIndex = -1;
 
         /**
-         * The next character cursor origin if it exists and has been calculated;
-         * -1 otherwise
+         * The next character cursor origin, or the sentence length if there is
+         * none; -1 until it has been found
          */
         private int nextOrigin = -1;
 
+        /* SentenceIterator interface */
+
+        public char current() {
+            return characters[offset + nextIndex];
+        }
+
+        public boolean hasNextOrigin() {
+            if (nextOrigin == -1) {
+                int i = origin + 1;
+                while ((i < length) && isSpace(characters[offset + i])) {
+                    i++;
+                }
+                nextOrigin = i;
+            }
+
+            return (nextOrigin < length);
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public int nextOrigin() {
+            if (!hasNextOrigin()) {
+                throw new NoSuchElementException();
+            }
+
+            skipped = nextOrigin - (origin + 1);
+            origin = nextOrigin;
+            nextIndex = origin;
+            nextOrigin = -1;
+
+            return origin;
+        }
+
+        public int origin() {
+            return origin;
+        }
+
+        public void rewindToOrigin() {
+            nextIndex = origin;
+        }
+
+        public int skippedCharCount() {
+            return skipped;
+        }
+
+        public boolean seekOrigin(int position) {
+            if (isSpace(characters[offset + position])) {
+                return false;
+            }
+
+            int i = position;
+            while ((i > 0) && isSpace(characters[offset + i - 1])) {
+                i--;
+            }
+            skipped = position - i;
+            origin = position;
+            nextIndex = position;
+            nextOrigin = -1;
+
+            return true;
+        }
+
+        /* CharIterator interface */
+
+        public boolean hasNext() {
+            return (nextIndex < length) && !isSpace(characters[offset + nextIndex]);
+        }
+
+        public char next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return characters[offset + nextIndex++];
+        }
+    }
+
+    /**
+     * A SentenceIterator that obeys the defined breaking ignore spans,
+     * reading constraints, and skips space characters. The origins and limits
+     * are read from the tables built by {@link Sentence#findOrigins()}
+     */
+    private class ConstrainedIterator implements SentenceIterator {
+
+        /** The origin indices, by position */
+        private final int[] indices;
+
+        /** The origin positions, by index */
+        private final int[] positions;
+
+        /** The skipped character counts, by index */
+        private final int[] skips;
+
+        /** The iteration limits, by position */
+        private final int[] limits;
+
+        /** The number of origins */
+        private final int count;
+
         /**
-         * The next character cursor limit
+         * The index of the current origin
          */
-        private int nextLimit = -1;
+        private int index = -1;
 
         /**
-         * The number of characters skipped between the previous and current
-         * origins
+         * The index of the next character to return
          */
-        private int skipped = -1;
+        private int nextIndex = -1;
 
         /**
          * The current character cursor origin
@@ -99,88 +242,44 @@ public class Sentence {
         private int origin = -1;
 
         /**
-         * The current character cursor limit. Used when the current span is a
-         * reading constraint; in other spans this will be set beyond the end of
-         * the character array (which will not be the actual limit if there are
-         * breaking ignore spans, reading constraints or space characters yet to
-         * be reached)
+         * The current character cursor limit; the end of a reading constraint
+         * at the origin, or the first character after the origin that is
+         * ignored, a space or the start of a reading constraint
          */
         private int limit = -1;
 
         /**
-         * Sets up the next subsequence of characters to iterate over
+         * Moves to the origin with the given index
+         *
+         * @param index The index of the origin
          */
-        private void findNextOrigin() {
-            int nextOrigin = -1;
-            int nextSkipped = 0;
-
-            // If the current span has a reading constraint, skip to the end.
-            // Otherwise start at the next character
-            int i = this.origin;
-            if ((i >= 0) && (constraints[i] != null)) {
-                i += constraints[i].length;
-            } else {
-                i++;
-            }
-
-            // Find the next iterable position, skipping any ignored spans and space
-            for (int j = i; j < characters.length; ) {
-                if (breakingIgnoreSet.get(j)) {
-                    j = breakingIgnoreSet.nextClearBit(j);
-                } else if (characters[j] == ' ' ||
-                        characters[j] == '\t' ||
-                        characters[j] == '\r' ||
-                        characters[j] == '\n') {
-                    j++;
-                } else {
-                    nextOrigin = j;
-                    nextSkipped = j - i;
-                    break;
-                }
-            }
-
-            // Set the iteration limit to account for a reading constraint at the current origin
-            this.nextOrigin = nextOrigin;
-            this.nextSkipped = nextSkipped;
-            if (
-                    (this.nextOrigin >= 0)
-                            && (this.nextOrigin < characters.length)
-                            && (Sentence.this.constraints[this.nextOrigin] != null)
-            ) {
-                this.nextLimit = this.nextOrigin + constraints[this.nextOrigin].length;
-            } else {
-                this.nextLimit = characters.length;
-            }
+        private void setOrigin(int index) {
+            this.index = index;
+            origin = positions[index];
+            limit = limits[origin];
+            nextIndex = origin;
         }
 
         /* SentenceIterator interface */
 
         public char current() {
-            return characters[nextIndex];
+            return characters[offset + nextIndex];
         }
 
         public boolean hasNextOrigin() {
-            if (nextOrigin == -1) {
-                findNextOrigin();
-            }
-
-            return (nextOrigin != -1);
+            return (index + 1 < count);
         }
 
         public int length() {
-            return characters.length;
+            return length;
         }
 
         public int nextOrigin() {
-            if (nextOrigin == -1) {
-                findNextOrigin();
+            if (index + 1 >= count) {
+                throw new NoSuchElementException();
             }
 
-            skipped = nextSkipped;
-            origin = nextOrigin;
-            limit = nextLimit;
-            nextIndex = origin;
-            findNextOrigin();
+            setOrigin(index + 1);
 
             return origin;
         }
@@ -194,47 +293,46 @@ public class Sentence {
         }
 
         public int skippedCharCount() {
-            return skipped;
+            return (index >= 0) ? skips[index] : -1;
         }
 
-        /* CharIterator interface */
+        public boolean seekOrigin(int position) {
+            int index = indices[position];
+            if (index == -1) {
+                return false;
+            }
 
-        public boolean hasNext() {
-            boolean nextIndexValid;
+            setOrigin(index);
 
-            if (nextIndex >= limit) {
-                nextIndexValid = false;
-            } else if (breakingIgnoreSet.get(nextIndex)) {
-                nextIndexValid = false;
-            } else if ((nextIndex > origin) && (constraints[nextIndex] != null)) {
-                nextIndexValid = false;
-            } else if (characters[nextIndex] == ' ' ||
-                    characters[nextIndex] == '\t' ||
-                    characters[nextIndex] == '\r' ||
-                    characters[nextIndex] == '\n') {
-                nextIndexValid = false;
-            } else {
-                nextIndexValid = true;
-            }
+            return true;
+        }
 
-            this.nextIndexValid = nextIndexValid;
+        /* CharIterator interface */
 
-            return nextIndexValid;
+        public boolean hasNext() {
+            return (nextIndex < limit);
         }
 
         public char next() throws NoSuchElementException {
-            // Check validity of next index
-            if (nextIndexValid == null) {
-                hasNext();
-            }
-            if (!nextIndexValid) {
+            if (nextIndex >= limit) {
                 throw new NoSuchElementException();
             }
 
-            char nextCharacter = characters[nextIndex];
-            nextIndex++;
-            nextIndexValid = null;
-            return nextCharacter;
+            return characters[offset + nextIndex++];
+        }
+
+        /**
+         * Creates a ConstrainedIterator over the current origin tables
+         */
+        public ConstrainedIterator() {
+            if (originIndices == null) {
+                findOrigins();
+            }
+            this.indices = originIndices;
+            this.positions = originPositions;
+            this.skips = originSkips;
+            this.limits = originLimits;
+            this.count = originCount;
         }
     }
 
@@ -251,23 +349,14 @@ public class Sentence {
         private int origin = -1;
 
         /**
-         * The index of the next character to return, if valid; -1 otherwise
+         * The index of the next character to return
          */
         private int nextIndex = -1;
 
-        /**
-         * Validity of the next character index. Stored when <code>hasNext()</code>
-         * called to avoid recalculating during <code>next()</code>
-         * <code>Boolean.TRUE</code> when next index is valid
-         * <code>Boolean.FALSE</code> when next index is invalid
-         * <code>null</code> when next index validity has not been calculated
-         */
-        private Boolean nextIndexValid = null;
-
         /* SentenceIterator interface */
 
         public char current() {
-            return characters[nextIndex];
+            return characters[offset + nextIndex];
         }
 
         public boolean hasNextOrigin() {
@@ -275,7 +364,7 @@ public class Sentence {
         }
 
         public int length() {
-            return characters.length;
+            return length;
         }
 
         public int nextOrigin() {
@@ -294,42 +383,22 @@ public class Sentence {
             return 0;
         }
 
+        public boolean seekOrigin(int position) {
+            throw new IllegalStateException();
+        }
+
         /* CharIterator interface */
 
         public boolean hasNext() {
-            boolean nextIndexValid;
-
-            if (nextIndex >= characters.length) {
-                nextIndexValid = false;
-            } else if (breakingIgnoreSet.get(nextIndex)) {
-                nextIndexValid = false;
-            } else if (characters[nextIndex] == ' ' ||
-                    characters[nextIndex] == '\t' ||
-                    characters[nextIndex] == '\r' ||
-                    characters[nextIndex] == '\n') {
-                nextIndexValid = false;
-            } else {
-                nextIndexValid = true;
-            }
-
-            this.nextIndexValid = nextIndexValid;
-
-            return nextIndexValid;
+            return (nextIndex < length) && !isSkipped(nextIndex);
         }
 
         public char next() throws NoSuchElementException {
-            // Check validity of next index
-            if (nextIndexValid == null) {
-                hasNext();
-            }
-            if (!nextIndexValid) {
+            if (!hasNext()) {
                 throw new NoSuchElementException();
             }
 
-            char nextCharacter = characters[nextIndex];
-            nextIndex++;
-            nextIndexValid = null;
-            return nextCharacter;
+            return characters[offset + nextIndex++];
         }
 
         /**
@@ -343,6 +412,46 @@ public class Sentence {
         }
     }
 
+    /**
+     * Determines whether the character at a position is never iterated,
+     * because it is in a breaking ignore span or is a space character
+     *
+     * @param position The position
+     * @return <code>true</code> if the character is skipped
+     */
+    private boolean isSkipped(int position) {
+        return isSpace(characters[offset + position])
+                || ((breakingIgnoreSet != null) && breakingIgnoreSet.get(position));
+    }
+
+    /**
+     * Determines whether a character is a space character
+     *
+     * @param c The character
+     * @return <code>true</code> if the character is a space character
+     */
+    private static boolean isSpace(char c) {
+        return (c == ' ') || (c == '\t') || (c == '\r') || (c == '\n');
+    }
+
+    /**
+     * Determines whether the sentence has no breaking ignore spans or reading
+     * constraints, so its origins are found by skipping space characters alone
+     *
+     * @return <code>true</code> if the sentence has no spans or constraints
+     */
+    private boolean isUnconstrained() {
+        return (breakingIgnoreSet == null) && (constraints == null);
+    }
+
+    /**
+     * Discards the origins found, after the ignore spans or constraints change
+     */
+    private void clearOrigins() {
+        originIndices = null;
+        leadingOriginCount = -1;
+    }
+
     /**
      * Sets a breaking ignore span. <code>length</code> characters starting at
      * <code>position</code> will be ignored during iteration; no iterated
@@ -352,7 +461,11 @@ public class Sentence {
      * @param length   The length of the ignore span to set
      */
     public void setBreakingIgnoreSpan(int position, short length) {
+        if (breakingIgnoreSet == null) {
+            breakingIgnoreSet = new BitSet(this.length);
+        }
         breakingIgnoreSet.set(position, position + length);
+        clearOrigins();
     }
 
     /**
@@ -363,12 +476,12 @@ public class Sentence {
      */
     public void setReadingConstraint(Reading constraint) {
         // Check starting position
-        if ((constraint.start < 0) || (constraint.start >= characters.length)) {
+        if ((constraint.start < 0) || (constraint.start >= length)) {
             throw new IllegalArgumentException("Invalid constraint starting position");
         }
 
         // Check length
-        if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= characters.length) {
+        if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= length) {
             throw new IllegalArgumentException("Invalid constraint length");
         }
 
@@ -377,6 +490,10 @@ public class Sentence {
             throw new IllegalArgumentException("Invalid constraint reading");
         }
 
+        if (constraints == null) {
+            constraints = new Reading[length];
+        }
+
         // Remove any existing constraints that overlap the new constraint
 
         // Starting at the end of the constraint, work backwards until we hit
@@ -393,6 +510,7 @@ public class Sentence {
         }
 
         constraints[constraint.start] = constraint;
+        clearOrigins();
     }
 
     /**
@@ -402,7 +520,7 @@ public class Sentence {
      * @return The constraint if present, or <code>null</code>
      */
     public Reading getReadingConstraint(int position) {
-        return constraints[position];
+        return (constraints != null) ? constraints[position] : null;
     }
 
     /**
@@ -411,7 +529,155 @@ public class Sentence {
      * @param position The position to remove the constraint from
      */
     public void removeReadingConstraint(int position) {
+        if (constraints == null) {
+            return;
+        }
         constraints[position] = null;
+        clearOrigins();
+    }
+
+    /**
+     * Finds the origins visited by an {@link #iterator()}, the number of
+     * characters skipped before each, and the limit of the characters
+     * iterated from each
+     */
+    private void findOrigins() {
+        int[] indices = new int[length];
+        int[] positions = new int[length];
+        int[] skips = new int[length];
+        int[] limits = new int[length];
+
+        // Find the first skipped or constrained character after each position
+        int stop = length;
+        for (int i = length - 1; i >= 0; i--) {
+            limits[i] = stop;
+            if (isSkipped(i) || ((constraints != null) && (constraints[i] != null))) {
+                stop = i;
+            }
+        }
+
+        // Find each origin, continuing after the end of a reading constraint
+        int count = 0;
+        int resume = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i < resume) || isSkipped(i)) {
+                indices[i] = -1;
+                continue;
+            }
+
+            indices[i] = count;
+            positions[count] = i;
+            skips[count++] = i - resume;
+            Reading constraint = (constraints != null) ? constraints[i] : null;
+            if (constraint != null) {
+                resume = i + constraint.length;
+                limits[i] = Math.min(limits[i], resume);
+            } else {
+                resume = i + 1;
+            }
+        }
+
+        originPositions = positions;
+        originSkips = skips;
+        originLimits = limits;
+        originCount = count;
+        originIndices = indices;
+    }
+
+    /**
+     * Returns the index of a position among the origins visited by an
+     * {@link #iterator()}. The origins are found once, so that an iterator can
+     * be moved to any of them in constant time with
+     * {@link SentenceIterator#seekOrigin(int)}
+     *
+     * @param position The position
+     * @return The index of the origin, counting from 0, or -1 if the position
+     * is not an origin
+     */
+    public int getOriginIndex(int position) {
+        if (originIndices == null) {
+            findOrigins();
+        }
+
+        return originIndices[position];
+    }
+
+    /**
+     * Counts the origins visited by an {@link #iterator()}, and finds the
+     * leading origins and the last. Without ignore spans or constraints this
+     * only tests for space characters, and builds no tables
+     */
+    private void countOrigins() {
+        int count = 0;
+        int leading = length;
+        int last = -1;
+        if (isUnconstrained()) {
+            for (int i = 0; i < length; i++) {
+                if (isSpace(characters[offset + i])) {
+                    leading = Math.min(leading, i);
+                } else {
+                    count++;
+                    last = i;
+                }
+            }
+        } else {
+            if (originIndices == null) {
+                findOrigins();
+            }
+            count = originCount;
+            for (int i = 0; i < length; i++) {
+                if (originIndices[i] != i) {
+                    leading = i;
+                    break;
+                }
+            }
+            last = (count > 0) ? originPositions[count - 1] : -1;
+        }
+
+        originCount = count;
+        lastOrigin = last;
+        leadingOriginCount = leading;
+    }
+
+    /**
+     * Returns the number of origins visited by an {@link #iterator()}
+     *
+     * @return The number of origins
+     */
+    public int getOriginCount() {
+        if (leadingOriginCount == -1) {
+            countOrigins();
+        }
+
+        return originCount;
+    }
+
+    /**
+     * Returns the number of positions from the start of the sentence that are
+     * all origins, so that the index of each is its own position
+     *
+     * @return The number of leading origins
+     */
+    public int getLeadingOriginCount() {
+        if (leadingOriginCount == -1) {
+            countOrigins();
+        }
+
+        return leadingOriginCount;
+    }
+
+    /**
+     * Returns the position of the last origin visited by an
+     * {@link #iterator()}
+     *
+     * @return The position, or -1 if there are no origins
+     */
+    public int getLastOrigin() {
+        if (leadingOriginCount == -1) {
+            countOrigins();
+        }
+
+        return lastOrigin;
     }
 
     /**
@@ -421,6 +687,10 @@ public class Sentence {
      * @return The iterator
      */
     public SentenceIterator iterator() {
+        if (isUnconstrained()) {
+            return new SpaceSkippingIterator();
+        }
+
         return new ConstrainedIterator();
     }
 
@@ -436,23 +706,74 @@ public class Sentence {
     }
 
     /**
-     * Returns the underlying characters of this Sentence
+     * Returns the characters of this Sentence. If the Sentence is a window
+     * onto a larger buffer, the characters are copied on the first call
      *
-     * @return The underlying characters
+     * @return The characters
      */
     public char[] getCharacters() {
+        if ((offset != 0) || (length != characters.length)) {
+            characters = Arrays.copyOfRange(characters, offset, offset + length);
+            offset = 0;
+        }
+
+        return characters;
+    }
+
+    /**
+     * Returns the buffer containing the characters of this Sentence, without
+     * copying. The characters occupy {@link #getLength()} entries starting at
+     * {@link #getOffset()}
+     *
+     * @return The buffer
+     */
+    public char[] getBuffer() {
         return characters;
     }
 
+    /**
+     * Returns the index of the first character of this Sentence within
+     * {@link #getBuffer()}
+     *
+     * @return The offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of characters in this Sentence
+     *
+     * @return The length
+     */
+    public int getLength() {
+        return length;
+    }
+
     /**
      * Creates a sentence with the given characters
      *
      * @param characters The sentence's characters
      */
     public Sentence(char[] characters) {
-        this.characters = characters;
-        this.breakingIgnoreSet = new BitSet(characters.length);
-        this.constraints = new Reading[characters.length];
+        this(characters, 0, characters.length);
+    }
+
+    /**
+     * Creates a sentence from a window of a buffer. The buffer is not copied,
+     * and must not be modified while the sentence is analysed
+     *
+     * @param buffer The buffer containing the sentence's characters
+     * @param offset The index of the sentence's first character
+     * @param length The number of characters in the sentence
+     */
+    public Sentence(char[] buffer, int offset, int length) {
+        if ((offset < 0) || (length < 0) || (offset + length > buffer.length)) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", buffer " + buffer.length);
+        }
+        this.characters = buffer;
+        this.offset = offset;
+        this.length = length;
     }
 
     /**
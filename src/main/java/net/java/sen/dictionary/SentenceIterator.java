@@ -76,6 +76,18 @@ public interface SentenceIterator extends CharIterator {
      */
     int nextOrigin();
 
+    /**
+     * Moves the origin directly to the given position, which must be one of
+     * the origins that {@link #nextOrigin()} would visit. Iteration continues
+     * from there as if the origin had been reached by calls to
+     * {@link #nextOrigin()}
+     *
+     * @param position The position to move to
+     * @return <code>true</code> if the position is an origin; otherwise the
+     * iterator is unchanged and <code>false</code> is returned
+     */
+    boolean seekOrigin(int position);
+
     /**
      * Returns to the current origin position. Subsequent characters returned
      * by {@link CharIterator#next next} will start at the origin position
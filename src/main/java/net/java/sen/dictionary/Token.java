@@ -25,11 +25,10 @@ package net.java.sen.dictionary;
  * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
  * should not be accessed simultaneously by multiple threads.
  *
- * <p><b>CAUTION</b>: {@link Morpheme}s are implemented as lazy proxies onto a
- * {@link Dictionary}, and care should be taken not to access the same
- * {@link Dictionary} from multiple threads. Once any member of a
- * {@link Morpheme} has been read, its link to the {@link Dictionary} is broken
- * and this restriction is relaxed
+ * <p>{@link Morpheme}s are implemented as lazy proxies onto a
+ * {@link Dictionary}. The {@link Dictionary} itself may be shared between
+ * threads; once any member of a {@link Morpheme} has been read, its link to
+ * the {@link Dictionary} is broken
  */
 public class Token {
 
@@ -38,6 +37,18 @@ public class Token {
      */
     private String surface = null;
 
+    /**
+     * The buffer holding the surface, if it has not yet been copied into
+     * {@link #surface}; <code>null</code> otherwise
+     */
+    private char[] surfaceBuffer = null;
+
+    /**
+     * The index of the first character of the surface within
+     * {@link #surfaceBuffer}
+     */
+    private int surfaceOffset = 0;
+
     /**
      * The Viterbi cost of this Token
      */
@@ -60,6 +71,11 @@ public class Token {
      */
     private boolean sentenceStart;
 
+    /**
+     * True if this token was found by the fallback segmentation
+     */
+    private boolean fallback;
+
     /**
      * The morpheme data represented by this Token
      */
@@ -79,6 +95,22 @@ public class Token {
         this.sentenceStart = sentenceStart;
     }
 
+    /**
+     * Returns whether or not this Token was found by the fallback
+     * segmentation used when an analysis exceeds its {@link Budget}, rather
+     * than by the Viterbi search
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Sets whether or not this Token was found by the fallback segmentation
+     */
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+
     /**
      * Gets the start of the character range of this Token within the
      * underlying sentence
@@ -120,6 +152,7 @@ public class Token {
      *               underlying sentence
      */
     public void setLength(int length) {
+        getSurface();
         this.length = length;
     }
 
@@ -129,9 +162,38 @@ public class Token {
      * @return The character range of this Token within the underlying sentence
      */
     public String getSurface() {
+        if (surfaceBuffer != null) {
+            surface = new String(surfaceBuffer, surfaceOffset, length);
+            surfaceBuffer = null;
+        }
+
         return surface;
     }
 
+    /**
+     * Gets the buffer holding the surface of this Token, if the surface has
+     * not yet been copied into a String. The surface occupies
+     * {@link #getLength()} characters starting at {@link #getSurfaceOffset()}.
+     * The buffer belongs to the analysed {@link Sentence}, and its contents are
+     * only valid for as long as the sentence's are
+     *
+     * @return The buffer, or <code>null</code> if the surface is only
+     * available through {@link #getSurface()}
+     */
+    public char[] getSurfaceBuffer() {
+        return surfaceBuffer;
+    }
+
+    /**
+     * Gets the index of the first character of the surface of this Token
+     * within {@link #getSurfaceBuffer()}
+     *
+     * @return The offset of the surface
+     */
+    public int getSurfaceOffset() {
+        return surfaceOffset;
+    }
+
     /**
      * Sets the character range of this Token within the underlying sentence
      *
@@ -140,6 +202,7 @@ public class Token {
      */
     public void setSurface(String surface) {
         this.surface = surface;
+        this.surfaceBuffer = null;
     }
 
     /**
@@ -200,7 +263,8 @@ public class Token {
     }
 
     /**
-     * Creates a Token from a Node
+     * Creates a Token from a Node, whose {@link Node#morpheme} must have been
+     * created
      *
      * @param surface The underlying sentence string
      * @param node    The Node to create from
@@ -213,6 +277,43 @@ public class Token {
         this.length = node.length;
     }
 
+    /**
+     * Creates a Token whose surface is a window of a buffer. The surface is
+     * only copied into a String if {@link #getSurface()} is called. The Node's
+     * {@link Node#morpheme} must have been created
+     *
+     * @param buffer   The buffer holding the underlying sentence
+     * @param offset   The index of the sentence's first character within the
+     *                 buffer
+     * @param node     The Node to create from
+     */
+    public Token(char[] buffer, int offset, Node node) {
+        this(buffer, offset + node.start, node.cost, node.start, node.length, node.morpheme);
+    }
+
+    /**
+     * Creates a Token whose surface is a window of a buffer. The surface is
+     * only copied into a String if {@link #getSurface()} is called
+     *
+     * @param buffer        The buffer holding the surface
+     * @param surfaceOffset The index of the surface's first character within
+     *                      the buffer
+     * @param cost          The Viterbi cost
+     * @param start         The start of the character range within the
+     *                      underlying sentence
+     * @param length        The length of the character range within the
+     *                      underlying sentence
+     * @param morpheme      The morpheme data
+     */
+    public Token(char[] buffer, int surfaceOffset, int cost, int start, int length, Morpheme morpheme) {
+        this.surfaceBuffer = buffer;
+        this.surfaceOffset = surfaceOffset;
+        this.cost = cost;
+        this.start = start;
+        this.length = length;
+        this.morpheme = morpheme;
+    }
+
     /**
      * Creates a Token with explicit parameters
      *
@@ -112,9 +112,25 @@ public abstract class Tokenizer {
      * @return The new "unknown morpheme" {@link Node}
      */
     public Node getUnknownNode(char[] surface, int start, int length, int span) {
+        return getUnknownNode(unknownCToken, start, length, span);
+    }
+
+    /**
+     * Creates an "unknown morpheme" {@link Node} with the specified
+     * characteristics, taking its cost attributes from the given
+     * {@link CToken}
+     *
+     * @param ctoken The unknown-morpheme {@link CToken} to use
+     * @param start  The index of the first character of the surface within the
+     *               {@link Node}
+     * @param length The length of the {@link Node}
+     * @param span   The span of the {@link Node}
+     * @return The new "unknown morpheme" {@link Node}
+     */
+    protected Node getUnknownNode(CToken ctoken, int start, int length, int span) {
         Node unknownNode = new Node();
 
-        unknownNode.setCToken(unknownCToken);
+        unknownNode.setCToken(ctoken);
         unknownNode.start = start;
         unknownNode.length = length;
         unknownNode.span = span;
@@ -125,6 +141,63 @@ public abstract class Tokenizer {
 
     private final Morpheme unknownMorpheme;
 
+    /**
+     * Adds an "unknown morpheme" entry with the specified characteristics to
+     * a {@link Lattice}
+     *
+     * @param lattice The lattice to add to
+     * @param start   The index of the first character of the surface within the
+     *                entry
+     * @param length  The length of the entry
+     * @param span    The span of the entry
+     * @return The index of the new entry
+     */
+    public int addUnknownEntry(Lattice lattice, int start, int length, int span) {
+        return addUnknownEntry(lattice, unknownCToken, start, length, span);
+    }
+
+    /**
+     * Adds an "unknown morpheme" entry with the specified characteristics to
+     * a {@link Lattice}, taking its cost attributes from the given
+     * {@link CToken}
+     *
+     * @param lattice The lattice to add to
+     * @param ctoken  The unknown-morpheme {@link CToken} to use
+     * @param start   The index of the first character of the surface within the
+     *                entry
+     * @param length  The length of the entry
+     * @param span    The span of the entry
+     * @return The index of the new entry
+     */
+    protected int addUnknownEntry(Lattice lattice, CToken ctoken, int start, int length, int span) {
+        return lattice.add(ctoken, start, length, span, unknownMorpheme);
+    }
+
+    /**
+     * Prepares to search for possible morphemes within a new sentence. This is
+     * called before the first lookup in each sentence, and allows subclasses to
+     * precompute information about the whole surface. The default
+     * implementation does nothing
+     *
+     * @param surface The underlying character surface of the sentence
+     */
+    public void startSentence(char[] surface) {
+        startSentence(surface, 0, surface.length);
+    }
+
+    /**
+     * Prepares to search for possible morphemes within a new sentence that
+     * occupies a window of a larger buffer. Positions within the sentence are
+     * relative to the start of the window. The default implementation does
+     * nothing
+     *
+     * @param buffer The buffer containing the sentence
+     * @param offset The index of the first character of the sentence
+     * @param length The length of the sentence
+     */
+    public void startSentence(char[] buffer, int offset, int length) {
+    }
+
     /**
      * Searches for possible morphemes from the given SentenceIterator. The
      * {@link Node} that is returned links through
@@ -132,13 +205,69 @@ public abstract class Tokenizer {
      * lengths
      *
      * @param iterator The iterator to search from
-     * @param surface  The underlying character surface
+     * @param surface  The underlying character surface, as passed to
+     *                 {@link #startSentence(char[], int, int)}
      * @return The head of a chain of {@link Node}s representing the possible
      * morphemes beginning at the given index
      * @throws IOException
      */
     public abstract Node lookup(SentenceIterator iterator, char[] surface) throws IOException;
 
+    /**
+     * Searches for possible morphemes from the given SentenceIterator, adding
+     * them to a {@link Lattice}. The entries are added consecutively, in the
+     * same order as the chain of {@link Node}s returned by
+     * {@link #lookup(SentenceIterator, char[])}
+     * <p>
+     * The default implementation copies the result of
+     * {@link #lookup(SentenceIterator, char[])}; subclasses should override it
+     * to avoid creating the intermediate {@link Node}s
+     *
+     * @param iterator The iterator to search from
+     * @param surface  The underlying character surface
+     * @param lattice  The lattice to add the possible morphemes to
+     * @return The number of entries added
+     * @throws IOException
+     */
+    public int lookup(SentenceIterator iterator, char[] surface, Lattice lattice) throws IOException {
+        int count = 0;
+        for (Node node = lookup(iterator, surface); node != null; node = node.rnext) {
+            lattice.add(node);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds a single morpheme from the origin of the given SentenceIterator
+     * without searching the {@link Dictionary}, for the cheap segmentation
+     * used when an analysis exceeds its {@link Budget}. This may be called
+     * without {@link #startSentence(char[], int, int)}. The default
+     * implementation returns an unknown morpheme of one character
+     *
+     * @param iterator The iterator to search from
+     * @param surface  The underlying character surface
+     * @return An unknown-morpheme {@link Node}
+     */
+    public Node getFallbackNode(SentenceIterator iterator, char[] surface) {
+        return getUnknownNode(surface, iterator.origin(), 1, 1 + iterator.skippedCharCount());
+    }
+
+    /**
+     * Returns the number of characters from an origin that a lookup may depend
+     * on, other than a run of characters that is synthesized as a single
+     * unknown morpheme. A lookup from an origin at least this far before the
+     * end of a sentence gives the same result however the sentence continues.
+     * The default implementation returns the length of the longest morpheme in
+     * the {@link Dictionary}
+     *
+     * @return The number of characters
+     */
+    public int getLookahead() {
+        return dictionary.getMaxTokenLength();
+    }
+
     /**
      * Constructs a new {@link Tokenizer} that uses the specified
      * {@link Dictionary} to find possible morphemes within a given string
@@ -158,7 +287,7 @@ public abstract class Tokenizer {
         this.eosNode.setCToken(this.dictionary.getEOSToken());
 
         this.unknownCToken = this.dictionary.getUnknownToken();
-        this.unknownCToken.cost = 30000;
+        this.unknownCToken.cost = UnknownWordModel.DEFAULT_COST;
 
         this.unknownMorpheme = new Morpheme(unknownPartOfSpeechDescription, null, null, "*", new String[0], new String[0], null);
 
@@ -0,0 +1,276 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * A model of how unknown words are synthesized, in the manner of MeCab's
+ * char.def. Every <code>char</code> belongs to one character category, and
+ * each category defines:
+ * <ul>
+ *   <li><b>invoke</b> - whether unknown words are synthesized even where the
+ *       dictionary has matches
+ *   <li><b>group</b> - whether an unknown word covering the whole run of
+ *       characters of the category is synthesized
+ *   <li><b>length</b> - the number of additional unknown words, of lengths
+ *       1 to <code>length</code> within the run, that are synthesized
+ *   <li><b>cost</b> - the dictionary cost of the synthesized words
+ * </ul>
+ * A category that neither groups nor has a length synthesizes a single
+ * character word, so that analysis can always proceed.
+ * <p>
+ * The compiled form (unknown.sen) is written by {@link #write(DataOutput)}
+ * and read by {@link #read(DataInput)}.
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are immutable, and may be
+ * shared between threads.
+ */
+public final class UnknownWordModel {
+
+    /** The dictionary cost of unknown words when none is specified */
+    public static final short DEFAULT_COST = 30000;
+
+    /** The maximum number of categories */
+    public static final int MAX_CATEGORIES = 256;
+
+    /** Identifies the compiled file format */
+    private static final int MAGIC = 0x554e4b31; // "UNK1"
+
+    /** The category names */
+    private final String[] names;
+
+    /** Whether each category is always invoked */
+    private final boolean[] invoke;
+
+    /** Whether each category groups runs of characters */
+    private final boolean[] group;
+
+    /** The number of additional fixed length words for each category */
+    private final int[] length;
+
+    /** The dictionary cost of each category's words */
+    private final short[] cost;
+
+    /** The category of every <code>char</code>, indexed by the char */
+    private final byte[] categories;
+
+    /**
+     * Returns the number of categories
+     *
+     * @return The number of categories
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the index of the named category
+     *
+     * @param name The category name
+     * @return The index, or <code>-1</code> if there is no such category
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param category The category index
+     * @return The category's name
+     */
+    public String getName(int category) {
+        return names[category];
+    }
+
+    /**
+     * @param category The category index
+     * @return <code>true</code> if unknown words are synthesized even where
+     * the dictionary has matches
+     */
+    public boolean isInvoke(int category) {
+        return invoke[category];
+    }
+
+    /**
+     * @param category The category index
+     * @return <code>true</code> if runs of characters of the category are grouped
+     */
+    public boolean isGroup(int category) {
+        return group[category];
+    }
+
+    /**
+     * @param category The category index
+     * @return The number of additional fixed length words
+     */
+    public int getLength(int category) {
+        return length[category];
+    }
+
+    /**
+     * @param category The category index
+     * @return The dictionary cost of the category's words
+     */
+    public short getCost(int category) {
+        return cost[category];
+    }
+
+    /**
+     * Returns the category of a character
+     *
+     * @param c The character
+     * @return The category index
+     */
+    public int getCategory(char c) {
+        return categories[c] & 0xFF;
+    }
+
+    /**
+     * Writes the category of each character of a surface into an array. The
+     * stored bytes must be masked with <code>0xFF</code> to recover the index
+     *
+     * @param surface The characters
+     * @param result  The array to write to, at least as long as the surface
+     */
+    public void getCategories(char[] surface, byte[] result) {
+        getCategories(surface, 0, surface.length, result);
+    }
+
+    /**
+     * Writes the category of each character of a window of a buffer into an
+     * array, starting at index 0. The stored bytes must be masked with
+     * <code>0xFF</code> to recover the index
+     *
+     * @param buffer The characters
+     * @param offset The index of the first character of the window
+     * @param length The length of the window
+     * @param result The array to write to, at least <code>length</code> long
+     */
+    public void getCategories(char[] buffer, int offset, int length, byte[] result) {
+        for (int i = 0; i < length; i++) {
+            result[i] = categories[buffer[offset + i]];
+        }
+    }
+
+    /**
+     * Writes the model in its compiled form
+     *
+     * @param output The output to write to
+     * @throws IOException
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeShort(names.length);
+        for (int i = 0; i < names.length; i++) {
+            output.writeUTF(names[i]);
+            output.writeBoolean(invoke[i]);
+            output.writeBoolean(group[i]);
+            output.writeShort(length[i]);
+            output.writeShort(cost[i]);
+        }
+        output.write(categories);
+    }
+
+    /**
+     * Reads a model in its compiled form
+     *
+     * @param input The input to read from
+     * @return The model
+     * @throws IOException
+     */
+    public static UnknownWordModel read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an unknown word model file");
+        }
+
+        int size = input.readShort();
+        String[] names = new String[size];
+        boolean[] invoke = new boolean[size];
+        boolean[] group = new boolean[size];
+        int[] length = new int[size];
+        short[] cost = new short[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = input.readUTF();
+            invoke[i] = input.readBoolean();
+            group[i] = input.readBoolean();
+            length[i] = input.readShort();
+            cost[i] = input.readShort();
+        }
+        byte[] categories = new byte[0x10000];
+        input.readFully(categories);
+
+        return new UnknownWordModel(names, invoke, group, length, cost, categories);
+    }
+
+    /**
+     * Creates a copy of this model with one category's behaviour replaced
+     *
+     * @param category The category index
+     * @param invoke   <code>true</code> if the category is always invoked
+     * @param group    <code>true</code> if the category groups runs of characters
+     * @param length   The number of additional fixed length words
+     * @return The new model
+     */
+    public UnknownWordModel withBehaviour(int category, boolean invoke, boolean group, int length) {
+        boolean[] newInvoke = this.invoke.clone();
+        boolean[] newGroup = this.group.clone();
+        int[] newLength = this.length.clone();
+        newInvoke[category] = invoke;
+        newGroup[category] = group;
+        newLength[category] = length;
+
+        return new UnknownWordModel(names, newInvoke, newGroup, newLength, cost, categories);
+    }
+
+    /**
+     * @param names      The category names
+     * @param invoke     Whether each category is always invoked
+     * @param group      Whether each category groups runs of characters
+     * @param length     The number of additional fixed length words for each category
+     * @param cost       The dictionary cost of each category's words
+     * @param categories The category index of every <code>char</code>
+     */
+    public UnknownWordModel(String[] names, boolean[] invoke, boolean[] group, int[] length, short[] cost, byte[] categories) {
+        if (names.length == 0 || names.length > MAX_CATEGORIES) {
+            throw new IllegalArgumentException("Expected 1 to " + MAX_CATEGORIES + " categories, but was " + names.length);
+        }
+        if (categories.length != 0x10000) {
+            throw new IllegalArgumentException("Expected a category for each of 65536 chars, but was " + categories.length);
+        }
+        for (byte category : categories) {
+            if ((category & 0xFF) >= names.length) {
+                throw new IllegalArgumentException("Undefined category index " + (category & 0xFF));
+            }
+        }
+
+        this.names = names;
+        this.invoke = invoke;
+        this.group = group;
+        this.length = length;
+        this.cost = cost;
+        this.categories = categories;
+    }
+}
@@ -23,6 +23,8 @@ package net.java.sen.dictionary;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -30,6 +32,20 @@ import java.util.List;
  * An implementation of the Viterbi algorithm used to find the most likely
  * sequence of morphemes comprising a sentence
  *
+ * <p>A sentence that is too long to hold at once may instead be analysed in
+ * parts, using {@link #getSettledTokens(Sentence, boolean, List)}. At the end
+ * of each part, the best path is settled up to the last {@link Node} that
+ * every path passes through, and the Nodes after it are carried into the
+ * next part with their positions moved to the start of it. The settled part
+ * of the lattice is dropped, and the arrays that index the lattice are reused
+ * from part to part, so the memory used is bounded by the length of the
+ * longest part the caller gives rather than by the length of the sentence
+ *
+ * <p>If a {@link Beam} is given, the Nodes ending at each position are pruned
+ * to the cheapest before they are joined to the Nodes that follow them. If a
+ * {@link Budget} is given, a sentence that exceeds it is segmented by
+ * character class instead
+ *
  * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
  * should not be accessed simultaneously by multiple threads. Note that creating
  * additional instances using {@link net.java.sen.SenFactory} is relatively
@@ -53,10 +69,245 @@ public class Viterbi {
     private Node eosNode;
 
     /**
-     * An array of linked lists of possible morphemes ending at a given position
+     * An array of linked lists of possible morphemes ending at a given position.
+     * Reused from sentence to sentence
      */
     private Node[] endNodeList;
 
+    /**
+     * The number of positions of {@link #endNodeList} used by the current
+     * sentence
+     */
+    private int endNodeLength;
+
+    /**
+     * The reusable primitive lattice, or <code>null</code> if the lattice is
+     * built from {@link Node}s
+     */
+    private final Lattice lattice;
+
+    /**
+     * The last settled Node of a sentence being analysed in parts, or
+     * <code>null</code>
+     */
+    private Node continuation;
+
+    /**
+     * The lists of Nodes ending at each position from the end of
+     * {@link #continuation}, which are carried into the next part of the
+     * sentence. Reused from part to part
+     */
+    private Node[] carriedNodeList;
+
+    /**
+     * The number of positions of {@link #carriedNodeList} in use
+     */
+    private int carriedLength;
+
+    /**
+     * The position in the next part of the sentence from which lookups have
+     * not yet been made
+     */
+    private int resumePosition;
+
+    /**
+     * The number of characters covered by the Tokens returned by the last
+     * call to {@link #getSettledTokens(Sentence, boolean, List)}
+     */
+    private int settledLength;
+
+    /**
+     * The last Node of the best path that has been converted to Tokens
+     */
+    private Node settledNode;
+
+    /**
+     * The position at which {@link #settledNode} ends
+     */
+    private int settledPosition;
+
+    /**
+     * The beam search settings, or <code>null</code> to search exhaustively
+     */
+    private final Beam beam;
+
+    /**
+     * <code>true</code> while a sentence is analysed without pruning to check
+     * the result of the beam search
+     */
+    private boolean exact;
+
+    /**
+     * <code>true</code> if Nodes have been pruned from the current sentence
+     */
+    private boolean pruned;
+
+    /**
+     * The limits on the work done, or <code>null</code> for none
+     */
+    private final Budget budget;
+
+    /**
+     * <code>true</code> if the current document has a time limit
+     */
+    private boolean timeLimited;
+
+    /**
+     * The time by which the current document must be analysed, as given by
+     * {@link System#nanoTime()}
+     */
+    private long deadline;
+
+    /**
+     * <code>true</code> once the current document has exceeded its time limit
+     */
+    private boolean timedOut;
+
+    /**
+     * The number of Nodes joined to the lattice of the current sentence
+     */
+    private int nodeCount;
+
+    /**
+     * <code>true</code> if the current sentence was segmented by character
+     * class
+     */
+    private boolean fellBack;
+
+    /**
+     * Scratch space for the path costs of the Nodes at a position
+     */
+    private int[] beamCosts = new int[16];
+
+    /**
+     * The number of Nodes at the cutoff cost returned by
+     * {@link #pruneCutoff(int)} that may be kept
+     */
+    private int pruneTies;
+
+    /**
+     * Finds the highest path cost kept by the beam, given the path costs of
+     * the Nodes at a position in {@link #beamCosts}. Nodes costing less than
+     * the cutoff are kept, as are the first {@link #pruneTies} Nodes costing
+     * the same as it
+     *
+     * @param count The number of path costs
+     * @return The cutoff cost
+     */
+    private int pruneCutoff(int count) {
+        int[] costs = beamCosts;
+        Arrays.sort(costs, 0, count);
+
+        int cutoff = (beam.getThreshold() == 0) ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (long) costs[0] + beam.getThreshold());
+        pruneTies = Integer.MAX_VALUE;
+        int width = beam.getWidth();
+        if ((width != 0) && (count > width) && (costs[width - 1] <= cutoff)) {
+            cutoff = costs[width - 1];
+            int first = width - 1;
+            while ((first > 0) && (costs[first - 1] == cutoff)) {
+                first--;
+            }
+            pruneTies = width - first;
+        }
+
+        return cutoff;
+    }
+
+    /**
+     * Prunes the Nodes ending at a position to those kept by the beam,
+     * keeping their order
+     *
+     * @param position The position
+     */
+    private void prune(int position) {
+        int count = 0;
+        for (Node node = endNodeList[position]; node != null; node = node.lnext) {
+            if (count == beamCosts.length) {
+                beamCosts = Arrays.copyOf(beamCosts, count * 2);
+            }
+            beamCosts[count++] = node.cost;
+        }
+        if (count < 2) {
+            return;
+        }
+
+        int cutoff = pruneCutoff(count);
+        int ties = pruneTies;
+        Node last = null;
+        for (Node node = endNodeList[position]; node != null; node = node.lnext) {
+            if ((node.cost < cutoff) || ((node.cost == cutoff) && (ties-- > 0))) {
+                if (last == null) {
+                    endNodeList[position] = node;
+                } else {
+                    last.lnext = node;
+                }
+                last = node;
+            } else {
+                pruned = true;
+            }
+        }
+        last.lnext = null;
+    }
+
+    /**
+     * Prunes the {@link Lattice} entries ending at a position to those kept by
+     * the beam, keeping their order
+     *
+     * @param position The position
+     */
+    private void pruneLattice(int position) {
+        Lattice lattice = this.lattice;
+        int count = 0;
+        for (int l = lattice.endList[position]; l != -1; l = lattice.lnext[l]) {
+            if (count == beamCosts.length) {
+                beamCosts = Arrays.copyOf(beamCosts, count * 2);
+            }
+            beamCosts[count++] = lattice.cost[l];
+        }
+        if (count < 2) {
+            return;
+        }
+
+        int cutoff = pruneCutoff(count);
+        int ties = pruneTies;
+        int last = -1;
+        for (int l = lattice.endList[position]; l != -1; l = lattice.lnext[l]) {
+            int cost = lattice.cost[l];
+            if ((cost < cutoff) || ((cost == cutoff) && (ties-- > 0))) {
+                if (last == -1) {
+                    lattice.endList[position] = l;
+                } else {
+                    lattice.lnext[last] = l;
+                }
+                last = l;
+            } else {
+                pruned = true;
+            }
+        }
+        lattice.lnext[last] = -1;
+    }
+
+    /**
+     * Returns an iterator whose origin is the end of a Node with a second
+     * order attribute, from which the Nodes that follow it are looked up. The
+     * lookup is only made where the iterator would arrive by counting one
+     * origin for each position from the start of the sentence, stopping at
+     * the last origin, so the origin must be at its own index or be the last
+     *
+     * @param sentence The sentence
+     * @param position The position to look up from
+     * @return The iterator, or <code>null</code> if no lookup is made
+     */
+    private static SentenceIterator iteratorAt(Sentence sentence, int position) {
+        if ((position >= sentence.getLeadingOriginCount()) && (position != sentence.getLastOrigin())) {
+            return null;
+        }
+
+        SentenceIterator iterator = sentence.iterator();
+        iterator.seekOrigin(position);
+        return iterator;
+    }
+
     /**
      * Calculates the best connection for each of a linked list of Nodes
      *
@@ -64,59 +315,168 @@ public class Viterbi {
      * @param limit    One greater than the last index of the sentence
      * @param rNode    The head of the linked list of Nodes
      * @param sentence The original sentence
+     * @return The furthest position at which a Node was joined to the lattice
      */
-    private void calculateConnectionCosts(int position, int limit, Node rNode, Sentence sentence) throws IOException {
-        for (; rNode != null; rNode = rNode.rnext) {
-            int bestCost = Integer.MAX_VALUE;
-            Node bestNode = null;
-
-            for (Node lNode = endNodeList[position]; lNode != null; lNode = lNode.lnext) {
-                int cost = lNode.cost + tokenizer.getDictionary().getCost(lNode.prev, lNode, rNode);
-                if (cost <= bestCost) {
-                    bestNode = lNode;
-                    bestCost = cost;
+    private int calculateConnectionCosts(int position, int limit, Node rNode, Sentence sentence) throws IOException {
+        ConnectionCosts connectionCosts = tokenizer.getDictionary().getConnectionCosts();
+        int end = position;
+
+        if ((beam != null) && !exact) {
+            prune(position);
+        }
+
+        for (Node node = rNode; node != null; node = node.rnext) {
+            node.prev = null;
+            node.cost = Integer.MAX_VALUE;
+        }
+
+        // Resolve each left Node's row of the cost matrix once, and offer it
+        // to every right Node. Left Nodes are visited in the same order for
+        // each right Node, so ties are broken as before
+        for (Node lNode = endNodeList[position]; lNode != null; lNode = lNode.lnext) {
+            int row = connectionCosts.row(lNode.prev.rcAttr2, lNode.rcAttr1);
+            for (Node node = rNode; node != null; node = node.rnext) {
+                int cost = lNode.cost + connectionCosts.get(row, node.lcAttr) + node.dictionaryCost;
+                if (cost <= node.cost) {
+                    node.prev = lNode;
+                    node.cost = cost;
                 }
             }
+        }
 
-            rNode.prev = bestNode;
-            rNode.cost = bestCost;
+        for (; rNode != null; rNode = rNode.rnext) {
             int x = position + rNode.span;
+            nodeCount++;
 
             rNode.lnext = endNodeList[x];
             endNodeList[x] = rNode;
+            end = Math.max(end, x);
 
             if (rNode.rcAttr2 != 0) {
-                SentenceIterator it = sentence.iterator();
                 int pos2 = rNode.span + position;
                 if (pos2 == limit) {
                     continue;
                 }
-                //winding to pos2
-                int pos3 = 0;
-                for (int i = 0; i <= pos2; i++) {
-                    if (it.hasNextOrigin()) {
-                        pos3 = it.nextOrigin();
-                    }
-                }
-                // safety check
-                if (pos2 != pos3) {
+                SentenceIterator it = iteratorAt(sentence, pos2);
+                if (it == null) {
                     continue;
                 }
-                Node rNode2 = lookup(it, sentence.getCharacters(), sentence.getReadingConstraint(pos2));
+                int row = connectionCosts.row(rNode.prev.rcAttr2, rNode.rcAttr1);
+                Node rNode2 = lookup(it, sentence.getBuffer(), sentence.getReadingConstraint(pos2));
                 for (; rNode2 != null; rNode2 = rNode2.rnext) {
                     rNode2 = rNode2.clone();
-                    rNode2.cost = rNode.cost + tokenizer.getDictionary().getCost(rNode.prev, rNode, rNode2);
+                    rNode2.cost = rNode.cost + connectionCosts.get(row, rNode2.lcAttr) + rNode2.dictionaryCost;
                     rNode2.prev = rNode;
 
                     int y = pos2 + rNode2.span;
 
                     rNode2.lnext = endNodeList[y];
                     endNodeList[y] = rNode2;
+                    end = Math.max(end, y);
+                    nodeCount++;
+                }
+            }
+
+
+        }
+
+        return end;
+    }
+
+    /**
+     * Returns the position at which a Node ends
+     *
+     * @param node The Node, which is {@link #settledNode} or follows it
+     * @return The position
+     */
+    private int endOf(Node node) {
+        return (node == settledNode) ? settledPosition : node.start + node.length;
+    }
+
+    /**
+     * Finds the last Node ending no later than a given position that every
+     * path to the Nodes ending from that position onwards passes through
+     *
+     * @param position The position
+     * @param end      The last position at which a Node ends
+     * @return The common Node, which is {@link #settledNode} if the paths
+     * only meet there
+     */
+    private Node findCommonNode(int position, int end) {
+        Node common = null;
+        int commonEnd = 0;
+        for (int x = position; x <= end; x++) {
+            for (Node node = endNodeList[x]; node != null; node = node.lnext) {
+                if (common == null) {
+                    common = node;
+                    commonEnd = x;
+                    continue;
+                }
+
+                // Step back along whichever path ends later, or both
+                Node other = node;
+                int otherEnd = x;
+                while (other != common) {
+                    int lastOtherEnd = otherEnd;
+                    if (otherEnd >= commonEnd) {
+                        other = other.prev;
+                        otherEnd = endOf(other);
+                    }
+                    if (commonEnd >= lastOtherEnd) {
+                        common = common.prev;
+                        commonEnd = endOf(common);
+                    }
+                }
+                if (common == settledNode) {
+                    return common;
                 }
             }
+        }
+
+        if (common == null) {
+            return settledNode;
+        }
+        while (endOf(common) > position) {
+            common = common.prev;
+        }
+
+        return common;
+    }
 
+    /**
+     * Converts the best path up to a Node to Tokens. Only the right-context of
+     * the previous Node of <code>to</code> is needed once the path is settled,
+     * so the path is detached from the Nodes before it, and the part of the
+     * lattice that ends before <code>to</code> is discarded
+     *
+     * @param to        The last Node to convert, which follows
+     *                  {@link #settledNode}
+     * @param surface   The underlying character array
+     * @param offset    The index of the sentence's first character within the
+     *                  array
+     * @param tokenList The list to add the Tokens to
+     */
+    private void settle(Node to, char[] surface, int offset, List<Token> tokenList) {
+        Node from = settledNode;
+        int position = endOf(to);
 
+        // Working backwards, make the forward connections along the path
+        for (Node node = to, prevNode; node != from; node = prevNode) {
+            prevNode = node.prev;
+            prevNode.next = node;
         }
+
+        for (Node node = from.next; ; node = node.next) {
+            tokenList.add(new Token(surface, offset + node.start, node.cost, node.start, node.length, getMorpheme(node)));
+            if (node == to) {
+                break;
+            }
+        }
+
+        to.prev.prev = null;
+        Arrays.fill(endNodeList, settledPosition, position, null);
+        settledNode = to;
+        settledPosition = position;
     }
 
     /**
@@ -140,7 +500,7 @@ public class Viterbi {
         Node filteredResultNode = null;
         Node lastNode = null;
         for (Node node = resultNode; node != null; node = node.rnext) {
-            if ((node.length == constraint.length) && (node.morpheme.getReadings().contains(constraint.text))) {
+            if ((node.length == constraint.length) && (getMorpheme(node).getReadings().contains(constraint.text))) {
                 if (filteredResultNode == null) {
                     filteredResultNode = node;
                 } else {
@@ -163,6 +523,116 @@ public class Viterbi {
         return unknownNode;
     }
 
+    /**
+     * Determines whether the current sentence has exceeded the budget, and
+     * counts it if so
+     *
+     * @param nodes The number of Nodes in the lattice
+     * @return <code>true</code> if the sentence is over budget
+     */
+    private boolean isOverBudget(int nodes) {
+        if ((budget == null) || exact) {
+            return false;
+        }
+        if (timedOut) {
+            return true;
+        }
+
+        if ((budget.getMaxNodes() != 0) && (nodes > budget.getMaxNodes())) {
+            budget.countNodeOverrun();
+            return true;
+        }
+        if (timeLimited && (System.nanoTime() - deadline > 0)) {
+            timedOut = true;
+            budget.countTimeOverrun();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Abandons the analysis of a sentence that has exceeded the budget, and
+     * segments the whole of it by character class instead
+     *
+     * @param sentence  The sentence
+     * @param tokenList The list to return the morphemes in
+     * @return The fallback morphemes
+     * @throws IOException
+     */
+    private List<Token> fallBack(Sentence sentence, List<Token> tokenList) throws IOException {
+        budget.countFallback();
+        fellBack = true;
+        discardCarriedNodes();
+        settledLength = sentence.getLength();
+        settledNode = null;
+
+        return getFallbackTokens(sentence, tokenList);
+    }
+
+    /**
+     * Segments a sentence into runs of characters of the same class, without
+     * searching the dictionary. Any reading constraints on the Sentence are
+     * ignored
+     *
+     * @param sentence The sentence to segment
+     * @param reuse    The list to return the morphemes in
+     * @return The morphemes, each marked with {@link Token#isFallback()}
+     * @throws IOException
+     * @see Tokenizer#getFallbackNode(SentenceIterator, char[])
+     */
+    public List<Token> getFallbackTokens(Sentence sentence, List<Token> reuse) throws IOException {
+        SentenceIterator iterator = sentence.iterator();
+        char[] surface = sentence.getBuffer();
+        int offset = sentence.getOffset();
+
+        List<Token> tokenList = reuse;
+        tokenList.clear();
+        int end = 0;
+        int cost = 0;
+        while (iterator.hasNextOrigin()) {
+            int position = iterator.nextOrigin();
+            if (position - iterator.skippedCharCount() != end) {
+                continue;
+            }
+
+            Node node = tokenizer.getFallbackNode(iterator, surface);
+            cost += node.dictionaryCost;
+            Token token = new Token(surface, offset + node.start, cost, node.start, node.length, node.morpheme);
+            token.setFallback(true);
+            tokenList.add(token);
+            end = node.start + node.length;
+        }
+
+        return tokenList;
+    }
+
+    /**
+     * Starts a new document. If the {@link Budget} has a time limit, each
+     * sentence analysed after it has passed from this call is segmented by
+     * character class, until the next call
+     */
+    public void startDocument() {
+        startDocument(System.nanoTime());
+    }
+
+    /**
+     * Starts a new document, or continues one whose analysis is shared with
+     * other Viterbi instances, measuring the time limit of the {@link Budget}
+     * from the given time
+     *
+     * @param startTime The time the document was started, as given by
+     *                  {@link System#nanoTime()}
+     * @see #startDocument()
+     */
+    public void startDocument(long startTime) {
+        timedOut = false;
+        timeLimited = (budget != null) && (budget.getMaxMillis() != 0);
+        if (timeLimited) {
+            deadline = startTime + budget.getMaxMillis() * 1000000L;
+        }
+    }
+
     /**
      * Gets the possible tokens from a Sentence at a given position. Any reading
      * constraints on the Sentence are ignored
@@ -173,12 +643,15 @@ public class Viterbi {
      * @throws IOException
      */
     public List<Token> getPossibleTokens(Sentence sentence, int position) throws IOException {
-        Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), sentence.getCharacters());
+        char[] surface = sentence.getBuffer();
+        int offset = sentence.getOffset();
+        tokenizer.startSentence(surface, offset, sentence.getLength());
+        Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), surface);
 
-        String sentenceString = new String(sentence.getCharacters());
         List<Token> tokenList = new ArrayList<>();
         while (resultNode != null) {
-            Token token = new Token(sentenceString, resultNode);
+            Token token = new Token(surface, offset + resultNode.start, resultNode.cost, resultNode.start, resultNode.length,
+                    getMorpheme(resultNode));
             tokenList.add(token);
             resultNode = resultNode.rnext;
         }
@@ -194,16 +667,69 @@ public class Viterbi {
      * @throws IOException
      */
     public List<Token> getBestTokens(Sentence sentence, List<Token> reuse) throws IOException {
+        reset();
+
+        if (beam == null) {
+            return analyze(sentence, reuse);
+        }
+
+        pruned = false;
+        List<Token> tokenList = analyze(sentence, reuse);
+        if (beam.count(pruned && !fellBack)) {
+            exact = true;
+            try {
+                if (!isSamePath(tokenList, analyze(sentence, new ArrayList<>()))) {
+                    beam.countChangedSample();
+                }
+            } finally {
+                exact = false;
+            }
+        }
+
+        return tokenList;
+    }
+
+    /**
+     * Analyses a whole sentence using whichever lattice is configured
+     *
+     * @param sentence The sentence to analyse
+     * @param reuse    The list to return the morphemes in
+     * @return The most likely list of morphemes
+     * @throws IOException
+     */
+    private List<Token> analyze(Sentence sentence, List<Token> reuse) throws IOException {
+        if (lattice != null) {
+            return getBestTokensFromLattice(sentence, reuse);
+        }
+
+        return getBestTokensFromNodes(sentence, reuse);
+    }
+
+    /**
+     * Analyses a whole sentence using the {@link Node} lattice
+     *
+     * @param sentence The sentence to analyse
+     * @param reuse    The list to return the morphemes in
+     * @return The most likely list of morphemes
+     * @throws IOException
+     */
+    private List<Token> getBestTokensFromNodes(Sentence sentence, List<Token> reuse) throws IOException {
         SentenceIterator iterator = sentence.iterator();
         int length = iterator.length();
-        char[] surface = sentence.getCharacters();
+        char[] surface = sentence.getBuffer();
+        int offset = sentence.getOffset();
+        fellBack = false;
+        nodeCount = 0;
+        if (isOverBudget(0)) {
+            return fallBack(sentence, reuse);
+        }
+        tokenizer.startSentence(surface, offset, length);
 
         // Initialize the Viterbi lattice
         bosNode = tokenizer.getBOSNode();
         eosNode = tokenizer.getEOSNode();
-        endNodeList = new Node[length + 1];
+        clearEndNodeList(length);
         endNodeList[0] = bosNode;
-        endNodeList[length] = null;
 
         // Look up potential morphemes at each position in the sentence, and
         // join them to the lattice
@@ -215,6 +741,9 @@ public class Viterbi {
                 if (rNode != null) {
                     calculateConnectionCosts(base, length, rNode, sentence);
                 }
+                if (isOverBudget(nodeCount)) {
+                    return fallBack(sentence, reuse);
+                }
             }
         }
 
@@ -239,12 +768,11 @@ public class Viterbi {
         }
 
         // Convert to Token list
-        String sentenceString = new String(sentence.getCharacters());
         List<Token> tokenList = reuse;
         tokenList.clear();
         node = bosNode.next;
         while ((node != null) && (node.next != null)) {
-            Token token = new Token(sentenceString, node);
+            Token token = new Token(surface, offset + node.start, node.cost, node.start, node.length, getMorpheme(node));
             tokenList.add(token);
             node = node.next;
         }
@@ -252,18 +780,530 @@ public class Viterbi {
         return tokenList;
     }
 
+    /**
+     * Determines whether two analyses of a sentence found the same path
+     *
+     * @param tokens The Tokens of one analysis
+     * @param other  The Tokens of the other analysis
+     * @return <code>true</code> if the Tokens have the same positions, lengths
+     * and costs
+     */
+    private static boolean isSamePath(List<Token> tokens, List<Token> other) {
+        if (tokens.size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            Token otherToken = other.get(i);
+            if ((token.getStart() != otherToken.getStart()) || (token.getLength() != otherToken.getLength())
+                    || (token.getCost() != otherToken.getCost())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Analyses part of a sentence, continuing from the settled part of a
+     * sentence previously given to this method with <code>complete</code>
+     * <code>false</code>, if there is one. The part of the sentence that is
+     * not settled must be given again, followed by at least one further
+     * character, at the start of the next call. A part that is settled is
+     * analysed identically however the sentence continues. Sentences analysed
+     * in parts always use the {@link Node} lattice
+     * <p>
+     * Nothing is settled while the lattice of a part is built. When
+     * <code>complete</code> is <code>false</code>, the path is settled at the
+     * end of the part as far as it is common to every Node carried into the
+     * next part; otherwise the whole of the best path is settled
+     *
+     * @param sentence The characters of the sentence from the end of its
+     *                 settled part
+     * @param complete If <code>true</code>, the sentence ends with the given
+     *                 characters, and all of them are settled
+     * @param reuse    The list to return the morphemes in
+     * @return The most likely list of morphemes for the characters settled by
+     * this call, which are counted by {@link #getSettledLength()}
+     * @throws IOException
+     */
+    public List<Token> getSettledTokens(Sentence sentence, boolean complete, List<Token> reuse) throws IOException {
+        SentenceIterator iterator = sentence.iterator();
+        int length = iterator.length();
+        char[] surface = sentence.getBuffer();
+        int offset = sentence.getOffset();
+
+        List<Token> tokenList = reuse;
+        tokenList.clear();
+        if (continuation == null) {
+            pruned = false;
+        }
+        fellBack = false;
+        nodeCount = 0;
+        if (isOverBudget(0)) {
+            return fallBackPart(sentence, tokenList);
+        }
+        tokenizer.startSentence(surface, offset, length);
+
+        // Nodes found from beyond this position, and the Nodes that follow
+        // them, may change when the sentence is continued
+        int lookupLimit = complete ? length : length - 2 * tokenizer.getLookahead();
+        int cut;
+        int end;
+        while (true) {
+            // Initialize the Viterbi lattice, from the Nodes carried over if
+            // the sentence is being continued
+            eosNode = tokenizer.getEOSNode();
+            clearEndNodeList(length);
+            end = 0;
+            int resume = 0;
+            if (continuation != null) {
+                bosNode = continuation;
+                System.arraycopy(carriedNodeList, 0, endNodeList, 0, carriedLength);
+                end = carriedLength - 1;
+                resume = resumePosition;
+            } else {
+                bosNode = tokenizer.getBOSNode();
+                endNodeList[0] = bosNode;
+            }
+            settledNode = bosNode;
+            settledPosition = 0;
+            int retryLimit = -1;
+            cut = -1;
+
+            // Look up potential morphemes at each position in the sentence,
+            // and join them to the lattice
+            while (iterator.hasNextOrigin()) {
+                int position = iterator.nextOrigin();
+                if (position < resume) {
+                    continue;
+                }
+                int base = position - iterator.skippedCharCount();
+                if (position > lookupLimit) {
+                    cut = base;
+                    break;
+                }
+                cut = position + 1;
+
+                if (endNodeList[base] != null) {
+                    Node rNode = lookup(iterator, surface, sentence.getReadingConstraint(position));
+                    if (rNode != null) {
+                        end = Math.max(end, calculateConnectionCosts(base, length, rNode, sentence));
+                    }
+                    if (isOverBudget(nodeCount)) {
+                        return fallBackPart(sentence, tokenList);
+                    }
+                }
+
+                // A Node ending at the end of a continued sentence may be cut
+                // short. Start again, stopping before the lookup that found it
+                if (!complete && (end == length)) {
+                    retryLimit = position - 1;
+                    break;
+                }
+            }
+
+            if (retryLimit == -1) {
+                break;
+            }
+            lookupLimit = retryLimit;
+            iterator = sentence.iterator();
+        }
+
+        if (!complete) {
+            if ((cut != -1) && (cut <= end)) {
+                carry(cut, end, surface, offset, tokenList);
+            } else {
+                settledLength = 0;
+            }
+            settledNode = null;
+            return tokenList;
+        }
+
+        // Find the most likely connection from the last position where a
+        // morpheme ended to the end-of-string. If there were no morphemes, this
+        // will connect to the beginning-of-string node.
+        for (int position = length; position >= settledPosition; position--) {
+            if (endNodeList[position] != null) {
+                calculateConnectionCosts(position, length, eosNode, sentence);
+                // Once we have connected the end-of-string node, leave the loop.
+                break;
+            }
+        }
+
+        // Convert the rest of the most likely path to Tokens
+        if (eosNode.prev != settledNode) {
+            settle(eosNode.prev, surface, offset, tokenList);
+        }
+        discardCarriedNodes();
+        settledLength = length;
+        settledNode = null;
+        if (beam != null) {
+            beam.countUnchecked(pruned);
+        }
+
+        return tokenList;
+    }
+
+    /**
+     * Abandons the analysis of a sentence being analysed in parts that has
+     * exceeded the budget, segmenting the rest of the given part by character
+     * class, and counts the sentence as unpruned
+     *
+     * @param sentence  The part of the sentence
+     * @param tokenList The list to return the morphemes in
+     * @return The fallback morphemes
+     * @throws IOException
+     */
+    private List<Token> fallBackPart(Sentence sentence, List<Token> tokenList) throws IOException {
+        if (beam != null) {
+            beam.countUnchecked(false);
+        }
+
+        return fallBack(sentence, tokenList);
+    }
+
+    /**
+     * Settles the best path as far as it is common to every Node that later
+     * Nodes may join, and keeps those Nodes to carry into the next part of
+     * the sentence. The positions of the Nodes are moved to be relative to
+     * the end of the settled path
+     *
+     * @param position  The position from which later Nodes will be joined
+     * @param end       The last position at which a Node ends
+     * @param surface   The underlying character array
+     * @param offset    The index of the sentence's first character within the
+     *                  array
+     * @param tokenList The list to add the Tokens to
+     */
+    private void carry(int position, int end, char[] surface, int offset, List<Token> tokenList) {
+        Node common = findCommonNode(position, end);
+        if (common == settledNode) {
+            // Nothing more is settled, and the Nodes already carried still apply
+            settledLength = 0;
+            return;
+        }
+        settle(common, surface, offset, tokenList);
+
+        // Every Node after the settled path ends at the position of its list.
+        // A Node may also follow one that the beam has since pruned from its
+        // list, which only happens to the first Node of a second order pair
+        int shift = settledPosition;
+        for (int x = shift + 1; x <= end; x++) {
+            for (Node node = endNodeList[x]; node != null; node = node.lnext) {
+                node.start = x - shift - node.length;
+                int prevEnd = x - node.span;
+                if ((prevEnd > shift) && (node.prev != settledNode)) {
+                    node.prev.start = prevEnd - shift - node.prev.length;
+                }
+            }
+        }
+
+        int carried = end + 1 - shift;
+        if ((carriedNodeList == null) || (carriedNodeList.length < carried)) {
+            carriedNodeList = new Node[grow(carriedNodeList, carried)];
+        } else {
+            Arrays.fill(carriedNodeList, 0, carriedLength, null);
+        }
+        System.arraycopy(endNodeList, position, carriedNodeList, position - shift, end + 1 - position);
+        carriedLength = carried;
+        resumePosition = position - shift;
+        continuation = settledNode;
+        settledLength = shift;
+    }
+
+    /**
+     * Returns the number of characters covered by the Tokens returned by the
+     * last call to {@link #getSettledTokens(Sentence, boolean, List)}
+     *
+     * @return The number of characters
+     */
+    public int getSettledLength() {
+        return settledLength;
+    }
+
+    /**
+     * Discards the settled part of a sentence being analysed in parts, so
+     * that the next call to {@link #getSettledTokens(Sentence, boolean, List)}
+     * starts a new sentence
+     */
+    public void reset() {
+        discardCarriedNodes();
+    }
+
+    /**
+     * Discards the Nodes carried into the next part of a sentence, keeping
+     * {@link #carriedNodeList} for reuse
+     */
+    private void discardCarriedNodes() {
+        continuation = null;
+        if (carriedNodeList != null) {
+            Arrays.fill(carriedNodeList, 0, carriedLength, null);
+        }
+        carriedLength = 0;
+    }
+
+    /**
+     * Prepares {@link #endNodeList} for a sentence, or part of one, reusing
+     * the array if it is large enough
+     *
+     * @param length The length of the sentence
+     */
+    private void clearEndNodeList(int length) {
+        if ((endNodeList == null) || (endNodeList.length <= length)) {
+            endNodeList = new Node[grow(endNodeList, length + 1)];
+        } else {
+            Arrays.fill(endNodeList, 0, Math.max(endNodeLength, length + 1), null);
+        }
+        endNodeLength = length + 1;
+    }
+
+    /**
+     * Chooses the size of a reused array that must grow
+     *
+     * @param array  The array, or <code>null</code>
+     * @param needed The size needed
+     * @return The new size, at least half as large again as the array
+     */
+    private static int grow(Node[] array, int needed) {
+        return (array == null) ? needed : Math.max(needed, array.length + (array.length >> 1));
+    }
+
     /** @deprecated use {@link #getBestTokens(Sentence, List)} instead */
     @Deprecated
     public List<Token> getBestTokens(Sentence sentence) throws IOException {
         return getBestTokens(sentence, new ArrayList<>());
     }
 
+    /**
+     * Calculates the best connection for each of a range of {@link Lattice}
+     * entries
+     *
+     * @param position The shared starting position of the entries
+     * @param limit    One greater than the last index of the sentence
+     * @param from     The index of the first entry
+     * @param to       One greater than the index of the last entry
+     * @param sentence The original sentence
+     */
+    private void calculateConnectionCosts(int position, int limit, int from, int to, Sentence sentence) throws IOException {
+        ConnectionCosts connectionCosts = tokenizer.getDictionary().getConnectionCosts();
+        Lattice lattice = this.lattice;
+
+        if ((beam != null) && !exact) {
+            pruneLattice(position);
+        }
+
+        for (int r = from; r < to; r++) {
+            lattice.prev[r] = -1;
+            lattice.cost[r] = Integer.MAX_VALUE;
+        }
+
+        for (int l = lattice.endList[position]; l != -1; l = lattice.lnext[l]) {
+            int row = connectionCosts.row(lattice.rcAttr2[lattice.prev[l]], lattice.rcAttr1[l]);
+            int lCost = lattice.cost[l];
+            for (int r = from; r < to; r++) {
+                int cost = lCost + connectionCosts.get(row, lattice.lcAttr[r]) + lattice.dictionaryCost[r];
+                if (cost <= lattice.cost[r]) {
+                    lattice.prev[r] = l;
+                    lattice.cost[r] = cost;
+                }
+            }
+        }
+
+        for (int r = from; r < to; r++) {
+            int x = position + lattice.span[r];
+
+            lattice.lnext[r] = lattice.endList[x];
+            lattice.endList[x] = r;
+
+            if (lattice.rcAttr2[r] != 0) {
+                int pos2 = lattice.span[r] + position;
+                if (pos2 == limit) {
+                    continue;
+                }
+                SentenceIterator it = iteratorAt(sentence, pos2);
+                if (it == null) {
+                    continue;
+                }
+                int row = connectionCosts.row(lattice.rcAttr2[lattice.prev[r]], lattice.rcAttr1[r]);
+                int from2 = lattice.size;
+                int to2 = from2 + lookup(it, sentence.getBuffer(), sentence.getReadingConstraint(pos2), lattice);
+                for (int r2 = from2; r2 < to2; r2++) {
+                    lattice.cost[r2] = lattice.cost[r] + connectionCosts.get(row, lattice.lcAttr[r2]) + lattice.dictionaryCost[r2];
+                    lattice.prev[r2] = r;
+
+                    int y = pos2 + lattice.span[r2];
+
+                    lattice.lnext[r2] = lattice.endList[y];
+                    lattice.endList[y] = r2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up potential entries from the current origin of the given
+     * SentenceIterator, adding them to the end of a {@link Lattice}
+     *
+     * @param iterator   The iterator to search from
+     * @param surface    The underlying character array
+     * @param constraint The reading constraint to apply
+     * @param lattice    The lattice to add to
+     * @return The number of entries added
+     * @throws IOException
+     */
+    private int lookup(SentenceIterator iterator, char[] surface, Reading constraint, Lattice lattice) throws IOException {
+        int from = lattice.size;
+        int count = tokenizer.lookup(iterator, surface, lattice);
+
+        if (constraint == null) {
+            return count;
+        }
+
+        int to = from;
+        for (int i = from; i < from + count; i++) {
+            if ((lattice.length[i] == constraint.length) && (getMorpheme(i).getReadings().contains(constraint.text))) {
+                if (i != to) {
+                    lattice.move(i, to);
+                }
+                to++;
+            }
+        }
+        lattice.truncate(to);
+
+        if (to > from) {
+            return to - from;
+        }
+
+        // Synthesize entry
+        int unknown = tokenizer.addUnknownEntry(lattice, iterator.origin(), constraint.length, constraint.length + iterator.skippedCharCount());
+        Morpheme unknownMorpheme = lattice.morphemes[unknown];
+        lattice.morphemes[unknown] = new Morpheme(unknownMorpheme.getPartOfSpeech(), null, null, "*",
+                new String[] {constraint.text}, new String[0], unknownMorpheme.getAdditionalInformation());
+        return 1;
+    }
+
+    /**
+     * Materializes the {@link Morpheme} of a {@link Node}, keeping it on the
+     * Node
+     *
+     * @param node The Node
+     * @return The Node's morpheme
+     */
+    private Morpheme getMorpheme(Node node) {
+        if (node.morpheme == null) {
+            node.morpheme = new Morpheme(tokenizer.getDictionary(), node.partOfSpeechIndex);
+        }
+
+        return node.morpheme;
+    }
+
+    /**
+     * Materializes the {@link Morpheme} of a {@link Lattice} entry
+     *
+     * @param index The index of the entry
+     * @return The entry's morpheme
+     */
+    private Morpheme getMorpheme(int index) {
+        Morpheme morpheme = lattice.morphemes[index];
+        if (morpheme == null) {
+            morpheme = new Morpheme(tokenizer.getDictionary(), lattice.partOfSpeechIndex[index]);
+        }
+
+        return morpheme;
+    }
+
+    /**
+     * Analyses a sentence using the primitive {@link Lattice}
+     *
+     * @param sentence The sentence to analyse
+     * @param reuse    The list to return the morphemes in
+     * @return The most likely list of morphemes
+     * @throws IOException
+     */
+    private List<Token> getBestTokensFromLattice(Sentence sentence, List<Token> reuse) throws IOException {
+        SentenceIterator iterator = sentence.iterator();
+        int length = iterator.length();
+        char[] surface = sentence.getBuffer();
+        int offset = sentence.getOffset();
+        fellBack = false;
+        if (isOverBudget(0)) {
+            return fallBack(sentence, reuse);
+        }
+        tokenizer.startSentence(surface, offset, length);
+
+        // Initialize the Viterbi lattice
+        lattice.reset(length);
+        int bos = lattice.add(tokenizer.bosNode);
+        lattice.prev[bos] = lattice.add(tokenizer.bosNode);
+        lattice.endList[0] = bos;
+
+        // Look up potential morphemes at each position in the sentence, and
+        // join them to the lattice
+        while (iterator.hasNextOrigin()) {
+            int position = iterator.nextOrigin();
+            int base = position - iterator.skippedCharCount();
+            if (lattice.endList[base] != -1) {
+                int from = lattice.size;
+                int count = lookup(iterator, surface, sentence.getReadingConstraint(position), lattice);
+                if (count > 0) {
+                    calculateConnectionCosts(base, length, from, from + count, sentence);
+                }
+                if (isOverBudget(lattice.size)) {
+                    return fallBack(sentence, reuse);
+                }
+            }
+        }
+
+        // Find the most likely connection from the last position where a
+        // morpheme ended to the end-of-string
+        int eos = lattice.add(tokenizer.eosNode);
+        for (int position = length; position >= 0; position--) {
+            if (lattice.endList[position] != -1) {
+                calculateConnectionCosts(position, length, eos, eos + 1, sentence);
+                break;
+            }
+        }
+
+        // Working backwards from the end-of-string entry, convert the most
+        // likely path to a Token list
+        List<Token> tokenList = reuse;
+        tokenList.clear();
+        for (int i = lattice.prev[eos]; i != bos; i = lattice.prev[i]) {
+            int start = lattice.start[i];
+            tokenList.add(new Token(surface, offset + start, lattice.cost[i], start, lattice.length[i], getMorpheme(i)));
+        }
+        Collections.reverse(tokenList);
+
+        return tokenList;
+    }
+
     /**
      * Creates a Viterbi instance using the given Tokenizer
      *
      * @param tokenizer The Tokenizer to use
      */
     public Viterbi(Tokenizer tokenizer) {
+        this(tokenizer, false, null, null);
+    }
+
+    /**
+     * Creates a Viterbi instance using the given Tokenizer
+     *
+     * @param tokenizer      The Tokenizer to use
+     * @param compactLattice If <code>true</code>, the lattice is held in
+     *                       reusable primitive arrays, and {@link Node}s and
+     *                       {@link Morpheme}s are only created for the best
+     *                       path
+     * @param beam           The beam search settings, or <code>null</code> to
+     *                       search exhaustively
+     * @param budget         The limits on the work done, or <code>null</code>
+     *                       for none
+     */
+    public Viterbi(Tokenizer tokenizer, boolean compactLattice, Beam beam, Budget budget) {
         this.tokenizer = tokenizer;
+        this.lattice = compactLattice ? new Lattice() : null;
+        this.beam = beam;
+        this.budget = budget;
     }
 }
@@ -20,13 +20,16 @@
 
 package net.java.sen.tokenizers.ja;
 
+import java.util.Arrays;
+
 import net.java.sen.dictionary.CToken;
 import net.java.sen.dictionary.Dictionary;
-import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Lattice;
 import net.java.sen.dictionary.Node;
 import net.java.sen.dictionary.SentenceIterator;
 import net.java.sen.dictionary.Tokenizer;
-import net.java.sen.trie.CharIterator;
+import net.java.sen.dictionary.UnknownWordModel;
+import net.java.sen.trie.TrieMatches;
 
 import static java.lang.Character.UnicodeBlock.LATIN_1_SUPPLEMENT;
 import static java.lang.Character.UnicodeBlock.LATIN_EXTENDED_ADDITIONAL;
@@ -43,6 +46,10 @@ import static java.lang.Character.UnicodeBlock.CYRILLIC_SUPPLEMENTARY;
 
 /**
  * A Tokenizer for Japanese text
+ * <p>
+ * Unknown words are synthesized according to an {@link UnknownWordModel}. A
+ * dictionary may supply its own model (unknown.sen, compiled from char.def);
+ * otherwise {@link #DEFAULT_UNKNOWN_WORD_MODEL} is used.
  */
 public class JapaneseTokenizer extends Tokenizer {
 
@@ -64,18 +71,54 @@ public class JapaneseTokenizer extends Tokenizer {
     /** Character class for half-width forms */
     static final int HALF_WIDTH = 0x85;
 
+    /** The longest run of one character category made a single fallback morpheme */
+    private static final int MAX_FALLBACK_LENGTH = 255;
+
+    /** The name of the Katakana category, affected by <code>tokenizeUnknownKatakana</code> */
+    public static final String KATAKANA_CATEGORY = "KATAKANA";
+
+    /**
+     * The built in unknown word model. Hiragana and Kanji are only
+     * synthesized as single characters where the dictionary has no match;
+     * symbols are always synthesized as single characters; runs of Katakana
+     * and of each other character type are always synthesized as a whole
+     */
+    public static final UnknownWordModel DEFAULT_UNKNOWN_WORD_MODEL = createDefaultUnknownWordModel();
+
+    /** The unknown word model in use */
+    private final UnknownWordModel unknownWordModel;
+
+    /** An unknown-morpheme CToken for each category, carrying its cost */
+    private final CToken[] unknownCTokens;
+
+    /** The lengths of the unknown words found at the current position */
+    private final int[] unknownLengths;
+
+    /** The longest fixed length of an unknown word */
+    private final int maxUnknownLength;
+
+    /** The Trie keys found from every position of the current sentence */
+    private final TrieMatches trieMatches = new TrieMatches();
+
+    /** The morpheme currently being read from the token file */
+    private final CToken searchToken = new CToken();
+
     /**
-     * Gets the character class of the given character
+     * The character categories of the current sentence, indexed by position.
+     * Only as many entries as the sentence has characters are valid
+     */
+    private byte[] charClasses = new byte[256];
+
+    /** The buffer that {@link #charClasses} was computed for */
+    private char[] charClassSurface;
+
+    /**
+     * Computes the character class of the given character
      *
      * @param c The character
      * @return The character class
      */
-    private int getCharClass(char c) {
-        // TODO: I think we are recalculating this over and over (n^2),
-        // which is why the method is so sensitive to performance.
-        // maybe instead we should calculate up-front in the sentence?
-        // TODO: We should utilize char.def, which was introduced with MeCab,
-        // that enables us to modify the tokenizer behavior without updating the code.
+    private static int computeCharClass(char c) {
         if (c <= 0x7F) {
             return (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? SPACE : Character.getType(Character.toLowerCase(c));
         } else if (c >= 0x3040 && c <= 0x309F) {
@@ -103,73 +146,242 @@ public class JapaneseTokenizer extends Tokenizer {
     }
 
     /**
-     * Find the length to use for an unknown token
+     * Builds the built in unknown word model, with one category for each
+     * character class
      *
-     * @param iterator The iterator to read from
-     * @return The length
+     * @return The model
      */
-    private int findUnknownToken(CharIterator iterator) {
-        int length = 0;
-
-        if (iterator.hasNext()) {
-            int charClass = getCharClass(iterator.next());
-            switch (charClass) {
-            case HIRAGANA:
-            case KANJI:
-            case OTHER:
-                length = 1;
-                break;
-
-            case KATAKANA:
-                if (isTokenizeUnknownKatakana()) {
-                    length = 1;
-                    break;
+    private static UnknownWordModel createDefaultUnknownWordModel() {
+        int[] classCategories = new int[0x100];
+        Arrays.fill(classCategories, -1);
+        String[] names = new String[UnknownWordModel.MAX_CATEGORIES];
+        byte[] categories = new byte[0x10000];
+        int size = 0;
+        for (int c = 0; c < categories.length; c++) {
+            int charClass = computeCharClass((char) c);
+            if (classCategories[charClass] == -1) {
+                classCategories[charClass] = size;
+                switch (charClass) {
+                case OTHER: names[size] = "OTHER"; break;
+                case SPACE: names[size] = "SPACE"; break;
+                case KANJI: names[size] = "KANJI"; break;
+                case KATAKANA: names[size] = KATAKANA_CATEGORY; break;
+                case HIRAGANA: names[size] = "HIRAGANA"; break;
+                default: names[size] = "TYPE" + charClass; break;
                 }
+                size++;
+            }
+            categories[c] = (byte) classCategories[charClass];
+        }
 
-            default:
-                length = 1;
-                while (iterator.hasNext() && (getCharClass(iterator.next()) == charClass)) {
-                    length++;
-                }
-                break;
+        boolean[] invoke = new boolean[size];
+        boolean[] group = new boolean[size];
+        int[] length = new int[size];
+        short[] cost = new short[size];
+        for (int charClass = 0; charClass < classCategories.length; charClass++) {
+            int category = classCategories[charClass];
+            if (category != -1) {
+                invoke[category] = (charClass != HIRAGANA && charClass != KANJI);
+                group[category] = (charClass != HIRAGANA && charClass != KANJI && charClass != OTHER);
+                cost[category] = UnknownWordModel.DEFAULT_COST;
             }
         }
 
-        return length;
+        return new UnknownWordModel(Arrays.copyOf(names, size), invoke, group, length, cost, categories);
+    }
+
+    @Override
+    public void startSentence(char[] buffer, int offset, int length) {
+        if (charClasses.length < length) {
+            charClasses = new byte[Math.max(length, charClasses.length * 2)];
+        }
+        unknownWordModel.getCategories(buffer, offset, length, charClasses);
+        getDictionary().commonPrefixSearchAll(buffer, offset, length, trieMatches);
+        charClassSurface = buffer;
+    }
+
+    /**
+     * Finds the Trie keys starting at the origin of an iterator from those
+     * found by {@link #startSentence(char[], int, int)}. Keys are only
+     * accepted as far as the iterator can be advanced from the origin
+     *
+     * @param iterator The iterator to search from
+     * @return The index after the last accepted key in {@link #trieMatches}
+     */
+    private int search(SentenceIterator iterator) {
+        int origin = iterator.origin();
+        int start = trieMatches.start(origin);
+        int end = trieMatches.end(origin);
+        if (start == end) {
+            return start;
+        }
+
+        int longest = trieMatches.getLength(end - 1);
+        int maxLength = 0;
+        while ((maxLength < longest) && iterator.hasNext()) {
+            iterator.next();
+            maxLength++;
+        }
+
+        while ((end > start) && (trieMatches.getLength(end - 1) > maxLength)) {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Returns the character categories of the given surface, computing them
+     * if {@link #startSentence(char[], int, int)} was not called for it
+     *
+     * @param surface The underlying character surface
+     * @return The character categories, indexed by position
+     */
+    private byte[] getCharClasses(char[] surface) {
+        if (surface != charClassSurface) {
+            startSentence(surface);
+        }
+
+        return charClasses;
+    }
+
+    /**
+     * Find the lengths to use for unknown tokens, storing them in
+     * {@link #unknownLengths}
+     *
+     * @param iterator    The iterator to read from
+     * @param charClasses The character categories of the surface
+     * @param category    The category of the character at the origin
+     * @return The number of lengths found
+     */
+    private int findUnknownTokens(SentenceIterator iterator, byte[] charClasses, int category) {
+        boolean group = unknownWordModel.isGroup(category);
+        int fixedLength = unknownWordModel.getLength(category);
+
+        // Read the longest run of the category that is needed
+        iterator.rewindToOrigin();
+        int origin = iterator.origin();
+        int maxLength = group ? Integer.MAX_VALUE : Math.max(1, fixedLength);
+        int run = 0;
+        while ((run < maxLength) && iterator.hasNext() && ((run == 0) || ((charClasses[origin + run] & 0xFF) == category))) {
+            iterator.next();
+            run++;
+        }
+
+        int count = 0;
+        if (group || fixedLength == 0) {
+            unknownLengths[count++] = run;
+        }
+        for (int length = 1; length <= fixedLength && length <= run; length++) {
+            if (!group || length != run) {
+                unknownLengths[count++] = length;
+            }
+        }
+
+        return count;
     }
 
     @Override
     public Node lookup(SentenceIterator iterator, char[] surface) {
         Node resultNode = null;
 
-        int charClass = getCharClass(iterator.current());
+        byte[] charClasses = getCharClasses(surface);
+        int category = charClasses[iterator.origin()] & 0xFF;
 
         int skipped = iterator.skippedCharCount();
-        CToken[] t = getDictionary().commonPrefixSearch(iterator);
-        for (int i = 0; !t[i].terminator; i++) {
-            Node newNode = new Node();
-            newNode.setCToken(t[i]);
-            newNode.length = t[i].length;
-            newNode.start = iterator.origin();
-            newNode.span = t[i].length + skipped;
-            newNode.rnext = resultNode;
-            newNode.morpheme = new Morpheme(getDictionary(), t[i].partOfSpeechIndex);
+        Dictionary dictionary = getDictionary();
+        CToken t = searchToken;
+        int start = trieMatches.start(iterator.origin());
+        int end = search(iterator);
+        for (int i = start; i < end; i++) {
+            int value = trieMatches.getValue(i);
+            for (int j = 0, n = dictionary.getTokenCount(value); j < n; j++) {
+                dictionary.readToken(value, j, t);
+
+                Node newNode = new Node();
+                newNode.setCToken(t);
+                newNode.length = t.length;
+                newNode.start = iterator.origin();
+                newNode.span = t.length + skipped;
+                newNode.rnext = resultNode;
+                newNode.partOfSpeechIndex = t.partOfSpeechIndex;
 
-            resultNode = newNode;
+                resultNode = newNode;
+            }
         }
 
-        if ((resultNode != null) && (charClass == HIRAGANA || charClass == KANJI || (isTokenizeUnknownKatakana() && charClass == KATAKANA))) {
+        if ((resultNode != null) && !unknownWordModel.isInvoke(category)) {
             return resultNode;
         }
 
-        // Synthesize token for longest consecutive run of same character class
+        // Synthesize tokens for runs of the same character category
+        int count = findUnknownTokens(iterator, charClasses, category);
+        for (int i = count - 1; i >= 0; i--) {
+            int length = unknownLengths[i];
+            Node unknownNode = getUnknownNode(unknownCTokens[category], iterator.origin(), length, skipped + length);
+            unknownNode.rnext = resultNode;
+            resultNode = unknownNode;
+        }
+
+        return resultNode;
+    }
+
+    /**
+     * Returns an unknown morpheme covering the run of characters of the same
+     * category as the origin, of at most 255 characters
+     */
+    @Override
+    public Node getFallbackNode(SentenceIterator iterator, char[] surface) {
+        int skipped = iterator.skippedCharCount();
         iterator.rewindToOrigin();
-        int unknownTokenLength = findUnknownToken(iterator);
+        int category = unknownWordModel.getCategory(iterator.current());
+        int length = 0;
+        while ((length < MAX_FALLBACK_LENGTH) && iterator.hasNext() && (unknownWordModel.getCategory(iterator.current()) == category)) {
+            iterator.next();
+            length++;
+        }
 
-        Node unknownNode = getUnknownNode(surface, iterator.origin(), unknownTokenLength, skipped + unknownTokenLength);
-        unknownNode.rnext = resultNode;
+        return getUnknownNode(unknownCTokens[category], iterator.origin(), length, skipped + length);
+    }
 
-        return unknownNode;
+    @Override
+    public int getLookahead() {
+        return Math.max(Math.max(1, maxUnknownLength), super.getLookahead());
+    }
+
+    @Override
+    public int lookup(SentenceIterator iterator, char[] surface, Lattice lattice) {
+        byte[] charClasses = getCharClasses(surface);
+        int category = charClasses[iterator.origin()] & 0xFF;
+
+        int skipped = iterator.skippedCharCount();
+        Dictionary dictionary = getDictionary();
+        CToken t = searchToken;
+        int start = trieMatches.start(iterator.origin());
+        int end = search(iterator);
+
+        int count = 0;
+        if ((end == start) || unknownWordModel.isInvoke(category)) {
+            // Synthesize tokens for runs of the same character category
+            int unknownCount = findUnknownTokens(iterator, charClasses, category);
+            for (int i = 0; i < unknownCount; i++) {
+                int length = unknownLengths[i];
+                addUnknownEntry(lattice, unknownCTokens[category], iterator.origin(), length, skipped + length);
+                count++;
+            }
+        }
+
+        // Same order as the Node chain built by lookup(SentenceIterator, char[])
+        for (int i = end - 1; i >= start; i--) {
+            int value = trieMatches.getValue(i);
+            for (int j = dictionary.getTokenCount(value) - 1; j >= 0; j--) {
+                dictionary.readToken(value, j, t);
+                lattice.add(t, iterator.origin(), t.length + skipped);
+                count++;
+            }
+        }
+
+        return count;
     }
 
     /**
@@ -180,6 +392,41 @@ public class JapaneseTokenizer extends Tokenizer {
      * @param tokenizeUnknownKatakana Grouping unknown tokens to generate a token.
      */
     public JapaneseTokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription, boolean tokenizeUnknownKatakana) {
+        this(dictionary, unknownPartOfSpeechDescription, tokenizeUnknownKatakana, null);
+    }
+
+    /**
+     * Creates a JapaneseTokenizer with the given Dictionary
+     *
+     * @param dictionary                     The Dictionary in which to search for possible morphemes
+     * @param unknownPartOfSpeechDescription The part-of-speech code to use for unknown tokens
+     * @param tokenizeUnknownKatakana Grouping unknown tokens to generate a token. If
+     *                                <code>true</code>, the {@link #KATAKANA_CATEGORY}
+     *                                category is only synthesized as single characters
+     *                                where the dictionary has no match
+     * @param unknownWordModel The unknown word model, or <code>null</code> to use
+     *                         {@link #DEFAULT_UNKNOWN_WORD_MODEL}
+     */
+    public JapaneseTokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription, boolean tokenizeUnknownKatakana, UnknownWordModel unknownWordModel) {
         super(dictionary, unknownPartOfSpeechDescription, tokenizeUnknownKatakana);
+
+        if (unknownWordModel == null) {
+            unknownWordModel = DEFAULT_UNKNOWN_WORD_MODEL;
+        }
+        int katakana = unknownWordModel.indexOf(KATAKANA_CATEGORY);
+        if (tokenizeUnknownKatakana && katakana != -1) {
+            unknownWordModel = unknownWordModel.withBehaviour(katakana, false, false, 0);
+        }
+        this.unknownWordModel = unknownWordModel;
+
+        int maxLength = 0;
+        this.unknownCTokens = new CToken[unknownWordModel.size()];
+        for (int i = 0; i < unknownCTokens.length; i++) {
+            unknownCTokens[i] = unknownCToken.clone();
+            unknownCTokens[i].cost = unknownWordModel.getCost(i);
+            maxLength = Math.max(maxLength, unknownWordModel.getLength(i));
+        }
+        this.unknownLengths = new int[1 + maxLength];
+        this.maxUnknownLength = maxLength;
     }
 }
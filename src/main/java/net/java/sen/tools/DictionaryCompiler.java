@@ -22,6 +22,7 @@
 package net.java.sen.tools;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import net.java.sen.compiler.DictionaryBuilder;
 
@@ -33,11 +34,36 @@ public class DictionaryCompiler {
     /**
      * Main method
      *
-     * @param args &lt;Custom dictionary file&gt; (optional)
+     * @param args [-fst] [-quantize] [-threads &lt;n&gt;] &lt;Custom dictionary file&gt;
+     *             (optional). <code>-fst</code> also builds the FST index of
+     *             surface forms; <code>-quantize</code> stores the connection
+     *             costs as 8 bit codes; <code>-threads</code> sets the number of
+     *             threads used to parse the dictionary data (by default, the
+     *             number of processors)
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
-        String[] customDictionaries = args;
-        new DictionaryBuilder(customDictionaries);
+        boolean buildFST = false;
+        boolean quantizeCosts = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        int i = 0;
+        while (i < args.length) {
+            if (args[i].equals("-fst")) {
+                buildFST = true;
+                i++;
+            } else if (args[i].equals("-quantize")) {
+                quantizeCosts = true;
+                i++;
+            } else if (args[i].equals("-threads") && (i + 1 < args.length)) {
+                threads = Integer.parseInt(args[i + 1]);
+                i += 2;
+            } else {
+                break;
+            }
+        }
+
+        String[] customDictionaries = Arrays.copyOfRange(args, i, args.length);
+        new DictionaryBuilder(customDictionaries, buildFST, threads, System.out, quantizeCosts);
     }
 }
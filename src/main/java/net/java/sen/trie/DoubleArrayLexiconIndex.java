@@ -0,0 +1,85 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.trie;
+
+import java.nio.IntBuffer;
+
+
+/**
+ * A {@link LexiconIndex} over the double-array Trie data built by
+ * {@link TrieBuilder}, held either in an {@link IntBuffer} or in a heap
+ * <code>int[]</code>
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are immutable, and the Trie
+ * data is only read at absolute indices
+ */
+public final class DoubleArrayLexiconIndex implements LexiconIndex {
+
+    /** The Trie data, if held in a buffer */
+    private final IntBuffer trieBuffer;
+
+    /** The Trie data, if held on the heap */
+    private final int[] trieArray;
+
+    @Override
+    public int commonPrefixSearch(CharIterator iterator, int[] results) {
+        if (trieArray != null) {
+            return TrieSearcher.commonPrefixSearch(trieArray, iterator, results);
+        } else {
+            return TrieSearcher.commonPrefixSearch(trieBuffer, iterator, results);
+        }
+    }
+
+    @Override
+    public void commonPrefixSearchAll(char[] buffer, int offset, int length, TrieMatches matches) {
+        if (trieArray != null) {
+            TrieSearcher.commonPrefixSearchAll(trieArray, buffer, offset, length, matches);
+        } else {
+            TrieSearcher.commonPrefixSearchAll(trieBuffer, buffer, offset, length, matches);
+        }
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 4L * ((trieArray != null) ? trieArray.length : trieBuffer.limit());
+    }
+
+    /**
+     * Reports whether the Trie data is held in a heap <code>int[]</code>
+     *
+     * @return <code>true</code> if the Trie data is held on the heap
+     */
+    public boolean isHeap() {
+        return trieArray != null;
+    }
+
+    /**
+     * @param trieBuffer The Trie data, read in place
+     */
+    public DoubleArrayLexiconIndex(IntBuffer trieBuffer) {
+        this.trieBuffer = trieBuffer;
+        this.trieArray = null;
+    }
+
+    /**
+     * @param trieArray The Trie data, copied to the heap
+     */
+    public DoubleArrayLexiconIndex(int[] trieArray) {
+        this.trieBuffer = null;
+        this.trieArray = trieArray;
+    }
+}
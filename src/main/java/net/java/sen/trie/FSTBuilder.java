@@ -0,0 +1,88 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.trie;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.FSTCompiler;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+
+/**
+ * Constructs an FST for an {@link FSTLexiconIndex} from the supplied sorted
+ * key and value arrays
+ */
+public class FSTBuilder {
+
+    /**
+     * The keys comprising the FST
+     */
+    private final String[] keys;
+
+    /**
+     * The values for each key
+     */
+    private final int[] values;
+
+    /**
+     * The actual number of entries in the keys/values arrays
+     */
+    private final int size;
+
+    /**
+     * Builds the FST
+     *
+     * @return The FST
+     * @throws IOException
+     */
+    public FST<Long> build() throws IOException {
+        FSTCompiler<Long> compiler = new FSTCompiler<>(FST.INPUT_TYPE.BYTE2, PositiveIntOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (int i = 0; i < size; i++) {
+            compiler.add(Util.toUTF16(keys[i], scratch), (long) values[i]);
+        }
+
+        return compiler.compile();
+    }
+
+    /**
+     * Builds the FST data file
+     *
+     * @param filename The filename for the FST data file
+     * @throws IOException
+     */
+    public void build(String filename) throws IOException {
+        build().save(Paths.get(filename));
+    }
+
+    /**
+     * Creates an FSTBuilder to build the given data
+     *
+     * @param keys   The sorted keys
+     * @param values The values for each key, which must not be negative
+     * @param size   The actual number of entries in the key/value arrays
+     */
+    public FSTBuilder(String[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+}
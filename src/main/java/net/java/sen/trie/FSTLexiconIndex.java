@@ -0,0 +1,120 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.trie;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+
+
+/**
+ * A {@link LexiconIndex} over a minimal Lucene {@link FST} built by
+ * {@link FSTBuilder}. The FST shares both the prefixes and the suffixes of
+ * its keys, and is held on the heap
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are immutable; each search
+ * uses its own arcs and reader
+ */
+public final class FSTLexiconIndex implements LexiconIndex {
+
+    /** The FST, with UTF-16 code units as labels */
+    private final FST<Long> fst;
+
+    @Override
+    public int commonPrefixSearch(CharIterator iterator, int[] results) {
+        try {
+            FST.BytesReader reader = fst.getBytesReader();
+            FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<>());
+            long output = 0;
+            int num = 0;
+
+            while (iterator.hasNext()) {
+                if (fst.findTargetArc(iterator.next(), arc, arc, reader) == null) {
+                    break;
+                }
+                output += arc.output();
+                if (arc.isFinal()) {
+                    // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+                    results[num] = (int) (output + arc.nextFinalOutput());
+                    num++;
+                }
+            }
+
+            return num;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void commonPrefixSearchAll(char[] buffer, int offset, int length, TrieMatches matches) {
+        matches.reset(length);
+
+        try {
+            FST.BytesReader reader = fst.getBytesReader();
+            FST.Arc<Long> arc = new FST.Arc<>();
+            int end = offset + length;
+            for (int start = offset; start < end; start++) {
+                matches.startPosition(start - offset);
+
+                fst.getFirstArc(arc);
+                long output = 0;
+                for (int i = start; i < end; i++) {
+                    if (fst.findTargetArc(buffer[i], arc, arc, reader) == null) {
+                        break;
+                    }
+                    output += arc.output();
+                    if (arc.isFinal()) {
+                        matches.add((int) (output + arc.nextFinalOutput()), i + 1 - start);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        matches.finish();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return fst.ramBytesUsed();
+    }
+
+    /**
+     * Reads an FST written by {@link FSTBuilder}
+     *
+     * @param in The stream to read from
+     * @return The index
+     * @throws IOException
+     */
+    public static FSTLexiconIndex read(InputStream in) throws IOException {
+        DataInput input = new InputStreamDataInput(in);
+        return new FSTLexiconIndex(new FST<>(input, input, PositiveIntOutputs.getSingleton()));
+    }
+
+    /**
+     * @param fst The FST, with UTF-16 code units as labels
+     */
+    public FSTLexiconIndex(FST<Long> fst) {
+        this.fst = fst;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.trie;
+
+
+/**
+ * An index from the surface forms of a dictionary to the values of their
+ * entries in the token file
+ *
+ * <p><b>Thread Safety</b>: Implementations must be safe for searches from
+ * multiple threads, provided that each uses its own result buffers
+ */
+public interface LexiconIndex {
+
+    /**
+     * The available index implementations
+     */
+    enum Type {
+        /** A double-array Trie (trie.sen), always built */
+        DOUBLE_ARRAY,
+        /** A minimal FST with shared prefixes and suffixes (fst.sen), built on request */
+        FST
+    }
+
+    /**
+     * Searches for keys forming a complete substring of the given sentence,
+     * starting at the given position within the sentence
+     *
+     * @param iterator The character iterator to read search characters from
+     * @param results  An array used to return the values of the found keys,
+     *                 in order of increasing key length
+     * @return The number of results found
+     * @throws ArrayIndexOutOfBoundsException if results[] is too small
+     */
+    int commonPrefixSearch(CharIterator iterator, int[] results);
+
+    /**
+     * Searches for keys forming a complete substring of a window of
+     * characters, starting at every position within the window. Keys may run
+     * up to the end of the window
+     *
+     * @param buffer  The buffer holding the window
+     * @param offset  The offset of the window within the buffer
+     * @param length  The length of the window
+     * @param matches A buffer used to return the found keys
+     */
+    void commonPrefixSearchAll(char[] buffer, int offset, int length, TrieMatches matches);
+
+    /**
+     * Returns the memory used by the index data
+     *
+     * @return The size of the index data in bytes
+     */
+    long sizeInBytes();
+}
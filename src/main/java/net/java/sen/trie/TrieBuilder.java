@@ -20,45 +20,67 @@
 
 package net.java.sen.trie;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Vector;
-
-import net.java.sen.util.IOUtils;
+import java.util.List;
 
 
 /**
  * Constructs a Trie from the supplied sorted key and value arrays
+ * <p>
+ * The Trie is built in heap arrays and written once when complete. Free slots
+ * are found by skipping over a bit field of occupied slots, and the Trie grows
+ * in the same steps as the file-backed builder it replaces, so the data
+ * written is unchanged.
  */
 public class TrieBuilder {
 
-    /** The file the Trie data is written to */
-    private RandomAccessFile trieFile;
+    /**
+     * The initial number of slots in the Trie
+     */
+    private static final int INITIAL_SLOT_COUNT = 1024 * 10;
 
     /**
-     * An expanding MappedByteBuffer used to write the Trie data without holding
-     * the entire Trie in heap memory
+     * The Trie data, as a base and a check value for each slot. May be longer
+     * than the Trie, which is {@link #slotCount} slots long
      */
-    private MappedByteBuffer byteBuffer = null;
+    private int[] trieData;
 
     /**
-     * The Trie MappedByteBuffer represented as an IntBuffer
+     * The number of slots in the Trie
      */
-    private IntBuffer trieDataBuffer = null;
+    private int slotCount;
 
     /**
-     * A bit field used to track the occupied regions of the Trie data file
+     * The number of slots in the Trie with a check value
      */
-    private BitSet used = new BitSet();
+    private int usedSlotCount;
+
+    /**
+     * A bit field of the slots with a check value
+     */
+    private BitSet occupied;
+
+    /**
+     * A bit field of the base positions already assigned to a set of siblings
+     */
+    private BitSet used;
 
     /**
      * The next starting position to use in adding to the Trie
      */
-    private int nextCheckPosition = 0;
+    private int nextCheckPosition;
+
+    /**
+     * The time taken by the last build, in nanoseconds
+     */
+    private long buildTime;
 
     /**
      * The keys comprising the Trie
@@ -108,31 +130,27 @@ public class TrieBuilder {
     }
 
     /**
-     * Increases the size of the Trie data file
+     * Increases the size of the Trie
      *
-     * @param newSize The new size of the file
-     * @throws IOException
+     * @param newSize The new number of slots
      */
-    private void resize(long newSize) throws IOException {
-        if (byteBuffer != null) {
-            byteBuffer.force();
+    private void resize(int newSize) {
+        slotCount = newSize;
+        if (trieData.length < (newSize << 1)) {
+            trieData = Arrays.copyOf(trieData, Math.max(newSize << 1, trieData.length << 1));
         }
-
-        trieFile.setLength(newSize * 8);
-        FileChannel indexChannel = trieFile.getChannel();
-        byteBuffer = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize * 8);
-        trieDataBuffer = byteBuffer.asIntBuffer();
     }
 
     /**
-     * Builds a vector containing the children of the given node
+     * Builds a list containing the children of the given node
      *
      * @param parent The parent TrieNode
-     * @return The vector of child TrieNodes
+     * @return The list of child TrieNodes
      */
-    private Vector<TrieNode> fetch(TrieNode parent) {
+    private List<TrieNode> fetch(TrieNode parent) {
         int prev = 0;
-        Vector<TrieNode> siblings = new Vector<>();
+        List<TrieNode> siblings = new ArrayList<>();
+        TrieNode lastSibling = null;
 
         for (int i = parent.left; i < parent.right; i++) {
 
@@ -151,21 +169,20 @@ public class TrieBuilder {
                 throw new RuntimeException("Fatal: Keys are not sorted");
             }
 
-            if (cur != prev || siblings.size() == 0) {
+            if (cur != prev || lastSibling == null) {
                 TrieNode tempNode = new TrieNode(cur, parent.depth + 1, i, 0);
-                if (siblings.size() != 0) {
-                    TrieNode lastSibling = siblings.lastElement();
+                if (lastSibling != null) {
                     lastSibling.right = i;
                 }
 
                 siblings.add(tempNode);
+                lastSibling = tempNode;
             }
 
             prev = cur;
         }
 
-        if (siblings.size() != 0) {
-            TrieNode lastSibling = siblings.lastElement();
+        if (lastSibling != null) {
             lastSibling.right = parent.right;
         }
 
@@ -173,44 +190,46 @@ public class TrieBuilder {
     }
 
     /**
-     * Find a position with the Trie data file where the given vector of TrieNodes
-     * may be written, resizing the data file if necessary
+     * Find a position within the Trie where the given list of TrieNodes may be
+     * written, resizing the Trie if necessary
      *
      * @param siblings The TrieNodes to find a position for
      * @return The position to write to
-     * @throws IOException
      */
-    private int findInsertionPoint(Vector<TrieNode> siblings) throws IOException {
+    private int findInsertionPoint(List<TrieNode> siblings) {
         int begin = 0;
         int nonZeroNum = 0;
         int first = 0;
         int position;
 
-        if ((siblings.get(0).code + 1) > (nextCheckPosition)) {
-            position = siblings.get(0).code;
+        int firstCode = siblings.get(0).code;
+        int lastCode = siblings.get(siblings.size() - 1).code;
+
+        if ((firstCode + 1) > (nextCheckPosition)) {
+            position = firstCode;
         } else {
             position = nextCheckPosition - 1;
         }
 
         while (true) {
 
-            position++;
-            if (position > (trieDataBuffer.limit() >> 1)) {
+            // Skip directly to the next slot without a check value
+            int next = occupied.nextClearBit(position + 1);
+            nonZeroNum += next - (position + 1);
+            position = next;
+            if (position > slotCount) {
                 resize((int) (position * 1.05));
             }
 
-            if (trieDataBuffer.get((position << 1) + 1) != 0) {
-                nonZeroNum++;
-                continue;
-            } else if (first == 0) {
+            if (first == 0) {
                 nextCheckPosition = position;
                 first = 1;
             }
 
-            begin = position - siblings.get(0).code;
+            begin = position - firstCode;
 
-            int t = begin + siblings.get(siblings.size() - 1).code;
-            if (t > (trieDataBuffer.limit() >> 1)) {
+            int t = begin + lastCode;
+            if (t > slotCount) {
                 resize((int) (t * 1.05));
             }
 
@@ -221,7 +240,7 @@ public class TrieBuilder {
             boolean flag = false;
 
             for (int i = 1; i < siblings.size(); i++) {
-                if (trieDataBuffer.get(((begin + siblings.get(i).code) << 1) + 1) != 0) {
+                if (occupied.get(begin + siblings.get(i).code)) {
                     flag = true;
                     break;
                 }
@@ -241,25 +260,27 @@ public class TrieBuilder {
     }
 
     /**
-     * Inserts a vector of TrieNodes into the Trie data file
+     * Inserts a list of TrieNodes into the Trie
      *
-     * @param siblings The vector of nodes to insert
+     * @param siblings The list of nodes to insert
      * @return The position at which the nodes were inserted
-     * @throws IOException
      */
-    private int insert(Vector<TrieNode> siblings) throws IOException {
+    private int insert(List<TrieNode> siblings) {
 
         int begin = findInsertionPoint(siblings);
 
         for (TrieNode trieNode : siblings) {
-            trieDataBuffer.put(((begin + trieNode.code) << 1) + 1, begin);
+            int slot = begin + trieNode.code;
+            trieData[(slot << 1) + 1] = begin;
+            occupied.set(slot);
+            usedSlotCount++;
         }
 
         for (TrieNode sibling : siblings) {
             int position = (begin + sibling.code) << 1;
             int value;
 
-            Vector<TrieNode> newSiblings = fetch(sibling);
+            List<TrieNode> newSiblings = fetch(sibling);
             if (newSiblings.size() == 0) {
                 if (this.values == null) {
                     value = (-sibling.left - 1);
@@ -273,12 +294,43 @@ public class TrieBuilder {
             } else {
                 value = insert(newSiblings);
             }
-            this.trieDataBuffer.put(position, value);
+            this.trieData[position] = value;
         }
 
         return begin;
     }
 
+    /**
+     * Builds the Trie data
+     *
+     * @return The Trie data, in the form read by {@link TrieSearcher}
+     */
+    public int[] build() {
+        long start = System.nanoTime();
+
+        this.trieData = new int[0];
+        this.usedSlotCount = 0;
+        this.occupied = new BitSet();
+        this.used = new BitSet();
+        this.nextCheckPosition = 0;
+
+        resize(INITIAL_SLOT_COUNT);
+        this.trieData[0] = 1;
+
+        TrieNode rootNode = new TrieNode(0, 0, 0, this.size);
+
+        List<TrieNode> siblings = fetch(rootNode);
+        insert(siblings);
+
+        if (this.trieData.length != (this.slotCount << 1)) {
+            this.trieData = Arrays.copyOf(this.trieData, this.slotCount << 1);
+        }
+
+        this.buildTime = System.nanoTime() - start;
+
+        return this.trieData;
+    }
+
     /**
      * Builds The trie data file
      *
@@ -286,23 +338,61 @@ public class TrieBuilder {
      * @throws IOException
      */
     public void build(String filename) throws IOException {
-        this.trieFile = null;
-        try {
-            this.trieFile = new RandomAccessFile(filename, "rw");
-            this.trieFile.setLength(0);
+        int[] data = build();
+
+        try (FileOutputStream out = new FileOutputStream(filename)) {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            IntBuffer intBuffer = buffer.asIntBuffer();
+            for (int i = 0; i < data.length; ) {
+                int count = Math.min(intBuffer.capacity(), data.length - i);
+                intBuffer.clear();
+                intBuffer.put(data, i, count);
+                buffer.clear();
+                buffer.limit(count * 4);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                i += count;
+            }
+        }
+    }
 
-            resize(1024 * 10);
-            this.trieDataBuffer.put(0, 1);
+    /**
+     * Returns the number of slots in the last Trie built
+     *
+     * @return The number of slots
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
 
-            TrieNode rootNode = new TrieNode(0, 0, 0, this.size);
+    /**
+     * Returns the number of slots in use in the last Trie built
+     *
+     * @return The number of slots in use
+     */
+    public int getUsedSlotCount() {
+        return usedSlotCount;
+    }
 
-            Vector<TrieNode> siblings = fetch(rootNode);
-            insert(siblings);
+    /**
+     * Returns the proportion of slots in use in the last Trie built
+     *
+     * @return The proportion of slots in use, between 0 and 1
+     */
+    public double getFillRatio() {
+        return (slotCount == 0) ? 0 : (double) usedSlotCount / slotCount;
+    }
 
-            this.byteBuffer.force();
-        } finally {
-            IOUtils.closeWhileHandlingException(this.trieFile);
-        }
+    /**
+     * Returns the time taken to build the last Trie, not including writing it
+     * to a file
+     *
+     * @return The time taken, in milliseconds
+     */
+    public long getBuildTime() {
+        return buildTime / 1000000;
     }
 
     /**
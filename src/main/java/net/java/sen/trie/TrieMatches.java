@@ -0,0 +1,147 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.trie;
+
+import java.util.Arrays;
+
+
+/**
+ * A reusable buffer for the results of a Trie search from every position of
+ * a character window, filled by
+ * {@link TrieSearcher#commonPrefixSearchAll(int[], char[], int, int, TrieMatches)}.
+ * The matches found from each position are stored contiguously, in order of
+ * increasing length
+ *
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe
+ * and should not be accessed simultaneously by multiple threads
+ */
+public final class TrieMatches {
+
+    /** The index of the first match from each position, plus an end marker */
+    private int[] starts = new int[257];
+
+    /** The value of each match */
+    private int[] values = new int[256];
+
+    /** The length of each match */
+    private int[] lengths = new int[256];
+
+    /** The number of positions searched */
+    private int positions;
+
+    /** The total number of matches */
+    private int size;
+
+    /**
+     * Clears the buffer before a search
+     *
+     * @param positions The number of positions to be searched
+     */
+    void reset(int positions) {
+        if (starts.length <= positions) {
+            starts = new int[Math.max(positions + 1, starts.length * 2)];
+        }
+        this.positions = positions;
+        this.size = 0;
+    }
+
+    /**
+     * Marks the start of the matches from a position
+     *
+     * @param position The position, relative to the start of the window
+     */
+    void startPosition(int position) {
+        starts[position] = size;
+    }
+
+    /**
+     * Marks the end of the matches from the last position
+     */
+    void finish() {
+        starts[positions] = size;
+    }
+
+    /**
+     * Adds a match from the current position
+     *
+     * @param value  The value of the matched key
+     * @param length The length of the matched key
+     */
+    void add(int value, int length) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        values[size] = value;
+        lengths[size] = length;
+        size++;
+    }
+
+    /**
+     * @return The number of positions searched
+     */
+    public int getPositionCount() {
+        return positions;
+    }
+
+    /**
+     * @return The total number of matches from all positions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the first match from a position
+     *
+     * @param position The position, relative to the start of the window
+     * @return The index of the first match
+     */
+    public int start(int position) {
+        return starts[position];
+    }
+
+    /**
+     * Returns the index after the last match from a position
+     *
+     * @param position The position, relative to the start of the window
+     * @return The index after the last match
+     */
+    public int end(int position) {
+        return starts[position + 1];
+    }
+
+    /**
+     * Returns the value of a match
+     *
+     * @param index The index of the match
+     * @return The value of the matched key
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the length of a match
+     *
+     * @param index The index of the match
+     * @return The length of the matched key
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+}
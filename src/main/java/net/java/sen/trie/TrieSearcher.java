@@ -24,7 +24,8 @@ import java.nio.IntBuffer;
 
 
 /**
- * Searches a Trie data file
+ * Searches a Trie data file, held either in an {@link IntBuffer} or in a heap
+ * <code>int[]</code>
  */
 public class TrieSearcher {
     /**
@@ -76,4 +77,139 @@ public class TrieSearcher {
 
         return num;
     }
+
+    /**
+     * Searches for Trie keys forming a complete substring of the given
+     * sentence, starting at the given position within the sentence
+     *
+     * @param trieData The Trie data to search
+     * @param iterator The character iterator to read search characters from
+     * @param results  An array used to return the values of the found keys
+     * @return The number of results found
+     * @throws ArrayIndexOutOfBoundsException if results[] is too small
+     */
+    public static int commonPrefixSearch(int[] trieData, CharIterator iterator, int[] results) {
+        int b = trieData[0];
+        int num = 0;
+        int n;
+        int p;
+
+        while (iterator.hasNext()) {
+            p = b;
+            n = trieData[p << 1];
+            if (n < 0 && b == trieData[(p << 1) + 1]) {
+                // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+                results[num] = -n - 1;
+                num++;
+            }
+
+            p = b + iterator.next() + 1;
+
+            if (((p << 1) + 1) >= trieData.length) {
+                // We fell off the end of the Trie data
+                return num;
+            }
+
+            if (b == trieData[(p << 1) + 1]) {
+                b = trieData[p << 1];
+            } else {
+                return num;
+            }
+        }
+
+        p = b;
+        n = trieData[p << 1];
+        if ((n < 0) && b == trieData[(p << 1) + 1]) {
+            // Will throw ArrayIndexOutOfBoundsException if results[] is too small
+            results[num] = -n - 1;
+            num++;
+        }
+
+        return num;
+    }
+
+    /**
+     * Searches for Trie keys forming a complete substring of a window of
+     * characters, starting at every position within the window. Keys may run
+     * up to the end of the window
+     *
+     * @param trieData The Trie data to search
+     * @param buffer   The buffer holding the window
+     * @param offset   The offset of the window within the buffer
+     * @param length   The length of the window
+     * @param matches  A buffer used to return the found keys
+     */
+    public static void commonPrefixSearchAll(int[] trieData, char[] buffer, int offset, int length, TrieMatches matches) {
+        matches.reset(length);
+
+        int root = trieData[0];
+        int end = offset + length;
+        for (int start = offset; start < end; start++) {
+            matches.startPosition(start - offset);
+
+            int b = root;
+            int i = start;
+            while (true) {
+                int n = trieData[b << 1];
+                if (n < 0 && b == trieData[(b << 1) + 1]) {
+                    matches.add(-n - 1, i - start);
+                }
+
+                if (i == end) {
+                    break;
+                }
+
+                int p = b + buffer[i++] + 1;
+                if ((((p << 1) + 1) >= trieData.length) || (b != trieData[(p << 1) + 1])) {
+                    break;
+                }
+                b = trieData[p << 1];
+            }
+        }
+
+        matches.finish();
+    }
+
+    /**
+     * Searches for Trie keys forming a complete substring of a window of
+     * characters, starting at every position within the window. Keys may run
+     * up to the end of the window
+     *
+     * @param trieData The Trie data to search
+     * @param buffer   The buffer holding the window
+     * @param offset   The offset of the window within the buffer
+     * @param length   The length of the window
+     * @param matches  A buffer used to return the found keys
+     */
+    public static void commonPrefixSearchAll(IntBuffer trieData, char[] buffer, int offset, int length, TrieMatches matches) {
+        matches.reset(length);
+
+        int limit = trieData.limit();
+        int root = trieData.get(0);
+        int end = offset + length;
+        for (int start = offset; start < end; start++) {
+            matches.startPosition(start - offset);
+
+            int b = root;
+            int i = start;
+            while (true) {
+                int n = trieData.get(b << 1);
+                if (n < 0 && b == trieData.get((b << 1) + 1)) {
+                    matches.add(-n - 1, i - start);
+                }
+
+                if (i == end) {
+                    break;
+                }
+
+                int p = b + buffer[i++] + 1;
+                if ((((p << 1) + 1) >= limit) || (b != trieData.get((p << 1) + 1))) {
+                    break;
+                }
+                b = trieData.get(p << 1);
+            }
+        }
+
+        matches.finish();
+    }
 }
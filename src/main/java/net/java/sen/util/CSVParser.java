@@ -115,12 +115,21 @@ public class CSVParser implements Closeable {
      * @throws IOException
      */
     public String[] nextTokens() throws IOException {
-        ArrayList<String> list = new ArrayList<>();
-
         if (!nextRow()) {
             return null;
         }
 
+        return remainingTokens();
+    }
+
+    /**
+     * Returns an array of the remaining values from the current line
+     *
+     * @return tokens The values
+     */
+    private String[] remainingTokens() {
+        ArrayList<String> list = new ArrayList<>();
+
         String input;
         while ((input = nextToken()) != null) {
             list.add(input);
@@ -131,6 +140,20 @@ public class CSVParser implements Closeable {
         return tokens;
     }
 
+    /**
+     * Returns an array of all values from a single line of CSV data, as
+     * {@link #nextTokens()} would for that line
+     *
+     * @param line The line of CSV data
+     * @return tokens The values
+     */
+    public static String[] split(String line) {
+        CSVParser parser = new CSVParser();
+        parser.line = line;
+
+        return parser.remainingTokens();
+    }
+
     /**
      * Returns the unparsed current line of text
      *
@@ -140,6 +163,12 @@ public class CSVParser implements Closeable {
         return line;
     }
 
+    /**
+     * Constructor for a parser of a single line, used by {@link #split(String)}
+     */
+    private CSVParser() {
+    }
+
     /**
      * Constructor for a parser that reads lines from an InputStream
      *
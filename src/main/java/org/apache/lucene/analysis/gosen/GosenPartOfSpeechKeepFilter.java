@@ -19,6 +19,7 @@ package org.apache.lucene.analysis.gosen;
 import java.io.IOException;
 import java.util.Set;
 
+import net.java.sen.dictionary.PartOfSpeechSet;
 import org.apache.lucene.analysis.FilteringTokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
@@ -31,16 +32,27 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
  */
 public final class GosenPartOfSpeechKeepFilter extends FilteringTokenFilter {
 
-    private final Set<String> keepTags;
+    private final PartOfSpeechSet keepTags;
     private final PartOfSpeechAttribute posAtt = addAttribute(PartOfSpeechAttribute.class);
 
     public GosenPartOfSpeechKeepFilter(TokenStream input, Set<String> keepTags) {
+        this(input, new PartOfSpeechSet(keepTags, false));
+    }
+
+    /**
+     * @param keepTags the tags, which are matched by part-of-speech id
+     */
+    public GosenPartOfSpeechKeepFilter(TokenStream input, PartOfSpeechSet keepTags) {
         super(input);
         this.keepTags = keepTags;
     }
 
     @Override
     protected boolean accept() throws IOException {
+        int id = posAtt.getPartOfSpeechId();
+        if (id >= 0) {
+            return keepTags.contains(posAtt.getDictionary(), id);
+        }
         String pos = posAtt.getPartOfSpeech();
         return pos != null && keepTags.contains(pos);
     }
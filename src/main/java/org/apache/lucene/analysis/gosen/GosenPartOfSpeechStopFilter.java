@@ -19,6 +19,7 @@ package org.apache.lucene.analysis.gosen;
 import java.io.IOException;
 import java.util.Set;
 
+import net.java.sen.dictionary.PartOfSpeechSet;
 import org.apache.lucene.analysis.FilteringTokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
@@ -29,16 +30,27 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
  */
 public final class GosenPartOfSpeechStopFilter extends FilteringTokenFilter {
 
-    private final Set<String> stopTags;
+    private final PartOfSpeechSet stopTags;
     private final PartOfSpeechAttribute posAtt = addAttribute(PartOfSpeechAttribute.class);
 
     public GosenPartOfSpeechStopFilter(TokenStream input, Set<String> stopTags) {
+        this(input, new PartOfSpeechSet(stopTags, false));
+    }
+
+    /**
+     * @param stopTags the tags, which are matched by part-of-speech id
+     */
+    public GosenPartOfSpeechStopFilter(TokenStream input, PartOfSpeechSet stopTags) {
         super(input);
         this.stopTags = stopTags;
     }
 
     @Override
     protected boolean accept() throws IOException {
+        int id = posAtt.getPartOfSpeechId();
+        if (id >= 0) {
+            return !stopTags.contains(posAtt.getDictionary(), id);
+        }
         String pos = posAtt.getPartOfSpeech();
         return pos == null || !stopTags.contains(pos);
     }
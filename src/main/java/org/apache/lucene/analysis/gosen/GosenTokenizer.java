@@ -19,6 +19,7 @@ package org.apache.lucene.analysis.gosen;
 import java.io.IOException;
 
 import net.java.sen.SenFactory;
+import net.java.sen.SenOptions;
 import net.java.sen.StringTagger;
 import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Token;
@@ -27,6 +28,7 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.gosen.tokenAttributes.BasicFormAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.ConjugationAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.CostAttribute;
+import org.apache.lucene.analysis.gosen.tokenAttributes.FallbackAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.PartOfSpeechAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.PronunciationsAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.ReadingsAttribute;
@@ -69,6 +71,9 @@ public final class GosenTokenizer extends Tokenizer {
     // sentence increment
     private final SentenceStartAttribute sentenceAtt = addAttribute(SentenceStartAttribute.class);
 
+    // character class segmentation on exceeding the budget
+    private final FallbackAttribute fallbackAtt = addAttribute(FallbackAttribute.class);
+
     // viterbi cost
     private final CostAttribute costAtt = addAttribute(CostAttribute.class);
     // viterbi costs from Token.getCost() are cumulative,
@@ -94,17 +99,33 @@ public final class GosenTokenizer extends Tokenizer {
      * @param tokenizeUnknownKatakana determine whether segmenting unknown katakana or not
      */
     public GosenTokenizer(AttributeFactory factory, StreamFilter filter, String dictionaryDir, boolean tokenizeUnknownKatakana) {
+        this(factory, filter, dictionaryDir, SenOptions.builder().tokenizeUnknownKatakana(tokenizeUnknownKatakana).build());
+    }
+
+    /**
+     * Create A new GosenTokenizer
+     *
+     * @param factory the AttributeFactory to use
+     * @param filter stream filter
+     * @param dictionaryDir lucene-gosen dictionary directory
+     * @param options the analysis and stream options. Tokens found by the
+     *                fallback segmentation of its {@link SenOptions#getBudget() Budget}
+     *                are marked with {@link FallbackAttribute}
+     * @see SenFactory#getStringTagger(String, SenOptions)
+     * @see StreamTagger2#StreamTagger2(StringTagger, java.io.Reader, int, boolean)
+     */
+    public GosenTokenizer(AttributeFactory factory, StreamFilter filter, String dictionaryDir, SenOptions options) {
         super(factory);
-        StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir, tokenizeUnknownKatakana);
+        StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir, options);
         if (filter != null) {
             stringTagger.addFilter(filter);
         }
-        tagger = new StreamTagger2(stringTagger, this.input);
+        tagger = new StreamTagger2(stringTagger, this.input, options.getMaxBufferSize(), options.isIncremental());
     }
 
     @Override
     public boolean incrementToken() throws IOException {
-        Token token = tagger.next();
+        Token token = tagger.nextToken();
         if (token == null) {
             return false;
         } else {
@@ -112,13 +133,19 @@ public final class GosenTokenizer extends Tokenizer {
             Morpheme m = token.getMorpheme();
 
             // note, unlike the previous implementation, we set the surface form
-            termAtt.setEmpty().append(token.getSurface());
+            char[] surfaceBuffer = token.getSurfaceBuffer();
+            if (surfaceBuffer != null) {
+                termAtt.copyBuffer(surfaceBuffer, token.getSurfaceOffset(), token.getLength());
+            } else {
+                termAtt.setEmpty().append(token.getSurface());
+            }
             int cost = token.getCost();
 
             if (token.isSentenceStart()) {
                 accumulatedCost = 0;
                 sentenceAtt.setSentenceStart(true);
             }
+            fallbackAtt.setFallback(token.isFallback());
 
             costAtt.setCost(cost - accumulatedCost);
             accumulatedCost = cost;
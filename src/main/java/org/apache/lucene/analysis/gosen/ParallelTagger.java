@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import net.java.sen.StringTagger;
+import net.java.sen.StringTaggerPool;
+import net.java.sen.dictionary.Token;
+
+
+/**
+ * Analyses documents by breaking them into sentences exactly as a
+ * {@link StreamTagger2} with the same buffer settings does, and analysing runs
+ * of sentences concurrently on an {@link Executor}. Each task borrows a
+ * {@link StringTagger} from a {@link StringTaggerPool} for its duration. The
+ * tokens are returned in document order, with absolute offsets and sentence
+ * starts marked, so the result is the same as reading the document through
+ * such a StreamTagger2 with a tagger from the same pool.
+ * <p>
+ * In incremental mode, a line too long for the buffer is read whole and
+ * analysed by one task, rather than in parts. This gives the same tokens
+ * unless the pool's taggers have a {@link net.java.sen.dictionary.Budget}
+ * node limit or a beam, which apply to each part separately.
+ * <p>
+ * The time limit of a Budget is measured from the time a document is
+ * submitted, and applies to every task of the document. Each task that
+ * exceeds it counts as an overrun.
+ * <p>
+ * This class is thread safe, provided that the Executor is.
+ */
+public final class ParallelTagger {
+    /** the number of characters of sentences to group into one task */
+    private static final int TASK_LENGTH = 2048;
+
+    private final StringTaggerPool pool;
+    private final Executor executor;
+    /** the number of chars a sentence buffer may grow to, or 0 */
+    private final int maxBufferSize;
+    /** whether lines too long for the buffer are read whole */
+    private final boolean incremental;
+
+    /**
+     * Construct a new ParallelTagger that breaks text as a
+     * {@link StreamTagger2#StreamTagger2(StringTagger, Reader)} does
+     *
+     * @param pool the pool to borrow taggers from
+     * @param executor the executor to analyse sentences on
+     */
+    public ParallelTagger(StringTaggerPool pool, Executor executor) {
+        this(pool, executor, 0, false);
+    }
+
+    /**
+     * Construct a new ParallelTagger that breaks text as a
+     * {@link StreamTagger2#StreamTagger2(StringTagger, Reader, int, boolean)}
+     * with the same settings does
+     *
+     * @param pool the pool to borrow taggers from
+     * @param executor the executor to analyse sentences on
+     * @param maxBufferSize the number of chars the buffer may grow to when a
+     *                      line is too long to be broken safely, or 0 to use a
+     *                      fixed 4096 char buffer
+     * @param incremental   if true, read long lines whole rather than breaking
+     *                      or truncating them
+     */
+    public ParallelTagger(StringTaggerPool pool, Executor executor, int maxBufferSize, boolean incremental) {
+        if (maxBufferSize < 0) {
+            throw new IllegalArgumentException("maxBufferSize must not be negative: " + maxBufferSize);
+        }
+        this.pool = pool;
+        this.executor = executor;
+        this.maxBufferSize = maxBufferSize;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Analyse a document
+     *
+     * @param document the document
+     * @return the tokens of the document
+     * @throws IOException
+     */
+    public List<Token> analyze(String document) throws IOException {
+        return analyze(new StringReader(document));
+    }
+
+    /**
+     * Analyse a document
+     *
+     * @param input the document
+     * @return the tokens of the document
+     * @throws IOException
+     */
+    public List<Token> analyze(Reader input) throws IOException {
+        return join(submit(input));
+    }
+
+    /**
+     * Analyse a list of documents concurrently. Each document is split into
+     * runs of sentences exactly as by {@link #analyze(Reader)}, so that the
+     * runs of one large document are analysed concurrently too
+     *
+     * @param documents the documents
+     * @return the tokens of each document, in the same order
+     * @throws IOException
+     */
+    public List<List<Token>> analyze(List<String> documents) throws IOException {
+        List<List<CompletableFuture<List<Token>>>> futures = new ArrayList<>();
+        for (String document : documents) {
+            futures.add(submit(new StringReader(document)));
+        }
+
+        List<List<Token>> tokens = new ArrayList<>();
+        for (List<CompletableFuture<List<Token>>> documentFutures : futures) {
+            tokens.add(join(documentFutures));
+        }
+        return tokens;
+    }
+
+    /*
+     * split a document into runs of sentences, and submit each run for
+     * analysis
+     */
+    private List<CompletableFuture<List<Token>>> submit(Reader input) throws IOException {
+        long startTime = System.nanoTime();
+        SentenceSplitter splitter = new SentenceSplitter(input, maxBufferSize, incremental);
+        List<CompletableFuture<List<Token>>> futures = new ArrayList<>();
+
+        List<String> texts = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int taskLength = 0;
+        while (splitter.next()) {
+            if (splitter.isPartial()) {
+                // read on until the whole of the sentence is in the buffer
+                splitter.retain(0);
+                continue;
+            }
+            String text = splitter.getText();
+            texts.add(text);
+            starts.add(splitter.getStart());
+            taskLength += text.length();
+            if (taskLength >= TASK_LENGTH) {
+                futures.add(submit(texts, starts, startTime));
+                texts = new ArrayList<>();
+                starts = new ArrayList<>();
+                taskLength = 0;
+            }
+        }
+        if (!texts.isEmpty()) {
+            futures.add(submit(texts, starts, startTime));
+        }
+        return futures;
+    }
+
+    private CompletableFuture<List<Token>> submit(List<String> texts, List<Integer> starts, long startTime) {
+        return CompletableFuture.supplyAsync(() -> analyze(texts, starts, startTime), executor);
+    }
+
+    /*
+     * analyse a run of sentences with a borrowed tagger, adjusting the tokens
+     * as StreamTagger2 does
+     */
+    private List<Token> analyze(List<String> texts, List<Integer> starts, long startTime) {
+        StringTagger tagger;
+        try {
+            tagger = pool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("interrupted waiting for a tagger"));
+        }
+        try {
+            tagger.startDocument(startTime);
+            List<Token> result = new ArrayList<>();
+            List<Token> tokens = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                int start = starts.get(i);
+                tokens = tagger.analyze(texts.get(i), tokens);
+                for (int j = 0; j < tokens.size(); j++) {
+                    Token token = tokens.get(j);
+                    token.setSentenceStart(j == 0);
+                    token.setStart(token.getStart() + start);
+                }
+                result.addAll(tokens);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            pool.release(tagger);
+        }
+    }
+
+    /*
+     * join the results of the runs of one document, in order
+     */
+    private static List<Token> join(List<CompletableFuture<List<Token>>> futures) throws IOException {
+        List<Token> tokens = new ArrayList<>();
+        for (CompletableFuture<List<Token>> future : futures) {
+            tokens.addAll(join(future));
+        }
+        return tokens;
+    }
+
+    private static List<Token> join(CompletableFuture<List<Token>> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
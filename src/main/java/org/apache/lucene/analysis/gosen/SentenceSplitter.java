@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.Locale;
+
+import net.java.sen.dictionary.UnknownWordModel;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+
+
+/**
+ * Breaks text read from a Reader into sentences according to UAX #29: Unicode
+ * Text Segmentation (http://www.unicode.org/reports/tr29/)
+ * <p>
+ * This is the sentence splitting used by {@link StreamTagger2}, and is shared
+ * with {@link ParallelTagger} so that both analyse exactly the same sentences.
+ */
+final class SentenceSplitter {
+    private static final int IOBUFFER = 4096;
+    private char[] buffer = new char[IOBUFFER];
+    /**
+     * the size the buffer may grow to when no unambiguous break point is
+     * found, or 0 to keep the buffer at {@link #IOBUFFER} and truncate
+     */
+    private final int maxBufferSize;
+    /**
+     * if true, text without a break point is left open at the end of the
+     * buffer for incremental analysis, rather than broken at a fallback point
+     */
+    private final boolean incremental;
+    /** true if the text in the buffer continues beyond usableLength */
+    private boolean open = false;
+    /** true length of text in the buffer */
+    private int length = 0;
+    /** length in buffer that can be evaluated safely, up to a safe end point */
+    private int usableLength = 0;
+    /** accumulated offset of previous buffers for this reader, for offsetAtt */
+    private int offset = 0;
+    /** start of the current sentence in the buffer */
+    private int start = 0;
+    /** end of the current sentence in the buffer */
+    private int end = 0;
+
+    private Reader input;
+    private final BreakIterator breaker = BreakIterator.getSentenceInstance(Locale.JAPANESE); /* tokenizes a char[] of text */
+    private final CharArrayIterator iterator = new CharArrayIterator();
+
+    /** character categories used to find a fallback break point */
+    private static final UnknownWordModel CATEGORIES = JapaneseTokenizer.DEFAULT_UNKNOWN_WORD_MODEL;
+
+    /**
+     * Construct a new SentenceSplitter that breaks text from the given Reader.
+     */
+    SentenceSplitter(Reader input) {
+        this(input, 0, false);
+    }
+
+    /**
+     * Construct a new SentenceSplitter that breaks text from the given Reader,
+     * using an adaptive buffer, and optionally leaving text without break
+     * points open for incremental analysis.
+     *
+     * @param maxBufferSize the size the buffer may grow to, or 0 to use a fixed
+     *                      buffer that truncates text without break points
+     * @param incremental   if true, a sentence that fills the buffer without a
+     *                      break point is returned whole and marked partial
+     *                      (see {@link #isPartial()}) rather than broken
+     */
+    SentenceSplitter(Reader input, int maxBufferSize, boolean incremental) {
+        if (maxBufferSize < 0) {
+            throw new IllegalArgumentException("maxBufferSize must not be negative: " + maxBufferSize);
+        }
+        this.input = input;
+        this.maxBufferSize = (maxBufferSize == 0) ? 0 : Math.max(maxBufferSize, IOBUFFER);
+        this.incremental = incremental;
+    }
+
+    void reset() {
+        iterator.setText(buffer, 0, 0);
+        breaker.setText(iterator);
+        length = usableLength = offset = start = end = 0;
+        open = false;
+    }
+
+    void reset(Reader input) {
+        this.input = input;
+        reset();
+    }
+
+    /**
+     * @return the offset of the end of the text read so far
+     */
+    int end() {
+        return (length < 0) ? offset : offset + length;
+    }
+
+    /**
+     * @return the offset of the current sentence within the text
+     */
+    int getStart() {
+        return offset + start;
+    }
+
+    /**
+     * @return the text of the current sentence
+     */
+    String getText() {
+        return new String(buffer, start, end - start);
+    }
+
+    /**
+     * The buffer is reused, so its contents are only valid until the next
+     * call to {@link #next()}
+     *
+     * @return the buffer holding the current sentence
+     */
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index of the current sentence within {@link #getBuffer()}
+     */
+    int getBufferOffset() {
+        return start;
+    }
+
+    /**
+     * @return the length of the current sentence
+     */
+    int getLength() {
+        return end - start;
+    }
+
+    /**
+     * @return true if the current sentence is cut off by the end of the buffer
+     * and continues in text not yet read. Only in incremental mode
+     */
+    boolean isPartial() {
+        return open && end == usableLength;
+    }
+
+    /**
+     * Gives back the end of the current sentence, so that the following
+     * sentence starts after the given number of its characters once the
+     * buffer is refilled
+     *
+     * @param settled the number of characters of the current sentence that
+     *                have been consumed
+     */
+    void retain(int settled) {
+        usableLength = start + settled;
+        open = false;
+    }
+
+    /*
+     * This tokenizes text based upon the longest matching rule, and because of
+     * this, isn't friendly to a Reader.
+     *
+     * Text is read from the input stream in 4kB chunks. Within a 4kB chunk of
+     * text, the last unambiguous break point is found. Any remaining characters
+     * represent possible partial sentences, so are appended to the front of the
+     * next chunk.
+     *
+     * There is the possibility that there are no unambiguous break points within
+     * an entire 4kB chunk of text (binary data, or very long lines). By default
+     * there is a maximum word limit of 4kB since it will not try to grow the
+     * buffer in this case. In adaptive mode (maxBufferSize > 0) the buffer is
+     * doubled until it reaches maxBufferSize, and then the text is broken at
+     * the best fallback point in the second half of the buffer: sentence
+     * punctuation, then white space, then a change of character category.
+     * In incremental mode the whole buffer is used instead, and the last
+     * sentence is marked partial so that only the part of it which has been
+     * analysed is consumed (see {@link #retain(int)}). If none of it is
+     * consumed, the buffer is doubled beyond maxBufferSize so that the
+     * sentence can be given again with more text.
+     *
+     * Note: this is much more sophisticated than StreamTagger, which will just
+     * truncate on its 256 char buffer!
+     */
+
+    /**
+     * Advances to the next sentence
+     *
+     * @return false if the text is exhausted
+     * @throws IOException
+     */
+    boolean next() throws IOException {
+        if (length == 0)
+            refill();
+        while (!nextBuffer()) {
+            refill();
+            if (length <= 0) // no more bytes to read;
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the last unambiguous break position in the text.
+     *
+     * @return position of character, or -1 if one does not exist
+     */
+    private int findSafeEnd() {
+        for (int i = length - 1; i >= 0; i--)
+            if (isSafeEnd(buffer[i]))
+                return i + 1;
+        return -1;
+    }
+
+    /**
+     * Returns the best break position in the second half of the text, for use
+     * when there is no unambiguous one.
+     *
+     * @return position of character, or -1 if one does not exist
+     */
+    private int findFallbackEnd() {
+        int limit = length / 2;
+        for (int i = length - 1; i >= limit; i--)
+            if (isSentenceEnd(buffer[i]))
+                return i + 1;
+        for (int i = length - 1; i >= limit; i--)
+            if (Character.isWhitespace(buffer[i]))
+                return i + 1;
+        for (int i = length - 1; i > limit; i--)
+            if (!Character.isLowSurrogate(buffer[i])
+                    && CATEGORIES.getCategory(buffer[i]) != CATEGORIES.getCategory(buffer[i - 1]))
+                return i;
+        return -1;
+    }
+
+    private boolean isSentenceEnd(char ch) {
+        switch (ch) {
+        case '.':
+        case '!':
+        case '?':
+        case 0x3002: // IDEOGRAPHIC FULL STOP
+        case 0xFF0E: // FULLWIDTH FULL STOP
+        case 0xFF01: // FULLWIDTH EXCLAMATION MARK
+        case 0xFF1F: // FULLWIDTH QUESTION MARK
+        case 0xFF61: // HALFWIDTH IDEOGRAPHIC FULL STOP
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private boolean isSafeEnd(char ch) {
+        switch (ch) {
+        case 0x000D:
+        case 0x000A:
+        case 0x0085:
+        case 0x2028:
+        case 0x2029:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Refill the buffer, accumulating the offset and setting usableLength to the
+     * last unambiguous break position
+     *
+     * @throws IOException
+     */
+    private void refill() throws IOException {
+        offset += usableLength;
+        int leftover = length - usableLength;
+        System.arraycopy(buffer, usableLength, buffer, 0, leftover);
+        length = leftover;
+        open = false;
+        if (length == buffer.length) { // nothing was consumed, so make room for more
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+        }
+        while (true) {
+            int requested = buffer.length - length;
+            int returned = input.read(buffer, length, requested);
+            if (returned > 0)
+                length += returned;
+            if (returned < requested) { // reader has been emptied, process the rest
+                usableLength = length;
+                break;
+            }
+            // still more data to be read, find a safe-stopping place
+            usableLength = findSafeEnd();
+            if (usableLength >= 0)
+                break;
+            if (buffer.length < maxBufferSize) { // grow and read some more
+                buffer = Arrays.copyOf(buffer, (int) Math.min(maxBufferSize, 2L * buffer.length));
+                continue;
+            }
+            if (incremental) { // leave the end of the text open
+                usableLength = length;
+                open = true;
+                break;
+            }
+            if (maxBufferSize > 0)
+                usableLength = findFallbackEnd();
+            if (usableLength < 0)
+                usableLength = length; // more than a buffer of text without breaks,
+                                       // gonna possibly truncate tokens
+            break;
+        }
+
+        iterator.setText(buffer, 0, Math.max(0, usableLength));
+        breaker.setText(iterator);
+    }
+
+    /*
+     * return true if there is a sentence in the buffer, or false if it is
+     * exhausted.
+     */
+    private boolean nextBuffer() {
+        int start = breaker.current();
+
+        if (start == BreakIterator.DONE)
+            return false; // BreakIterator exhausted
+
+        // find the next set of boundaries
+        int end = breaker.next();
+
+        if (end == BreakIterator.DONE)
+            return false; // BreakIterator exhausted
+
+        this.start = start;
+        this.end = end;
+        return true;
+    }
+}
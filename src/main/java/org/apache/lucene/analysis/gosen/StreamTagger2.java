@@ -19,10 +19,8 @@ package org.apache.lucene.analysis.gosen;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import net.java.sen.StringTagger;
 import net.java.sen.dictionary.Token;
@@ -34,156 +32,135 @@ import net.java.sen.dictionary.Token;
  * <p>
  */
 public final class StreamTagger2 {
-    private static final int IOBUFFER = 4096;
-    private final char[] buffer = new char[IOBUFFER];
-    /** true length of text in the buffer */
-    private int length = 0;
-    /** length in buffer that can be evaluated safely, up to a safe end point */
-    private int usableLength = 0;
-    /** accumulated offset of previous buffers for this reader, for offsetAtt */
-    private int offset = 0;
+    private final SentenceSplitter splitter;
 
     private StringTagger tagger;
-    private Reader input;
-    private final BreakIterator breaker = BreakIterator.getSentenceInstance(Locale.JAPANESE); /* tokenizes a char[] of text */
-    private final CharArrayIterator iterator = new CharArrayIterator();
     private List<Token> tokens = new ArrayList<>();
     private int index = 0;
+    /** true while the tagger holds the unsettled end of a partial sentence */
+    private boolean continuing = false;
+    /** true once the first sentence of the document has been read */
+    private boolean started = false;
 
     /**
      * Construct a new StreamTagger2 that breaks text into words from the given Reader.
      */
     public StreamTagger2(StringTagger tagger, Reader input) {
-        this.tagger = tagger;
-        this.input = input;
-    }
-
-    public Token next() throws IOException {
-        if (tokens == null || index >= tokens.size()) {
-            if (length == 0)
-                refill();
-            while (!incrementTokenBuffer()) {
-                refill();
-                if (length <= 0) // no more bytes to read;
-                    return null;
-            }
-        }
-        return tokens.get(index++);
+        this(tagger, input, 0, false);
     }
 
-    public void reset() throws IOException {
-        iterator.setText(buffer, 0, 0);
-        breaker.setText(iterator);
-        length = usableLength = offset = index = 0;
-        tokens.clear();
-    }
-
-    public void reset(Reader input) throws IOException {
-        this.input = input;
-        reset();
-    }
-
-    public int end() throws IOException {
-        return (length < 0) ? offset : offset + length;
-    }
-
-    /*
-     * This tokenizes text based upon the longest matching rule, and because of
-     * this, isn't friendly to a Reader.
-     *
-     * Text is read from the input stream in 4kB chunks. Within a 4kB chunk of
-     * text, the last unambiguous break point is found. Any remaining characters
-     * represent possible partial sentences, so are appended to the front of the
-     * next chunk.
-     *
-     * There is the possibility that there are no unambiguous break points within
-     * an entire 4kB chunk of text (binary data). So there is a maximum word limit
-     * of 4kB since it will not try to grow the buffer in this case.
-     *
-     * Note: this is much more sophisticated than StreamTagger, which will just
-     * truncate on its 256 char buffer!
-     */
-
     /**
-     * Returns the last unambiguous break position in the text.
+     * Construct a new StreamTagger2 that breaks text into words from the given
+     * Reader, growing its buffer when a line is too long to be broken safely,
+     * and optionally analysing lines that are too long for the buffer
+     * incrementally.
+     * <p>
+     * In incremental mode, a line that fills the buffer without a break point
+     * is analysed as far as its best path is settled (see
+     * {@link StringTagger#analyzePart(char[], int, int, boolean, List)}), and
+     * the rest is carried over to the next buffer, so that arbitrarily long
+     * lines are tokenized exactly as if they were analysed whole. The memory
+     * used is bounded by the buffer size, except that the buffer grows while
+     * nothing at all can be settled, such as within a single word longer than
+     * the buffer. Otherwise, a line is broken at the best fallback point once the
+     * buffer has grown to its maximum size, or truncated if that is 0.
      *
-     * @return position of character, or -1 if one does not exist
+     * @param maxBufferSize the number of chars the buffer may grow to when a
+     *                      line is too long to be broken safely, or 0 to use a
+     *                      fixed 4096 char buffer
+     * @param incremental   if true, analyse long lines incrementally rather
+     *                      than breaking or truncating them
      */
-    private int findSafeEnd() {
-        for (int i = length - 1; i >= 0; i--)
-            if (isSafeEnd(buffer[i]))
-                return i + 1;
-        return -1;
-    }
-
-    private boolean isSafeEnd(char ch) {
-        switch (ch) {
-        case 0x000D:
-        case 0x000A:
-        case 0x0085:
-        case 0x2028:
-        case 0x2029:
-            return true;
-        default:
-            return false;
-        }
+    public StreamTagger2(StringTagger tagger, Reader input, int maxBufferSize, boolean incremental) {
+        this.tagger = tagger;
+        this.splitter = new SentenceSplitter(input, maxBufferSize, incremental);
     }
 
     /**
-     * Refill the buffer, accumulating the offset and setting usableLength to the
-     * last unambiguous break position
+     * Returns the next token. The token's surface is copied out of the
+     * reader's buffer, so the token may be kept
      *
+     * @return the next token, or null if the text is exhausted
      * @throws IOException
      */
-    private void refill() throws IOException {
-        offset += usableLength;
-        int leftover = length - usableLength;
-        System.arraycopy(buffer, usableLength, buffer, 0, leftover);
-        int requested = buffer.length - leftover;
-        int returned = input.read(buffer, leftover, requested);
-        length = returned < 0 ? leftover : returned + leftover;
-        if (returned < requested) // reader has been emptied, process the rest
-            usableLength = length;
-        else { // still more data to be read, find a safe-stopping place
-            usableLength = findSafeEnd();
-            if (usableLength < 0)
-                usableLength = length; // more than IOBUFFER of text without breaks,
-                                       // gonna possibly truncate tokens
+    public Token next() throws IOException {
+        Token token = nextToken();
+        if (token != null) {
+            token.getSurface();
         }
-
-        iterator.setText(buffer, 0, Math.max(0, usableLength));
-        breaker.setText(iterator);
+        return token;
     }
 
-    /*
-     * return true if there is a token from the buffer, or null if it is
-     * exhausted.
+    /**
+     * Returns the next token, which may refer to the reader's buffer for its
+     * surface (see {@link Token#getSurfaceBuffer()}). The buffer is reused, so
+     * the surface is only valid until the tokens of the following sentence are
+     * read
+     *
+     * @return the next token, or null if the text is exhausted
+     * @throws IOException
      */
-    private boolean incrementTokenBuffer() throws IOException {
-        while (true) {
-            int start = breaker.current();
-
-            if (start == BreakIterator.DONE)
-                return false; // BreakIterator exhausted
-
-            // find the next set of boundaries
-            int end = breaker.next();
-
-            if (end == BreakIterator.DONE)
-                return false; // BreakIterator exhausted
-
-            String text = new String(buffer, start, end - start);
-            tokens = tagger.analyze(text, tokens);
+    Token nextToken() throws IOException {
+        while (tokens == null || index >= tokens.size()) {
+            if (!started) {
+                tagger.startDocument();
+                started = true;
+            }
+            if (!splitter.next())
+                return null;
+
+            int start = splitter.getStart();
+            boolean sentenceStart = !continuing;
+            if (splitter.isPartial()) {
+                if (!continuing && splitter.getBufferOffset() > 0) {
+                    // start the sentence afresh at the beginning of the buffer
+                    splitter.retain(0);
+                    continue;
+                }
+                tokens = tagger.analyzePart(splitter.getBuffer(), splitter.getBufferOffset(), splitter.getLength(), false, tokens);
+                int settled = tagger.getSettledLength();
+                // if nothing is settled, the tagger keeps what it carried and
+                // the whole of the buffer is given again with more text
+                splitter.retain(settled);
+                continuing |= (settled > 0);
+            } else if (continuing) {
+                tokens = tagger.analyzePart(splitter.getBuffer(), splitter.getBufferOffset(), splitter.getLength(), true, tokens);
+                continuing = false;
+            } else {
+                tokens = tagger.analyze(splitter.getBuffer(), splitter.getBufferOffset(), splitter.getLength(), tokens);
+            }
 
-            if (tokens != null && !tokens.isEmpty()) {
+            if (tokens != null) {
                 for (int i = 0; i < tokens.size(); i++) {
                     Token token = tokens.get(i);
-                    token.setSentenceStart(i == 0);
-                    token.setStart(token.getStart() + start + offset);
+                    token.setSentenceStart(sentenceStart && i == 0);
+                    token.setStart(token.getStart() + start);
                 }
-                index = 0;
-                return true;
             }
+            index = 0;
         }
+        return tokens.get(index++);
+    }
+
+    public void reset() throws IOException {
+        splitter.reset();
+        tagger.reset();
+        continuing = false;
+        started = false;
+        index = 0;
+        tokens.clear();
+    }
+
+    public void reset(Reader input) throws IOException {
+        splitter.reset(input);
+        tagger.reset();
+        continuing = false;
+        started = false;
+        index = 0;
+        tokens.clear();
+    }
+
+    public int end() throws IOException {
+        return splitter.end();
     }
 }
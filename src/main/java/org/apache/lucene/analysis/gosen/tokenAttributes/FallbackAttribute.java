@@ -0,0 +1,32 @@
+/*
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen.tokenAttributes;
+
+import org.apache.lucene.util.Attribute;
+
+
+/**
+ * Specifies if this token was produced by the cheap character-class
+ * segmentation used when the analysis budget is exceeded, rather than by
+ * morphological analysis: such tokens carry no part-of-speech or reading
+ * information.
+ */
+public interface FallbackAttribute extends Attribute {
+    boolean getFallback();
+
+    void setFallback(boolean fallback);
+}
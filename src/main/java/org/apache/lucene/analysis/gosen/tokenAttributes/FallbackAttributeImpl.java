@@ -0,0 +1,51 @@
+/*
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen.tokenAttributes;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+
+public class FallbackAttributeImpl extends AttributeImpl implements FallbackAttribute, Cloneable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean fallback;
+
+    public boolean getFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void clear() {
+        this.fallback = false;
+    }
+
+    @Override
+    public void reflectWith(AttributeReflector attributeReflector) {
+    }
+
+    @Override
+    public void copyTo(AttributeImpl target) {
+        FallbackAttribute t = (FallbackAttribute) target;
+        t.setFallback(fallback);
+    }
+}
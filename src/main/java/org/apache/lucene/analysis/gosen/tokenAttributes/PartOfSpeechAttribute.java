@@ -16,6 +16,7 @@
 
 package org.apache.lucene.analysis.gosen.tokenAttributes;
 
+import net.java.sen.dictionary.Dictionary;
 import net.java.sen.dictionary.Morpheme;
 import org.apache.lucene.util.Attribute;
 
@@ -26,5 +27,16 @@ import org.apache.lucene.util.Attribute;
 public interface PartOfSpeechAttribute extends Attribute {
     String getPartOfSpeech();
 
+    /**
+     * @return the part-of-speech id within {@link #getDictionary()}, or -1
+     * @see Morpheme#getPartOfSpeechId()
+     */
+    int getPartOfSpeechId();
+
+    /**
+     * @return the dictionary the part-of-speech id belongs to, or null
+     */
+    Dictionary getDictionary();
+
     void setMorpheme(Morpheme morpheme);
 }
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import net.java.sen.dictionary.PartOfSpeechSet;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -39,6 +40,7 @@ import org.apache.lucene.analysis.util.ResourceLoaderAware;
  *     &lt;tokenizer class="solr.GosenTokenizerFactory"/&gt;
  *     &lt;filter class="solr.GosenPartOfSpeechKeepFilterFactory" 
  *             tags="keepTags.txt" 
+ *             matchSubtypes="false / true"
  *             enablePositionIncrements="true"/&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
@@ -46,12 +48,14 @@ import org.apache.lucene.analysis.util.ResourceLoaderAware;
 public class GosenPartOfSpeechKeepFilterFactory extends ClassicFilterFactory implements ResourceLoaderAware {
 
     private final String keepTagFiles;
-    private Set<String> keepTags;
+    private final boolean matchSubtypes;
+    private PartOfSpeechSet keepTags;
 
     public GosenPartOfSpeechKeepFilterFactory(Map<String, String> args) {
         super(Collections.emptyMap());
 
         keepTagFiles = require(args, "tags");
+        matchSubtypes = getBoolean(args, "matchSubtypes", false);
 
         if (args.containsKey("enablePositionIncrements")) {
             throw new IllegalArgumentException("enablePositionIncrements is not a valid option as of Lucene 5.0");
@@ -64,11 +68,12 @@ public class GosenPartOfSpeechKeepFilterFactory extends ClassicFilterFactory imp
     public void inform(ResourceLoader loader) {
         try {
             CharArraySet cas = getWordSet(loader, keepTagFiles, false);
-            keepTags = new HashSet<>();
+            Set<String> tags = new HashSet<>();
             for (Object element : cas) {
                 char[] chars = (char[]) element;
-                keepTags.add(new String(chars));
+                tags.add(new String(chars));
             }
+            keepTags = new PartOfSpeechSet(tags, matchSubtypes);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import net.java.sen.dictionary.PartOfSpeechSet;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -39,18 +40,21 @@ import org.apache.lucene.analysis.util.ResourceLoaderAware;
  *     &lt;tokenizer class="solr.GosenTokenizerFactory"/&gt;
  *     &lt;filter class="solr.GosenPartOfSpeechStopFilterFactory" 
  *             tags="stopTags.txt" 
+ *             matchSubtypes="false / true"
  *             enablePositionIncrements="true"/&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
  */
 public class GosenPartOfSpeechStopFilterFactory extends ClassicFilterFactory implements ResourceLoaderAware {
     private final String stopTagFiles;
-    private Set<String> stopTags;
+    private final boolean matchSubtypes;
+    private PartOfSpeechSet stopTags;
 
     public GosenPartOfSpeechStopFilterFactory(Map<String, String> args) {
         super(Collections.emptyMap());
 
         stopTagFiles = require(args, "tags");
+        matchSubtypes = getBoolean(args, "matchSubtypes", false);
 
         if (args.containsKey("enablePositionIncrements")) {
             throw new IllegalArgumentException("enablePositionIncrements is not a valid option as of Lucene 5.0");
@@ -63,11 +67,12 @@ public class GosenPartOfSpeechStopFilterFactory extends ClassicFilterFactory imp
     public void inform(ResourceLoader loader) {
         try {
             CharArraySet cas = getWordSet(loader, stopTagFiles, false);
-            stopTags = new HashSet<>();
+            Set<String> tags = new HashSet<>();
             for (Object element : cas) {
                 char[] chars = (char[]) element;
-                stopTags.add(new String(chars));
+                tags.add(new String(chars));
             }
+            stopTags = new PartOfSpeechSet(tags, matchSubtypes);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -20,10 +20,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 
+import net.java.sen.SenOptions;
+import net.java.sen.dictionary.Beam;
+import net.java.sen.dictionary.Budget;
+import net.java.sen.dictionary.ConnectionCosts;
 import net.java.sen.filter.stream.CompositeTokenFilter;
+import net.java.sen.trie.LexiconIndex;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.gosen.GosenTokenizer;
 import org.apache.lucene.analysis.standard.ClassicFilterFactory;
@@ -41,9 +47,30 @@ import org.apache.lucene.util.IOUtils;
  *     &lt;tokenizer class="solr.GosenTokenizerFactory"
  *     compositePOS="compositePOS.txt"
  *     dictionaryDir="/opt/dictionary
- *     tokenizeUnknownKatakana="false / true" /&gt;
+ *     tokenizeUnknownKatakana="false / true"
+ *     mapDictionary="false / true"
+ *     heapTrie="false / true"
+ *     lexiconIndex="doubleArray / fst"
+ *     maxBufferSize="65536"
+ *     incremental="false / true"
+ *     beamWidth="0"
+ *     beamThreshold="0"
+ *     beamCheckInterval="0"
+ *     maxNodes="0"
+ *     maxMillis="0" /&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
+ * <p>
+ * A non-zero <code>beamWidth</code> or <code>beamThreshold</code> prunes the
+ * lattice to bound the analysis time (see {@link Beam}). The tokenizers
+ * created share one Beam, whose counters are available from
+ * {@link #getBeam()}.
+ * <p>
+ * A non-zero <code>maxNodes</code> (per sentence) or <code>maxMillis</code>
+ * (per document) limits the work done on each document. Sentences that
+ * exceed it are segmented by character class instead, and their tokens are
+ * marked with a FallbackAttribute. The counters of the shared {@link Budget}
+ * are available from {@link #getBudget()}.
  */
 public class GosenTokenizerFactory extends ClassicFilterFactory implements ResourceLoaderAware {
 
@@ -52,7 +79,7 @@ public class GosenTokenizerFactory extends ClassicFilterFactory implements Resou
 
     private final String compositePosFile;
     private final String dirVal;
-    private final boolean tokenizeUnknownKatakana;
+    private final SenOptions options;
 
     /**
      * Create a new GosenTokenizerFactory
@@ -63,7 +90,28 @@ public class GosenTokenizerFactory extends ClassicFilterFactory implements Resou
 
         compositePosFile = get(args, "compositePOS");
         dirVal = get(args, "dictionaryDir");
-        tokenizeUnknownKatakana = getBoolean(args, "tokenizeUnknownKatakana", false);
+        boolean mapDictionary = getBoolean(args, "mapDictionary", false);
+        SenOptions.Builder builder = SenOptions.builder()
+                .tokenizeUnknownKatakana(getBoolean(args, "tokenizeUnknownKatakana", false))
+                .mapFiles(mapDictionary)
+                .connectionCostStorage(mapDictionary ? ConnectionCosts.Storage.MAPPED : ConnectionCosts.Storage.HEAP)
+                .heapTrie(getBoolean(args, "heapTrie", false))
+                .lexiconIndexType(get(args, "lexiconIndex", Arrays.asList("doubleArray", "fst"), "doubleArray").equals("fst")
+                        ? LexiconIndex.Type.FST : LexiconIndex.Type.DOUBLE_ARRAY)
+                .maxBufferSize(getInt(args, "maxBufferSize", 0))
+                .incremental(getBoolean(args, "incremental", false));
+        int beamWidth = getInt(args, "beamWidth", 0);
+        int beamThreshold = getInt(args, "beamThreshold", 0);
+        int beamCheckInterval = getInt(args, "beamCheckInterval", 0);
+        if (beamWidth != 0 || beamThreshold != 0) {
+            builder.beam(new Beam(beamWidth, beamThreshold, beamCheckInterval));
+        }
+        int maxNodes = getInt(args, "maxNodes", 0);
+        int maxMillis = getInt(args, "maxMillis", 0);
+        if (maxNodes != 0 || maxMillis != 0) {
+            builder.budget(new Budget(maxNodes, maxMillis));
+        }
+        options = builder.build();
 
         if (!args.isEmpty()){
             throw new IllegalArgumentException("Unknown parameters: " + args);
@@ -96,7 +144,23 @@ public class GosenTokenizerFactory extends ClassicFilterFactory implements Resou
         }
     }
 
+    /**
+     * @return the beam search settings and counters shared by the tokenizers
+     * created, or null if the lattice is not pruned
+     */
+    public Beam getBeam() {
+        return options.getBeam();
+    }
+
+    /**
+     * @return the limits on the work done and the counters of their overruns,
+     * shared by the tokenizers created, or null if there are no limits
+     */
+    public Budget getBudget() {
+        return options.getBudget();
+    }
+
     public Tokenizer create(AttributeFactory factory) {
-        return new GosenTokenizer(factory, compositeTokenFilter, dictionaryDir, tokenizeUnknownKatakana);
+        return new GosenTokenizer(factory, compositeTokenFilter, dictionaryDir, options);
     }
 }
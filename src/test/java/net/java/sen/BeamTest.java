@@ -0,0 +1,142 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Beam;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests the beam-pruned lattice
+ */
+public class BeamTest {
+
+    private static final String[] SENTENCES = {
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている",
+            "「ダブル・ディップ」という言葉が、市場関係者の間で囁かれ始めている",
+            "ＡＢＣ ｄｅｆ　ＧＨＩ  空白  から  始まる  文",
+            "東京都庁第一本庁舎展望室"
+    };
+
+    /**
+     * Compares two lists of Tokens
+     */
+    private static void assertSameTokens(List<Token> expected, List<Token> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSurface(), actual.get(i).getSurface());
+            assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+            assertEquals(expected.get(i).getCost(), actual.get(i).getCost());
+            assertEquals(expected.get(i).getMorpheme().toString(), actual.get(i).getMorpheme().toString());
+        }
+    }
+
+    /**
+     * Tests that a beam too wide to prune anything gives the exact results
+     *
+     * @throws IOException
+     */
+    @Test
+    void testWideBeam() throws IOException {
+        Beam beam = new Beam(100000, 0, 1);
+        StringTagger exact = SenFactory.getStringTagger(IPADIC_DIR, false);
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().beam(beam).build());
+
+        for (String sentence : SENTENCES) {
+            assertSameTokens(exact.analyze(sentence, new ArrayList<>()), tagger.analyze(sentence, new ArrayList<>()));
+        }
+        assertEquals(SENTENCES.length, beam.getSentences());
+        assertEquals(0, beam.getPrunedSentences());
+    }
+
+    /**
+     * Tests that a narrow beam is counted, and that both lattices prune alike
+     *
+     * @throws IOException
+     */
+    @Test
+    void testNarrowBeam() throws IOException {
+        Beam beam = new Beam(1, 0, 1);
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().beam(beam).build());
+        StringTagger compactTagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().compactLattice(true).beam(beam).build());
+
+        for (String sentence : SENTENCES) {
+            List<Token> tokens = tagger.analyze(sentence, new ArrayList<>());
+            assertSameTokens(tokens, compactTagger.analyze(sentence, new ArrayList<>()));
+
+            int end = 0;
+            for (Token token : tokens) {
+                assertTrue(token.getStart() >= end);
+                end = token.getStart() + token.getLength();
+            }
+        }
+        assertEquals(SENTENCES.length * 2, beam.getSentences());
+        assertTrue(beam.getPrunedSentences() > 0);
+        assertEquals(beam.getPrunedSentences(), beam.getSampledSentences());
+        assertTrue(beam.getChangedSamples() <= beam.getSampledSentences());
+    }
+
+    /**
+     * Tests that a sentence analysed in parts is pruned and counted once, and
+     * never sampled
+     *
+     * @throws IOException
+     */
+    @Test
+    void testParts() throws IOException {
+        Beam beam = new Beam(1, 0, 1);
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().beam(beam).build());
+
+        char[] buffer = (SENTENCES[0] + SENTENCES[1] + SENTENCES[0]).toCharArray();
+        int start = 0;
+        int parts = 0;
+        while (true) {
+            int length = Math.min(60, buffer.length - start);
+            boolean complete = (start + length == buffer.length);
+            tagger.analyzePart(buffer, start, length, complete, new ArrayList<>());
+            parts++;
+            if (complete) {
+                break;
+            }
+            start += tagger.getSettledLength();
+        }
+
+        assertTrue(parts > 2, "parts: " + parts);
+        assertEquals(1, beam.getSentences());
+        assertEquals(1, beam.getPrunedSentences());
+        assertEquals(0, beam.getSampledSentences());
+    }
+
+    /**
+     * Tests that a beam must prune by something
+     */
+    @Test
+    void testSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new Beam(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Beam(-1, 0, 0));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Budget;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests the analysis budget and its fallback segmentation
+ */
+public class BudgetTest {
+
+    private static final String LONG_SENTENCE =
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている";
+
+    /**
+     * Tests that a sentence exceeding the node limit is segmented by
+     * character class, in both lattices
+     *
+     * @throws IOException
+     */
+    @Test
+    void testNodeLimit() throws IOException {
+        for (boolean compact : new boolean[] {false, true}) {
+            Budget budget = new Budget(50, 0);
+            StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().compactLattice(compact).budget(budget).build());
+
+            List<Token> tokens = tagger.analyze("東京", new ArrayList<>());
+            assertEquals(1, tokens.size());
+            assertFalse(tokens.get(0).isFallback());
+            assertEquals(0, budget.getNodeOverruns());
+
+            tokens = tagger.analyze("ＡＢＣ 東京タワーへ" + LONG_SENTENCE, new ArrayList<>());
+            assertEquals(1, budget.getNodeOverruns());
+            assertEquals(1, budget.getFallbackSentences());
+            assertEquals("ＡＢＣ", tokens.get(0).getSurface());
+            assertEquals(0, tokens.get(0).getStart());
+            assertEquals("東京", tokens.get(1).getSurface());
+            assertEquals(4, tokens.get(1).getStart());
+            assertEquals("タワー", tokens.get(2).getSurface());
+            int end = 4;
+            for (Token token : tokens.subList(1, tokens.size())) {
+                assertTrue(token.isFallback());
+                assertEquals(end, token.getStart());
+                end = token.getStart() + token.getLength();
+            }
+            assertEquals(LONG_SENTENCE.length() + 10, end);
+        }
+    }
+
+    /**
+     * Tests that the sentences of a document that exceeds the time limit are
+     * segmented by character class, and that the document is counted once
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Test
+    void testTimeLimit() throws IOException, InterruptedException {
+        Budget budget = new Budget(0, 1);
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().budget(budget).build());
+
+        // No time limit applies outside a document
+        assertFalse(tagger.analyze(LONG_SENTENCE, new ArrayList<>()).get(0).isFallback());
+
+        tagger.startDocument();
+        Thread.sleep(10);
+        assertTrue(tagger.analyze(LONG_SENTENCE, new ArrayList<>()).get(0).isFallback());
+        assertTrue(tagger.analyze("東京", new ArrayList<>()).get(0).isFallback());
+        assertEquals(1, budget.getTimeOverruns());
+        assertEquals(2, budget.getFallbackSentences());
+
+        Budget longBudget = new Budget(0, 60000);
+        tagger = SenFactory.getStringTagger(IPADIC_DIR, SenOptions.builder().budget(longBudget).build());
+        tagger.startDocument();
+        assertFalse(tagger.analyze(LONG_SENTENCE, new ArrayList<>()).get(0).isFallback());
+        assertEquals(0, longBudget.getTimeOverruns());
+    }
+
+    /**
+     * Tests that a budget must limit something
+     */
+    @Test
+    void testSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new Budget(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new Budget(-1, 10));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import net.java.sen.dictionary.Reading;
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Tests that the primitive lattice gives the same results as the Node lattice
+ */
+public class CompactLatticeTest {
+
+    private static final String[] TEST_STRINGS = {
+            "",
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。",
+            "「ダブル・ディップ」という言葉が、市場関係者の間で囁かれ始めている。",
+            "ＡＢＣ ｄｅｆ　ＧＨＩ",
+            "Le Japon est un pays d'Asie de l'Est. Café crème",
+            "アイウエオカキクケコサシスセソ",
+            "  空白  から  始まる  文  ",
+    };
+
+    /**
+     * The inputs of {@link SentenceTest} and {@link BasicDecompositionTest},
+     * with their ignore spans and reading constraints
+     */
+    private static final List<Supplier<Sentence>> CORPUS = Arrays.asList(
+            () -> new Sentence(""),
+            () -> new Sentence("本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。"),
+            () -> new Sentence("麻薬の密売は根こそぎ絶やさなければならない"),
+            () -> new Sentence("魔女狩大将マシュー・ホプキンス。"),
+            () -> new Sentence("これは本ではない"),
+            () -> new Sentence("mündlichen"),
+            () -> new Sentence("ッﾊﾞサ"),
+            () -> new Sentence("私はまだ初心者です。"),
+            () -> new Sentence("今日は"),
+            () -> new Sentence("買い被る"),
+            () -> new Sentence("abcde"),
+            () -> new Sentence(" abcde"),
+            () -> new Sentence("abc de"),
+            () -> new Sentence("abcde "),
+            () -> new Sentence("a  bc \t\rd\r\ne"),
+            () -> ignoring("abcde", 0, 3),
+            () -> ignoring("abcde", 2, 3),
+            () -> ignoring("abcde", 1, 3),
+            () -> ignoring("abcde", 1, 2, 2, 2),
+            () -> constrained("abcde", new Reading(0, 1, "q")),
+            () -> constrained("abcde", new Reading(1, 3, "qwe")),
+            () -> constrained("abcde", new Reading(1, 3, "q")),
+            () -> constrained("abcde", new Reading(1, 2, "q"), new Reading(3, 2, "w")),
+            () -> constrained("abcde", new Reading(4, 1, "q")),
+            () -> constrained("abcde", new Reading(0, 3, "qwe"), new Reading(2, 3, "rty")),
+            () -> constrained("abcde", new Reading(1, 3, "qwe"), new Reading(2, 1, "r")),
+            () -> constrained("abcde", new Reading(2, 3, "qwe"), new Reading(1, 2, "rt")),
+            () -> constrained("abcde", new Reading(2, 3, "qwe"), new Reading(0, 2, "rt")),
+            () -> {
+                Sentence sentence = constrained("abcde", new Reading(2, 3, "qwe"));
+                sentence.removeReadingConstraint(2);
+                return sentence;
+            },
+            () -> constrained("今日は", new Reading(0, 1, "イマ"), new Reading(1, 1, "ヒ"))
+    );
+
+    /**
+     * Creates a Sentence with breaking ignore spans
+     *
+     * @param text  The sentence's characters
+     * @param spans The position and length of each span
+     * @return The Sentence
+     */
+    private static Sentence ignoring(String text, int... spans) {
+        Sentence sentence = new Sentence(text);
+        for (int i = 0; i < spans.length; i += 2) {
+            sentence.setBreakingIgnoreSpan(spans[i], (short) spans[i + 1]);
+        }
+        return sentence;
+    }
+
+    /**
+     * Creates a Sentence with reading constraints, set in order
+     *
+     * @param text        The sentence's characters
+     * @param constraints The constraints
+     * @return The Sentence
+     */
+    private static Sentence constrained(String text, Reading... constraints) {
+        Sentence sentence = new Sentence(text);
+        for (Reading constraint : constraints) {
+            sentence.setReadingConstraint(constraint);
+        }
+        return sentence;
+    }
+
+    /**
+     * Creates the options for one of the lattices
+     *
+     * @param tokenizeUnknownKatakana Whether to segment unknown katakana
+     * @param compactLattice          Whether to use the primitive lattice
+     * @return The options
+     */
+    private static SenOptions lattice(boolean tokenizeUnknownKatakana, boolean compactLattice) {
+        return SenOptions.builder().tokenizeUnknownKatakana(tokenizeUnknownKatakana).compactLattice(compactLattice).build();
+    }
+
+    /**
+     * Compares two Token lists field by field
+     *
+     * @param expected The expected tokens
+     * @param actual   The actual tokens
+     */
+    private static void assertSameTokens(List<Token> expected, List<Token> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getSurface(), actual.get(i).getSurface());
+            assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+            assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+            assertEquals(expected.get(i).getCost(), actual.get(i).getCost());
+            assertEquals(expected.get(i).getMorpheme().getPartOfSpeech(), actual.get(i).getMorpheme().getPartOfSpeech());
+            assertEquals(expected.get(i).getMorpheme().toString(), actual.get(i).getMorpheme().toString());
+        }
+    }
+
+    /**
+     * Tests that both lattices decompose strings identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testDecomposition() throws IOException {
+        for (boolean tokenizeUnknownKatakana : new boolean[] {false, true}) {
+            StringTagger nodeTagger = SenFactory.getStringTagger(IPADIC_DIR, lattice(tokenizeUnknownKatakana, false));
+            StringTagger compactTagger = SenFactory.getStringTagger(IPADIC_DIR, lattice(tokenizeUnknownKatakana, true));
+
+            for (String testString : TEST_STRINGS) {
+                List<Token> expected = nodeTagger.analyze(testString, new ArrayList<>());
+                List<Token> actual = compactTagger.analyze(testString, new ArrayList<>());
+                assertSameTokens(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Tests that both lattices decompose every input of {@link SentenceTest}
+     * and {@link BasicDecompositionTest} identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testCorpus() throws IOException {
+        for (boolean tokenizeUnknownKatakana : new boolean[] {false, true}) {
+            Viterbi nodeViterbi = SenFactory.getViterbi(IPADIC_DIR, lattice(tokenizeUnknownKatakana, false));
+            Viterbi compactViterbi = SenFactory.getViterbi(IPADIC_DIR, lattice(tokenizeUnknownKatakana, true));
+
+            for (Supplier<Sentence> sentence : CORPUS) {
+                List<Token> expected = nodeViterbi.getBestTokens(sentence.get(), new ArrayList<>());
+                List<Token> actual = compactViterbi.getBestTokens(sentence.get(), new ArrayList<>());
+                assertSameTokens(expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Tests that both lattices obey reading constraints identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadingConstraint() throws IOException {
+        Viterbi nodeViterbi = SenFactory.getViterbi(IPADIC_DIR, lattice(false, false));
+        Viterbi compactViterbi = SenFactory.getViterbi(IPADIC_DIR, lattice(false, true));
+
+        Reading[][] constraints = {
+                {new Reading(0, 1, "イマ"), new Reading(1, 1, "ヒ")},
+                {new Reading(0, 2, "キョウ")},
+                {new Reading(0, 2, "ゼンゼンチガウ")},
+        };
+
+        for (Reading[] readings : constraints) {
+            Sentence nodeSentence = new Sentence("今日は");
+            Sentence compactSentence = new Sentence("今日は");
+            for (Reading reading : readings) {
+                nodeSentence.setReadingConstraint(reading);
+                compactSentence.setReadingConstraint(reading);
+            }
+
+            List<Token> expected = nodeViterbi.getBestTokens(nodeSentence, new ArrayList<>());
+            List<Token> actual = compactViterbi.getBestTokens(compactSentence, new ArrayList<>());
+            assertSameTokens(expected, actual);
+        }
+    }
+}
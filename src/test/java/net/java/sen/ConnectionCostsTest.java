@@ -0,0 +1,289 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.java.sen.compiler.CostMatrixCompressor;
+import net.java.sen.dictionary.ConnectionCosts;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests that each connection cost storage reads the matrix identically
+ */
+public class ConnectionCostsTest {
+
+    /**
+     * Compares every cost in the matrix between heap and buffer storage
+     *
+     * @throws IOException
+     */
+    @Test
+    void testStorage() throws IOException {
+        byte[] data = Files.readAllBytes(Paths.get(IPADIC_DIR, "connectionCost.sen"));
+        ShortBuffer raw = ByteBuffer.wrap(data).asShortBuffer();
+        boolean compressed = raw.get(0) == ConnectionCosts.COMPRESSED_MARKER;
+        int sizes = compressed ? 3 : 0;
+        int size1 = raw.get(sizes);
+        int size2 = raw.get(sizes + 1);
+        int size3 = raw.get(sizes + 2);
+
+        ConnectionCosts heap = ConnectionCosts.create(ByteBuffer.wrap(data), ConnectionCosts.Storage.HEAP);
+        ConnectionCosts buffer = ConnectionCosts.create(ByteBuffer.wrap(data), ConnectionCosts.Storage.BUFFER);
+
+        for (int rcAttr2 = 0; rcAttr2 < size1; rcAttr2++) {
+            for (int rcAttr1 = 0; rcAttr1 < size2; rcAttr1++) {
+                int row = heap.row(rcAttr2, rcAttr1);
+                for (int lcAttr = 0; lcAttr < size3; lcAttr++) {
+                    int expected = compressed ? heap.get(row, lcAttr) : raw.get(3 + row + lcAttr);
+                    assertEquals(expected, heap.get(row, lcAttr));
+                    assertEquals(expected, buffer.get(rcAttr2, rcAttr1, lcAttr));
+                }
+            }
+        }
+    }
+
+    /** Size of the first extent of the test matrix */
+    private static final int SIZE1 = 6;
+
+    /** Size of the second extent of the test matrix */
+    private static final int SIZE2 = 5;
+
+    /** Size of the third extent of the test matrix */
+    private static final int SIZE3 = 40;
+
+    /** The default cost of the test matrix */
+    private static final short DEFAULT_COST = 10000;
+
+    /**
+     * Creates a matrix that is mostly the default cost, with some context
+     * attributes that behave identically
+     *
+     * @param distinctCosts The number of distinct costs other than the default
+     * @return The matrix
+     */
+    private static short[] createMatrix(int distinctCosts) {
+        Random random = new Random(7);
+        short[] matrix = new short[SIZE1 * SIZE2 * SIZE3];
+        for (int i = 0; i < SIZE1; i++) {
+            for (int j = 0; j < SIZE2; j++) {
+                for (int k = 0; k < SIZE3; k++) {
+                    int offset = SIZE3 * (SIZE2 * i + j) + k;
+                    if (i == 5) {
+                        // Same as 4
+                        matrix[offset] = matrix[SIZE3 * (SIZE2 * 4 + j) + k];
+                    } else if (k == SIZE3 - 1) {
+                        // Same as SIZE3 - 2
+                        matrix[offset] = matrix[offset - 1];
+                    } else if (j > 2 || random.nextInt(3) == 0) {
+                        matrix[offset] = DEFAULT_COST;
+                    } else {
+                        matrix[offset] = (short) (random.nextInt(distinctCosts) * 10 - 500);
+                    }
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Writes a matrix uncompressed, in the format of a connection cost file
+     *
+     * @param matrix The matrix
+     * @return The file's contents
+     * @throws IOException
+     */
+    private static byte[] write(short[] matrix) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeShort(SIZE1);
+        output.writeShort(SIZE2);
+        output.writeShort(SIZE3);
+        for (short cost : matrix) {
+            output.writeShort(cost);
+        }
+        output.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a matrix compressed, in the format of a connection cost file
+     *
+     * @param matrix   The matrix
+     * @param quantize If <code>true</code>, quantize the costs
+     * @return The file's contents
+     * @throws IOException
+     */
+    private static byte[] write(short[] matrix, boolean quantize) throws IOException {
+        CostMatrixCompressor compressor = new CostMatrixCompressor(matrix, SIZE1, SIZE2, SIZE3);
+        assertEquals(SIZE1 - 1, compressor.getClassCounts()[0]);
+        assertEquals(SIZE3 - 1, compressor.getClassCounts()[2]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        compressor.write(new DataOutputStream(bytes), quantize);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Compresses a matrix and reads it back
+     *
+     * @param matrix   The matrix
+     * @param quantize If <code>true</code>, quantize the costs
+     * @return The compressed matrix
+     * @throws IOException
+     */
+    private static ConnectionCosts compress(short[] matrix, boolean quantize) throws IOException {
+        return ConnectionCosts.create(ByteBuffer.wrap(write(matrix, quantize)), ConnectionCosts.Storage.HEAP);
+    }
+
+    /**
+     * Reads every cost of a test matrix
+     *
+     * @param costs The matrix
+     * @return The costs, in the order of the uncompressed matrix
+     */
+    private static short[] read(ConnectionCosts costs) {
+        short[] matrix = new short[SIZE1 * SIZE2 * SIZE3];
+        for (int rcAttr2 = 0; rcAttr2 < SIZE1; rcAttr2++) {
+            for (int rcAttr1 = 0; rcAttr1 < SIZE2; rcAttr1++) {
+                for (int lcAttr = 0; lcAttr < SIZE3; lcAttr++) {
+                    matrix[SIZE3 * (SIZE2 * rcAttr2 + rcAttr1) + lcAttr] = (short) costs.get(rcAttr2, rcAttr1, lcAttr);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Tests that every format of matrix is held in the storage requested, by
+     * altering the file's contents after the matrix is read. The last byte of
+     * each format belongs to a cost, or to the code of a cost, that is read
+     *
+     * @throws IOException
+     */
+    @Test
+    void testStorageUsed() throws IOException {
+        short[] matrix = createMatrix(100);
+        byte[][] formats = { write(matrix), write(matrix, false), write(matrix, true) };
+
+        for (byte[] format : formats) {
+            for (ConnectionCosts.Storage storage : ConnectionCosts.Storage.values()) {
+                Path file = null;
+                FileChannel channel = null;
+                ByteBuffer buffer;
+                if (storage == ConnectionCosts.Storage.MAPPED) {
+                    file = Files.createTempFile("connectionCost", ".sen");
+                    Files.write(file, format);
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, format.length);
+                } else {
+                    buffer = ByteBuffer.wrap(format.clone());
+                }
+
+                try {
+                    ConnectionCosts costs = ConnectionCosts.create(buffer, storage);
+                    assertEquals(storage, costs.getStorage());
+                    assertArrayEquals(matrix, read(costs));
+
+                    int last = format.length - 1;
+                    buffer.put(last, (byte) (buffer.get(last) == 0 ? 1 : 0));
+                    if (storage == ConnectionCosts.Storage.HEAP) {
+                        assertArrayEquals(matrix, read(costs));
+                    } else {
+                        assertFalse(Arrays.equals(matrix, read(costs)));
+                    }
+                } finally {
+                    if (channel != null) {
+                        channel.close();
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a compressed matrix reads every cost exactly
+     *
+     * @throws IOException
+     */
+    @Test
+    void testCompressed() throws IOException {
+        for (boolean quantize : new boolean[] { false, true }) {
+            short[] matrix = createMatrix(100);
+            ConnectionCosts costs = compress(matrix, quantize);
+
+            for (int rcAttr2 = 0; rcAttr2 < SIZE1; rcAttr2++) {
+                for (int rcAttr1 = 0; rcAttr1 < SIZE2; rcAttr1++) {
+                    int row = costs.row(rcAttr2, rcAttr1);
+                    for (int lcAttr = 0; lcAttr < SIZE3; lcAttr++) {
+                        assertEquals(matrix[SIZE3 * (SIZE2 * rcAttr2 + rcAttr1) + lcAttr], costs.get(row, lcAttr));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a quantized matrix with too many distinct costs to code
+     * exactly still reads the default cost exactly
+     *
+     * @throws IOException
+     */
+    @Test
+    void testQuantizedLossy() throws IOException {
+        short[] matrix = createMatrix(1000);
+        ConnectionCosts costs = compress(matrix, true);
+
+        int inexact = 0;
+        for (int rcAttr2 = 0; rcAttr2 < SIZE1; rcAttr2++) {
+            for (int rcAttr1 = 0; rcAttr1 < SIZE2; rcAttr1++) {
+                for (int lcAttr = 0; lcAttr < SIZE3; lcAttr++) {
+                    short expected = matrix[SIZE3 * (SIZE2 * rcAttr2 + rcAttr1) + lcAttr];
+                    if (expected == DEFAULT_COST) {
+                        assertEquals(DEFAULT_COST, costs.get(rcAttr2, rcAttr1, lcAttr));
+                    } else if (expected != costs.get(rcAttr2, rcAttr1, lcAttr)) {
+                        inexact++;
+                    }
+                }
+            }
+        }
+        assertTrue(inexact > 0);
+    }
+}
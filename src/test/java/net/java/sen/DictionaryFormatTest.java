@@ -0,0 +1,189 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.ConnectionCosts;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Node;
+import net.java.sen.dictionary.SearchResults;
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.SentenceIterator;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+import net.java.sen.trie.DoubleArrayLexiconIndex;
+import net.java.sen.trie.TrieBuilder;
+import net.java.sen.trie.TrieMatches;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests the version 2 dictionary format, which has no limit on the number of
+ * morphemes for a key
+ */
+public class DictionaryFormatTest {
+
+    /** More morphemes for one key than a version 1 dictionary can hold */
+    private static final int HOMOGRAPHS = 300;
+
+    /** The cost of the first morpheme */
+    private static final int BASE_COST = 10000;
+
+    /**
+     * Creates a version 2 Dictionary with the single key "a"
+     *
+     * @return The Dictionary
+     * @throws IOException
+     */
+    private static Dictionary createDictionary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < 3 + HOMOGRAPHS; i++) {
+            CToken token = new CToken();
+            token.length = 1;
+            token.cost = (short) (BASE_COST + i);
+            CToken.write(out, token);
+        }
+        out.flush();
+        ByteBuffer tokens = ByteBuffer.wrap(bytes.toByteArray());
+
+        IntBuffer tokenIndex = IntBuffer.wrap(new int[] { 0, HOMOGRAPHS });
+
+        File trieFile = File.createTempFile("trie", null);
+        trieFile.deleteOnExit();
+        new TrieBuilder(new String[] { "a" }, new int[] { 0 }, 1).build(trieFile.getAbsolutePath());
+        IntBuffer trie;
+        try (RandomAccessFile file = new RandomAccessFile(trieFile, "r")) {
+            trie = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).asIntBuffer();
+        }
+
+        ConnectionCosts costs = ConnectionCosts.create(ShortBuffer.wrap(new short[] { 1, 1, 1, 0 }), ConnectionCosts.Storage.HEAP);
+
+        return new Dictionary(costs, ByteBuffer.allocate(0), tokens, new DoubleArrayLexiconIndex(trie), tokenIndex,
+                new String[0], new String[0], new String[0]);
+    }
+
+    /**
+     * Tests that every morpheme of a key is read
+     *
+     * @throws IOException
+     */
+    @Test
+    void testHomographs() throws IOException {
+        Dictionary dictionary = createDictionary();
+
+        TrieMatches matches = new TrieMatches();
+        dictionary.commonPrefixSearchAll("ab".toCharArray(), 0, 2, matches);
+        assertEquals(1, matches.end(0) - matches.start(0));
+        int value = matches.getValue(matches.start(0));
+
+        assertEquals(HOMOGRAPHS, dictionary.getTokenCount(value));
+        CToken token = new CToken();
+        for (int i = 0; i < HOMOGRAPHS; i++) {
+            dictionary.readToken(value, i, token);
+            assertEquals(BASE_COST + 3 + i, token.cost);
+        }
+    }
+
+    /**
+     * Tests that a tokenizer finds every morpheme of a key
+     *
+     * @throws IOException
+     */
+    @Test
+    void testLookup() throws IOException {
+        JapaneseTokenizer tokenizer = new JapaneseTokenizer(createDictionary(), "unknown", false);
+
+        char[] surface = "a".toCharArray();
+        tokenizer.startSentence(surface);
+        SentenceIterator iterator = new Sentence(surface).iterator();
+        iterator.nextOrigin();
+
+        int found = 0;
+        for (Node node = tokenizer.lookup(iterator, surface); node != null; node = node.rnext) {
+            if (node.partOfSpeechIndex != -1) {
+                // the morpheme is only created for Nodes on the best path
+                assertNull(node.morpheme);
+                found++;
+            }
+        }
+        assertEquals(HOMOGRAPHS, found);
+    }
+
+    /**
+     * Tests that a search into growable buffers finds every morpheme of a key,
+     * more than the fixed size buffers can hold
+     *
+     * @throws IOException
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    void testSearchResults() throws IOException {
+        Dictionary dictionary = createDictionary();
+
+        SearchResults results = new SearchResults();
+        assertEquals(HOMOGRAPHS, dictionary.commonPrefixSearch(iterator("ab"), results));
+        assertEquals(HOMOGRAPHS, results.size());
+        for (int i = 0; i < HOMOGRAPHS; i++) {
+            assertEquals(BASE_COST + 3 + i, results.get(i).cost);
+        }
+
+        assertEquals(0, dictionary.commonPrefixSearch(iterator("b"), results));
+        assertEquals(0, results.size());
+
+        // each search has its own results, so the Dictionary may be shared
+        CToken[] tokens = dictionary.commonPrefixSearch(iterator("a"));
+        assertNotSame(tokens, dictionary.commonPrefixSearch(iterator("b")));
+        for (int i = 0; i < HOMOGRAPHS; i++) {
+            assertFalse(tokens[i].terminator);
+            assertEquals(BASE_COST + 3 + i, tokens[i].cost);
+        }
+        assertTrue(tokens[HOMOGRAPHS].terminator);
+
+        assertThrows(IllegalArgumentException.class, () -> dictionary.commonPrefixSearch(iterator("a"),
+                Dictionary.createTrieSearchResults(), Dictionary.createSearchResults()));
+    }
+
+    /**
+     * Returns an iterator at the start of a string
+     *
+     * @param text The string
+     * @return The iterator
+     */
+    private static SentenceIterator iterator(String text) {
+        SentenceIterator iterator = new Sentence(text).iterator();
+        iterator.nextOrigin();
+        return iterator;
+    }
+}
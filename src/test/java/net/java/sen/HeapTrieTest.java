@@ -0,0 +1,149 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.TrieMatches;
+import net.java.sen.trie.TrieSearcher;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests that a Trie held on the heap gives the same results as one held in a
+ * buffer, and that the search from every position of a window agrees with
+ * the search from each position
+ */
+public class HeapTrieTest {
+
+    private static final String TEST_STRING = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、"
+            + "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。";
+
+    /**
+     * An iterator over a range of a character array
+     */
+    private static final class ArrayCharIterator implements CharIterator {
+
+        private final char[] characters;
+
+        private final int end;
+
+        private int position;
+
+        ArrayCharIterator(char[] characters, int position, int end) {
+            this.characters = characters;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public char next() {
+            return characters[position++];
+        }
+    }
+
+    /**
+     * Tests that both dictionaries decompose a string identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testHeapTrie() throws IOException {
+        SenOptions heap = SenOptions.builder().heapTrie(true).build();
+        assertTrue(SenFactory.getDictionary(IPADIC_DIR, heap).isHeapTrie());
+        assertFalse(SenFactory.getDictionary(IPADIC_DIR).isHeapTrie());
+
+        StringTagger loadedTagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+        StringTagger heapTagger = SenFactory.getStringTagger(IPADIC_DIR, heap);
+
+        List<Token> expected = loadedTagger.analyze(TEST_STRING, new ArrayList<>());
+        List<Token> actual = heapTagger.analyze(TEST_STRING, new ArrayList<>());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            assertEquals(expected.get(i).getCost(), actual.get(i).getCost());
+            assertEquals(expected.get(i).getMorpheme().toString(), actual.get(i).getMorpheme().toString());
+        }
+    }
+
+    /**
+     * Tests that searching a window from every position finds the same keys
+     * as searching from each position, for both representations of the Trie
+     *
+     * @throws IOException
+     */
+    @Test
+    void testCommonPrefixSearchAll() throws IOException {
+        IntBuffer trieBuffer;
+        try (RandomAccessFile trieFile = new RandomAccessFile(new File(IPADIC_DIR, "trie.sen"), "r")) {
+            trieBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+        }
+        int[] trieArray = new int[trieBuffer.remaining()];
+        trieBuffer.duplicate().get(trieArray);
+
+        // a window in the middle of a larger buffer
+        char[] buffer = ("xx" + TEST_STRING + "yy").toCharArray();
+        int offset = 2;
+        int length = TEST_STRING.length();
+
+        TrieMatches bufferMatches = new TrieMatches();
+        TrieMatches arrayMatches = new TrieMatches();
+        TrieSearcher.commonPrefixSearchAll(trieBuffer, buffer, offset, length, bufferMatches);
+        TrieSearcher.commonPrefixSearchAll(trieArray, buffer, offset, length, arrayMatches);
+        assertEquals(length, arrayMatches.getPositionCount());
+
+        int[] results = new int[256];
+        for (int position = 0; position < length; position++) {
+            int found = TrieSearcher.commonPrefixSearch(trieBuffer, new ArrayCharIterator(buffer, offset + position, offset + length), results);
+            assertEquals(found, TrieSearcher.commonPrefixSearch(trieArray, new ArrayCharIterator(buffer, offset + position, offset + length), new int[256]));
+
+            for (TrieMatches matches : new TrieMatches[] { bufferMatches, arrayMatches }) {
+                int[] values = new int[matches.end(position) - matches.start(position)];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = matches.getValue(matches.start(position) + i);
+                    if (i > 0) {
+                        assertTrue(matches.getLength(matches.start(position) + i - 1) < matches.getLength(matches.start(position) + i));
+                    }
+                }
+                int[] expected = new int[found];
+                System.arraycopy(results, 0, expected, 0, found);
+                assertArrayEquals(expected, values);
+            }
+        }
+    }
+}
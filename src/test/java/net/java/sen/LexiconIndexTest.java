@@ -0,0 +1,120 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.DoubleArrayLexiconIndex;
+import net.java.sen.trie.FSTBuilder;
+import net.java.sen.trie.FSTLexiconIndex;
+import net.java.sen.trie.LexiconIndex;
+import net.java.sen.trie.TrieBuilder;
+import net.java.sen.trie.TrieMatches;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests that the {@link LexiconIndex} implementations agree
+ */
+public class LexiconIndexTest {
+
+    private static final String[] KEYS = {
+            "a", "ab", "abc", "b", "bc", "q", "qw", "qwe", "qwer", "qwert", "qwerty", "qwertyu", "京都", "東", "東京", "東京都"
+    };
+
+    private static final String TEST_STRING = "abcqwertyzq東京都qwertyu";
+
+    /**
+     * An iterator over a range of a String
+     */
+    private static CharIterator iterator(final String string, final int start) {
+        return new CharIterator() {
+            int i = start;
+
+            public boolean hasNext() {
+                return this.i < string.length();
+            }
+
+            public char next() throws NoSuchElementException {
+                return string.charAt(this.i++);
+            }
+        };
+    }
+
+    /**
+     * Tests that the double-array and FST indexes built from the same keys
+     * find the same values
+     *
+     * @throws Exception
+     */
+    @Test
+    void testImplementationsAgree() throws Exception {
+        int[] values = new int[KEYS.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i << 8) + 1 + (i % 3);
+        }
+
+        File trieFile = File.createTempFile("trie", null);
+        trieFile.deleteOnExit();
+        new TrieBuilder(KEYS, values, KEYS.length).build(trieFile.getAbsolutePath());
+        LexiconIndex doubleArray;
+        try (RandomAccessFile file = new RandomAccessFile(trieFile, "r")) {
+            doubleArray = new DoubleArrayLexiconIndex(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).asIntBuffer());
+        }
+
+        File fstFile = File.createTempFile("fst", null);
+        fstFile.deleteOnExit();
+        new FSTBuilder(KEYS, values, KEYS.length).build(fstFile.getAbsolutePath());
+        LexiconIndex fst;
+        try (InputStream in = new FileInputStream(fstFile)) {
+            fst = FSTLexiconIndex.read(in);
+        }
+        assertTrue(fst.sizeInBytes() > 0);
+
+        int[] expected = new int[256];
+        int[] actual = new int[256];
+        TrieMatches expectedMatches = new TrieMatches();
+        TrieMatches actualMatches = new TrieMatches();
+        doubleArray.commonPrefixSearchAll(TEST_STRING.toCharArray(), 0, TEST_STRING.length(), expectedMatches);
+        fst.commonPrefixSearchAll(TEST_STRING.toCharArray(), 0, TEST_STRING.length(), actualMatches);
+        assertEquals(expectedMatches.size(), actualMatches.size());
+
+        int total = 0;
+        for (int start = 0; start < TEST_STRING.length(); start++) {
+            int count = doubleArray.commonPrefixSearch(iterator(TEST_STRING, start), expected);
+            assertEquals(count, fst.commonPrefixSearch(iterator(TEST_STRING, start), actual));
+            assertEquals(count, actualMatches.end(start) - actualMatches.start(start));
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected[i], actual[i]);
+                assertEquals(expected[i], actualMatches.getValue(actualMatches.start(start) + i));
+                assertEquals(expectedMatches.getLength(expectedMatches.start(start) + i), actualMatches.getLength(actualMatches.start(start) + i));
+            }
+            total += count;
+        }
+        assertEquals(23, total);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.ConnectionCosts;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+
+/**
+ * Tests that a memory mapped dictionary gives the same results as a loaded one
+ */
+public class MappedDictionaryTest {
+
+    /**
+     * Tests that both dictionaries decompose a string identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testMappedDictionary() throws IOException {
+        SenOptions mapped = SenOptions.builder().mapFiles(true).connectionCostStorage(ConnectionCosts.Storage.MAPPED).build();
+        assertNotSame(SenFactory.getDictionary(IPADIC_DIR), SenFactory.getDictionary(IPADIC_DIR, mapped));
+        assertEquals(ConnectionCosts.Storage.HEAP, SenFactory.getDictionary(IPADIC_DIR).getConnectionCosts().getStorage());
+        assertEquals(ConnectionCosts.Storage.MAPPED, SenFactory.getDictionary(IPADIC_DIR, mapped).getConnectionCosts().getStorage());
+
+        StringTagger loadedTagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+        StringTagger mappedTagger = SenFactory.getStringTagger(IPADIC_DIR, mapped);
+
+        String testString = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。";
+        List<Token> expected = loadedTagger.analyze(testString, new ArrayList<>());
+        List<Token> actual = mappedTagger.analyze(testString, new ArrayList<>());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            assertEquals(expected.get(i).getCost(), actual.get(i).getCost());
+            assertEquals(expected.get(i).getMorpheme().toString(), actual.get(i).getMorpheme().toString());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.MorphemeTable;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests {@link MorphemeTable}
+ */
+public class MorphemeTableTest {
+
+    private static final String TEXT = "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。";
+
+    /**
+     * Analyses the test text, reading every member of each morpheme
+     *
+     * @return A description of the analysis
+     * @throws IOException
+     */
+    private static List<String> analyze() throws IOException {
+        List<String> result = new ArrayList<>();
+        for (Token token : SenFactory.getStringTagger(IPADIC_DIR, false).analyze(TEXT, new ArrayList<>())) {
+            Morpheme m = token.getMorpheme();
+            result.add(m.getPartOfSpeech() + "|" + m.getBasicForm() + "|" + m.getConjugationalType() + "|"
+                    + m.getConjugationalForm() + "|" + m.getReadings() + "|" + m.getPronunciations());
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests that a table gives the same data as decoding, and counts its use
+     *
+     * @throws IOException
+     */
+    @Test
+    void testLazy() throws IOException {
+        Dictionary dictionary = SenFactory.getDictionary(IPADIC_DIR);
+        MorphemeTable previous = dictionary.getMorphemeTable();
+        try {
+            dictionary.setMorphemeTable(null);
+            List<String> expected = analyze();
+
+            MorphemeTable table = new MorphemeTable(dictionary, Long.MAX_VALUE);
+            dictionary.setMorphemeTable(table);
+            assertEquals(expected, analyze());
+            long misses = table.getMisses();
+            assertTrue(misses > 0);
+            assertEquals(misses, table.getSize());
+            assertTrue(table.getBytes() > 0);
+
+            assertEquals(expected, analyze());
+            assertEquals(misses, table.getMisses());
+            assertTrue(table.getHits() >= misses);
+
+            // nothing fits
+            table = new MorphemeTable(dictionary, 0);
+            dictionary.setMorphemeTable(table);
+            assertEquals(expected, analyze());
+            assertEquals(0, table.getSize());
+            assertEquals(0, table.getBytes());
+            assertEquals(0, table.getHits());
+        } finally {
+            dictionary.setMorphemeTable(previous);
+        }
+    }
+
+    /**
+     * Tests that a preloaded table answers every request
+     *
+     * @throws IOException
+     */
+    @Test
+    void testPreload() throws IOException {
+        Dictionary dictionary = SenFactory.getDictionary(IPADIC_DIR);
+        MorphemeTable previous = dictionary.getMorphemeTable();
+        try {
+            dictionary.setMorphemeTable(null);
+            List<String> expected = analyze();
+
+            MorphemeTable table = new MorphemeTable(dictionary, Long.MAX_VALUE);
+            int count = table.preload();
+            assertTrue(count > 0);
+            assertEquals(count, table.getSize());
+
+            dictionary.setMorphemeTable(table);
+            assertEquals(expected, analyze());
+            assertEquals(0, table.getMisses());
+
+            // stops at the memory cap
+            table = new MorphemeTable(dictionary, 1000);
+            count = table.preload();
+            assertEquals(count, table.getSize());
+            assertTrue(table.getBytes() <= 1000);
+        } finally {
+            dictionary.setMorphemeTable(previous);
+        }
+    }
+}
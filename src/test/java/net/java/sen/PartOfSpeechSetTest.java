@@ -0,0 +1,99 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.PartOfSpeechSet;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests {@link PartOfSpeechSet}
+ */
+public class PartOfSpeechSetTest {
+
+    /**
+     * Tests that tags match exactly unless subtypes are matched
+     */
+    @Test
+    public void testStringMatching() {
+        PartOfSpeechSet exact = new PartOfSpeechSet(Arrays.asList("名詞", "助詞-格助詞"), false);
+        assertTrue(exact.contains("名詞"));
+        assertTrue(exact.contains("助詞-格助詞"));
+        assertFalse(exact.contains("名詞-一般"));
+        assertFalse(exact.contains("助詞-格助詞-一般"));
+        assertFalse(exact.contains("助詞"));
+
+        PartOfSpeechSet subtypes = new PartOfSpeechSet(Arrays.asList("名詞", "助詞-格助詞"), true);
+        assertTrue(subtypes.contains("名詞"));
+        assertTrue(subtypes.contains("名詞-一般"));
+        assertTrue(subtypes.contains("名詞-固有名詞-人名"));
+        assertTrue(subtypes.contains("助詞-格助詞-一般"));
+        assertFalse(subtypes.contains("助詞"));
+        assertFalse(subtypes.contains("助詞-係助詞"));
+        assertFalse(subtypes.contains("名詞接続"));
+    }
+
+    /**
+     * Tests that matching by id agrees with matching by string for every
+     * part-of-speech in the dictionary
+     */
+    @Test
+    public void testIdMatching() {
+        Dictionary dictionary = SenFactory.getDictionary(IPADIC_DIR);
+        for (boolean matchSubtypes : new boolean[] { false, true }) {
+            PartOfSpeechSet lazy = new PartOfSpeechSet(Arrays.asList("名詞", "助詞-格助詞", "記号"), matchSubtypes);
+            PartOfSpeechSet eager = new PartOfSpeechSet(Arrays.asList("名詞", "助詞-格助詞", "記号"), matchSubtypes, dictionary);
+            for (int i = 0; i < dictionary.getPartOfSpeechCount(); i++) {
+                boolean expected = lazy.contains(dictionary.getPartOfSpeech(i));
+                assertEquals(expected, lazy.contains(dictionary, i), dictionary.getPartOfSpeech(i));
+                assertEquals(expected, eager.contains(dictionary, i), dictionary.getPartOfSpeech(i));
+            }
+        }
+    }
+
+    /**
+     * Tests that the morphemes of an analysis carry ids that resolve to their
+     * parts-of-speech
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMorphemeIds() throws Exception {
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+        PartOfSpeechSet set = new PartOfSpeechSet(Arrays.asList("名詞"), true);
+        for (Token token : tagger.analyze("これは本ではない。", new ArrayList<>())) {
+            Morpheme morpheme = token.getMorpheme();
+            int id = morpheme.getPartOfSpeechId();
+            if (id >= 0) {
+                assertEquals(morpheme.getPartOfSpeech(), morpheme.getDictionary().getPartOfSpeech(id));
+            }
+            assertEquals(set.contains(morpheme.getPartOfSpeech()), set.contains(morpheme));
+        }
+    }
+}
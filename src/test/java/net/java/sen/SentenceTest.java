@@ -36,6 +36,7 @@ import static net.java.sen.SenTestUtil.compareTokens;
 import static net.java.sen.SenTestUtil.getViterbi;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -127,6 +128,51 @@ public class SentenceTest {
 
         }
         assertFalse(iterator.hasNextOrigin(), "Unexpected span at end");
+
+        // The leading origins are at their own index
+        int leading = 0;
+        while ((leading < expectedSpans.length) && (expectedSpans[leading].origin == leading)) {
+            leading++;
+        }
+        assertEquals(leading, sentence.getLeadingOriginCount(), "Unexpected leading origin count:");
+        int last = (expectedSpans.length > 0) ? expectedSpans[expectedSpans.length - 1].origin : -1;
+        assertEquals(last, sentence.getLastOrigin(), "Unexpected last origin:");
+
+        // Seeking to each origin continues the iteration from there
+        assertEquals(expectedSpans.length, sentence.getOriginCount());
+        for (int i = 0; i < expectedSpans.length; i++) {
+            SentenceIterator seeker = sentence.iterator();
+            assertEquals(i, sentence.getOriginIndex(expectedSpans[i].origin), "Unexpected origin index:");
+            assertTrue(seeker.seekOrigin(expectedSpans[i].origin));
+
+            for (int k = i; k < expectedSpans.length; k++) {
+                if (k > i) {
+                    assertTrue(seeker.hasNextOrigin());
+                    seeker.nextOrigin();
+                }
+                assertEquals(expectedSpans[k].origin, seeker.origin(), "Unexpected origin after seek:");
+                assertEquals(expectedSpans[k].skipped, seeker.skippedCharCount(), "Unexpected skip count after seek:");
+
+                String subString = expectedSpans[k].subString;
+                for (int j = 0; j < subString.length(); j++) {
+                    assertTrue(seeker.hasNext());
+                    assertEquals(subString.charAt(j), seeker.next());
+                }
+                assertFalse(seeker.hasNext());
+            }
+            assertFalse(seeker.hasNextOrigin());
+        }
+
+        // Positions that are not origins cannot be sought
+        int index = 0;
+        for (int position = 0; position < expectedLength; position++) {
+            if ((index < expectedSpans.length) && (expectedSpans[index].origin == position)) {
+                index++;
+            } else {
+                assertEquals(-1, sentence.getOriginIndex(position));
+                assertFalse(sentence.iterator().seekOrigin(position));
+            }
+        }
     }
 
     /**
@@ -184,6 +230,53 @@ public class SentenceTest {
         sentenceUnconstrainedTestFixture(sentence, expectedSpans);
     }
 
+    /**
+     * Test hasNext() / next() on a window of a larger buffer
+     */
+    @Test
+    void testWindowIteration() {
+        String testString = "abcde";
+
+        TestSpan[] expectedSpans = {
+                new TestSpan(0, 0, "abcde", null),
+                new TestSpan(1, 0, "bcde", null),
+                new TestSpan(2, 0, "cde", null),
+                new TestSpan(3, 0, "de", null),
+                new TestSpan(4, 0, "e", null)
+        };
+
+        Sentence sentence = new Sentence("xyzabcdexyz".toCharArray(), 3, 5);
+        sentenceTestFixture(sentence, testString.length(), expectedSpans);
+        sentenceUnconstrainedTestFixture(sentence, expectedSpans);
+        assertEquals(testString, new String(sentence.getCharacters()));
+    }
+
+    /**
+     * Test that analysing a window of a buffer gives the same tokens as
+     * analysing a copy of it
+     *
+     * @throws IOException
+     */
+    @Test
+    void testWindowAnalysis() throws IOException {
+        String testString = "私はまだ初心者です。";
+        char[] buffer = ("これはペンです。" + testString + "あれもペンです。").toCharArray();
+
+        Viterbi viterbi = getViterbi();
+        List<Token> expected = viterbi.getBestTokens(new Sentence(testString), new ArrayList<>());
+        List<Token> tokens = viterbi.getBestTokens(new Sentence(buffer, 8, testString.length()), new ArrayList<>());
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            assertEquals(expected.get(i).getStart(), token.getStart());
+            assertSame(buffer, token.getSurfaceBuffer());
+            assertEquals(8 + token.getStart(), token.getSurfaceOffset());
+            assertEquals(expected.get(i).getSurface(), token.getSurface());
+            assertEquals(expected.get(i).getCost(), token.getCost());
+        }
+    }
+
     /**
      * Test hasNext() / next() with ignored range
      */
@@ -0,0 +1,119 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests that a sentence analysed in parts gives the same results as when it is
+ * analysed whole
+ */
+public class SettledTokensTest {
+
+    private static final String TEXT =
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている"
+            + "「ダブル・ディップ」という言葉が、市場関係者の間で囁かれ始めている"
+            + "ＡＢＣ ｄｅｆ　ＧＨＩ  空白  から  始まる  文  アイウエオカキクケコサシスセソ";
+
+    /**
+     * Analyses a string in parts of at most the given length
+     *
+     * @param tagger The tagger to use
+     * @param text   The string to analyse
+     * @param size   The number of characters to give the tagger at once
+     * @return The Tokens, positioned relative to the whole string
+     * @throws IOException
+     */
+    private static List<Token> analyzeInParts(StringTagger tagger, String text, int size) throws IOException {
+        char[] buffer = text.toCharArray();
+        List<Token> tokens = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int length = Math.min(size, buffer.length - start);
+            boolean complete = (start + length == buffer.length);
+            for (Token token : tagger.analyzePart(buffer, start, length, complete, new ArrayList<>())) {
+                token.setStart(token.getStart() + start);
+                tokens.add(token);
+            }
+            if (complete) {
+                break;
+            }
+            assertTrue(tagger.getSettledLength() > 0);
+            start += tagger.getSettledLength();
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Tests that a sentence is decomposed identically when analysed in parts
+     *
+     * @throws IOException
+     */
+    @Test
+    void testParts() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            builder.append(TEXT);
+        }
+        String text = builder.toString();
+
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+        List<Token> expected = tagger.analyze(text, new ArrayList<>());
+
+        for (int size : new int[] {100, 257, text.length()}) {
+            List<Token> actual = analyzeInParts(tagger, text, size);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getSurface(), actual.get(i).getSurface());
+                assertEquals(expected.get(i).getStart(), actual.get(i).getStart());
+                assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+                assertEquals(expected.get(i).getCost(), actual.get(i).getCost());
+                assertEquals(expected.get(i).getMorpheme().toString(), actual.get(i).getMorpheme().toString());
+            }
+        }
+    }
+
+    /**
+     * Tests that nothing is settled too close to the end of a part
+     *
+     * @throws IOException
+     */
+    @Test
+    void testUnsettled() throws IOException {
+        StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+        char[] buffer = "東京".toCharArray();
+
+        List<Token> tokens = tagger.analyzePart(buffer, 0, buffer.length, false, new ArrayList<>());
+        assertEquals(0, tokens.size());
+        assertEquals(0, tagger.getSettledLength());
+
+        tokens = tagger.analyzePart(buffer, 0, buffer.length, true, new ArrayList<>());
+        assertEquals(buffer.length, tagger.getSettledLength());
+        assertEquals("東京", tokens.get(0).getSurface());
+    }
+}
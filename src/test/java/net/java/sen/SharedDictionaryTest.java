@@ -0,0 +1,112 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * Tests sharing one {@link net.java.sen.dictionary.Dictionary} between threads
+ */
+public class SharedDictionaryTest {
+
+    private static final String[] SENTENCES = {
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。",
+            "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。",
+            "これは本ではない。",
+            "私はまだ初心者です。"
+    };
+
+    /**
+     * Analyses the test sentences, reading every member of each morpheme
+     *
+     * @param tagger The tagger to analyse with
+     * @return A description of the analysis
+     * @throws Exception
+     */
+    private static List<String> analyze(StringTagger tagger) throws Exception {
+        List<String> result = new ArrayList<>();
+        for (String sentence : SENTENCES) {
+            for (Token token : tagger.analyze(sentence, new ArrayList<>())) {
+                Morpheme m = token.getMorpheme();
+                result.add(token.getSurface() + "|" + token.getCost() + "|" + m.getPartOfSpeech() + "|" + m.getBasicForm()
+                        + "|" + m.getConjugationalType() + "|" + m.getConjugationalForm() + "|" + m.getReadings() + "|" + m.getPronunciations());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Tests that the factory builds every tokenizer on the same Dictionary
+     */
+    @Test
+    void testSharedInstance() {
+        assertSame(SenFactory.getDictionary(IPADIC_DIR), SenFactory.getDictionary(IPADIC_DIR));
+    }
+
+    /**
+     * Tests that a Dictionary is shared only by the objects built with the
+     * same dictionary loading options
+     */
+    @Test
+    void testSharedByOptions() {
+        SenOptions analysis = SenOptions.builder().tokenizeUnknownKatakana(true).compactLattice(true).build();
+        assertSame(SenFactory.getDictionary(IPADIC_DIR), SenFactory.getDictionary(IPADIC_DIR, analysis));
+
+        SenOptions heap = SenOptions.builder().heapTrie(true).build();
+        assertNotSame(SenFactory.getDictionary(IPADIC_DIR), SenFactory.getDictionary(IPADIC_DIR, heap));
+        assertSame(SenFactory.getDictionary(IPADIC_DIR, heap), SenFactory.getDictionary(IPADIC_DIR, heap.toBuilder().compactLattice(true).build()));
+    }
+
+    /**
+     * Tests that concurrent analyses give the same results as a single one
+     *
+     * @throws Exception
+     */
+    @Test
+    void testConcurrentAnalysis() throws Exception {
+        List<String> expected = analyze(SenFactory.getStringTagger(IPADIC_DIR, false));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> analyze(SenFactory.getStringTagger(IPADIC_DIR, false))));
+            }
+            for (Future<List<String>> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Budget;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Tests {@link StringTaggerPool}
+ */
+public class StringTaggerPoolTest {
+
+    /**
+     * Tests that the pool is bounded and reuses returned taggers
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void testBorrowAndRelease() throws InterruptedException {
+        StringTaggerPool pool = new StringTaggerPool(IPADIC_DIR, SenOptions.DEFAULT, 2);
+
+        StringTagger tagger1 = pool.borrow();
+        StringTagger tagger2 = pool.borrow();
+        assertEquals(2, pool.getActive());
+        assertEquals(2, pool.getCreations());
+
+        assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+        assertEquals(1, pool.getWaits());
+
+        pool.release(tagger1);
+        assertEquals(1, pool.getIdle());
+
+        StringTagger tagger3 = pool.borrow(10, TimeUnit.MILLISECONDS);
+        assertNotNull(tagger3);
+        assertSame(tagger1, tagger3);
+        assertEquals(2, pool.getCreations());
+        assertEquals(3, pool.getBorrows());
+
+        pool.release(tagger2);
+        pool.release(tagger3);
+        assertEquals(0, pool.getActive());
+        assertEquals(2, pool.getIdle());
+    }
+
+    /**
+     * Tests that only borrowed taggers are accepted back, once each
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    void testInvalidRelease() throws InterruptedException {
+        StringTaggerPool pool = new StringTaggerPool(IPADIC_DIR, SenOptions.DEFAULT, 1);
+
+        StringTagger tagger = pool.borrow();
+        assertThrows(IllegalArgumentException.class, () -> pool.release(SenFactory.getStringTagger(IPADIC_DIR, false)));
+        pool.release(tagger);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(tagger));
+        assertEquals(0, pool.getActive());
+        assertEquals(1, pool.getIdle());
+    }
+
+    /**
+     * Tests that a partly analysed sentence is discarded on release
+     *
+     * @throws Exception
+     */
+    @Test
+    void testReleaseResets() throws Exception {
+        StringTaggerPool pool = new StringTaggerPool(IPADIC_DIR, SenOptions.DEFAULT, 1);
+
+        StringTagger tagger = pool.borrow();
+        char[] text = "東京都に住む".toCharArray();
+        tagger.analyzePart(text, 0, 3, false, new ArrayList<>());
+        pool.release(tagger);
+
+        char[] next = "大阪に住む".toCharArray();
+        List<Token> expected = SenFactory.getStringTagger(IPADIC_DIR, false).analyze(next, new ArrayList<>());
+        tagger = pool.borrow();
+        List<Token> tokens = tagger.analyzePart(next, 0, next.length, true, new ArrayList<>());
+        pool.release(tagger);
+
+        assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStart(), tokens.get(i).getStart());
+            assertEquals(expected.get(i).getSurface(), tokens.get(i).getSurface());
+            assertEquals(expected.get(i).getCost(), tokens.get(i).getCost());
+        }
+    }
+
+    /**
+     * Tests that a permit is not lost when a tagger cannot be created
+     */
+    @Test
+    void testFailedCreation() {
+        StringTaggerPool pool = new StringTaggerPool("/nonexistent/dictionary", SenOptions.DEFAULT, 1);
+
+        assertThrows(RuntimeException.class, pool::borrow);
+        assertEquals(0, pool.getActive());
+        assertEquals(0, pool.getBorrows());
+    }
+
+    /**
+     * Tests that the factory shares one pool per configuration
+     */
+    @Test
+    void testSharedPool() {
+        assertSame(SenFactory.getStringTaggerPool(IPADIC_DIR, false, 4), SenFactory.getStringTaggerPool(IPADIC_DIR, false, 8));
+        assertSame(SenFactory.getStringTaggerPool(IPADIC_DIR, false, 4), SenFactory.getStringTaggerPool(IPADIC_DIR, SenOptions.DEFAULT, 4));
+
+        Budget budget = new Budget(0, 100);
+        StringTaggerPool budgetPool = SenFactory.getStringTaggerPool(IPADIC_DIR, SenOptions.builder().budget(budget).build(), 4);
+        assertSame(budgetPool, SenFactory.getStringTaggerPool(IPADIC_DIR, SenOptions.builder().budget(budget).build(), 4));
+        assertNotSame(budgetPool, SenFactory.getStringTaggerPool(IPADIC_DIR, SenOptions.builder().budget(new Budget(0, 100)).build(), 4));
+    }
+}
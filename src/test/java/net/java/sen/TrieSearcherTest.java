@@ -31,7 +31,9 @@ import net.java.sen.trie.TrieBuilder;
 import net.java.sen.trie.TrieSearcher;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -104,4 +106,32 @@ public class TrieSearcherTest {
             assertEquals(values[i + 3], results[i]);
         }
     }
+
+    /**
+     * Tests that a Trie built in memory matches the Trie data file
+     *
+     * @throws Exception
+     */
+    @Test
+    void testBuildInMemory() throws Exception {
+        String[] keys = new String[] { "a", "ab", "abc", "b", "bc" };
+        int[] values = new int[] { 1, 2, 3, 4, 5 };
+
+        TrieBuilder builder = new TrieBuilder(keys, values, keys.length);
+        File tempFile = File.createTempFile("tst", null);
+        tempFile.deleteOnExit();
+        builder.build(tempFile.getAbsolutePath());
+
+        int[] fileData;
+        try (RandomAccessFile trieFile = new RandomAccessFile(tempFile, "r")) {
+            IntBuffer intBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length()).asIntBuffer();
+            fileData = new int[intBuffer.remaining()];
+            intBuffer.get(fileData);
+        }
+
+        assertArrayEquals(fileData, builder.build());
+        assertEquals(fileData.length / 2, builder.getSlotCount());
+        assertTrue(builder.getUsedSlotCount() > 0);
+        assertTrue(builder.getFillRatio() > 0 && builder.getFillRatio() <= 1);
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.UnknownWordModel;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+import org.junit.jupiter.api.Test;
+
+import static net.java.sen.SenTestUtil.IPADIC_DIR;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Tests {@link UnknownWordModel}
+ */
+public class UnknownWordModelTest {
+
+    /**
+     * Tests that the compiled form reads back identically
+     *
+     * @throws IOException
+     */
+    @Test
+    void testReadWrite() throws IOException {
+        UnknownWordModel model = JapaneseTokenizer.DEFAULT_UNKNOWN_WORD_MODEL;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+        UnknownWordModel read = UnknownWordModel.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(model.size(), read.size());
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(model.getName(i), read.getName(i));
+            assertEquals(model.isInvoke(i), read.isInvoke(i));
+            assertEquals(model.isGroup(i), read.isGroup(i));
+            assertEquals(model.getLength(i), read.getLength(i));
+            assertEquals(model.getCost(i), read.getCost(i));
+        }
+        for (int c = 0; c < 0x10000; c++) {
+            assertEquals(model.getCategory((char) c), read.getCategory((char) c));
+        }
+    }
+
+    /**
+     * Tests that a category's grouping behaviour is applied
+     *
+     * @throws IOException
+     */
+    @Test
+    void testGrouping() throws IOException {
+        UnknownWordModel model = JapaneseTokenizer.DEFAULT_UNKNOWN_WORD_MODEL;
+        int category = model.getCategory('п');
+
+        List<Token> grouped = SenFactory.getViterbi(IPADIC_DIR, false, model).getBestTokens(new Sentence("привет"));
+        assertEquals(1, grouped.size());
+        assertEquals("привет", grouped.get(0).getSurface());
+
+        UnknownWordModel ungrouped = model.withBehaviour(category, true, false, 0);
+        List<Token> single = SenFactory.getViterbi(IPADIC_DIR, false, ungrouped).getBestTokens(new Sentence("привет"));
+        assertEquals(6, single.size());
+
+        UnknownWordModel fixedLength = model.withBehaviour(category, true, false, 3);
+        List<Token> fixed = SenFactory.getViterbi(IPADIC_DIR, false, fixedLength).getBestTokens(new Sentence("привет"));
+        assertEquals(2, fixed.size());
+        assertEquals("при", fixed.get(0).getSurface());
+    }
+}
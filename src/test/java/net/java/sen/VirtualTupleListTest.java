@@ -0,0 +1,110 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.java.sen.compiler.StringCTokenTuple;
+import net.java.sen.compiler.VirtualTupleList;
+import net.java.sen.dictionary.CToken;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Tests sorting of a {@link VirtualTupleList}
+ */
+public class VirtualTupleListTest {
+
+    /**
+     * Creates random keys that share many prefixes and include duplicates
+     *
+     * @param count The number of keys
+     * @return The keys
+     */
+    private static List<String> createKeys(int count) {
+        Random random = new Random(42);
+        String characters = "東京都\u0000ab";
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int j = random.nextInt(8); j >= 0; j--) {
+                builder.append(characters.charAt(random.nextInt(characters.length())));
+            }
+            keys.add(builder.toString());
+        }
+
+        return keys;
+    }
+
+    /**
+     * Sorts keys in a list with the given memory budget, and checks the order
+     * against a stable in-memory sort
+     *
+     * @param memoryBudget The memory budget
+     * @throws IOException
+     */
+    private static void assertSorted(long memoryBudget) throws IOException {
+        List<String> keys = createKeys(5000);
+        List<StringCTokenTuple> expected = new ArrayList<>();
+
+        try (VirtualTupleList list = new VirtualTupleList(memoryBudget)) {
+            for (int i = 0; i < keys.size(); i++) {
+                CToken ctoken = new CToken();
+                ctoken.partOfSpeechIndex = i;
+                list.add(keys.get(i), ctoken);
+                expected.add(new StringCTokenTuple(keys.get(i), ctoken));
+            }
+            expected.sort(null);
+
+            list.sort();
+
+            assertEquals(expected.size(), list.size());
+            for (int i = 0; i < expected.size(); i++) {
+                StringCTokenTuple tuple = list.get(i);
+                assertEquals(expected.get(i).key, tuple.key);
+                assertEquals(expected.get(i).value.partOfSpeechIndex, tuple.value.partOfSpeechIndex);
+            }
+        }
+    }
+
+    /**
+     * Tests a list sorted in memory
+     *
+     * @throws IOException
+     */
+    @Test
+    void testSort() throws IOException {
+        assertSorted(VirtualTupleList.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Tests a list sorted in runs that are merged
+     *
+     * @throws IOException
+     */
+    @Test
+    void testExternalSort() throws IOException {
+        assertSorted(4096);
+    }
+}
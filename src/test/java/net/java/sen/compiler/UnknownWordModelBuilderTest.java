@@ -0,0 +1,69 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ */
+
+package net.java.sen.compiler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import net.java.sen.dictionary.UnknownWordModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Tests {@link UnknownWordModelBuilder}
+ */
+public class UnknownWordModelBuilderTest {
+
+    /**
+     * Parses a character definition
+     *
+     * @param definition The definition
+     * @return The model
+     * @throws IOException
+     */
+    private static UnknownWordModel parse(String definition) throws IOException {
+        return UnknownWordModelBuilder.parse(new BufferedReader(new StringReader(definition)));
+    }
+
+    /**
+     * Tests that the lengths of categories are parsed within their range
+     *
+     * @throws IOException
+     */
+    @Test
+    void testLength() throws IOException {
+        UnknownWordModel model = parse("DEFAULT 0 1 0\nKATAKANA 1 1 255\n0x30A1..0x30FA KATAKANA\n");
+        assertEquals(0, model.getLength(model.getCategory('a')));
+        assertEquals(255, model.getLength(model.getCategory('ア')));
+    }
+
+    /**
+     * Tests that a length out of range is rejected with its line number
+     */
+    @Test
+    void testLengthOutOfRange() {
+        for (String length : new String[] {"-1", "256", "65536"}) {
+            IOException e = assertThrows(IOException.class, () -> parse("# lengths\nDEFAULT 0 1 " + length + "\n"));
+            assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+        }
+    }
+}
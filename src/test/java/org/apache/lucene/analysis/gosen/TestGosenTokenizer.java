@@ -18,10 +18,16 @@ package org.apache.lucene.analysis.gosen;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import com.carrotsearch.randomizedtesting.RandomizedContext;
+import net.java.sen.SenFactory;
+import net.java.sen.SenOptions;
 import net.java.sen.SenTestUtil;
+import net.java.sen.StringTagger;
+import net.java.sen.dictionary.Token;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.BaseTokenStreamTestCase;
 import org.apache.lucene.analysis.TokenStream;
@@ -150,6 +156,131 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
                 new int[] {4101, 4106});
     }
 
+    /** Tests that lines longer than the initial buffer are not cut mid-token */
+    @Test
+    public void testLongLine() throws IOException {
+        String sentence = "これは本ではない、";
+        String[] terms = {"これ", "は", "本", "で", "は", "ない", "、"};
+        StringBuilder sb = new StringBuilder();
+        String[] expected = new String[terms.length * 1000];
+        for (int i = 0; i < 1000; i++) {
+            sb.append(sentence);
+            System.arraycopy(terms, 0, expected, i * terms.length, terms.length);
+        }
+        String input = sb.toString();
+
+        // the buffer grows to hold the whole line
+        assertAnalyzesTo(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new GosenTokenizer(newAttributeFactory(), null, SenTestUtil.IPADIC_DIR,
+                        SenOptions.builder().maxBufferSize(65536).build());
+                return new TokenStreamComponents(tokenizer, tokenizer);
+            }
+        }, input, expected);
+
+        // the buffer is broken at a change of character class
+        assertAnalyzesTo(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new GosenTokenizer(newAttributeFactory(), null, SenTestUtil.IPADIC_DIR,
+                        SenOptions.builder().maxBufferSize(4096).build());
+                return new TokenStreamComponents(tokenizer, tokenizer);
+            }
+        }, input, expected);
+
+        // the line is analysed incrementally in a fixed buffer
+        assertAnalyzesTo(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new GosenTokenizer(newAttributeFactory(), null, SenTestUtil.IPADIC_DIR,
+                        SenOptions.builder().incremental(true).build());
+                return new TokenStreamComponents(tokenizer, tokenizer);
+            }
+        }, input, expected);
+    }
+
+    /**
+     * Tests that a line broken at a change of character class within a word
+     * is broken exactly there, and each side analysed as a sentence
+     */
+    @Test
+    public void testLongLineBrokenInWord() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 454; i++) {
+            sb.append("これは本ではない、");
+        }
+        // the last change of character class in the 4096 char buffer is
+        // between the kanji and hiragana of 食べる
+        sb.append("毎朝パンをよく食べる");
+        int breakOffset = sb.length() - 2;
+        assertEquals(4094, breakOffset);
+        sb.append("。");
+        String input = sb.toString();
+
+        StringTagger tagger = SenFactory.getStringTagger(SenTestUtil.IPADIC_DIR, false);
+        List<Token> tokens = tagger.analyze(input.substring(0, breakOffset), new ArrayList<>());
+        int before = tokens.size();
+        for (Token token : tagger.analyze(input.substring(breakOffset), new ArrayList<>())) {
+            token.setStart(token.getStart() + breakOffset);
+            tokens.add(token);
+        }
+        String[] terms = new String[tokens.size()];
+        int[] starts = new int[tokens.size()];
+        int[] ends = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            terms[i] = tokens.get(i).getSurface();
+            starts[i] = tokens.get(i).getStart();
+            ends[i] = tokens.get(i).end();
+        }
+        assertEquals("食", terms[before - 1]);
+        assertEquals(breakOffset, ends[before - 1]);
+        assertTrue(terms[before].startsWith("べ"));
+        assertEquals(breakOffset, starts[before]);
+
+        assertAnalyzesTo(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new GosenTokenizer(newAttributeFactory(), null, SenTestUtil.IPADIC_DIR,
+                        SenOptions.builder().maxBufferSize(4096).build());
+                return new TokenStreamComponents(tokenizer, tokenizer);
+            }
+        }, input, terms, starts, ends);
+    }
+
+    /**
+     * Tests that a word longer than the buffer, from which nothing can be
+     * settled, is carried on into a larger buffer rather than cut off
+     */
+    @Test
+    public void testIncrementalUnsettled() throws IOException {
+        StringBuilder sb = new StringBuilder("これは");
+        for (int i = 0; i < 10000; i++) {
+            sb.append('ア');
+        }
+        sb.append("です。");
+        String input = sb.toString();
+
+        List<Token> tokens = SenFactory.getStringTagger(SenTestUtil.IPADIC_DIR, false).analyze(input, new ArrayList<>());
+        String[] terms = new String[tokens.size()];
+        int[] starts = new int[tokens.size()];
+        int[] ends = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            terms[i] = tokens.get(i).getSurface();
+            starts[i] = tokens.get(i).getStart();
+            ends[i] = tokens.get(i).end();
+        }
+
+        assertAnalyzesTo(new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String field) {
+                Tokenizer tokenizer = new GosenTokenizer(newAttributeFactory(), null, SenTestUtil.IPADIC_DIR,
+                        SenOptions.builder().incremental(true).build());
+                return new TokenStreamComponents(tokenizer, tokenizer);
+            }
+        }, input, terms, starts, ends);
+    }
+
     /**
      * Tokenizes random unicode strings, to ensure no exception
      * (results could be completely bogus, but makes sure we don't crash on some input)
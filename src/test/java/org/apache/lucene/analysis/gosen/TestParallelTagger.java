@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.java.sen.SenFactory;
+import net.java.sen.SenOptions;
+import net.java.sen.SenTestUtil;
+import net.java.sen.StringTagger;
+import net.java.sen.StringTaggerPool;
+import net.java.sen.dictionary.Budget;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class TestParallelTagger {
+
+    private static final String[] SENTENCES = {
+            "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である。",
+            "「ダブル・ディップ」という言葉が、市場関係者の間で囁かれ始めている。\n",
+            "ＡＢＣ ｄｅｆ　ＧＨＩ",
+            "今日は良い天気です！\r\n",
+            "アイウエオカキクケコ？",
+    };
+
+    private static List<String> toStrings(List<Token> tokens) {
+        List<String> strings = new ArrayList<>();
+        for (Token token : tokens) {
+            strings.add(token.getSurface() + "/" + token.getStart() + "/" + token.getLength() + "/" + token.getCost()
+                    + "/" + token.isSentenceStart() + "/" + token.getMorpheme());
+        }
+        return strings;
+    }
+
+    private static List<String> analyzeSequentially(StringTaggerPool pool, String document) throws Exception {
+        return analyzeSequentially(pool, document, 0, false);
+    }
+
+    private static List<String> analyzeSequentially(StringTaggerPool pool, String document, int maxBufferSize,
+            boolean incremental) throws Exception {
+        List<Token> tokens = new ArrayList<>();
+        StringTagger tagger = pool.borrow();
+        try {
+            StreamTagger2 streamTagger = new StreamTagger2(tagger, new StringReader(document), maxBufferSize, incremental);
+            for (Token token; (token = streamTagger.next()) != null; ) {
+                tokens.add(token);
+            }
+        } finally {
+            pool.release(tagger);
+        }
+        return toStrings(tokens);
+    }
+
+    @Test
+    void testSameAsStreamTagger() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 20000; i++) {
+            builder.append(SENTENCES[(i * 7) % SENTENCES.length]);
+        }
+        String document = builder.toString();
+
+        StringTaggerPool pool = SenFactory.getStringTaggerPool(SenTestUtil.IPADIC_DIR, false, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ParallelTagger parallelTagger = new ParallelTagger(pool, executor);
+            List<String> expected = analyzeSequentially(pool, document);
+
+            assertEquals(expected, toStrings(parallelTagger.analyze(document)));
+
+            List<List<Token>> results = parallelTagger.analyze(Arrays.asList(document, "", SENTENCES[0]));
+            assertEquals(expected, toStrings(results.get(0)));
+            assertEquals(0, results.get(1).size());
+            assertEquals(analyzeSequentially(pool, SENTENCES[0]), toStrings(results.get(2)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testLargeDocumentInList() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 50000; i++) {
+            builder.append(SENTENCES[(i * 3) % SENTENCES.length]);
+        }
+        String document = builder.toString();
+
+        StringTaggerPool pool = SenFactory.getStringTaggerPool(SenTestUtil.IPADIC_DIR, false, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger tasks = new AtomicInteger();
+        try {
+            ParallelTagger parallelTagger = new ParallelTagger(pool, command -> {
+                tasks.incrementAndGet();
+                executor.execute(command);
+            });
+
+            List<List<Token>> results = parallelTagger.analyze(Arrays.asList(SENTENCES[1], document, SENTENCES[3]));
+            assertEquals(analyzeSequentially(pool, SENTENCES[1]), toStrings(results.get(0)));
+            assertEquals(analyzeSequentially(pool, document), toStrings(results.get(1)));
+            assertEquals(analyzeSequentially(pool, SENTENCES[3]), toStrings(results.get(2)));
+
+            // the large document is split into many tasks, not one
+            assertTrue(tasks.get() > 10, "tasks: " + tasks.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSameAsConfiguredStreamTagger() throws Exception {
+        StringBuilder builder = new StringBuilder(SENTENCES[1]);
+        // a line with no break point, longer than the buffer
+        while (builder.length() < 12000) {
+            builder.append("すもももももももものうち");
+        }
+        builder.append("\n");
+        for (int i = 0; builder.length() < 20000; i++) {
+            builder.append(SENTENCES[(i * 7) % SENTENCES.length]);
+        }
+        String document = builder.toString();
+
+        StringTaggerPool pool = SenFactory.getStringTaggerPool(SenTestUtil.IPADIC_DIR, false, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int maxBufferSize : new int[] {0, 8192}) {
+                for (boolean incremental : new boolean[] {false, true}) {
+                    ParallelTagger parallelTagger = new ParallelTagger(pool, executor, maxBufferSize, incremental);
+                    assertEquals(analyzeSequentially(pool, document, maxBufferSize, incremental),
+                            toStrings(parallelTagger.analyze(document)), maxBufferSize + "/" + incremental);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testBudgetTimeLimit() throws Exception {
+        Budget budget = new Budget(0, 1);
+        SenOptions options = SenOptions.builder().budget(budget).build();
+        StringTaggerPool pool = SenFactory.getStringTaggerPool(SenTestUtil.IPADIC_DIR, options, 2);
+
+        // every task starts after the document's time limit has passed
+        ParallelTagger parallelTagger = new ParallelTagger(pool, command -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            command.run();
+        });
+
+        List<Token> tokens = parallelTagger.analyze(SENTENCES[0] + SENTENCES[1]);
+        assertTrue(tokens.size() > 0);
+        for (Token token : tokens) {
+            assertTrue(token.isFallback(), token.getSurface());
+        }
+        assertTrue(budget.getTimeOverruns() > 0);
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        StringTaggerPool pool = SenFactory.getStringTaggerPool(SenTestUtil.IPADIC_DIR, false, 4);
+        ParallelTagger parallelTagger = new ParallelTagger(pool, Runnable::run);
+        assertEquals(0, parallelTagger.analyze("").size());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.lucene.analysis.gosen;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.SenFactory;
+import net.java.sen.SenTestUtil;
+import net.java.sen.dictionary.Token;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+public class TestStreamTagger2 {
+
+    @Test
+    void testTokensKeptAcrossRefill() throws Exception {
+        // each line differs, so that a surface read from a reused buffer is wrong
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 20000; i++) {
+            builder.append(i).append("日は良い天気です。\n「ダブル・ディップ」という言葉が、市場関係者の間で囁かれ始めている。\n");
+        }
+        String document = builder.toString();
+
+        StreamTagger2 tagger = new StreamTagger2(SenFactory.getStringTagger(SenTestUtil.IPADIC_DIR, false), new StringReader(document));
+        List<Token> tokens = new ArrayList<>();
+        for (Token token; (token = tagger.next()) != null; ) {
+            tokens.add(token);
+        }
+
+        // the document is read in several buffers, each reusing the last
+        assertTrue(tokens.get(tokens.size() - 1).getStart() > 8192);
+        for (Token token : tokens) {
+            assertEquals(document.substring(token.getStart(), token.end()), token.getSurface());
+        }
+    }
+}